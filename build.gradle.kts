@@ -10,6 +10,18 @@ repositories {
     mavenCentral()
 }
 
+// JMH benchmarks live in src/jmh/java, next to the code they measure but outside the application jar
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+val jmhImplementation by configurations.getting {
+    extendsFrom(configurations.implementation.get())
+}
+
 dependencies {
     implementation("com.microsoft.onnxruntime:onnxruntime:1.17.0")
     implementation("com.google.code.gson:gson:2.11.0")
@@ -17,6 +29,10 @@ dependencies {
 
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    jmhImplementation("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 application {
@@ -25,4 +41,32 @@ application {
 
 tasks.test {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+tasks.register<JavaExec>("quantizationReport") {
+    group = "verification"
+    description = "Compares the float recommendation models with their int8 variant (pass options with -Pargs=\"...\")."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.example.ai.QuantizationHarness")
+    args = (project.findProperty("args") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: emptyList()
+}
+
+tasks.register<JavaExec>("inferenceBenchmark") {
+    group = "verification"
+    description = "Measures cold start, single-row latency and batch throughput of the recommendation models (pass options with -Pargs=\"...\")."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.example.ai.InferenceBenchmark")
+    args = (project.findProperty("args") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: emptyList()
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks with the GC profiler (pass JMH options with -Pargs=\"...\", e.g. a benchmark regex or -p faces=10000, and an input directory with -Pdraxel.jmh.inputs=...)."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    // the benchmarks read draxel.jmh.inputs in the forked JVM, which inherits no system properties from this one;
+    // prepended, so the -Xmx of a benchmark's @Fork(jvmArgsAppend) still applies
+    val inputs = (project.findProperty("draxel.jmh.inputs") as String?)
+        ?.let { listOf("-jvmArgsPrepend", "-Ddraxel.jmh.inputs=" + file(it).absolutePath) } ?: emptyList()
+    args = listOf("-prof", "gc") + inputs + ((project.findProperty("args") as String?)?.split(" ")?.filter { it.isNotBlank() } ?: emptyList())
+}
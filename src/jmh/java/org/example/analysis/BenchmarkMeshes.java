@@ -0,0 +1,82 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In-memory meshes of a given size and topology for the feature benchmarks, so parsing stays out of the
+ * measurement. Face counts are approximate for the closed sphere and exact otherwise.
+ *
+ *  - grid: an open, wavy height field of triangles,
+ *  - quads: the same height field as quadrilaterals, which the features fan-triangulate,
+ *  - sphere: a closed UV sphere from {@link SyntheticMesh}, the usual printable solid,
+ *  - soup: disconnected triangles scattered in a cube, no shared vertices.
+ */
+final class BenchmarkMeshes {
+
+    static final String[] TOPOLOGIES = {"grid", "quads", "sphere", "soup"};
+
+    private BenchmarkMeshes() {
+    }
+
+    static ObjModel of(String topology, int faces) {
+        return switch (topology) {
+            case "grid" -> grid(faces, false);
+            case "quads" -> grid(faces, true);
+            case "sphere" -> SyntheticMesh.build(SyntheticMesh.Shape.SPHERE, faces, 0);
+            case "soup" -> soup(faces);
+            default -> throw new IllegalArgumentException("Unknown topology: " + topology);
+        };
+    }
+
+    private static ObjModel grid(int faces, boolean quads) {
+        int cells = quads ? faces : (faces + 1) / 2;
+        int columns = (int) Math.ceil(Math.sqrt(cells));
+        int rows = (int) Math.ceil((double) cells / columns);
+        int width = columns + 1;
+        List<float[]> vertices = new ArrayList<>(width * (rows + 1));
+        for (int r = 0; r <= rows; r++) {
+            for (int c = 0; c <= columns; c++) {
+                float x = (float) c / columns;
+                float y = (float) r / rows;
+                vertices.add(new float[]{x, y, (float) (0.05 * Math.sin(12 * x) * Math.cos(9 * y))});
+            }
+        }
+        List<int[]> list = new ArrayList<>(faces);
+        for (int r = 0; r < rows && list.size() < faces; r++) {
+            for (int c = 0; c < columns && list.size() < faces; c++) {
+                int a = r * width + c;
+                int b = a + 1;
+                int d = a + width;
+                int e = d + 1;
+                if (quads) {
+                    list.add(new int[]{a, b, e, d});
+                } else {
+                    list.add(new int[]{a, b, e});
+                    if (list.size() < faces) {
+                        list.add(new int[]{a, e, d});
+                    }
+                }
+            }
+        }
+        return new ObjModel(vertices, list);
+    }
+
+    private static ObjModel soup(int faces) {
+        Random random = new Random(42);
+        List<float[]> vertices = new ArrayList<>(faces * 3);
+        List<int[]> list = new ArrayList<>(faces);
+        for (int f = 0; f < faces; f++) {
+            float x = random.nextFloat(), y = random.nextFloat(), z = random.nextFloat();
+            int first = vertices.size();
+            vertices.add(new float[]{x, y, z});
+            vertices.add(new float[]{x + 0.01f * random.nextFloat(), y + 0.01f * random.nextFloat(), z});
+            vertices.add(new float[]{x, y + 0.01f * random.nextFloat(), z + 0.01f * random.nextFloat()});
+            list.add(new int[]{first, first + 1, first + 2});
+        }
+        return new ObjModel(vertices, list);
+    }
+}
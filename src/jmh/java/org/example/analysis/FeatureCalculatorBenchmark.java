@@ -0,0 +1,91 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per call of each step of {@link FeatureCalculator#calculate}, and of the whole, on meshes from
+ * {@link BenchmarkMeshes}. The steps that only combine others' results (linearity, sphericity, Euler number,
+ * compactness, aspect ratio, convexity) take nanoseconds and are left out. Run with the {@code jmh} Gradle
+ * task, whose GC profiler reports the bytes each step allocates per call as {@code gc.alloc.rate.norm}:
+ *
+ * <pre>
+ * gradle jmh -Pargs="FeatureCalculatorBenchmark -p topology=sphere"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FeatureCalculatorBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int faces;
+
+    @Param({"grid", "quads", "sphere", "soup"})
+    public String topology;
+
+    private ObjModel model;
+    private List<float[]> vertices;
+    private List<int[]> faceList;
+    private FeatureCalculator.BoundingBox box;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = BenchmarkMeshes.of(topology, faces);
+        vertices = model.getVertices();
+        faceList = model.getFaces();
+        box = FeatureCalculator.BoundingBox.from(vertices);
+    }
+
+    @Benchmark
+    public FeatureCalculator.Result calculate() {
+        return FeatureCalculator.calculate(model);
+    }
+
+    @Benchmark
+    public FeatureCalculator.BoundingBox boundingBox() {
+        return FeatureCalculator.BoundingBox.from(vertices);
+    }
+
+    @Benchmark
+    public FeatureCalculator.GeometryStats geometryStats() {
+        return FeatureCalculator.GeometryStats.from(vertices, faceList);
+    }
+
+    @Benchmark
+    public double planarity() {
+        return FeatureCalculator.computePlanarity(vertices);
+    }
+
+    @Benchmark
+    public double anisotropy() {
+        return FeatureCalculator.computeAnisotropy(vertices, faceList);
+    }
+
+    @Benchmark
+    public double curvature() {
+        return FeatureCalculator.computeCurvature(vertices, faceList);
+    }
+
+    @Benchmark
+    public double localDensity() {
+        return FeatureCalculator.computeLocalDensity(vertices, box);
+    }
+}
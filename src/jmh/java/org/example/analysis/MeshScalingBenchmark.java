@@ -0,0 +1,93 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How parsing and the features scale with mesh size, from 1K to 50M faces of a {@link SyntheticMesh} shape.
+ * While the work stays linear, the time per operation grows with the face count: tenfold from one size to the
+ * next up to 10M, fivefold from 10M to 50M.
+ *
+ * The OBJ files are streamed by {@link MeshWriter} into {@code build/jmh-inputs} (or the directory given with
+ * {@code -Pdraxel.jmh.inputs=...}) once and reused; the 50M-face file is about 2 GB. Only the input the benchmark needs is prepared, but the
+ * largest sizes still need a host with 16 GB or more, so sweep the small end first:
+ *
+ * <pre>
+ * gradle jmh -Pargs="MeshScalingBenchmark -p faces=1000,10000,100000,1000000 -p shape=sphere,multi-body"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+@State(Scope.Benchmark)
+public class MeshScalingBenchmark {
+
+    private static final long SEED = 42;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000", "50000000"})
+    public int faces;
+
+    @Param({"sphere"})
+    public String shape;
+
+    private Path file;
+    private ObjModel model;
+    private int expectedFaces;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) throws IOException {
+        SyntheticMesh.Shape kind = SyntheticMesh.Shape.of(shape);
+        expectedFaces = SyntheticMesh.plan(kind, faces).faces();
+        if (params.getBenchmark().endsWith(".parse")) {
+            file = input(kind, faces);
+        } else {
+            model = SyntheticMesh.build(kind, faces, SEED);
+        }
+    }
+
+    @Benchmark
+    public ObjModel parse() throws IOException {
+        ObjModel parsed = ObjParser.parse(file);
+        if (parsed.getFaceCount() != expectedFaces) {
+            throw new IllegalStateException("Parsed " + parsed.getFaceCount() + " faces, expected " + expectedFaces);
+        }
+        return parsed;
+    }
+
+    @Benchmark
+    public FeatureCalculator.Result features() {
+        return FeatureCalculator.calculate(model);
+    }
+
+    private static Path input(SyntheticMesh.Shape shape, int faces) throws IOException {
+        Path directory = Path.of(System.getProperty("draxel.jmh.inputs", "build/jmh-inputs"));
+        Path file = directory.resolve("synthetic-" + shape.key() + "-" + faces + ".obj");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, "synthetic-" + shape.key() + "-" + faces, ".tmp.obj");
+        MeshWriter.write(shape, faces, SEED, tmp);
+        return Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,142 @@
+package org.example.analysis;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Generated OBJ files for the parser benchmarks: a wavy height-field grid cut to an exact number of
+ * triangles, written once per size and variant into {@code build/jmh-inputs} (or the directory given with
+ * {@code -Pdraxel.jmh.inputs=...}) and reused by later runs.
+ *
+ * Variants:
+ *  - plain: {@code v} lines and {@code f a b c} faces, LF line endings,
+ *  - vtn: {@code vt} and {@code vn} lines too, faces as {@code f a/a/a b/b/b c/c/c},
+ *  - negative: like vtn, with every face index relative to the end ({@code f -3/-3/-3 ...}),
+ *  - crlf: like vtn, with CRLF line endings, as Windows exporters write them.
+ */
+final class ObjInputs {
+
+    static final String[] VARIANTS = {"plain", "vtn", "negative", "crlf"};
+
+    private ObjInputs() {
+    }
+
+    static Path get(int faces, String variant) throws IOException {
+        Path directory = Path.of(System.getProperty("draxel.jmh.inputs", "build/jmh-inputs"));
+        Path file = directory.resolve(variant + "-" + faces + ".obj");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, variant + "-" + faces, ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            write(out, faces, variant);
+        }
+        return Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void write(Writer out, int faces, String variant) throws IOException {
+        if (!List.of(VARIANTS).contains(variant)) {
+            throw new IllegalArgumentException("Unknown variant: " + variant);
+        }
+        boolean vtn = !variant.equals("plain");
+        boolean negative = variant.equals("negative");
+        String eol = variant.equals("crlf") ? "\r\n" : "\n";
+        int columns = (int) Math.ceil(Math.sqrt(faces / 2.0));
+        int rows = (int) Math.ceil(faces / (2.0 * columns));
+        int width = columns + 1;
+        int vertices = width * (rows + 1);
+
+        StringBuilder line = new StringBuilder(96);
+        out.write("# generated by ObjInputs: " + faces + " faces, variant " + variant + eol);
+        for (int r = 0; r <= rows; r++) {
+            for (int c = 0; c <= columns; c++) {
+                double x = (double) c / columns;
+                double y = (double) r / rows;
+                double z = 0.05 * Math.sin(12 * x) * Math.cos(9 * y);
+                line.setLength(0);
+                line.append("v ");
+                fixed(line, x).append(' ');
+                fixed(line, y).append(' ');
+                fixed(line, z).append(eol);
+                out.append(line);
+            }
+        }
+        if (vtn) {
+            for (int r = 0; r <= rows; r++) {
+                for (int c = 0; c <= columns; c++) {
+                    line.setLength(0);
+                    line.append("vt ");
+                    fixed(line, (double) c / columns).append(' ');
+                    fixed(line, (double) r / rows).append(eol);
+                    out.append(line);
+                }
+            }
+            for (int r = 0; r <= rows; r++) {
+                for (int c = 0; c <= columns; c++) {
+                    double x = (double) c / columns;
+                    double y = (double) r / rows;
+                    double nx = -0.6 * Math.cos(12 * x) * Math.cos(9 * y);
+                    double ny = 0.45 * Math.sin(12 * x) * Math.sin(9 * y);
+                    double length = Math.sqrt(nx * nx + ny * ny + 1);
+                    line.setLength(0);
+                    line.append("vn ");
+                    fixed(line, nx / length).append(' ');
+                    fixed(line, ny / length).append(' ');
+                    fixed(line, 1 / length).append(eol);
+                    out.append(line);
+                }
+            }
+        }
+        int written = 0;
+        for (int r = 0; r < rows && written < faces; r++) {
+            for (int c = 0; c < columns && written < faces; c++) {
+                int a = r * width + c;
+                int b = a + 1;
+                int d = a + width;
+                int e = d + 1;
+                face(out, line, a, b, e, vertices, vtn, negative, eol);
+                written++;
+                if (written < faces) {
+                    face(out, line, a, e, d, vertices, vtn, negative, eol);
+                    written++;
+                }
+            }
+        }
+    }
+
+    private static void face(Writer out, StringBuilder line, int a, int b, int c, int vertices,
+                             boolean vtn, boolean negative, String eol) throws IOException {
+        line.setLength(0);
+        line.append('f');
+        for (int v : new int[]{a, b, c}) {
+            // 1-based, or counted back from the last vertex: -1 is the last one
+            int index = negative ? v - vertices : v + 1;
+            line.append(' ').append(index);
+            if (vtn) {
+                line.append('/').append(index).append('/').append(index);
+            }
+        }
+        out.append(line.append(eol));
+    }
+
+    // six decimals, like most exporters, without the cost of String.format for millions of lines
+    private static StringBuilder fixed(StringBuilder sb, double value) {
+        long scaled = Math.round(value * 1_000_000);
+        if (scaled < 0) {
+            sb.append('-');
+            scaled = -scaled;
+        }
+        sb.append(scaled / 1_000_000).append('.');
+        String fraction = Long.toString(scaled % 1_000_000);
+        for (int i = fraction.length(); i < 6; i++) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+}
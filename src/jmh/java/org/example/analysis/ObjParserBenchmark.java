@@ -0,0 +1,91 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link ObjParser} on generated files from 10K to 10M faces, see {@link ObjInputs}.
+ *
+ * Besides operations per second, every benchmark reports {@code megabytes} and {@code faces} per second as
+ * secondary results, and the {@code jmh} Gradle task adds the GC profiler, whose {@code gc.alloc.rate.norm}
+ * is the bytes allocated per parse. The 10M-face inputs are several hundred MB each and need a large heap:
+ *
+ * <pre>
+ * gradle jmh -Pargs="ObjParserBenchmark -p faces=10000,100000 -p variant=plain,crlf"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class ObjParserBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int faces;
+
+    @Param({"plain", "vtn", "negative", "crlf"})
+    public String variant;
+
+    private Path file;
+    private String content;
+    private double megabytes;
+
+    /**
+     * Per-second rates, reported next to the operation rate.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rates {
+        public double megabytes;
+        public long faces;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = ObjInputs.get(faces, variant);
+        content = Files.readString(file, StandardCharsets.UTF_8);
+        megabytes = Files.size(file) / 1e6;
+    }
+
+    @Benchmark
+    public ObjModel parseString(Rates rates) {
+        ObjModel model = ObjParser.parse(content);
+        count(rates, model);
+        return model;
+    }
+
+    @Benchmark
+    public ObjModel parsePath(Rates rates) throws IOException {
+        ObjModel model = ObjParser.parse(file);
+        count(rates, model);
+        return model;
+    }
+
+    private void count(Rates rates, ObjModel model) {
+        if (model.getFaceCount() != faces) {
+            throw new IllegalStateException("Parsed " + model.getFaceCount() + " faces, expected " + faces);
+        }
+        rates.megabytes += megabytes;
+        rates.faces += model.getFaceCount();
+    }
+}
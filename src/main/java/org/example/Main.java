@@ -1,43 +1,25 @@
 package org.example;
 
-import com.formdev.flatlaf.FlatDarkLaf;
-import org.example.ui.AppFrame;
-import org.example.ui.SplashScreen;
-
-import javax.swing.JOptionPane;
-import javax.swing.SwingUtilities;
-import javax.swing.Timer;
-import javax.swing.UIManager;
+import org.example.cli.AnalysisServer;
+import org.example.cli.BatchAnalyzer;
+import org.example.cli.FolderWatcher;
+import org.example.ui.DesktopApp;
 
 public class Main {
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                UIManager.setLookAndFeel(new FlatDarkLaf());
-            } catch (Exception ignored) {
-            }
-
-            SplashScreen splash = new SplashScreen();
-            splash.setVisible(true);
-
-            Timer timer = new Timer(1600, e -> {
-                splash.setVisible(false);
-                splash.dispose();
-
-                try {
-                    AppFrame frame = new AppFrame();
-                    frame.setVisible(true);
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(
-                            null,
-                            "Failed to start application: " + ex.getMessage(),
-                            "Startup error",
-                            JOptionPane.ERROR_MESSAGE
-                    );
-                }
-            });
-            timer.setRepeats(false);
-            timer.start();
-        });
+        if (BatchAnalyzer.isBatchInvocation(args)) {
+            // set before anything can touch AWT; the batch path never loads a Swing class
+            System.setProperty("java.awt.headless", "true");
+            System.exit(BatchAnalyzer.run(args));
+        }
+        if (FolderWatcher.isWatchInvocation(args)) {
+            System.setProperty("java.awt.headless", "true");
+            System.exit(FolderWatcher.run(args));
+        }
+        if (AnalysisServer.isServeInvocation(args)) {
+            System.setProperty("java.awt.headless", "true");
+            System.exit(AnalysisServer.run(args));
+        }
+        DesktopApp.launch();
     }
 }
@@ -0,0 +1,32 @@
+package org.example.ai;
+
+import ai.onnxruntime.OrtException;
+
+import java.util.List;
+
+/**
+ * Evaluates a recommendation model on a batch of input rows.
+ * Implementations must be safe to call from several threads at once.
+ */
+public interface InferenceBackend extends AutoCloseable {
+
+    String name();
+
+    int inputWidth();
+
+    List<String> outputNames();
+
+    /**
+     * Number of classes produced by each output, in {@link #outputNames()} order.
+     */
+    int[] outputWidths();
+
+    /**
+     * Runs {@code rows} input rows stored row-major in {@code input} (rows x inputWidth).
+     * Returns one row-major array (rows x outputWidth) per output, in {@link #outputNames()} order.
+     */
+    float[][] run(float[] input, int rows) throws OrtException;
+
+    @Override
+    void close() throws OrtException;
+}
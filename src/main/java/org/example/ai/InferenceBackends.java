@@ -0,0 +1,97 @@
+package org.example.ai;
+
+import ai.onnxruntime.OrtException;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Creates the {@link InferenceBackend} selected by system properties:
+ *  - draxel.inference.backend  "onnxruntime" (default), "java" or "java-int8" (dynamically quantized weights)
+ *  - draxel.inference.verify   when true, the Java backend is checked against ONNX Runtime on load
+ *                              and replaced by it if any output differs by more than {@link #TOLERANCE}
+ */
+public final class InferenceBackends {
+
+    public static final String BACKEND_PROPERTY = "draxel.inference.backend";
+    public static final String VERIFY_PROPERTY = "draxel.inference.verify";
+    public static final float TOLERANCE = 1e-4f;
+
+    private static final int PROBE_ROWS = 64;
+
+    private InferenceBackends() {
+    }
+
+    public static InferenceBackend create(byte[] modelBytes) throws OrtException {
+        return create(modelBytes, System.getProperty(BACKEND_PROPERTY, "onnxruntime"));
+    }
+
+    public static InferenceBackend create(byte[] modelBytes, String kind) throws OrtException {
+        String normalized = kind.toLowerCase(Locale.ROOT);
+        switch (normalized) {
+            case "onnxruntime", "ort" -> {
+                return new OnnxRuntimeBackend(modelBytes);
+            }
+            case "java", "java-int8" -> {
+                JavaMlpBackend java;
+                try {
+                    java = normalized.endsWith("int8") ? JavaMlpBackend.quantized(modelBytes) : new JavaMlpBackend(modelBytes);
+                } catch (UnsupportedOperationException e) {
+                    System.err.println("Java inference backend unavailable, using ONNX Runtime: " + e.getMessage());
+                    return new OnnxRuntimeBackend(modelBytes);
+                }
+                // quantized outputs are expected to drift; compare those with QuantizationHarness instead
+                if (!java.isQuantized() && Boolean.getBoolean(VERIFY_PROPERTY)) {
+                    OnnxRuntimeBackend reference = new OnnxRuntimeBackend(modelBytes);
+                    float diff = maxAbsDifference(java, reference, probeRows(java.inputWidth(), PROBE_ROWS, 42L), PROBE_ROWS);
+                    if (diff > TOLERANCE) {
+                        System.err.printf(Locale.US, "Java inference backend differs from ONNX Runtime by %.2e, using ONNX Runtime%n", diff);
+                        return reference;
+                    }
+                    reference.close();
+                }
+                return java;
+            }
+            default -> throw new IllegalArgumentException("Unknown inference backend: " + kind);
+        }
+    }
+
+    /**
+     * Largest absolute difference between any output value of the two backends on the given rows.
+     */
+    public static float maxAbsDifference(InferenceBackend a, InferenceBackend b, float[] input, int rows) throws OrtException {
+        List<String> namesA = a.outputNames();
+        List<String> namesB = b.outputNames();
+        float[][] outA = a.run(input, rows);
+        float[][] outB = b.run(input, rows);
+
+        float max = 0f;
+        for (int i = 0; i < namesA.size(); i++) {
+            int j = namesB.indexOf(namesA.get(i));
+            if (j < 0 || outA[i].length != outB[j].length) {
+                return Float.POSITIVE_INFINITY;
+            }
+            for (int k = 0; k < outA[i].length; k++) {
+                max = Math.max(max, Math.abs(outA[i][k] - outB[j][k]));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Deterministic probe rows roughly covering the range of the mesh features and 0/1 requirement flags.
+     */
+    public static float[] probeRows(int width, int rows, long seed) {
+        Random random = new Random(seed);
+        float[] data = new float[width * rows];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < width; c++) {
+                data[r * width + c] = c < 10
+                        ? (float) (random.nextDouble() * 10.0)
+                        : (random.nextBoolean() ? 1f : 0f);
+            }
+        }
+        return data;
+    }
+}
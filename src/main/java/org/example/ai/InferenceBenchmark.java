@@ -0,0 +1,308 @@
+package org.example.ai;
+
+import ai.onnxruntime.OrtException;
+import org.example.metrics.LatencyHistogram;
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures {@link RecommendationEngine} the way the inference workers use it and prints plain tables that can
+ * be diffed across hosts and JVM flags:
+ *  - cold start: reading the model and creating the session, and the first prediction after it,
+ *  - single-row latency of {@link RecommendationEngine#predict}, p50/p99 over many calls,
+ *  - throughput of {@link RecommendationEngine#predictBatch} for every batch size and thread count, all
+ *    threads sharing one engine as the analysis server does.
+ *
+ * Usage: InferenceBenchmark [--model basic|3d_model_ai|all] [--backend onnxruntime|java|java-int8]
+ *                           [--batch-sizes 1,8,32,128] [--threads 1,2,4] [--seconds 2] [--requests 20000]
+ *                           [--cold-runs 5]
+ *
+ * Inputs are random feature vectors, distinct within a batch so deduplication does not flatter the numbers.
+ * The backend defaults to the {@code draxel.inference.backend} property, as in the application.
+ */
+public final class InferenceBenchmark {
+
+    private static final int WARMUP_CALLS = 2_000;
+    private static final int INPUT_POOL = 4_096;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: InferenceBenchmark [options]",
+            "  --model <name>        basic, 3d_model_ai or all (default: all)",
+            "  --backend <name>      onnxruntime, java or java-int8 (default: draxel.inference.backend, else onnxruntime)",
+            "  --batch-sizes <list>  comma-separated batch sizes (default: 1,8,32,128)",
+            "  --threads <list>      comma-separated thread counts (default: 1, half and all processors)",
+            "  --seconds <s>         measuring time per batch size and thread count (default: 2)",
+            "  --requests <n>        single-row predictions timed for the percentiles (default: 20000)",
+            "  --cold-runs <n>       engines created to time the cold start (default: 5)");
+
+    private InferenceBenchmark() {
+    }
+
+    record Options(List<String> models, String backend, int[] batchSizes, int[] threads, double seconds,
+                   int requests, int coldRuns) {
+
+        static Options parse(String[] args) {
+            String model = "all";
+            String backend = System.getProperty(InferenceBackends.BACKEND_PROPERTY, "onnxruntime");
+            int cpus = Runtime.getRuntime().availableProcessors();
+            int[] batchSizes = {1, 8, 32, 128};
+            int[] threads = cpus > 1 ? new int[]{1, Math.max(2, cpus / 2), cpus} : new int[]{1, 2};
+            double seconds = 2;
+            int requests = 20_000;
+            int coldRuns = 5;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--model" -> model = value(args, ++i, "--model");
+                    case "--backend" -> backend = value(args, ++i, "--backend");
+                    case "--batch-sizes" -> batchSizes = counts(value(args, ++i, "--batch-sizes"));
+                    case "--threads" -> threads = counts(value(args, ++i, "--threads"));
+                    case "--seconds" -> seconds = seconds(args, ++i, "--seconds");
+                    case "--requests" -> requests = count(args, ++i, "--requests");
+                    case "--cold-runs" -> coldRuns = count(args, ++i, "--cold-runs");
+                    default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                }
+            }
+            List<String> models = "all".equals(model) ? new ArrayList<>(ModelRegistry.BUNDLED_MODELS.keySet()) : List.of(model);
+            for (String name : models) {
+                if (!ModelRegistry.BUNDLED_MODELS.containsKey(name)) {
+                    throw new IllegalArgumentException("Unknown model: " + name);
+                }
+            }
+            return new Options(models, backend, batchSizes, Arrays.stream(threads).distinct().toArray(), seconds,
+                    requests, coldRuns);
+        }
+
+        private static String value(String[] args, int i, String option) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            return args[i];
+        }
+
+        private static int count(String[] args, int i, String option) {
+            int n;
+            try {
+                n = Integer.parseInt(value(args, i, option));
+            } catch (NumberFormatException e) {
+                n = 0;
+            }
+            if (n < 1) {
+                throw new IllegalArgumentException(option + " must be a number of at least 1");
+            }
+            return n;
+        }
+
+        private static double seconds(String[] args, int i, String option) {
+            double s;
+            try {
+                s = Double.parseDouble(value(args, i, option));
+            } catch (NumberFormatException e) {
+                s = 0;
+            }
+            if (!(s > 0) || Double.isInfinite(s)) {
+                throw new IllegalArgumentException(option + " must be a positive number of seconds");
+            }
+            return s;
+        }
+
+        private static int[] counts(String list) {
+            int[] values;
+            try {
+                values = Arrays.stream(list.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+            } catch (NumberFormatException e) {
+                values = new int[0];
+            }
+            if (values.length == 0 || Arrays.stream(values).anyMatch(v -> v < 1)) {
+                throw new IllegalArgumentException("Expected a comma-separated list of positive numbers: " + list);
+            }
+            return values;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        System.out.print(host());
+        for (String name : options.models()) {
+            System.out.print(run(name, options));
+        }
+    }
+
+    static String host() {
+        Runtime runtime = Runtime.getRuntime();
+        return String.format(Locale.US, "Host: %s %s, %d processors, max heap %d MiB%nJVM: %s %s%nJVM flags: %s%n",
+                System.getProperty("os.name"), System.getProperty("os.arch"), runtime.availableProcessors(),
+                runtime.maxMemory() >> 20, System.getProperty("java.vm.name"), System.getProperty("java.vm.version"),
+                String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()));
+    }
+
+    static String run(String name, Options options) throws Exception {
+        String resource = ModelRegistry.BUNDLED_MODELS.get(name);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%nModel %s (%s), backend %s%n", name, resource, options.backend()));
+
+        // cold start: the first run in the process also pays for loading the native runtime
+        LatencyHistogram create = new LatencyHistogram();
+        LatencyHistogram first = new LatencyHistogram();
+        long processFirstCreate = 0;
+        long processFirstPredict = 0;
+        Inputs probe = null;
+        for (int run = 0; run < options.coldRuns(); run++) {
+            long start = System.nanoTime();
+            byte[] bytes = RecommendationEngine.loadModelBytes(resource);
+            RecommendationEngine engine = new RecommendationEngine(InferenceBackends.create(bytes, options.backend()));
+            long created = System.nanoTime();
+            if (probe == null) {
+                probe = new Inputs(1, 7L);
+            }
+            engine.predict(probe.features[0], probe.profiles[0]);
+            long predicted = System.nanoTime();
+            engine.close();
+            if (run == 0) {
+                processFirstCreate = created - start;
+                processFirstPredict = predicted - created;
+            }
+            create.record(created - start);
+            first.record(predicted - created);
+        }
+        sb.append(String.format(Locale.US, "  %-28s %12s %14s%n", "cold start", "create ms", "1st predict ms"));
+        sb.append(String.format(Locale.US, "  %-28s %12.2f %14.3f%n", "first in process", processFirstCreate / 1e6, processFirstPredict / 1e6));
+        sb.append(String.format(Locale.US, "  %-28s %12.2f %14.3f%n", "median of " + options.coldRuns() + " runs",
+                create.percentileNanos(50) / 1e6, first.percentileNanos(50) / 1e6));
+
+        try (RecommendationEngine engine = new RecommendationEngine(
+                InferenceBackends.create(RecommendationEngine.loadModelBytes(resource), options.backend()))) {
+            Inputs inputs = new Inputs(INPUT_POOL, 42L);
+            sb.append(single(engine, inputs, options.requests()));
+            sb.append(String.format(Locale.US, "  %-8s %8s %14s %12s %12s %14s%n",
+                    "batch", "threads", "rows/s", "p50 ms", "p99 ms", "us/row"));
+            for (int batch : options.batchSizes()) {
+                for (int threads : options.threads()) {
+                    sb.append(throughput(engine, inputs, batch, threads, options.seconds()));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String single(RecommendationEngine engine, Inputs inputs, int requests) throws OrtException {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            engine.predict(inputs.features[i % INPUT_POOL], inputs.profiles[i % INPUT_POOL]);
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            engine.predict(inputs.features[i % INPUT_POOL], inputs.profiles[i % INPUT_POOL]);
+            latency.record(System.nanoTime() - start);
+        }
+        return String.format(Locale.US, "  single predict over %,d calls: p50 %.1f us, p99 %.1f us, max %.1f us, mean %.1f us%n",
+                requests, latency.percentileNanos(50) / 1e3, latency.percentileNanos(99) / 1e3,
+                latency.maxNanos() / 1e3, latency.meanNanos() / 1e3);
+    }
+
+    // every thread calls predictBatch in a loop on the shared engine for the given time, after a warm-up
+    private static String throughput(RecommendationEngine engine, Inputs inputs, int batch, int threads, double seconds)
+            throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder rows = new LongAdder();
+        long warmupNanos = (long) (Math.min(1, seconds / 2) * 1e9);
+        long measureNanos = (long) (seconds * 1e9);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        Throwable[] failure = new Throwable[1];
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int offset = t * 997;
+            Thread worker = new Thread(() -> {
+                List<ModelFeatures> features = new ArrayList<>(batch);
+                List<RequirementProfile> profiles = new ArrayList<>(batch);
+                try {
+                    ready.countDown();
+                    go.await();
+                    long warmupEnd = System.nanoTime() + warmupNanos;
+                    long end = warmupEnd + measureNanos;
+                    for (int call = 0; ; call++) {
+                        features.clear();
+                        profiles.clear();
+                        for (int i = 0; i < batch; i++) {
+                            int k = (offset + call * batch + i) % INPUT_POOL;
+                            features.add(inputs.features[k]);
+                            profiles.add(inputs.profiles[k]);
+                        }
+                        long start = System.nanoTime();
+                        engine.predictBatch(features, profiles);
+                        long now = System.nanoTime();
+                        if (now >= end) {
+                            break;
+                        }
+                        if (start >= warmupEnd) {
+                            latency.record(now - start);
+                            rows.add(batch);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            }, "inference-benchmark-" + t);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        go.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw new IllegalStateException("Benchmark thread failed", failure[0]);
+            }
+        }
+        double rowsPerSecond = rows.sum() / seconds;
+        return String.format(Locale.US, "  %-8d %8d %14.0f %12.3f %12.3f %14.2f%n", batch, threads, rowsPerSecond,
+                latency.percentileNanos(50) / 1e6, latency.percentileNanos(99) / 1e6,
+                rowsPerSecond > 0 ? 1e6 * threads / rowsPerSecond : Double.NaN);
+    }
+
+    // random but plausible inputs: features in the ranges the calculator produces, one flag set per row
+    private static final class Inputs {
+
+        final ModelFeatures[] features;
+        final RequirementProfile[] profiles;
+
+        Inputs(int count, long seed) {
+            Random random = new Random(seed);
+            features = new ModelFeatures[count];
+            profiles = new RequirementProfile[count];
+            for (int i = 0; i < count; i++) {
+                features[i] = new ModelFeatures(1 + 9 * random.nextDouble(), random.nextDouble() * 5,
+                        random.nextDouble(), random.nextDouble() * 1.5, random.nextDouble() * 3,
+                        random.nextInt(5) * 2 - 4, random.nextDouble(), 1 + 9 * random.nextDouble(),
+                        random.nextDouble(), random.nextInt(500));
+                boolean functional = random.nextBoolean();
+                profiles[i] = new RequirementProfile(functional, !functional, random.nextBoolean(), random.nextBoolean(),
+                        random.nextBoolean(), random.nextBoolean(), random.nextBoolean());
+            }
+        }
+    }
+}
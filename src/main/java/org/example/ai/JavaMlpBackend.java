@@ -0,0 +1,490 @@
+package org.example.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evaluates small dense graphs (MatMul/Gemm, Add, activations, Softmax) in plain Java on primitive arrays.
+ *
+ * For a 10-input MLP the JNI transition and tensor marshalling of ONNX Runtime cost more than the maths,
+ * so this backend avoids the native library entirely. Graphs using any other operator are rejected with
+ * {@link UnsupportedOperationException} so the caller can fall back to {@link OnnxRuntimeBackend}.
+ *
+ * {@link #quantized(byte[])} builds an int8 variant using dynamic quantization: weights are quantized once
+ * per output column (symmetric int8), activations per row at run time (asymmetric uint8), and the dot
+ * products accumulate in int32 before being rescaled to float.
+ */
+public class JavaMlpBackend implements InferenceBackend {
+
+    private final List<Step> steps = new ArrayList<>();
+    private final List<Integer> slotWidths = new ArrayList<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final boolean quantized;
+    private final int inputWidth;
+    private final List<String> outputNames;
+    private final int[] outputSlots;
+    private long weightBytes;
+
+    public JavaMlpBackend(byte[] modelBytes) {
+        this(OnnxGraph.parse(modelBytes), false);
+    }
+
+    public static JavaMlpBackend quantized(byte[] modelBytes) {
+        return new JavaMlpBackend(OnnxGraph.parse(modelBytes), true);
+    }
+
+    JavaMlpBackend(OnnxGraph graph, boolean quantized) {
+        this.quantized = quantized;
+        if (graph.inputWidths.size() != 1) {
+            throw new UnsupportedOperationException("Java backend supports exactly one graph input");
+        }
+        Map.Entry<String, Integer> input = graph.inputWidths.entrySet().iterator().next();
+        if (input.getValue() <= 0) {
+            throw new UnsupportedOperationException("Graph input " + input.getKey() + " has no static width");
+        }
+        this.inputWidth = input.getValue();
+        slot(input.getKey(), inputWidth);
+
+        compile(graph);
+
+        this.outputNames = List.copyOf(graph.outputs);
+        this.outputSlots = new int[outputNames.size()];
+        for (int i = 0; i < outputSlots.length; i++) {
+            Integer s = slots.get(outputNames.get(i));
+            if (s == null) {
+                throw new UnsupportedOperationException("Graph output " + outputNames.get(i) + " is never produced");
+            }
+            outputSlots[i] = s;
+        }
+    }
+
+    @Override
+    public String name() {
+        return quantized ? "java-int8" : "java";
+    }
+
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    /**
+     * Bytes held by the dense layer weights, biases and quantization scales.
+     */
+    public long weightBytes() {
+        return weightBytes;
+    }
+
+    @Override
+    public int inputWidth() {
+        return inputWidth;
+    }
+
+    @Override
+    public List<String> outputNames() {
+        return outputNames;
+    }
+
+    @Override
+    public int[] outputWidths() {
+        int[] widths = new int[outputSlots.length];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = slotWidths.get(outputSlots[i]);
+        }
+        return widths;
+    }
+
+    @Override
+    public float[][] run(float[] input, int rows) {
+        if (input.length < rows * inputWidth) {
+            throw new IllegalArgumentException("Input holds fewer than " + rows + " rows");
+        }
+        float[][] values = new float[slotWidths.size()][];
+        values[0] = input;
+        for (Step step : steps) {
+            step.apply(values, rows);
+        }
+
+        float[][] outputs = new float[outputSlots.length][];
+        for (int i = 0; i < outputs.length; i++) {
+            int s = outputSlots[i];
+            outputs[i] = Arrays.copyOf(values[s], rows * slotWidths.get(s));
+        }
+        return outputs;
+    }
+
+    @Override
+    public void close() {
+        // nothing native to release
+    }
+
+    // ----------------------- graph compilation -----------------------
+
+    private void compile(OnnxGraph graph) {
+        Map<String, Integer> consumers = new HashMap<>();
+        for (OnnxGraph.Node node : graph.nodes) {
+            for (String in : node.inputs()) {
+                consumers.merge(in, 1, Integer::sum);
+            }
+        }
+        Set<String> graphOutputs = new HashSet<>(graph.outputs);
+        Set<OnnxGraph.Node> fused = new HashSet<>();
+        for (OnnxGraph.Node node : graph.nodes) {
+            if (fused.contains(node)) {
+                continue;
+            }
+            if (!node.domain().isEmpty() && !"ai.onnx".equals(node.domain())) {
+                throw unsupported(node);
+            }
+
+            switch (node.opType()) {
+                case "MatMul", "Gemm" -> compileDense(node, graph, consumers, graphOutputs, fused);
+                case "Add" -> compileAdd(node, graph);
+                case "Relu", "Sigmoid", "Tanh" -> compileActivation(node, Activation.valueOf(node.opType().toUpperCase()));
+                case "Identity", "Flatten" -> slots.put(node.outputs().get(0), requireSlot(node.inputs().get(0), node));
+                case "Softmax" -> compileSoftmax(node);
+                default -> throw unsupported(node);
+            }
+        }
+    }
+
+    private void compileDense(OnnxGraph.Node node, OnnxGraph graph, Map<String, Integer> consumers,
+                              Set<String> graphOutputs, Set<OnnxGraph.Node> fused) {
+        int in = requireSlot(node.inputs().get(0), node);
+        int k = slotWidths.get(in);
+        OnnxGraph.Initializer w = graph.initializers.get(node.inputs().get(1));
+        if (w == null || w.dims().length != 2) {
+            throw unsupported(node);
+        }
+
+        boolean gemm = "Gemm".equals(node.opType());
+        if (gemm && node.intAttribute("transA", 0) != 0) {
+            throw unsupported(node);
+        }
+        boolean transB = gemm && node.intAttribute("transB", 0) != 0;
+        int rowsW = (int) w.dims()[0];
+        int colsW = (int) w.dims()[1];
+        int n = transB ? rowsW : colsW;
+        if ((transB ? colsW : rowsW) != k) {
+            throw new UnsupportedOperationException("Shape mismatch in " + node.opType() + ": " + k + " vs " + Arrays.toString(w.dims()));
+        }
+
+        float alpha = gemm ? node.floatAttribute("alpha", 1f) : 1f;
+        float[] weights = new float[k * n];
+        for (int p = 0; p < k; p++) {
+            for (int j = 0; j < n; j++) {
+                float value = transB ? w.data()[j * k + p] : w.data()[p * n + j];
+                weights[p * n + j] = value * alpha;
+            }
+        }
+
+        float[] bias = null;
+        if (gemm && node.inputs().size() > 2 && !node.inputs().get(2).isEmpty()) {
+            float beta = node.floatAttribute("beta", 1f);
+            bias = scaledBias(graph.initializers.get(node.inputs().get(2)), n, node, beta);
+        }
+
+        // fuse a following bias Add and activation when nothing else reads the intermediate values
+        String out = node.outputs().get(0);
+        if (bias == null) {
+            OnnxGraph.Node add = soleConsumer(out, graph, consumers, graphOutputs, "Add");
+            if (add != null) {
+                String other = add.inputs().get(0).equals(out) ? add.inputs().get(1) : add.inputs().get(0);
+                OnnxGraph.Initializer b = graph.initializers.get(other);
+                if (b != null && b.data().length == n) {
+                    bias = b.data().clone();
+                    fused.add(add);
+                    out = add.outputs().get(0);
+                }
+            }
+        }
+        Activation activation = Activation.NONE;
+        for (String op : List.of("Relu", "Sigmoid", "Tanh")) {
+            OnnxGraph.Node act = soleConsumer(out, graph, consumers, graphOutputs, op);
+            if (act != null) {
+                activation = Activation.valueOf(op.toUpperCase());
+                fused.add(act);
+                out = act.outputs().get(0);
+                break;
+            }
+        }
+
+        int target = slot(out, n);
+        weightBytes += bias != null ? 4L * n : 0L;
+        if (quantized) {
+            weightBytes += (long) k * n + 4L * n;
+            steps.add(quantizedDense(in, target, k, n, weights, bias, activation));
+        } else {
+            weightBytes += 4L * k * n;
+            steps.add(dense(in, target, k, n, weights, bias, activation));
+        }
+    }
+
+    /**
+     * Builds the step for one dense layer; {@code weights} is row-major k x n.
+     */
+    private static Step dense(int in, int out, int k, int n, float[] weights, float[] bias, Activation activation) {
+        return (values, rows) -> {
+            float[] x = values[in];
+            float[] y = new float[rows * n];
+            for (int r = 0; r < rows; r++) {
+                int yOff = r * n;
+                if (bias != null) {
+                    System.arraycopy(bias, 0, y, yOff, n);
+                }
+                int xOff = r * k;
+                for (int p = 0; p < k; p++) {
+                    float xv = x[xOff + p];
+                    if (xv == 0f) {
+                        continue;
+                    }
+                    int wOff = p * n;
+                    for (int j = 0; j < n; j++) {
+                        y[yOff + j] += xv * weights[wOff + j];
+                    }
+                }
+            }
+            activation.apply(y, rows * n);
+            values[out] = y;
+        };
+    }
+
+    /**
+     * Int8 variant of {@link #dense}: weights quantized per output column, activations per row.
+     */
+    private static Step quantizedDense(int in, int out, int k, int n, float[] weights, float[] bias, Activation activation) {
+        byte[] qWeights = new byte[k * n];
+        float[] weightScales = new float[n];
+        for (int j = 0; j < n; j++) {
+            float maxAbs = 0f;
+            for (int p = 0; p < k; p++) {
+                maxAbs = Math.max(maxAbs, Math.abs(weights[p * n + j]));
+            }
+            float scale = maxAbs > 0f ? maxAbs / 127f : 1f;
+            weightScales[j] = scale;
+            for (int p = 0; p < k; p++) {
+                qWeights[p * n + j] = (byte) Math.round(weights[p * n + j] / scale);
+            }
+        }
+
+        return (values, rows) -> {
+            float[] x = values[in];
+            float[] y = new float[rows * n];
+            int[] qx = new int[k];
+            int[] acc = new int[n];
+            for (int r = 0; r < rows; r++) {
+                int xOff = r * k;
+
+                // the quantized range always contains zero, as in ONNX DynamicQuantizeLinear
+                float min = 0f;
+                float max = 0f;
+                for (int p = 0; p < k; p++) {
+                    min = Math.min(min, x[xOff + p]);
+                    max = Math.max(max, x[xOff + p]);
+                }
+                float xScale = max > min ? (max - min) / 255f : 1f;
+                int zeroPoint = Math.max(0, Math.min(255, Math.round(-min / xScale)));
+                for (int p = 0; p < k; p++) {
+                    int q = Math.round(x[xOff + p] / xScale) + zeroPoint;
+                    qx[p] = Math.max(0, Math.min(255, q)) - zeroPoint;
+                }
+
+                Arrays.fill(acc, 0);
+                for (int p = 0; p < k; p++) {
+                    int xv = qx[p];
+                    if (xv == 0) {
+                        continue;
+                    }
+                    int wOff = p * n;
+                    for (int j = 0; j < n; j++) {
+                        acc[j] += xv * qWeights[wOff + j];
+                    }
+                }
+
+                int yOff = r * n;
+                for (int j = 0; j < n; j++) {
+                    y[yOff + j] = acc[j] * xScale * weightScales[j] + (bias != null ? bias[j] : 0f);
+                }
+            }
+            activation.apply(y, rows * n);
+            values[out] = y;
+        };
+    }
+
+    private OnnxGraph.Node soleConsumer(String value, OnnxGraph graph, Map<String, Integer> consumers,
+                                        Set<String> graphOutputs, String opType) {
+        if (graphOutputs.contains(value) || consumers.getOrDefault(value, 0) != 1) {
+            return null;
+        }
+        for (OnnxGraph.Node node : graph.nodes) {
+            if (node.inputs().contains(value)) {
+                return opType.equals(node.opType()) && node.domain().isEmpty() ? node : null;
+            }
+        }
+        return null;
+    }
+
+    private void compileAdd(OnnxGraph.Node node, OnnxGraph graph) {
+        String a = node.inputs().get(0);
+        String b = node.inputs().get(1);
+        OnnxGraph.Initializer constA = graph.initializers.get(a);
+        OnnxGraph.Initializer constB = graph.initializers.get(b);
+
+        if (constA == null && constB == null) {
+            int x = requireSlot(a, node);
+            int y = requireSlot(b, node);
+            int width = slotWidths.get(x);
+            if (slotWidths.get(y) != width) {
+                throw unsupported(node);
+            }
+            int out = slot(node.outputs().get(0), width);
+            steps.add((values, rows) -> {
+                float[] left = values[x];
+                float[] right = values[y];
+                float[] sum = new float[rows * width];
+                for (int i = 0; i < sum.length; i++) {
+                    sum[i] = left[i] + right[i];
+                }
+                values[out] = sum;
+            });
+            return;
+        }
+        if (constA != null && constB != null) {
+            throw unsupported(node);
+        }
+
+        int x = requireSlot(constA == null ? a : b, node);
+        int width = slotWidths.get(x);
+        float[] bias = scaledBias(constA == null ? constB : constA, width, node, 1f);
+        int out = slot(node.outputs().get(0), width);
+        steps.add((values, rows) -> {
+            float[] in = values[x];
+            float[] sum = new float[rows * width];
+            for (int r = 0; r < rows; r++) {
+                int off = r * width;
+                for (int j = 0; j < width; j++) {
+                    sum[off + j] = in[off + j] + bias[j];
+                }
+            }
+            values[out] = sum;
+        });
+    }
+
+    private void compileActivation(OnnxGraph.Node node, Activation activation) {
+        int in = requireSlot(node.inputs().get(0), node);
+        int width = slotWidths.get(in);
+        int out = slot(node.outputs().get(0), width);
+        steps.add((values, rows) -> {
+            float[] y = Arrays.copyOf(values[in], rows * width);
+            activation.apply(y, y.length);
+            values[out] = y;
+        });
+    }
+
+    private void compileSoftmax(OnnxGraph.Node node) {
+        long axis = node.intAttribute("axis", -1);
+        if (axis != -1 && axis != 1) {
+            throw unsupported(node);
+        }
+        int in = requireSlot(node.inputs().get(0), node);
+        int width = slotWidths.get(in);
+        int out = slot(node.outputs().get(0), width);
+        steps.add((values, rows) -> {
+            float[] x = values[in];
+            float[] y = new float[rows * width];
+            for (int r = 0; r < rows; r++) {
+                int off = r * width;
+                float max = Float.NEGATIVE_INFINITY;
+                for (int j = 0; j < width; j++) {
+                    max = Math.max(max, x[off + j]);
+                }
+                float sum = 0f;
+                for (int j = 0; j < width; j++) {
+                    float e = (float) Math.exp(x[off + j] - max);
+                    y[off + j] = e;
+                    sum += e;
+                }
+                for (int j = 0; j < width; j++) {
+                    y[off + j] /= sum;
+                }
+            }
+            values[out] = y;
+        });
+    }
+
+    private float[] scaledBias(OnnxGraph.Initializer init, int width, OnnxGraph.Node node, float scale) {
+        if (init == null) {
+            throw unsupported(node);
+        }
+        float[] data = init.data();
+        float[] bias = new float[width];
+        if (data.length == width) {
+            for (int j = 0; j < width; j++) {
+                bias[j] = data[j] * scale;
+            }
+        } else if (data.length == 1) {
+            Arrays.fill(bias, data[0] * scale);
+        } else {
+            throw unsupported(node);
+        }
+        return bias;
+    }
+
+    private int slot(String name, int width) {
+        int index = slotWidths.size();
+        slotWidths.add(width);
+        slots.put(name, index);
+        return index;
+    }
+
+    private int requireSlot(String name, OnnxGraph.Node node) {
+        Integer s = slots.get(name);
+        if (s == null) {
+            throw new UnsupportedOperationException("Operator " + node.opType() + " reads " + name
+                    + ", which is not a row-major activation");
+        }
+        return s;
+    }
+
+    private static UnsupportedOperationException unsupported(OnnxGraph.Node node) {
+        return new UnsupportedOperationException("Operator " + node.opType()
+                + (node.domain().isEmpty() ? "" : " (" + node.domain() + ")") + " is not supported by the Java backend");
+    }
+
+    @FunctionalInterface
+    interface Step {
+        void apply(float[][] values, int rows);
+    }
+
+    enum Activation {
+        NONE, RELU, SIGMOID, TANH;
+
+        void apply(float[] values, int length) {
+            switch (this) {
+                case RELU -> {
+                    for (int i = 0; i < length; i++) {
+                        if (values[i] < 0f) {
+                            values[i] = 0f;
+                        }
+                    }
+                }
+                case SIGMOID -> {
+                    for (int i = 0; i < length; i++) {
+                        values[i] = (float) (1.0 / (1.0 + Math.exp(-values[i])));
+                    }
+                }
+                case TANH -> {
+                    for (int i = 0; i < length; i++) {
+                        values[i] = (float) Math.tanh(values[i]);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package org.example.ai;
+
+import ai.onnxruntime.OrtException;
+import org.example.ai.RecommendationEngine.Head;
+import org.example.ai.RecommendationEngine.PredictionResult;
+import org.example.analysis.FeatureCalculator;
+import org.example.metrics.LatencyHistogram;
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds several recommendation models side by side and routes each prediction to one of them.
+ *
+ * The default model is the reference: when another model serves a request, the reference is also
+ * evaluated for a configurable fraction of requests ("shadow" rate) so per-head agreement can be reported.
+ * A batch or sweep is one request: it is shadowed as a whole, with one batched call on the reference, and
+ * its latency goes to a histogram of its own, apart from single predictions.
+ *
+ * System properties:
+ *  - draxel.model        name of the default model (default: basic)
+ *  - draxel.model.split  traffic split, e.g. "basic=0.8,3d_model_ai=0.2" (default: all on the default model)
+ *  - draxel.model.shadow fraction of non-reference requests also scored by the reference (default: 1.0)
+ */
+public class ModelRegistry implements AutoCloseable {
+
+    public static final Map<String, String> BUNDLED_MODELS = bundledModels();
+
+    private final Map<String, ModelSlot> models = new ConcurrentHashMap<>();
+    private final List<String> order = new CopyOnWriteArrayList<>();
+    private volatile String defaultModel;
+    private volatile Routing routing = new Routing(new String[0], new double[0]);
+    private volatile double shadowRate = 1.0;
+    private boolean splitConfigured;
+
+    private static Map<String, String> bundledModels() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("basic", RecommendationEngine.DEFAULT_MODEL_RESOURCE);
+        map.put("3d_model_ai", "/3d_model_ai.onnx");
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Loads the default model plus every model named in the traffic split.
+     */
+    public static ModelRegistry fromSystemProperties() throws IOException, OrtException {
+        String defaultName = System.getProperty("draxel.model", "basic");
+        Map<String, Double> split = parseSplit(System.getProperty("draxel.model.split", ""));
+
+        ModelRegistry registry = new ModelRegistry();
+        try {
+            registry.load(defaultName);
+            for (String name : split.keySet()) {
+                if (!registry.models.containsKey(name)) {
+                    registry.load(name);
+                }
+            }
+            registry.setDefault(defaultName);
+            if (!split.isEmpty()) {
+                registry.setTrafficSplit(split);
+            }
+            registry.setShadowRate(Double.parseDouble(System.getProperty("draxel.model.shadow", "1.0")));
+        } catch (IOException | OrtException | RuntimeException e) {
+            registry.close();
+            throw e;
+        }
+        return registry;
+    }
+
+    static Map<String, Double> parseSplit(String spec) {
+        Map<String, Double> split = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int eq = trimmed.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Invalid traffic split entry: " + trimmed);
+            }
+            split.put(trimmed.substring(0, eq).trim(), Double.parseDouble(trimmed.substring(eq + 1).trim()));
+        }
+        return split;
+    }
+
+    /**
+     * Loads one of the bundled models (see {@link #BUNDLED_MODELS}) under its own name.
+     */
+    public void load(String name) throws IOException, OrtException {
+        String resource = BUNDLED_MODELS.get(name);
+        if (resource == null) {
+            throw new IllegalArgumentException("Unknown model: " + name + " (available: " + BUNDLED_MODELS.keySet() + ")");
+        }
+        register(name, RecommendationEngine.fromResource(resource));
+    }
+
+    public synchronized void register(String name, RecommendationEngine engine) {
+        if (models.containsKey(name)) {
+            throw new IllegalArgumentException("Model already registered: " + name);
+        }
+        models.put(name, new ModelSlot(name, engine));
+        order.add(name);
+        if (defaultModel == null) {
+            setDefault(name);
+        }
+    }
+
+    public synchronized void setDefault(String name) {
+        requireSlot(name);
+        defaultModel = name;
+        if (!splitConfigured) {
+            routing = new Routing(new String[]{name}, new double[]{1.0});
+        }
+    }
+
+    /**
+     * Routes the given fraction of traffic to each named model. Weights are normalised to sum to 1.
+     */
+    public synchronized void setTrafficSplit(Map<String, Double> weights) {
+        double total = 0;
+        for (Map.Entry<String, Double> e : weights.entrySet()) {
+            requireSlot(e.getKey());
+            if (e.getValue() < 0) {
+                throw new IllegalArgumentException("Negative weight for model " + e.getKey());
+            }
+            total += e.getValue();
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Traffic split must have a positive total weight");
+        }
+
+        String[] names = new String[weights.size()];
+        double[] cumulative = new double[weights.size()];
+        double running = 0;
+        int i = 0;
+        for (Map.Entry<String, Double> e : weights.entrySet()) {
+            running += e.getValue() / total;
+            names[i] = e.getKey();
+            cumulative[i] = running;
+            i++;
+        }
+        cumulative[cumulative.length - 1] = 1.0;
+        routing = new Routing(names, cumulative);
+        splitConfigured = true;
+    }
+
+    public void setShadowRate(double rate) {
+        this.shadowRate = Math.max(0.0, Math.min(1.0, rate));
+    }
+
+    public String defaultModel() {
+        return defaultModel;
+    }
+
+    public List<String> modelNames() {
+        return new ArrayList<>(order);
+    }
+
+    public RecommendationEngine engine(String name) {
+        return requireSlot(name).engine;
+    }
+
+    /**
+     * Picks a model according to the traffic split.
+     */
+    public String route() {
+        Routing current = routing;
+        String[] names = current.names();
+        double[] cumulative = current.cumulativeWeights();
+        if (names.length == 1) {
+            return names[0];
+        }
+        double r = ThreadLocalRandom.current().nextDouble();
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) {
+                return names[i];
+            }
+        }
+        return names[names.length - 1];
+    }
+
+    public PredictionResult predict(ModelFeatures features, RequirementProfile profile) throws OrtException {
+        return predict(route(), features, profile);
+    }
+
+    public PredictionResult predict(String name, ModelFeatures features, RequirementProfile profile) throws OrtException {
+        ModelSlot slot = requireSlot(name);
+        long start = System.nanoTime();
+        PredictionResult result = slot.engine.predict(features, profile);
+        slot.latency.record(System.nanoTime() - start);
+
+        ModelSlot referenceSlot = shadowFor(name);
+        if (referenceSlot != null) {
+            long shadowStart = System.nanoTime();
+            PredictionResult expected = referenceSlot.engine.predict(features, profile);
+            referenceSlot.latency.record(System.nanoTime() - shadowStart);
+            slot.recordAgreement(result, expected);
+        }
+        return result;
+    }
+
+    /**
+     * Scores a batch with one backend call on the named model. The batch histogram gets one sample per
+     * call, and the whole batch is shadowed at the shadow rate.
+     */
+    public List<PredictionResult> predictBatch(String name, List<ModelFeatures> features,
+                                               List<RequirementProfile> profiles) throws OrtException {
+        ModelSlot slot = requireSlot(name);
+        long start = System.nanoTime();
+        List<PredictionResult> results = slot.engine.predictBatch(features, profiles);
+        slot.batchLatency.record(System.nanoTime() - start);
+
+        ModelSlot referenceSlot = shadowFor(name);
+        if (referenceSlot != null) {
+            long shadowStart = System.nanoTime();
+            List<PredictionResult> expected = referenceSlot.engine.predictBatch(features, profiles);
+            referenceSlot.batchLatency.record(System.nanoTime() - shadowStart);
+            for (int i = 0; i < results.size(); i++) {
+                slot.recordAgreement(results.get(i), expected.get(i));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Scores every requirement profile of the category on one routed model (see {@link ProfileSweep}),
+     * timed and shadowed like a batch.
+     */
+    public ProfileSweep sweep(FeatureCalculator.Result analysis, boolean functional) throws OrtException {
+        String name = route();
+        ModelSlot slot = requireSlot(name);
+        long start = System.nanoTime();
+        ProfileSweep sweep = ProfileSweep.run(slot.engine, analysis, functional);
+        slot.batchLatency.record(System.nanoTime() - start);
+
+        ModelSlot referenceSlot = shadowFor(name);
+        if (referenceSlot != null) {
+            long shadowStart = System.nanoTime();
+            ProfileSweep expected = ProfileSweep.run(referenceSlot.engine, analysis, functional);
+            referenceSlot.batchLatency.record(System.nanoTime() - shadowStart);
+            for (RequirementProfile profile : ProfileSweep.profiles(functional)) {
+                slot.recordAgreement(sweep.lookup(profile), expected.lookup(profile));
+            }
+        }
+        return sweep;
+    }
+
+    // the reference slot if this request on the named model is to be shadowed, else null
+    private ModelSlot shadowFor(String name) {
+        String reference = defaultModel;
+        if (name.equals(reference) || ThreadLocalRandom.current().nextDouble() >= shadowRate) {
+            return null;
+        }
+        return requireSlot(reference);
+    }
+
+    /**
+     * Latency of single predictions on the named model.
+     */
+    public LatencyHistogram latency(String name) {
+        return requireSlot(name).latency;
+    }
+
+    /**
+     * Latency of batch and sweep calls on the named model, one sample per call whatever its size.
+     */
+    public LatencyHistogram batchLatency(String name) {
+        return requireSlot(name).batchLatency;
+    }
+
+    /**
+     * Per-model latency percentiles and top-1 agreement with the reference model, per head.
+     */
+    public synchronized String formatReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Model report (reference: ").append(defaultModel).append(")\n");
+        for (String name : order) {
+            ModelSlot slot = models.get(name);
+            sb.append(String.format(Locale.US, "%-12s single %s%n", slot.name, slot.latency.summary()));
+            sb.append(String.format(Locale.US, "%-12s batch  %s%n", "", slot.batchLatency.summary()));
+            long compared = slot.compared.sum();
+            if (slot.name.equals(defaultModel) || compared == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%-12s agreement over %d shadowed predictions:", "", compared));
+            for (Head head : Head.values()) {
+                long heads = slot.headCompared.get(head).sum();
+                if (heads == 0) {
+                    continue;
+                }
+                sb.append(String.format(Locale.US, " %s=%.1f%%",
+                        head.outputName(), 100.0 * slot.headAgreed.get(head).sum() / heads));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private ModelSlot requireSlot(String name) {
+        ModelSlot slot = models.get(name);
+        if (slot == null) {
+            throw new IllegalArgumentException("Model not loaded: " + name);
+        }
+        return slot;
+    }
+
+    @Override
+    public synchronized void close() throws OrtException {
+        OrtException first = null;
+        for (ModelSlot slot : models.values()) {
+            try {
+                slot.engine.close();
+            } catch (OrtException e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        models.clear();
+        order.clear();
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    private record Routing(String[] names, double[] cumulativeWeights) {
+    }
+
+    private static final class ModelSlot {
+        private final String name;
+        private final RecommendationEngine engine;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram batchLatency = new LatencyHistogram();
+        private final LongAdder compared = new LongAdder();
+        private final Map<Head, LongAdder> headCompared = new EnumMap<>(Head.class);
+        private final Map<Head, LongAdder> headAgreed = new EnumMap<>(Head.class);
+
+        ModelSlot(String name, RecommendationEngine engine) {
+            this.name = name;
+            this.engine = engine;
+            for (Head head : Head.values()) {
+                headCompared.put(head, new LongAdder());
+                headAgreed.put(head, new LongAdder());
+            }
+        }
+
+        void recordAgreement(PredictionResult actual, PredictionResult expected) {
+            compared.increment();
+            for (Head head : Head.values()) {
+                String a = head.labelOf(actual);
+                String b = head.labelOf(expected);
+                // only heads both models produce are comparable
+                if (RecommendationEngine.NOT_AVAILABLE.equals(a) || RecommendationEngine.NOT_AVAILABLE.equals(b)) {
+                    continue;
+                }
+                headCompared.get(head).increment();
+                if (a.equals(b)) {
+                    headAgreed.get(head).increment();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package org.example.ai;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal reader for the parts of an ONNX ModelProto needed to evaluate small dense graphs:
+ * nodes, float initializers and the graph inputs/outputs. Decodes the protobuf wire format directly,
+ * so no protobuf dependency is needed.
+ */
+final class OnnxGraph {
+
+    private static final int FLOAT = 1;
+
+    final List<Node> nodes;
+    final Map<String, Initializer> initializers;
+    final Map<String, Integer> inputWidths;
+    final List<String> outputs;
+
+    private OnnxGraph(List<Node> nodes, Map<String, Initializer> initializers,
+                      Map<String, Integer> inputWidths, List<String> outputs) {
+        this.nodes = nodes;
+        this.initializers = initializers;
+        this.inputWidths = inputWidths;
+        this.outputs = outputs;
+    }
+
+    record Node(String opType, String domain, List<String> inputs, List<String> outputs,
+                Map<String, Attribute> attributes) {
+
+        long intAttribute(String name, long fallback) {
+            Attribute a = attributes.get(name);
+            return a != null ? a.i() : fallback;
+        }
+
+        float floatAttribute(String name, float fallback) {
+            Attribute a = attributes.get(name);
+            return a != null ? a.f() : fallback;
+        }
+    }
+
+    record Attribute(String name, float f, long i) {
+    }
+
+    record Initializer(String name, long[] dims, float[] data) {
+    }
+
+    static OnnxGraph parse(byte[] model) {
+        Reader modelReader = new Reader(model, 0, model.length);
+        Reader graph = null;
+        while (modelReader.hasMore()) {
+            int tag = modelReader.tag();
+            if (tag >>> 3 == 7 && (tag & 7) == 2) {
+                graph = modelReader.message();
+            } else {
+                modelReader.skip(tag);
+            }
+        }
+        if (graph == null) {
+            throw new IllegalArgumentException("ONNX model has no graph");
+        }
+
+        List<Node> nodes = new ArrayList<>();
+        Map<String, Initializer> initializers = new HashMap<>();
+        Map<String, Integer> declaredInputs = new LinkedHashMap<>();
+        List<String> outputs = new ArrayList<>();
+        while (graph.hasMore()) {
+            int tag = graph.tag();
+            switch (tag >>> 3) {
+                case 1 -> nodes.add(readNode(graph.message()));
+                case 5 -> {
+                    Initializer init = readTensor(graph.message());
+                    initializers.put(init.name(), init);
+                }
+                case 11 -> {
+                    ValueInfo info = readValueInfo(graph.message());
+                    declaredInputs.put(info.name, info.lastDim);
+                }
+                case 12 -> outputs.add(readValueInfo(graph.message()).name);
+                default -> graph.skip(tag);
+            }
+        }
+
+        // older exporters list initializers among the graph inputs
+        Map<String, Integer> inputWidths = new LinkedHashMap<>();
+        declaredInputs.forEach((name, width) -> {
+            if (!initializers.containsKey(name)) {
+                inputWidths.put(name, width);
+            }
+        });
+        return new OnnxGraph(nodes, initializers, inputWidths, outputs);
+    }
+
+    private static Node readNode(Reader r) {
+        List<String> inputs = new ArrayList<>();
+        List<String> outputs = new ArrayList<>();
+        String opType = "";
+        String domain = "";
+        Map<String, Attribute> attributes = new HashMap<>();
+        while (r.hasMore()) {
+            int tag = r.tag();
+            switch (tag >>> 3) {
+                case 1 -> inputs.add(r.string());
+                case 2 -> outputs.add(r.string());
+                case 4 -> opType = r.string();
+                case 5 -> {
+                    Attribute a = readAttribute(r.message());
+                    attributes.put(a.name(), a);
+                }
+                case 7 -> domain = r.string();
+                default -> r.skip(tag);
+            }
+        }
+        return new Node(opType, domain, inputs, outputs, attributes);
+    }
+
+    private static Attribute readAttribute(Reader r) {
+        String name = "";
+        float f = 0f;
+        long i = 0;
+        while (r.hasMore()) {
+            int tag = r.tag();
+            switch (tag >>> 3) {
+                case 1 -> name = r.string();
+                case 2 -> f = Float.intBitsToFloat(r.fixed32());
+                case 3 -> i = r.varint();
+                default -> r.skip(tag);
+            }
+        }
+        return new Attribute(name, f, i);
+    }
+
+    private static Initializer readTensor(Reader r) {
+        List<Long> dims = new ArrayList<>();
+        int dataType = 0;
+        String name = "";
+        float[] floatData = null;
+        byte[] rawData = null;
+        List<Float> unpackedFloats = new ArrayList<>();
+        while (r.hasMore()) {
+            int tag = r.tag();
+            int field = tag >>> 3;
+            int wire = tag & 7;
+            if (field == 1 && wire == 0) {
+                dims.add(r.varint());
+            } else if (field == 1 && wire == 2) {
+                Reader packed = r.message();
+                while (packed.hasMore()) {
+                    dims.add(packed.varint());
+                }
+            } else if (field == 2) {
+                dataType = (int) r.varint();
+            } else if (field == 4 && wire == 2) {
+                Reader packed = r.message();
+                floatData = new float[packed.remaining() / 4];
+                for (int k = 0; k < floatData.length; k++) {
+                    floatData[k] = Float.intBitsToFloat(packed.fixed32());
+                }
+            } else if (field == 4 && wire == 5) {
+                unpackedFloats.add(Float.intBitsToFloat(r.fixed32()));
+            } else if (field == 8) {
+                name = r.string();
+            } else if (field == 9) {
+                rawData = r.bytes();
+            } else {
+                r.skip(tag);
+            }
+        }
+
+        if (dataType != FLOAT) {
+            throw new UnsupportedOperationException("Initializer " + name + " has unsupported data type " + dataType);
+        }
+        if (rawData != null) {
+            floatData = new float[rawData.length / 4];
+            ByteBuffer.wrap(rawData).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(floatData);
+        } else if (floatData == null) {
+            floatData = new float[unpackedFloats.size()];
+            for (int k = 0; k < floatData.length; k++) {
+                floatData[k] = unpackedFloats.get(k);
+            }
+        }
+        return new Initializer(name, dims.stream().mapToLong(Long::longValue).toArray(), floatData);
+    }
+
+    private record ValueInfo(String name, int lastDim) {
+    }
+
+    private static ValueInfo readValueInfo(Reader r) {
+        String name = "";
+        int lastDim = -1;
+        while (r.hasMore()) {
+            int tag = r.tag();
+            switch (tag >>> 3) {
+                case 1 -> name = r.string();
+                case 2 -> lastDim = readLastDim(r.message());
+                default -> r.skip(tag);
+            }
+        }
+        return new ValueInfo(name, lastDim);
+    }
+
+    // TypeProto.tensor_type(1) -> TypeProto.Tensor.shape(2) -> TensorShapeProto.dim(1) -> dim_value(1)
+    private static int readLastDim(Reader type) {
+        int lastDim = -1;
+        while (type.hasMore()) {
+            int tag = type.tag();
+            if (tag >>> 3 != 1) {
+                type.skip(tag);
+                continue;
+            }
+            Reader tensor = type.message();
+            while (tensor.hasMore()) {
+                int tensorTag = tensor.tag();
+                if (tensorTag >>> 3 != 2) {
+                    tensor.skip(tensorTag);
+                    continue;
+                }
+                Reader shape = tensor.message();
+                while (shape.hasMore()) {
+                    int shapeTag = shape.tag();
+                    if (shapeTag >>> 3 != 1) {
+                        shape.skip(shapeTag);
+                        continue;
+                    }
+                    Reader dim = shape.message();
+                    lastDim = -1;
+                    while (dim.hasMore()) {
+                        int dimTag = dim.tag();
+                        if (dimTag >>> 3 == 1 && (dimTag & 7) == 0) {
+                            lastDim = (int) dim.varint();
+                        } else {
+                            dim.skip(dimTag);
+                        }
+                    }
+                }
+            }
+        }
+        return lastDim;
+    }
+
+    /**
+     * Cursor over a slice of protobuf-encoded bytes.
+     */
+    private static final class Reader {
+        private final byte[] data;
+        private int pos;
+        private final int end;
+
+        Reader(byte[] data, int start, int end) {
+            this.data = data;
+            this.pos = start;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return pos < end;
+        }
+
+        int remaining() {
+            return end - pos;
+        }
+
+        int tag() {
+            return (int) varint();
+        }
+
+        long varint() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                if (pos >= end) {
+                    throw new IllegalArgumentException("Truncated ONNX model");
+                }
+                byte b = data[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        int fixed32() {
+            int value = (data[pos] & 0xFF)
+                    | (data[pos + 1] & 0xFF) << 8
+                    | (data[pos + 2] & 0xFF) << 16
+                    | (data[pos + 3] & 0xFF) << 24;
+            pos += 4;
+            return value;
+        }
+
+        Reader message() {
+            int length = (int) varint();
+            if (length < 0 || pos + length > end) {
+                throw new IllegalArgumentException("Truncated ONNX model");
+            }
+            Reader sub = new Reader(data, pos, pos + length);
+            pos += length;
+            return sub;
+        }
+
+        byte[] bytes() {
+            Reader sub = message();
+            byte[] copy = new byte[sub.remaining()];
+            System.arraycopy(data, sub.pos, copy, 0, copy.length);
+            return copy;
+        }
+
+        String string() {
+            Reader sub = message();
+            return new String(data, sub.pos, sub.remaining(), StandardCharsets.UTF_8);
+        }
+
+        void skip(int tag) {
+            switch (tag & 7) {
+                case 0 -> varint();
+                case 1 -> pos += 8;
+                case 2 -> message();
+                case 5 -> pos += 4;
+                default -> throw new IllegalArgumentException("Unsupported protobuf wire type " + (tag & 7));
+            }
+        }
+    }
+}
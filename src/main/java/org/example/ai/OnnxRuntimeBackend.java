@@ -0,0 +1,88 @@
+package org.example.ai;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backend running the model through ONNX Runtime (native library, any operator set).
+ */
+public class OnnxRuntimeBackend implements InferenceBackend {
+
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final String inputName;
+    private final int inputWidth;
+    private final List<String> outputNames;
+    private final int[] outputWidths;
+
+    public OnnxRuntimeBackend(byte[] modelBytes) throws OrtException {
+        this.environment = OrtEnvironment.getEnvironment();
+        this.session = environment.createSession(modelBytes, new OrtSession.SessionOptions());
+
+        Map.Entry<String, NodeInfo> input = session.getInputInfo().entrySet().iterator().next();
+        this.inputName = input.getKey();
+        this.inputWidth = lastDimension(input.getValue());
+
+        Map<String, NodeInfo> outputs = session.getOutputInfo();
+        this.outputNames = new ArrayList<>(outputs.keySet());
+        this.outputWidths = new int[outputNames.size()];
+        for (int i = 0; i < outputWidths.length; i++) {
+            outputWidths[i] = lastDimension(outputs.get(outputNames.get(i)));
+        }
+    }
+
+    private static int lastDimension(NodeInfo info) {
+        long[] shape = ((TensorInfo) info.getInfo()).getShape();
+        return (int) shape[shape.length - 1];
+    }
+
+    @Override
+    public String name() {
+        return "onnxruntime";
+    }
+
+    @Override
+    public int inputWidth() {
+        return inputWidth;
+    }
+
+    @Override
+    public List<String> outputNames() {
+        return outputNames;
+    }
+
+    @Override
+    public int[] outputWidths() {
+        return outputWidths.clone();
+    }
+
+    @Override
+    public float[][] run(float[] input, int rows) throws OrtException {
+        FloatBuffer buffer = FloatBuffer.wrap(input, 0, rows * inputWidth);
+        try (OnnxTensor tensor = OnnxTensor.createTensor(environment, buffer, new long[]{rows, inputWidth});
+             OrtSession.Result result = session.run(Map.of(inputName, tensor))) {
+            float[][] outputs = new float[outputNames.size()][];
+            for (int i = 0; i < outputs.length; i++) {
+                FloatBuffer values = ((OnnxTensor) result.get(i)).getFloatBuffer();
+                outputs[i] = new float[values.remaining()];
+                values.get(outputs[i]);
+            }
+            return outputs;
+        }
+    }
+
+    @Override
+    public void close() throws OrtException {
+        session.close();
+        environment.close();
+    }
+}
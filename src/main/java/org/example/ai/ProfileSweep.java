@@ -0,0 +1,134 @@
+package org.example.ai;
+
+import ai.onnxruntime.OrtException;
+import org.example.ai.RecommendationEngine.PredictionResult;
+import org.example.ai.RobustnessEstimator.Robustness;
+import org.example.analysis.FeatureCalculator;
+import org.example.model.RequirementProfile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recommendations for every requirement combination of one mesh, computed with a single batched
+ * inference call. Flipping a requirement afterwards is a map lookup instead of a new analysis.
+ *
+ * Functional parts sweep force, friction, weight support, outdoor and detail (32 profiles);
+ * decorative parts sweep outdoor and detail (4 profiles).
+ */
+public final class ProfileSweep {
+
+    private final RecommendationEngine engine;
+    private final FeatureCalculator.Result analysis;
+    private final boolean functional;
+    private final Map<Integer, PredictionResult> byProfile;
+    private volatile Map<Integer, Robustness> robustness = Map.of();
+
+    private ProfileSweep(RecommendationEngine engine, FeatureCalculator.Result analysis, boolean functional,
+                         Map<Integer, PredictionResult> byProfile) {
+        this.engine = engine;
+        this.analysis = analysis;
+        this.functional = functional;
+        this.byProfile = byProfile;
+    }
+
+    public static ProfileSweep run(RecommendationEngine engine, FeatureCalculator.Result analysis, boolean functional) throws OrtException {
+        List<RequirementProfile> profiles = profiles(functional);
+        List<PredictionResult> predictions = engine.predictBatch(
+                Collections.nCopies(profiles.size(), analysis.features()), profiles);
+
+        Map<Integer, PredictionResult> byProfile = new HashMap<>();
+        for (int i = 0; i < profiles.size(); i++) {
+            byProfile.put(key(profiles.get(i)), predictions.get(i));
+        }
+        return new ProfileSweep(engine, analysis, functional, byProfile);
+    }
+
+    /**
+     * Every profile the UI can produce for the given category.
+     */
+    public static List<RequirementProfile> profiles(boolean functional) {
+        List<RequirementProfile> profiles = new ArrayList<>();
+        int flags = functional ? 5 : 2;
+        for (int mask = 0; mask < (1 << flags); mask++) {
+            if (functional) {
+                profiles.add(new RequirementProfile(true, false,
+                        bit(mask, 0), bit(mask, 1), bit(mask, 2), bit(mask, 3), bit(mask, 4)));
+            } else {
+                profiles.add(new RequirementProfile(false, true,
+                        false, false, false, bit(mask, 0), bit(mask, 1)));
+            }
+        }
+        return profiles;
+    }
+
+    private static boolean bit(int mask, int index) {
+        return (mask & (1 << index)) != 0;
+    }
+
+    private static int key(RequirementProfile p) {
+        int key = 0;
+        boolean[] flags = {p.isFunctional(), p.isDecorative(), p.isForce(), p.isFriction(),
+                p.isWeightSupport(), p.isOutdoor(), p.isDetail()};
+        for (int i = 0; i < flags.length; i++) {
+            if (flags[i]) {
+                key |= 1 << i;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * The model that produced these recommendations.
+     */
+    public RecommendationEngine engine() {
+        return engine;
+    }
+
+    public FeatureCalculator.Result analysis() {
+        return analysis;
+    }
+
+    public boolean isFunctional() {
+        return functional;
+    }
+
+    /**
+     * Cached recommendation for the profile, or {@code null} if it belongs to the other category.
+     */
+    public PredictionResult lookup(RequirementProfile profile) {
+        return byProfile.get(key(profile));
+    }
+
+    /**
+     * Estimates the robustness of every profile's recommendation in one batch, so that flipping a requirement
+     * afterwards looks it up too. Meant to run off the event thread, right after the sweep.
+     */
+    public void estimateRobustness(RobustnessEstimator estimator) throws OrtException {
+        List<RequirementProfile> profiles = profiles(functional);
+        List<PredictionResult> baselines = new ArrayList<>(profiles.size());
+        for (RequirementProfile profile : profiles) {
+            baselines.add(lookup(profile));
+        }
+        List<Robustness> estimates = estimator.estimateAll(engine, analysis.features(), profiles, baselines);
+        Map<Integer, Robustness> byKey = new HashMap<>();
+        for (int i = 0; i < profiles.size(); i++) {
+            byKey.put(key(profiles.get(i)), estimates.get(i));
+        }
+        robustness = byKey;
+    }
+
+    /**
+     * Robustness of the profile's recommendation, or {@code null} if it has not been estimated.
+     */
+    public Robustness robustness(RequirementProfile profile) {
+        return robustness.get(key(profile));
+    }
+
+    public int size() {
+        return byProfile.size();
+    }
+}
@@ -0,0 +1,256 @@
+package org.example.ai;
+
+import ai.onnxruntime.OrtException;
+import org.example.ai.RecommendationEngine.Head;
+import org.example.history.FeatureArchive;
+import org.example.history.HistoryManager;
+import org.example.metrics.LatencyHistogram;
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replays a corpus of feature vectors through the float model and its int8 variant and reports
+ * top-1 agreement per output head, latency and memory.
+ *
+ * Usage: QuantizationHarness [--model basic|3d_model_ai|all] [--corpus vectors.csv]
+ *                            [--float-backend onnxruntime|java] [--quantized-model model.int8.onnx]
+ *
+ * The corpus is a CSV with one vector per line (10 features, optionally followed by the 10 requirement
+ * flags). Without --corpus the saved analysis history is used, and synthetic rows if that is empty.
+ * By default the int8 variant is the dynamically quantized Java backend; --quantized-model runs an
+ * externally quantized ONNX file through ONNX Runtime instead.
+ */
+public final class QuantizationHarness {
+
+    private static final int SYNTHETIC_ROWS = 10_000;
+    private static final int BATCH_SIZE = 256;
+    private static final int WARMUP_PASSES = 3;
+
+    private QuantizationHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String model = "all";
+        Path corpus = null;
+        String floatBackend = "onnxruntime";
+        Path quantizedModel = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--model" -> model = args[++i];
+                case "--corpus" -> corpus = Path.of(args[++i]);
+                case "--float-backend" -> floatBackend = args[++i];
+                case "--quantized-model" -> quantizedModel = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        List<String> models = "all".equals(model) ? new ArrayList<>(ModelRegistry.BUNDLED_MODELS.keySet()) : List.of(model);
+        for (String name : models) {
+            String resource = ModelRegistry.BUNDLED_MODELS.get(name);
+            if (resource == null) {
+                throw new IllegalArgumentException("Unknown model: " + name);
+            }
+            byte[] bytes = RecommendationEngine.loadModelBytes(resource);
+            try (InferenceBackend reference = InferenceBackends.create(bytes, floatBackend);
+                 InferenceBackend candidate = quantizedModel != null
+                         ? new OnnxRuntimeBackend(Files.readAllBytes(quantizedModel))
+                         : JavaMlpBackend.quantized(bytes)) {
+                Corpus rows = loadCorpus(corpus, reference.inputWidth());
+                System.out.print(compare(name, bytes, reference, candidate, rows));
+            }
+        }
+    }
+
+    static String compare(String name, byte[] modelBytes, InferenceBackend reference, InferenceBackend candidate,
+                          Corpus corpus) throws OrtException {
+        int width = reference.inputWidth();
+        int rows = corpus.rows;
+        float[][] expected = reference.run(corpus.data, rows);
+        float[][] actual = candidate.run(corpus.data, rows);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%nModel %s: %d rows (%s)%n", name, rows, corpus.source));
+        sb.append(String.format(Locale.US, "  float: %s   int8: %s%n", reference.name(), candidate.name()));
+        sb.append(String.format(Locale.US, "  %-14s %10s %14s%n", "head", "agreement", "max |Δp|"));
+
+        List<String> refNames = reference.outputNames();
+        List<String> candNames = candidate.outputNames();
+        int[] refWidths = reference.outputWidths();
+        for (Head head : Head.values()) {
+            int r = refNames.indexOf(head.outputName());
+            int c = candNames.indexOf(head.outputName());
+            if (r < 0 || c < 0) {
+                sb.append(String.format(Locale.US, "  %-14s %10s%n", head.outputName(), "n/a"));
+                continue;
+            }
+            int classes = refWidths[r];
+            int agree = 0;
+            float maxDiff = 0f;
+            for (int row = 0; row < rows; row++) {
+                if (argMax(expected[r], row * classes, classes) == argMax(actual[c], row * classes, classes)) {
+                    agree++;
+                }
+                for (int j = 0; j < classes; j++) {
+                    maxDiff = Math.max(maxDiff, Math.abs(expected[r][row * classes + j] - actual[c][row * classes + j]));
+                }
+            }
+            sb.append(String.format(Locale.US, "  %-14s %9.2f%% %14.5f%n", head.outputName(), 100.0 * agree / rows, maxDiff));
+        }
+
+        Timing floatTiming = time(reference, corpus.data, rows, width);
+        Timing int8Timing = time(candidate, corpus.data, rows, width);
+        sb.append(String.format(Locale.US, "  %-14s %14s %14s %16s %14s%n", "latency", "p50 ns/row", "p99 ns/row", "batch ns/row", "alloc B/row"));
+        sb.append(floatTiming.format("float"));
+        sb.append(int8Timing.format("int8"));
+        sb.append(String.format(Locale.US, "  speed-up: %.2fx single row, %.2fx batched (batch=%d)%n",
+                (double) floatTiming.single.percentileNanos(50) / Math.max(1, int8Timing.single.percentileNanos(50)),
+                floatTiming.batchNanosPerRow / Math.max(1e-9, int8Timing.batchNanosPerRow),
+                BATCH_SIZE));
+
+        long floatWeights = new JavaMlpBackend(modelBytes).weightBytes();
+        long int8Weights = candidate instanceof JavaMlpBackend java ? java.weightBytes() : -1;
+        sb.append(String.format(Locale.US, "  weights: float %.1f KiB, int8 %s%n",
+                floatWeights / 1024.0,
+                int8Weights >= 0 ? String.format(Locale.US, "%.1f KiB (%.1f%%)", int8Weights / 1024.0, 100.0 * int8Weights / floatWeights)
+                        : "n/a (external model)"));
+        return sb.toString();
+    }
+
+    private record Timing(LatencyHistogram single, double batchNanosPerRow, double allocatedPerRow) {
+        String format(String label) {
+            return String.format(Locale.US, "  %-14s %14d %14d %16.1f %14.1f%n",
+                    label, single.percentileNanos(50), single.percentileNanos(99), batchNanosPerRow, allocatedPerRow);
+        }
+    }
+
+    private static Timing time(InferenceBackend backend, float[] data, int rows, int width) throws OrtException {
+        float[] one = new float[width];
+        float[] batch = new float[BATCH_SIZE * width];
+        for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+            for (int row = 0; row < rows; row++) {
+                System.arraycopy(data, row * width, one, 0, width);
+                backend.run(one, 1);
+            }
+            runBatches(backend, data, batch, rows, width);
+        }
+
+        LatencyHistogram single = new LatencyHistogram();
+        long allocatedBefore = allocatedBytes();
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(data, row * width, one, 0, width);
+            long start = System.nanoTime();
+            backend.run(one, 1);
+            single.record(System.nanoTime() - start);
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        long start = System.nanoTime();
+        runBatches(backend, data, batch, rows, width);
+        double batchNanosPerRow = (double) (System.nanoTime() - start) / rows;
+        return new Timing(single, batchNanosPerRow, allocated < 0 ? Double.NaN : (double) allocated / rows);
+    }
+
+    private static void runBatches(InferenceBackend backend, float[] data, float[] batch, int rows, int width) throws OrtException {
+        for (int offset = 0; offset < rows; offset += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, rows - offset);
+            System.arraycopy(data, offset * width, batch, 0, n * width);
+            backend.run(batch, n);
+        }
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) {
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static int argMax(float[] values, int offset, int length) {
+        int best = 0;
+        for (int j = 1; j < length; j++) {
+            if (values[offset + j] > values[offset + best]) {
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    record Corpus(float[] data, int rows, String source) {
+    }
+
+    static Corpus loadCorpus(Path csv, int width) throws IOException {
+        List<float[]> vectors = new ArrayList<>();
+        String source;
+        if (csv != null) {
+            for (String line : Files.readAllLines(csv)) {
+                float[] v = parseCsvLine(line, width);
+                if (v != null) {
+                    vectors.add(v);
+                }
+            }
+            source = csv.toString();
+        } else {
+            FeatureArchive archive = HistoryManager.archive();
+            for (int row = 0; row < archive.rows(); row++) {
+                float[] v = fromArchive(archive, row, width);
+                if (v != null) {
+                    vectors.add(v);
+                }
+            }
+            source = "analysis history";
+        }
+
+        if (vectors.isEmpty()) {
+            return new Corpus(InferenceBackends.probeRows(width, SYNTHETIC_ROWS, 1L), SYNTHETIC_ROWS, "synthetic");
+        }
+        float[] data = new float[vectors.size() * width];
+        for (int i = 0; i < vectors.size(); i++) {
+            System.arraycopy(vectors.get(i), 0, data, i * width, width);
+        }
+        return new Corpus(data, vectors.size(), source);
+    }
+
+    // rows with only the 10 features are padded with zero requirement flags for profile-aware models
+    private static float[] parseCsvLine(String line, int width) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] parts = trimmed.split("[,;\\s]+");
+        float[] v = new float[width];
+        try {
+            for (int i = 0; i < Math.min(parts.length, width); i++) {
+                v[i] = Float.parseFloat(parts[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null; // header line
+        }
+        return v;
+    }
+
+    // rows written before a feature existed hold NaN and are skipped
+    private static float[] fromArchive(FeatureArchive archive, int row, int width) {
+        ModelFeatures features = archive.features(row);
+        float[] v = new float[width];
+        float[] input = features.toInputVector();
+        for (float x : input) {
+            if (Float.isNaN(x)) {
+                return null;
+            }
+        }
+        System.arraycopy(input, 0, v, 0, 10);
+        if (width > 10) {
+            RequirementProfile profile = archive.profile(row);
+            System.arraycopy(profile.toInputVector(), 0, v, 10, width - 10);
+        }
+        return v;
+    }
+}
@@ -1,14 +1,15 @@
 package org.example.ai;
 
-import ai.onnxruntime.OnnxTensor;
-import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
-import ai.onnxruntime.OrtSession;
+import org.example.metrics.PredictEvent;
 import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -16,35 +17,88 @@ import java.util.ArrayList;
 
 public class RecommendationEngine implements AutoCloseable {
 
-    private static final String MODEL_RESOURCE = "/basic.onnx";
+    public static final String DEFAULT_MODEL_RESOURCE = "/basic.onnx";
 
-    private static final List<String> FILAMENT_LABELS = List.of("ABS", "ASA", "PC", "PETG", "PLA", "TPU");
-    private static final List<String> INFILL_PERCENT_LABELS = List.of("0-15%", "16-30%", "31-45%", "46-60%", "61-75%", "76-90%", "91-100%");
-    private static final List<String> INFILL_PATTERN_LABELS = List.of("concentric", "cubic", "gyroid", "lines", "triangle");
-    private static final List<String> NOZZLE_LABELS = List.of("0.2", "0.3", "0.4", "0.6", "0.8");
-    private static final List<String> LAYER_HEIGHT_LABELS = List.of("0.1", "0.15", "0.2", "0.25", "0.3");
+    static final int FEATURE_COUNT = 10;
+    private static final int PROFILE_COUNT = 10;
+    static final String NOT_AVAILABLE = "n/a";
 
-    private final OrtEnvironment environment;
-    private final OrtSession session;
+    private final InferenceBackend backend;
+    private final int inputWidth;
+    private final int[] headOutputs = new int[Head.values().length];
 
     public RecommendationEngine() throws IOException, OrtException {
-        this(loadModelBytes());
+        this(loadModelBytes(DEFAULT_MODEL_RESOURCE));
     }
 
     public RecommendationEngine(byte[] modelBytes) throws OrtException {
-        this.environment = OrtEnvironment.getEnvironment();
-        this.session = environment.createSession(modelBytes, new OrtSession.SessionOptions());
+        this(InferenceBackends.create(modelBytes));
     }
 
-    private static byte[] loadModelBytes() throws IOException {
-        try (InputStream in = RecommendationEngine.class.getResourceAsStream(MODEL_RESOURCE)) {
+    public RecommendationEngine(InferenceBackend backend) throws OrtException {
+        this.backend = backend;
+        this.inputWidth = backend.inputWidth();
+        if (inputWidth != FEATURE_COUNT && inputWidth != FEATURE_COUNT + PROFILE_COUNT) {
+            backend.close();
+            throw new IllegalArgumentException("Unsupported model input width: " + inputWidth);
+        }
+        List<String> outputs = backend.outputNames();
+        for (Head head : Head.values()) {
+            headOutputs[head.ordinal()] = outputs.indexOf(head.outputName());
+        }
+    }
+
+    public static RecommendationEngine fromResource(String resource) throws IOException, OrtException {
+        return new RecommendationEngine(loadModelBytes(resource));
+    }
+
+    public static byte[] loadModelBytes(String resource) throws IOException {
+        try (InputStream in = RecommendationEngine.class.getResourceAsStream(resource)) {
             if (in == null) {
-                throw new IOException("Model resource not found: " + MODEL_RESOURCE);
+                throw new IOException("Model resource not found: " + resource);
             }
             return in.readAllBytes();
         }
     }
 
+    /**
+     * Number of floats per input row: the 10 mesh features, optionally followed by the 10 requirement flags.
+     */
+    public int inputWidth() {
+        return inputWidth;
+    }
+
+    public InferenceBackend backend() {
+        return backend;
+    }
+
+    /**
+     * Index of the head in the backend outputs, or -1 if this model does not produce it.
+     */
+    public int outputIndex(Head head) {
+        return headOutputs[head.ordinal()];
+    }
+
+    public boolean usesProfile() {
+        return inputWidth > FEATURE_COUNT;
+    }
+
+    public float[] inputVector(ModelFeatures features, RequirementProfile profile) {
+        float[] featureVector = features.toInputVector();
+        if (!usesProfile()) {
+            return featureVector;
+        }
+        float[] row = new float[inputWidth];
+        System.arraycopy(featureVector, 0, row, 0, FEATURE_COUNT);
+        System.arraycopy(profile.toInputVector(), 0, row, FEATURE_COUNT, PROFILE_COUNT);
+        return row;
+    }
+
+    /**
+     * Predicts for the given flags. The model sees them as a {@link RequirementProfile}, which drops the load
+     * flags of a part that is not functional, but the result reports the flags exactly as passed, as it always
+     * has.
+     */
     public PredictionResult predict(ModelFeatures features,
                                     boolean supportsFriction,
                                     boolean supportPressure,
@@ -52,53 +106,133 @@ public class RecommendationEngine implements AutoCloseable {
                                     boolean highDetail,
                                     boolean isDecorative,
                                     boolean isFunctional) throws OrtException {
+        RequirementProfile profile = new RequirementProfile(
+                isFunctional,
+                isDecorative,
+                supportPressure,
+                supportsFriction,
+                supportWeight,
+                false,
+                highDetail
+        );
+        PredictEvent event = PredictEvent.start(backend.name(), 1, false);
+        float[][] outputs = backend.run(inputVector(features, profile), 1);
+        PredictionResult result = toPrediction(scoresOf(outputs, backend.outputWidths(), 0), supportsFriction,
+                supportPressure, supportWeight, highDetail, isDecorative, isFunctional);
+        event.finish();
+        return result;
+    }
+
+    public PredictionResult predict(ModelFeatures features, RequirementProfile profile) throws OrtException {
+        PredictEvent event = PredictEvent.start(backend.name(), 1, false);
+        float[][] outputs = backend.run(inputVector(features, profile), 1);
+        PredictionResult result = toPrediction(scoresOf(outputs, backend.outputWidths(), 0), profile);
+        event.finish();
+        return result;
+    }
 
-        float[] inputVector = features.toInputVector();
-        OnnxTensor tensor = OnnxTensor.createTensor(environment, new float[][]{inputVector});
-        Map<String, OnnxTensor> input = Map.of("input", tensor);
-
-        try (tensor; OrtSession.Result result = session.run(input)) {
-            float[][] filamentOutput = (float[][]) result.get(0).getValue();
-            float[][] infillPercentOutput = (float[][]) result.get(1).getValue();
-            float[][] infillPatternOutput = (float[][]) result.get(2).getValue();
-            float[][] nozzleOutput = (float[][]) result.get(3).getValue();
-            float[][] layerHeightOutput = (float[][]) result.get(4).getValue();
-
-            int filamentIdx = maxIndex(filamentOutput[0]);
-            int infillPercentIdx = maxIndex(infillPercentOutput[0]);
-            int infillPatternIdx = maxIndex(infillPatternOutput[0]);
-            int nozzleIdx = maxIndex(nozzleOutput[0]);
-            int layerHeightIdx = maxIndex(layerHeightOutput[0]);
-
-            double combinedConfidence = filamentOutput[0][filamentIdx]
-                    * infillPercentOutput[0][infillPercentIdx]
-                    * infillPatternOutput[0][infillPatternIdx]
-                    * nozzleOutput[0][nozzleIdx]
-                    * layerHeightOutput[0][layerHeightIdx];
-
-            return new PredictionResult(
-                    FILAMENT_LABELS.get(filamentIdx),
-                    INFILL_PERCENT_LABELS.get(infillPercentIdx),
-                    INFILL_PATTERN_LABELS.get(infillPatternIdx),
-                    NOZZLE_LABELS.get(nozzleIdx),
-                    LAYER_HEIGHT_LABELS.get(layerHeightIdx),
-                    combinedConfidence,
-                    filamentOutput[0],
-                    infillPercentOutput[0],
-                    infillPatternOutput[0],
-                    nozzleOutput[0],
-                    layerHeightOutput[0],
-                    supportsFriction,
-                    supportPressure,
-                    supportWeight,
-                    highDetail,
-                    isDecorative,
-                    isFunctional
-            );
-        }
-    }
-
-    private int maxIndex(float[] values) {
+    /**
+     * Scores many (features, profile) pairs with a single backend call. Identical input rows are evaluated
+     * once, so profiles the model does not read (10-input models) cost nothing extra.
+     */
+    public List<PredictionResult> predictBatch(List<ModelFeatures> features, List<RequirementProfile> profiles) throws OrtException {
+        if (features.size() != profiles.size()) {
+            throw new IllegalArgumentException("features and profiles must have the same size");
+        }
+        PredictEvent event = PredictEvent.start(backend.name(), features.size(), true);
+        Map<FloatKey, Integer> distinct = new HashMap<>();
+        int[] rowOf = new int[features.size()];
+        float[] batch = new float[features.size() * inputWidth];
+        for (int i = 0; i < rowOf.length; i++) {
+            float[] row = inputVector(features.get(i), profiles.get(i));
+            Integer existing = distinct.putIfAbsent(new FloatKey(row), distinct.size());
+            if (existing == null) {
+                rowOf[i] = distinct.size() - 1;
+                System.arraycopy(row, 0, batch, rowOf[i] * inputWidth, inputWidth);
+            } else {
+                rowOf[i] = existing;
+            }
+        }
+
+        int rows = distinct.size();
+        float[][] outputs = rows == 0 ? new float[0][] : backend.run(batch, rows);
+        int[] widths = backend.outputWidths();
+        List<PredictionResult> results = new ArrayList<>(rowOf.length);
+        for (int i = 0; i < rowOf.length; i++) {
+            results.add(toPrediction(scoresOf(outputs, widths, rowOf[i]), profiles.get(i)));
+        }
+        event.distinctRows = rows;
+        event.finish();
+        return results;
+    }
+
+    private Map<Head, float[]> scoresOf(float[][] outputs, int[] widths, int row) {
+        Map<Head, float[]> scores = new EnumMap<>(Head.class);
+        for (Head head : Head.values()) {
+            int output = headOutputs[head.ordinal()];
+            if (output >= 0) {
+                int width = widths[output];
+                scores.put(head, Arrays.copyOfRange(outputs[output], row * width, (row + 1) * width));
+            }
+        }
+        return scores;
+    }
+
+    private record FloatKey(float[] values) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FloatKey other && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+    }
+
+    private PredictionResult toPrediction(Map<Head, float[]> scores, RequirementProfile profile) {
+        return toPrediction(scores, profile.isFriction(), profile.isForce(), profile.isWeightSupport(),
+                profile.isDetail(), profile.isDecorative(), profile.isFunctional());
+    }
+
+    private PredictionResult toPrediction(Map<Head, float[]> scores, boolean supportsFriction,
+            boolean supportPressure, boolean supportWeight, boolean highDetail, boolean isDecorative,
+            boolean isFunctional) {
+        Map<Head, String> labels = new EnumMap<>(Head.class);
+        double combinedConfidence = 1.0;
+        for (Head head : Head.values()) {
+            float[] values = scores.get(head);
+            if (values == null || values.length == 0) {
+                labels.put(head, NOT_AVAILABLE);
+                continue;
+            }
+            int idx = maxIndex(values);
+            labels.put(head, head.label(idx));
+            combinedConfidence *= values[idx];
+        }
+
+        return new PredictionResult(
+                labels.get(Head.FILAMENT),
+                labels.get(Head.INFILL_PERCENT),
+                labels.get(Head.INFILL_PATTERN),
+                labels.get(Head.NOZZLE),
+                labels.get(Head.LAYER_HEIGHT),
+                combinedConfidence,
+                scores.getOrDefault(Head.FILAMENT, new float[0]),
+                scores.getOrDefault(Head.INFILL_PERCENT, new float[0]),
+                scores.getOrDefault(Head.INFILL_PATTERN, new float[0]),
+                scores.getOrDefault(Head.NOZZLE, new float[0]),
+                scores.getOrDefault(Head.LAYER_HEIGHT, new float[0]),
+                supportsFriction,
+                supportPressure,
+                supportWeight,
+                highDetail,
+                isDecorative,
+                isFunctional
+        );
+    }
+
+    static int maxIndex(float[] values) {
         int index = 0;
         for (int i = 1; i < values.length; i++) {
             if (values[i] > values[index]) {
@@ -110,8 +244,59 @@ public class RecommendationEngine implements AutoCloseable {
 
     @Override
     public void close() throws OrtException {
-        session.close();
-        environment.close();
+        backend.close();
+    }
+
+    /**
+     * Output heads of the recommendation models, keyed by their ONNX output name.
+     * Not every model produces every head; missing heads are reported as "n/a".
+     */
+    public enum Head {
+        FILAMENT("filament", List.of("ABS", "ASA", "PC", "PETG", "PLA", "TPU")),
+        INFILL_PERCENT("infill_class", List.of("0-15%", "16-30%", "31-45%", "46-60%", "61-75%", "76-90%", "91-100%")),
+        INFILL_PATTERN("infill_type", List.of("concentric", "cubic", "gyroid", "lines", "triangle")),
+        NOZZLE("nozzle", List.of("0.2", "0.3", "0.4", "0.6", "0.8")),
+        LAYER_HEIGHT("layer_height", List.of("0.1", "0.15", "0.2", "0.25", "0.3"));
+
+        private final String outputName;
+        private final List<String> labels;
+
+        Head(String outputName, List<String> labels) {
+            this.outputName = outputName;
+            this.labels = labels;
+        }
+
+        public String outputName() {
+            return outputName;
+        }
+
+        public List<String> labels() {
+            return labels;
+        }
+
+        public String label(int index) {
+            return index >= 0 && index < labels.size() ? labels.get(index) : NOT_AVAILABLE;
+        }
+
+        public String labelOf(PredictionResult result) {
+            return switch (this) {
+                case FILAMENT -> result.filament();
+                case INFILL_PERCENT -> result.infillPercent();
+                case INFILL_PATTERN -> result.infillPattern();
+                case NOZZLE -> result.nozzle();
+                case LAYER_HEIGHT -> result.layerHeight();
+            };
+        }
+
+        public float[] scoresOf(PredictionResult result) {
+            return switch (this) {
+                case FILAMENT -> result.filamentScores();
+                case INFILL_PERCENT -> result.infillPercentScores();
+                case INFILL_PATTERN -> result.infillPatternScores();
+                case NOZZLE -> result.nozzleScores();
+                case LAYER_HEIGHT -> result.layerHeightScores();
+            };
+        }
     }
 
     public record PredictionResult(
@@ -0,0 +1,165 @@
+package org.example.ai;
+
+import ai.onnxruntime.OrtException;
+import org.example.ai.RecommendationEngine.Head;
+import org.example.ai.RecommendationEngine.PredictionResult;
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Monte Carlo robustness of a recommendation: the mesh features are jittered N times by a small relative
+ * amount, all perturbations are scored as one batch, and for each head we report how often the top label
+ * stays the same. A mesh sitting near a decision boundary shows up as low stability even when the
+ * softmax confidence is high.
+ *
+ * The input buffer is reused between calls and the noise is seeded, so the same mesh always gets the same
+ * score. Requirement flags are never perturbed.
+ */
+public class RobustnessEstimator {
+
+    public static final int DEFAULT_SAMPLES = 64;
+    public static final double DEFAULT_NOISE = 0.02;
+
+    private static final double ABSOLUTE_NOISE_FLOOR = 1e-3;
+    private static final long SEED = 0x5eedL;
+
+    private final int samples;
+    private final double noise;
+    private final Random random = new Random(SEED);
+    private float[] buffer = new float[0];
+
+    public RobustnessEstimator() {
+        this(Integer.getInteger("draxel.robustness.samples", DEFAULT_SAMPLES), DEFAULT_NOISE);
+    }
+
+    public RobustnessEstimator(int samples, double noise) {
+        this.samples = samples;
+        this.noise = noise;
+    }
+
+    public boolean isEnabled() {
+        return samples > 0;
+    }
+
+    public Robustness estimate(RecommendationEngine engine, ModelFeatures features,
+                               RequirementProfile profile, PredictionResult baseline) throws OrtException {
+        return estimateAll(engine, features, List.of(profile), List.of(baseline)).get(0);
+    }
+
+    /**
+     * Estimates the robustness of the recommendation for each profile with one batched inference call. Every
+     * profile sees the same perturbations, so the result for a profile does not depend on the others; models
+     * that do not read the profile are run on the perturbations once.
+     */
+    public synchronized List<Robustness> estimateAll(RecommendationEngine engine, ModelFeatures features,
+                                                     List<RequirementProfile> profiles,
+                                                     List<PredictionResult> baselines) throws OrtException {
+        if (profiles.size() != baselines.size()) {
+            throw new IllegalArgumentException("profiles and baselines must have the same size");
+        }
+        List<Robustness> results = new ArrayList<>(profiles.size());
+        if (samples <= 0 || profiles.isEmpty()) {
+            for (int i = 0; i < profiles.size(); i++) {
+                results.add(new Robustness(0, noise, new EnumMap<>(Head.class)));
+            }
+            return results;
+        }
+
+        int width = engine.inputWidth();
+        int blocks = engine.usesProfile() ? profiles.size() : 1;
+        int rows = blocks * samples;
+        if (buffer.length < rows * width) {
+            buffer = new float[rows * width];
+        }
+        random.setSeed(SEED);
+        double[] gaussians = new double[samples * RecommendationEngine.FEATURE_COUNT];
+        for (int i = 0; i < gaussians.length; i++) {
+            gaussians[i] = random.nextGaussian();
+        }
+        for (int b = 0; b < blocks; b++) {
+            float[] base = engine.inputVector(features, profiles.get(b));
+            for (int s = 0; s < samples; s++) {
+                int off = (b * samples + s) * width;
+                System.arraycopy(base, 0, buffer, off, width);
+                for (int c = 0; c < RecommendationEngine.FEATURE_COUNT; c++) {
+                    double scale = Math.max(Math.abs(base[c]), ABSOLUTE_NOISE_FLOOR) * noise;
+                    buffer[off + c] = (float) (base[c] + scale * gaussians[s * RecommendationEngine.FEATURE_COUNT + c]);
+                }
+            }
+        }
+
+        float[][] outputs = engine.backend().run(buffer, rows);
+        int[] widths = engine.backend().outputWidths();
+        for (int p = 0; p < profiles.size(); p++) {
+            int block = blocks == 1 ? 0 : p;
+            Map<Head, Double> stability = new EnumMap<>(Head.class);
+            for (Head head : Head.values()) {
+                int output = engine.outputIndex(head);
+                if (output < 0) {
+                    continue;
+                }
+                int classes = widths[output];
+                float[] baselineScores = head.scoresOf(baselines.get(p));
+                int expected = argMax(baselineScores, 0, baselineScores.length);
+                int same = 0;
+                for (int s = 0; s < samples; s++) {
+                    if (argMax(outputs[output], (block * samples + s) * classes, classes) == expected) {
+                        same++;
+                    }
+                }
+                stability.put(head, (double) same / samples);
+            }
+            results.add(new Robustness(samples, noise, stability));
+        }
+        return results;
+    }
+
+    private static int argMax(float[] values, int offset, int length) {
+        int best = 0;
+        for (int j = 1; j < length; j++) {
+            if (values[offset + j] > values[offset + best]) {
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fraction of perturbed samples (0-1) that kept the recommended label, per head the model produces.
+     */
+    public record Robustness(int samples, double noise, Map<Head, Double> stability) {
+
+        public double weakest() {
+            return stability.values().stream().mapToDouble(Double::doubleValue).min().orElse(1.0);
+        }
+
+        public String formatSummary() {
+            if (samples == 0) {
+                return "";
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "Robustness (%d samples, ±%.0f%% feature noise):%n", samples, noise * 100.0));
+            for (Map.Entry<Head, Double> e : stability.entrySet()) {
+                sb.append(String.format(Locale.US, " - %s: %.0f%% stable%n", displayName(e.getKey()), e.getValue() * 100.0));
+            }
+            return sb.toString();
+        }
+
+        private static String displayName(Head head) {
+            return switch (head) {
+                case FILAMENT -> "Filament";
+                case INFILL_PERCENT -> "Infill percentage";
+                case INFILL_PATTERN -> "Infill pattern";
+                case NOZZLE -> "Nozzle";
+                case LAYER_HEIGHT -> "Layer Height";
+            };
+        }
+    }
+}
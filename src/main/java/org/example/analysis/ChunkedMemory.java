@@ -0,0 +1,100 @@
+package org.example.analysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A growable array of fixed-size records in {@link ByteBuffer} chunks, so it is not limited to 2 GB and never
+ * copies on growth. The chunks are either heap arrays or, off the heap, pages of a temporary file mapped into
+ * memory: those count against neither {@code -Xmx} nor {@code -XX:MaxDirectMemorySize}, and the operating
+ * system writes them out when physical memory runs short. A record never spans two chunks. New records read
+ * as zero.
+ */
+final class ChunkedMemory implements Closeable {
+
+    // 16 MB at most per chunk, so the collector finds room for heap chunks even when the heap is nearly full
+    private static final int MAX_CHUNK_SHIFT = 24;
+
+    private final int recordBytes;
+    private final int shift;
+    private final long mask;
+    private final FileChannel file;
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private long capacity;
+
+    /**
+     * @param recordBytes   size of one record
+     * @param records       records expected, used to size the chunks; the memory is allocated on {@link #ensure}
+     * @param offHeap       whether to map the chunks from a temporary file
+     */
+    ChunkedMemory(int recordBytes, long records, boolean offHeap) throws IOException {
+        this.recordBytes = recordBytes;
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(records - 1, 1));
+        int maxBits = MAX_CHUNK_SHIFT - (32 - Integer.numberOfLeadingZeros(recordBytes - 1));
+        this.shift = Math.max(10, Math.min(bits, maxBits));
+        this.mask = (1L << shift) - 1;
+        if (offHeap) {
+            Path path = Files.createTempFile("draxel-", ".mem");
+            file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } else {
+            file = null;
+        }
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Makes room for at least {@code records} records.
+     */
+    void ensure(long records) throws IOException {
+        while (capacity < records) {
+            int n = chunks.length;
+            chunks = Arrays.copyOf(chunks, n + 1);
+            int bytes = recordBytes << shift;
+            ByteBuffer chunk = file == null
+                    ? ByteBuffer.allocate(bytes)
+                    : file.map(FileChannel.MapMode.READ_WRITE, (long) n * bytes, bytes);
+            chunks[n] = chunk.order(ByteOrder.nativeOrder());
+            capacity += 1L << shift;
+        }
+    }
+
+    float getFloat(long record, int field) {
+        return chunks[(int) (record >>> shift)].getFloat((int) (record & mask) * recordBytes + field * Float.BYTES);
+    }
+
+    void putFloat(long record, int field, float value) {
+        chunks[(int) (record >>> shift)].putFloat((int) (record & mask) * recordBytes + field * Float.BYTES, value);
+    }
+
+    long getLong(long record) {
+        return chunks[(int) (record >>> shift)].getLong((int) (record & mask) * recordBytes);
+    }
+
+    void putLong(long record, long value) {
+        chunks[(int) (record >>> shift)].putLong((int) (record & mask) * recordBytes, value);
+    }
+
+    /**
+     * Drops the chunks and deletes the temporary file. Mapped pages are released once the buffers are
+     * collected.
+     */
+    @Override
+    public void close() throws IOException {
+        chunks = new ByteBuffer[0];
+        capacity = 0;
+        if (file != null) {
+            file.close();
+        }
+    }
+}
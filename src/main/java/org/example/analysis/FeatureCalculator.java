@@ -1,5 +1,6 @@
 package org.example.analysis;
 
+import org.example.metrics.FeatureStageEvent;
 import org.example.model.ModelFeatures;
 import org.example.model.ObjModel;
 
@@ -8,6 +9,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
+/**
+ * The ten shape features of a mesh. The individual computations are package-private so the JMH suite in
+ * {@code src/jmh} can time each one on its own. In production each expensive step is timed by a
+ * {@link FeatureStageEvent}; the ones that only combine other results take nanoseconds and are not.
+ */
 public final class FeatureCalculator {
 
     private FeatureCalculator() {
@@ -21,19 +27,35 @@ public final class FeatureCalculator {
             throw new IllegalArgumentException("Mesh must contain vertices and faces");
         }
 
+        int v = vertices.size();
+        int f = faces.size();
+        FeatureStageEvent total = FeatureStageEvent.start("total", v, f);
+
+        FeatureStageEvent stage = FeatureStageEvent.start("boundingBox", v, f);
         BoundingBox box = BoundingBox.from(vertices);
+        stage.finish();
+        stage = FeatureStageEvent.start("geometryStats", v, f);
         GeometryStats geometryStats = GeometryStats.from(vertices, faces);
+        stage.finish();
 
         double linearity = computeLinearity(box);
+        stage = FeatureStageEvent.start("planarity", v, f);
         double planarity = computePlanarity(vertices);
+        stage.finish();
         double sphericity = computeSphericity(geometryStats);
+        stage = FeatureStageEvent.start("anisotropy", v, f);
         double anisotropy = computeAnisotropy(vertices, faces);
+        stage.finish();
+        stage = FeatureStageEvent.start("curvature", v, f);
         double curvature = computeCurvature(vertices, faces);
+        stage.finish();
         double eulerNumber = computeEulerNumber(vertices.size(), faces, geometryStats.edgeCount);
         double compactness = computeCompactness(geometryStats);
         double aspectRatio = computeAspectRatio(box);
         double convexity = computeConvexity(geometryStats.volume, box);
+        stage = FeatureStageEvent.start("localDensity", v, f);
         double localDensity = computeLocalDensity(vertices, box);
+        stage.finish();
 
         ModelFeatures features = new ModelFeatures(
                 linearity,
@@ -48,16 +70,17 @@ public final class FeatureCalculator {
                 localDensity
         );
 
+        total.finish();
         return new Result(features, model.getVertexCount(), model.getFaceCount(), geometryStats.surfaceArea, geometryStats.volume);
     }
 
-    private static double computeLinearity(BoundingBox box) {
+    static double computeLinearity(BoundingBox box) {
         double maxSpan = Math.max(box.dx, Math.max(box.dy, box.dz));
         double minSpan = Math.min(box.dx, Math.min(box.dy, box.dz));
         return minSpan > 1e-6 ? maxSpan / minSpan : 0.0;
     }
 
-    private static double computePlanarity(List<float[]> vertices) {
+    static double computePlanarity(List<float[]> vertices) {
         double cx = 0;
         double cy = 0;
         double cz = 0;
@@ -82,14 +105,14 @@ public final class FeatureCalculator {
         return totalDistance / count;
     }
 
-    private static double computeSphericity(GeometryStats stats) {
+    static double computeSphericity(GeometryStats stats) {
         if (stats.surfaceArea <= 0 || stats.volume <= 0) {
             return 0.0;
         }
         return Math.pow(Math.PI, 1.0 / 3.0) * Math.pow(6.0 * stats.volume, 2.0 / 3.0) / stats.surfaceArea;
     }
 
-    private static double computeAnisotropy(List<float[]> vertices, List<int[]> faces) {
+    static double computeAnisotropy(List<float[]> vertices, List<int[]> faces) {
         double sumSquared = 0;
         int valid = 0;
 
@@ -124,7 +147,7 @@ public final class FeatureCalculator {
         return valid == 0 ? 0.0 : Math.sqrt(sumSquared / valid);
     }
 
-    private static double computeCurvature(List<float[]> vertices, List<int[]> faces) {
+    static double computeCurvature(List<float[]> vertices, List<int[]> faces) {
         if (faces.size() < 2) {
             return 0.0;
         }
@@ -144,27 +167,27 @@ public final class FeatureCalculator {
         return count == 0 ? 0.0 : sum / count;
     }
 
-    private static double computeEulerNumber(int vertices, List<int[]> faces, int edges) {
+    static double computeEulerNumber(int vertices, List<int[]> faces, int edges) {
         return vertices - edges + faces.size();
     }
 
-    private static double computeCompactness(GeometryStats stats) {
+    static double computeCompactness(GeometryStats stats) {
         return stats.faceCount == 0 ? 0.0 : stats.surfaceArea / stats.faceCount;
     }
 
-    private static double computeAspectRatio(BoundingBox box) {
+    static double computeAspectRatio(BoundingBox box) {
         double maxDim = Math.max(box.dx, Math.max(box.dy, box.dz));
         double minDim = Math.min(box.dx, Math.min(box.dy, box.dz));
         minDim = Math.max(minDim, 1e-6);
         return maxDim / minDim;
     }
 
-    private static double computeConvexity(double volume, BoundingBox box) {
+    static double computeConvexity(double volume, BoundingBox box) {
         double bboxVolume = Math.max(box.dx * box.dy * box.dz, 1e-6);
         return volume <= 0 ? 0.0 : volume / bboxVolume;
     }
 
-    private static double computeLocalDensity(List<float[]> vertices, BoundingBox box) {
+    static double computeLocalDensity(List<float[]> vertices, BoundingBox box) {
         int divisions = 10;
         double cellSizeX = Math.max(box.dx / divisions, 1e-6);
         double cellSizeY = Math.max(box.dy / divisions, 1e-6);
@@ -230,7 +253,7 @@ public final class FeatureCalculator {
         return new float[]{nx / length, ny / length, nz / length};
     }
 
-    private record BoundingBox(double minX, double maxX, double minY, double maxY, double minZ, double maxZ,
+    record BoundingBox(double minX, double maxX, double minY, double maxY, double minZ, double maxZ,
                                double dx, double dy, double dz) {
 
         static BoundingBox from(List<float[]> vertices) {
@@ -258,7 +281,7 @@ public final class FeatureCalculator {
         }
     }
 
-    private record GeometryStats(double surfaceArea, double volume, int edgeCount, int faceCount) {
+    record GeometryStats(double surfaceArea, double volume, int edgeCount, int faceCount) {
 
         static GeometryStats from(List<float[]> vertices, List<int[]> faces) {
             double surfaceArea = 0;
@@ -0,0 +1,70 @@
+package org.example.analysis;
+
+import org.example.model.ModelFeatures;
+import org.example.model.ObjModel;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * How far each feature moves when it is measured on a decimated mesh instead of the full one.
+ *
+ * Shape features such as sphericity, convexity and the bounding-box ratios barely move under moderate
+ * decimation; features that count vertices or faces, such as the Euler number, compactness and local
+ * density, scale with the tessellation and drift by design.
+ */
+public record FeatureDrift(FeatureCalculator.Result full, FeatureCalculator.Result decimated,
+                           MeshDecimator.Result decimation, long fullNanos, long decimatedNanos) {
+
+    public static final List<String> FEATURES = List.of("Linearity", "Planarity", "Sphericity", "Anisotropy",
+            "Curvature", "EulerNumber", "Compactness", "AspectRatio", "Convexity", "LocalDensity");
+
+    /**
+     * Measures the model at full resolution and decimated to {@code target}.
+     */
+    public static FeatureDrift measure(ObjModel model, MeshDecimator.Target target) {
+        long start = System.nanoTime();
+        FeatureCalculator.Result full = FeatureCalculator.calculate(model);
+        long fullNanos = System.nanoTime() - start;
+        MeshDecimator.Result decimation = MeshDecimator.decimate(model, target);
+        start = System.nanoTime();
+        FeatureCalculator.Result decimated = FeatureCalculator.calculate(decimation.model());
+        return new FeatureDrift(full, decimated, decimation, fullNanos, System.nanoTime() - start);
+    }
+
+    /**
+     * Relative drift per feature, in {@link #FEATURES} order: |decimated - full| / |full|, or the absolute
+     * difference where the full value is zero.
+     */
+    public double[] relative() {
+        double[] f = values(full.features());
+        double[] d = values(decimated.features());
+        double[] drift = new double[f.length];
+        for (int i = 0; i < f.length; i++) {
+            double difference = Math.abs(d[i] - f[i]);
+            drift[i] = Math.abs(f[i]) > 1e-12 ? difference / Math.abs(f[i]) : difference;
+        }
+        return drift;
+    }
+
+    public static double[] values(ModelFeatures f) {
+        return new double[]{f.getLinearity(), f.getPlanarity(), f.getSphericity(), f.getAnisotropy(),
+                f.getCurvature(), f.getEulerNumber(), f.getCompactness(), f.getAspectRatio(), f.getConvexity(),
+                f.getLocalDensity()};
+    }
+
+    public String format() {
+        double[] f = values(full.features());
+        double[] d = values(decimated.features());
+        double[] drift = relative();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "Decimated %,d -> %,d faces in %.1f ms (max error %.3g); features %.1f ms -> %.1f ms%n",
+                decimation.inputFaces(), decimation.outputFaces(), decimation.nanos() / 1e6, decimation.error(),
+                fullNanos / 1e6, decimatedNanos / 1e6));
+        sb.append(String.format(Locale.US, "%-14s %14s %14s %9s%n", "feature", "full", "decimated", "drift"));
+        for (int i = 0; i < f.length; i++) {
+            sb.append(String.format(Locale.US, "%-14s %14.6g %14.6g %8.2f%%%n", FEATURES.get(i), f[i], d[i], drift[i] * 100));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,264 @@
+package org.example.analysis;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Decides, before an OBJ is read, whether its analysis fits in the heap. The vertex and face counts are
+ * estimated from the file size and a sample of its lines, turned into the heap each way of computing the
+ * features would need, and compared with what the heap has left:
+ * <ul>
+ *     <li>{@link Mode#IN_MEMORY}: build the {@link org.example.model.ObjModel} and run
+ *     {@link FeatureCalculator}, the only mode that can show a preview;</li>
+ *     <li>{@link Mode#STREAMING}: {@link StreamingFeatureCalculator} on the heap, some six times less;</li>
+ *     <li>{@link Mode#OFF_HEAP}: the same with its data in memory-mapped temporary files, for meshes even that
+ *     does not fit.</li>
+ * </ul>
+ * The system property {@code draxel.analysis.mode} ({@code auto}, {@code in-memory}, {@code streaming} or
+ * {@code off-heap}) overrides the choice.
+ */
+public final class MemoryBudget {
+
+    // share of the free heap an analysis may plan to use; the rest is headroom for the collector and the UI
+    private static final double HEAP_SHARE = 0.75;
+
+    // evenly spaced windows read to estimate the counts; files up to their total size are read whole
+    private static final int SAMPLES = 16;
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    private MemoryBudget() {
+    }
+
+    public enum Mode {
+        IN_MEMORY("in-memory"),
+        STREAMING("streaming"),
+        OFF_HEAP("off-heap");
+
+        private final String key;
+
+        Mode(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        /**
+         * Returns the mode for a key, or null for {@code auto}.
+         */
+        public static Mode of(String key) {
+            if (key.equalsIgnoreCase("auto")) {
+                return null;
+            }
+            for (Mode mode : values()) {
+                if (mode.key.equalsIgnoreCase(key)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Unknown analysis mode: " + key + " (expected auto, in-memory, streaming or off-heap)");
+        }
+    }
+
+    /**
+     * Estimated size of a mesh and of its analysis in each mode.
+     *
+     * @param cornersPerFace average number of vertices per face
+     */
+    public record Estimate(long fileBytes, long vertices, long faces, double cornersPerFace) {
+
+        /**
+         * Edges of a closed mesh, where every edge is shared by two faces; open meshes have up to twice as
+         * many.
+         */
+        public long edges() {
+            return (long) Math.ceil(faces * cornersPerFace / 2);
+        }
+
+        /**
+         * Peak heap of {@link FeatureCalculator} on an {@link org.example.model.ObjModel}: a {@code float[3]}
+         * and a list slot per vertex, an {@code int[]} and a list slot per face, and then a {@code HashSet}
+         * entry, its node and the {@code Edge} record per edge, about 64 bytes each.
+         */
+        public long inMemoryBytes() {
+            long faceArray = (16 + 4 * (long) Math.ceil(cornersPerFace) + 7) / 8 * 8;
+            return vertices * 38 + faces * (faceArray + 6) + edges() * 64;
+        }
+
+        /**
+         * Heap of {@link StreamingFeatureCalculator} with its data on the heap: 12 bytes per vertex and an edge
+         * table at most half full, 8 bytes a slot.
+         */
+        public long streamingBytes() {
+            return vertices * 12 + edgeSlots() * 8;
+        }
+
+        /**
+         * Temporary disk space of {@link StreamingFeatureCalculator} off the heap, where the heap use no longer
+         * depends on the mesh.
+         */
+        public long offHeapBytes() {
+            return streamingBytes();
+        }
+
+        private long edgeSlots() {
+            return Long.highestOneBit(Math.max(edges(), 512) * 2 - 1) << 1;
+        }
+    }
+
+    /**
+     * The chosen mode and the reason, in a sentence for the user.
+     *
+     * @param availableHeap heap not in use when the plan was made
+     * @param fits          false if not even {@link Mode#OFF_HEAP} has room; the analysis would fail
+     */
+    public record Plan(Mode mode, Estimate estimate, long availableHeap, boolean fits, String reason) {
+    }
+
+    /**
+     * Estimates the file and picks the mode for the heap as it is now. Planned again after an
+     * {@link OutOfMemoryError}, which the collector only throws once it reclaimed all it could, this sees the
+     * heap the live objects leave.
+     */
+    public static Plan plan(Path path) throws IOException {
+        Estimate estimate = estimate(path);
+        Mode forced = Mode.of(System.getProperty("draxel.analysis.mode", "auto"));
+        if (forced != null) {
+            return new Plan(forced, estimate, availableHeap(), true, String.format(Locale.US,
+                    "%s, set by draxel.analysis.mode (%s)", forced.key(), describe(estimate)));
+        }
+
+        // no collection first: part of the used heap may be garbage, which only makes the plan cautious;
+        // callers plan again if an in-memory analysis runs out of heap after all
+        long available = availableHeap();
+        long budget = (long) (available * HEAP_SHARE);
+        if (estimate.inMemoryBytes() <= budget) {
+            return new Plan(Mode.IN_MEMORY, estimate, available, true, String.format(Locale.US,
+                    "in-memory, %s needs about %s of %s free heap",
+                    describe(estimate), mib(estimate.inMemoryBytes()), mib(available)));
+        }
+        if (estimate.streamingBytes() <= budget) {
+            return new Plan(Mode.STREAMING, estimate, available, true, String.format(Locale.US,
+                    "streaming without a preview, %s needs about %s in memory but only %s of heap is free; streaming needs %s",
+                    describe(estimate), mib(estimate.inMemoryBytes()), mib(available), mib(estimate.streamingBytes())));
+        }
+        Path temp = Path.of(System.getProperty("java.io.tmpdir"));
+        long disk = Files.getFileStore(temp).getUsableSpace();
+        boolean fits = estimate.offHeapBytes() <= disk;
+        return new Plan(Mode.OFF_HEAP, estimate, available, fits, String.format(Locale.US,
+                "off-heap without a preview, %s needs about %s even streaming but only %s of heap is free; "
+                        + "using %s of temporary files in %s, where %s is free",
+                describe(estimate), mib(estimate.streamingBytes()), mib(available),
+                mib(estimate.offHeapBytes()), temp, mib(disk)));
+    }
+
+    /**
+     * Estimates the counts from a sample of evenly spaced windows of the file, skipping the partial lines at
+     * their ends. Faces are assumed to be triangles if the sample has no face lines.
+     */
+    public static Estimate estimate(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int windows = size <= (long) SAMPLES * SAMPLE_BYTES ? 1 : SAMPLES;
+            int windowBytes = windows == 1 ? (int) size : SAMPLE_BYTES;
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(windowBytes, 1));
+
+            LineSample sample = new LineSample();
+            for (int w = 0; w < windows; w++) {
+                long position = windows == 1 ? 0 : (size - windowBytes) * w / (windows - 1);
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+                    // fill the window
+                }
+                sample.scan(buffer.array(), buffer.position(), position == 0, position + buffer.position() == size);
+            }
+
+            if (sample.bytes == 0) {
+                return new Estimate(size, 0, 0, 3);
+            }
+            double scale = (double) size / sample.bytes;
+            double corners = sample.faces == 0 ? 3 : (double) sample.corners / sample.faces;
+            return new Estimate(size, Math.round(sample.vertices * scale), Math.round(sample.faces * scale), corners);
+        }
+    }
+
+    private static final class LineSample {
+
+        long bytes;
+        long vertices;
+        long faces;
+        long corners;
+
+        // counts the complete lines of a window: the first line is partial unless the window starts the
+        // file, and the last one unless it ends it
+        void scan(byte[] data, int length, boolean fileStart, boolean fileEnd) {
+            int start = 0;
+            if (!fileStart) {
+                while (start < length && data[start++] != '\n') {
+                    // skip the partial line
+                }
+            }
+            int end = length;
+            if (!fileEnd) {
+                while (end > start && data[end - 1] != '\n') {
+                    end--;
+                }
+            }
+            bytes += end - start;
+
+            int i = start;
+            while (i < end) {
+                int lineEnd = i;
+                while (lineEnd < end && data[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                line(data, i, lineEnd);
+                i = lineEnd + 1;
+            }
+        }
+
+        private void line(byte[] data, int from, int to) {
+            while (from < to && (data[from] == ' ' || data[from] == '\t')) {
+                from++;
+            }
+            if (to - from < 2 || (data[from + 1] != ' ' && data[from + 1] != '\t')) {
+                return;
+            }
+            if (data[from] == 'v') {
+                vertices++;
+            } else if (data[from] == 'f') {
+                faces++;
+                boolean token = false;
+                for (int i = from + 2; i < to; i++) {
+                    boolean space = data[i] <= ' ';
+                    if (!space && !token) {
+                        corners++;
+                    }
+                    token = !space;
+                }
+            }
+        }
+    }
+
+    private static long availableHeap() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long max = heap.getMax() >= 0 ? heap.getMax() : Runtime.getRuntime().maxMemory();
+        return Math.max(0, max - heap.getUsed());
+    }
+
+    private static String describe(Estimate estimate) {
+        return String.format(Locale.US, "%s with about %,d vertices and %,d faces",
+                mib(estimate.fileBytes()), estimate.vertices(), estimate.faces());
+    }
+
+    private static String mib(long bytes) {
+        return String.format(Locale.US, "%,d MiB", (bytes + (1 << 20) - 1) >> 20);
+    }
+}
@@ -0,0 +1,586 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Quadric error metric simplification (Garland and Heckbert): repeatedly collapses the edge whose merged
+ * vertex moves least from the planes of the original faces around it.
+ *
+ * Everything lives in primitive arrays. Triangles are an {@code int[]} of corners and each vertex keeps its
+ * triangles as a linked list threaded through a parallel {@code int[]} of next corners, so a collapse
+ * splices lists instead of allocating. Candidate collapses sit in a binary heap of packed entries, two
+ * {@code long}s side by side in one array: the cost as float bits above a stamp, which orders them, and both
+ * vertex ids. Entries whose vertices have changed since they were pushed are skipped
+ * when they surface rather than searched for and removed. Open boundaries are held in place by steep
+ * planes along them, collapses that would fold a triangle over or pinch the surface are refused, and
+ * polygons are fan-triangulated first, so the result is all triangles.
+ */
+public final class MeshDecimator {
+
+    // weight of the planes that keep open boundaries from shrinking, relative to a face plane
+    private static final double BOUNDARY_WEIGHT = 100;
+
+    private MeshDecimator() {
+    }
+
+    /**
+     * When to stop: at {@code faces} triangles, or at {@code ratio} of the input's when {@code faces} is 0,
+     * or before the first collapse whose error exceeds {@code maxError}, as a fraction of the bounding-box
+     * diagonal; whichever comes first.
+     */
+    public record Target(int faces, double ratio, double maxError) {
+
+        public static Target faces(int faces) {
+            return new Target(faces, 0, Double.POSITIVE_INFINITY);
+        }
+
+        public static Target ratio(double ratio) {
+            return new Target(0, ratio, Double.POSITIVE_INFINITY);
+        }
+
+        public static Target maxError(double maxError) {
+            return new Target(0, 0, maxError);
+        }
+
+        public Target withMaxError(double maxError) {
+            return new Target(faces, ratio, maxError);
+        }
+
+        int faceLimit(int triangles) {
+            if (faces > 0) {
+                return faces;
+            }
+            return ratio > 0 ? (int) Math.ceil(triangles * ratio) : 0;
+        }
+
+        @Override
+        public String toString() {
+            String limit = faces > 0 ? faces + " faces" : ratio > 0 ? Math.round(ratio * 100) + "% of faces" : "";
+            if (Double.isInfinite(maxError)) {
+                return limit;
+            }
+            return (limit.isEmpty() ? "" : limit + ", ") + "error <= " + maxError + " of the diagonal";
+        }
+    }
+
+    /**
+     * The simplified mesh; {@code error} is the largest collapse error made, in model units.
+     */
+    public record Result(ObjModel model, int inputFaces, int outputFaces, int collapses, double error, long nanos) {
+    }
+
+    public static Result decimate(ObjModel model, Target target) {
+        long start = System.nanoTime();
+        Collapser collapser = new Collapser(model);
+        int limit = target.faceLimit(collapser.liveFaces);
+        double maxError = target.maxError() * collapser.diagonal();
+        int inputFaces = collapser.liveFaces;
+        collapser.run(limit, maxError * maxError);
+        return new Result(collapser.toModel(), inputFaces, collapser.liveFaces, collapser.collapses,
+                Math.sqrt(collapser.worstCost), System.nanoTime() - start);
+    }
+
+    private static final class Collapser {
+
+        private final double[] pos;
+        private final double[] quadric; // 10 per vertex: aa ab ac ad bb bc bd cc cd dd
+        private final int[] corners;    // 3 per triangle
+        private final boolean[] deadFace;
+        private final int[] head;       // first corner of each vertex, -1 if none
+        private final int[] next;       // next corner of the same vertex
+        private final boolean[] removed;
+        private final int[] version;
+        private final int[] mark;
+        private int markStamp;
+        private final double[] scratch = new double[10];
+        private final double[] target = new double[3];
+
+        // entry i is heap[2i], the float bits of its cost over its stamp, and heap[2i + 1], its two vertices;
+        // non-negative float bits order like the floats, and interleaving keeps an entry in one cache line
+        private long[] heap = new long[2048];
+        private int heapSize;
+
+        int liveFaces;
+        int collapses;
+        double worstCost;
+
+        Collapser(ObjModel model) {
+            List<float[]> vertices = model.getVertices();
+            int n = vertices.size();
+            pos = new double[n * 3];
+            for (int v = 0; v < n; v++) {
+                float[] p = vertices.get(v);
+                pos[v * 3] = p[0];
+                pos[v * 3 + 1] = p[1];
+                pos[v * 3 + 2] = p[2];
+            }
+            int triangles = 0;
+            for (int[] face : model.getFaces()) {
+                triangles += Math.max(0, face.length - 2);
+            }
+            corners = new int[triangles * 3];
+            int c = 0;
+            for (int[] face : model.getFaces()) {
+                for (int k = 1; k + 1 < face.length; k++) {
+                    corners[c++] = face[0];
+                    corners[c++] = face[k];
+                    corners[c++] = face[k + 1];
+                }
+            }
+            deadFace = new boolean[triangles];
+            head = new int[n];
+            Arrays.fill(head, -1);
+            next = new int[corners.length];
+            removed = new boolean[n];
+            version = new int[n];
+            mark = new int[n];
+            quadric = new double[n * 10];
+
+            for (int t = 0; t < triangles; t++) {
+                int a = corners[t * 3], b = corners[t * 3 + 1], cc = corners[t * 3 + 2];
+                if (a == b || b == cc || a == cc) {
+                    deadFace[t] = true;
+                    continue;
+                }
+                liveFaces++;
+                for (int k = 0; k < 3; k++) {
+                    int corner = t * 3 + k;
+                    next[corner] = head[corners[corner]];
+                    head[corners[corner]] = corner;
+                }
+                double[] plane = plane(a, b, cc);
+                if (plane != null) {
+                    addPlane(a, plane, 1);
+                    addPlane(b, plane, 1);
+                    addPlane(cc, plane, 1);
+                }
+            }
+            for (int t = 0; t < triangles; t++) {
+                if (deadFace[t]) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    int a = corners[t * 3 + k];
+                    int b = corners[t * 3 + (k + 1) % 3];
+                    int first = firstSharedFace(a, b);
+                    if (first != t) {
+                        continue; // each edge once, from its first triangle
+                    }
+                    if (sharedFaces(a, b) == 1) {
+                        addBoundaryPlanes(t, a, b);
+                    }
+                }
+            }
+            for (int t = 0; t < triangles; t++) {
+                if (deadFace[t]) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    int a = corners[t * 3 + k];
+                    int b = corners[t * 3 + (k + 1) % 3];
+                    if (firstSharedFace(a, b) == t) {
+                        append(a, b);
+                    }
+                }
+            }
+            for (int i = heapSize / 2 - 1; i >= 0; i--) {
+                siftDown(i, heap[i * 2], heap[i * 2 + 1], heapSize);
+            }
+        }
+
+        double diagonal() {
+            double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+            double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+            for (int i = 0; i < pos.length; i++) {
+                min[i % 3] = Math.min(min[i % 3], pos[i]);
+                max[i % 3] = Math.max(max[i % 3], pos[i]);
+            }
+            double dx = max[0] - min[0], dy = max[1] - min[1], dz = max[2] - min[2];
+            return pos.length == 0 ? 0 : Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+
+        void run(int faceLimit, double maxCost) {
+            while (liveFaces > faceLimit && heapSize > 0) {
+                double cost = Float.intBitsToFloat((int) (heap[0] >>> 32));
+                int stamp = (int) heap[0];
+                long edge = heap[1];
+                pop();
+                int a = (int) (edge >>> 32);
+                int b = (int) edge;
+                if (removed[a] || removed[b] || stamp != version[a] + version[b]) {
+                    continue; // stale: a vertex has moved since this entry was pushed
+                }
+                if (cost > maxCost) {
+                    break;
+                }
+                optimalPosition(a, b);
+                if (pinches(a, b) || folds(a, b) || folds(b, a)) {
+                    continue;
+                }
+                collapse(a, b);
+                worstCost = Math.max(worstCost, cost);
+                collapses++;
+            }
+        }
+
+        // ----------------------- collapse -----------------------
+
+        private void collapse(int a, int b) {
+            pos[a * 3] = target[0];
+            pos[a * 3 + 1] = target[1];
+            pos[a * 3 + 2] = target[2];
+            for (int i = 0; i < 10; i++) {
+                quadric[a * 10 + i] += quadric[b * 10 + i];
+            }
+            removed[b] = true;
+            version[a]++;
+            version[b]++;
+
+            // b's triangles either contain a, and vanish, or move to a
+            for (int c = head[b]; c != -1; c = next[c]) {
+                int t = c / 3;
+                if (deadFace[t]) {
+                    continue;
+                }
+                if (corners[t * 3] == a || corners[t * 3 + 1] == a || corners[t * 3 + 2] == a) {
+                    deadFace[t] = true;
+                    liveFaces--;
+                } else {
+                    corners[c] = a;
+                }
+            }
+            // b's list now holds a's corners: append it to a's, then drop the dead triangles
+            int tail = head[a];
+            if (tail == -1) {
+                head[a] = head[b];
+            } else {
+                while (next[tail] != -1) {
+                    tail = next[tail];
+                }
+                next[tail] = head[b];
+            }
+            head[b] = -1;
+            compact(a);
+
+            markStamp++;
+            mark[a] = markStamp;
+            for (int c = head[a]; c != -1; c = next[c]) {
+                int t = c / 3;
+                for (int k = 0; k < 3; k++) {
+                    int v = corners[t * 3 + k];
+                    if (mark[v] != markStamp) {
+                        mark[v] = markStamp;
+                        push(a, v);
+                    }
+                }
+            }
+        }
+
+        // unlinks the corners of dead triangles, which neighbouring collapses leave behind
+        private void compact(int v) {
+            int previous = -1;
+            for (int c = head[v]; c != -1; c = next[c]) {
+                if (deadFace[c / 3]) {
+                    if (previous == -1) {
+                        head[v] = next[c];
+                    } else {
+                        next[previous] = next[c];
+                    }
+                } else {
+                    previous = c;
+                }
+            }
+        }
+
+        // more than the one or two triangles of the edge share both ends: collapsing would pinch the surface
+        private boolean pinches(int a, int b) {
+            compact(a);
+            compact(b);
+            markStamp++;
+            int edgeFaces = 0;
+            for (int c = head[a]; c != -1; c = next[c]) {
+                int t = c / 3;
+                if (deadFace[t]) {
+                    continue;
+                }
+                boolean hasB = false;
+                for (int k = 0; k < 3; k++) {
+                    int v = corners[t * 3 + k];
+                    mark[v] = markStamp;
+                    hasB |= v == b;
+                }
+                if (hasB) {
+                    edgeFaces++;
+                }
+            }
+            int shared = 0;
+            int sharedStamp = ++markStamp;
+            for (int c = head[b]; c != -1; c = next[c]) {
+                int t = c / 3;
+                if (deadFace[t]) {
+                    continue;
+                }
+                for (int k = 0; k < 3; k++) {
+                    int v = corners[t * 3 + k];
+                    if (v != a && v != b && mark[v] == sharedStamp - 1) {
+                        mark[v] = sharedStamp;
+                        shared++;
+                    }
+                }
+            }
+            return shared > edgeFaces;
+        }
+
+        // moving v to the target would turn one of its triangles that survive the collapse upside down
+        private boolean folds(int v, int other) {
+            for (int c = head[v]; c != -1; c = next[c]) {
+                int t = c / 3;
+                if (deadFace[t]) {
+                    continue;
+                }
+                int p = corners[t * 3], q = corners[t * 3 + 1], r = corners[t * 3 + 2];
+                if (p == other || q == other || r == other) {
+                    continue;
+                }
+                int k = c - t * 3;
+                int u = corners[t * 3 + (k + 1) % 3];
+                int w = corners[t * 3 + (k + 2) % 3];
+                double ux = pos[u * 3] - pos[v * 3], uy = pos[u * 3 + 1] - pos[v * 3 + 1], uz = pos[u * 3 + 2] - pos[v * 3 + 2];
+                double wx = pos[w * 3] - pos[v * 3], wy = pos[w * 3 + 1] - pos[v * 3 + 1], wz = pos[w * 3 + 2] - pos[v * 3 + 2];
+                double nx = uy * wz - uz * wy, ny = uz * wx - ux * wz, nz = ux * wy - uy * wx;
+                ux = pos[u * 3] - target[0];
+                uy = pos[u * 3 + 1] - target[1];
+                uz = pos[u * 3 + 2] - target[2];
+                wx = pos[w * 3] - target[0];
+                wy = pos[w * 3 + 1] - target[1];
+                wz = pos[w * 3 + 2] - target[2];
+                double mx = uy * wz - uz * wy, my = uz * wx - ux * wz, mz = ux * wy - uy * wx;
+                if (nx * mx + ny * my + nz * mz <= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // ----------------------- quadrics -----------------------
+
+        // unit normal and offset of the triangle's plane, or null if it has no area
+        private double[] plane(int a, int b, int c) {
+            double ux = pos[b * 3] - pos[a * 3], uy = pos[b * 3 + 1] - pos[a * 3 + 1], uz = pos[b * 3 + 2] - pos[a * 3 + 2];
+            double vx = pos[c * 3] - pos[a * 3], vy = pos[c * 3 + 1] - pos[a * 3 + 1], vz = pos[c * 3 + 2] - pos[a * 3 + 2];
+            double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length < 1e-20) {
+                return null;
+            }
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            return new double[]{nx, ny, nz, -(nx * pos[a * 3] + ny * pos[a * 3 + 1] + nz * pos[a * 3 + 2])};
+        }
+
+        private void addPlane(int v, double[] p, double weight) {
+            int q = v * 10;
+            quadric[q] += weight * p[0] * p[0];
+            quadric[q + 1] += weight * p[0] * p[1];
+            quadric[q + 2] += weight * p[0] * p[2];
+            quadric[q + 3] += weight * p[0] * p[3];
+            quadric[q + 4] += weight * p[1] * p[1];
+            quadric[q + 5] += weight * p[1] * p[2];
+            quadric[q + 6] += weight * p[1] * p[3];
+            quadric[q + 7] += weight * p[2] * p[2];
+            quadric[q + 8] += weight * p[2] * p[3];
+            quadric[q + 9] += weight * p[3] * p[3];
+        }
+
+        // a plane through the open edge a-b, perpendicular to its only triangle, added to both ends
+        private void addBoundaryPlanes(int t, int a, int b) {
+            double[] face = plane(corners[t * 3], corners[t * 3 + 1], corners[t * 3 + 2]);
+            if (face == null) {
+                return;
+            }
+            double ex = pos[b * 3] - pos[a * 3], ey = pos[b * 3 + 1] - pos[a * 3 + 1], ez = pos[b * 3 + 2] - pos[a * 3 + 2];
+            double nx = ey * face[2] - ez * face[1], ny = ez * face[0] - ex * face[2], nz = ex * face[1] - ey * face[0];
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length < 1e-20) {
+                return;
+            }
+            nx /= length;
+            ny /= length;
+            nz /= length;
+            double[] p = {nx, ny, nz, -(nx * pos[a * 3] + ny * pos[a * 3 + 1] + nz * pos[a * 3 + 2])};
+            addPlane(a, p, BOUNDARY_WEIGHT);
+            addPlane(b, p, BOUNDARY_WEIGHT);
+        }
+
+        private int firstSharedFace(int a, int b) {
+            int first = Integer.MAX_VALUE;
+            for (int c = head[a]; c != -1; c = next[c]) {
+                int t = c / 3;
+                if (!deadFace[t] && t < first
+                        && (corners[t * 3] == b || corners[t * 3 + 1] == b || corners[t * 3 + 2] == b)) {
+                    first = t;
+                }
+            }
+            return first;
+        }
+
+        private int sharedFaces(int a, int b) {
+            int count = 0;
+            for (int c = head[a]; c != -1; c = next[c]) {
+                int t = c / 3;
+                if (!deadFace[t] && (corners[t * 3] == b || corners[t * 3 + 1] == b || corners[t * 3 + 2] == b)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        // the point minimising the summed quadric of a and b into target; returns its error
+        private double optimalPosition(int a, int b) {
+            double[] q = scratch;
+            for (int i = 0; i < 10; i++) {
+                q[i] = quadric[a * 10 + i] + quadric[b * 10 + i];
+            }
+            // solve [aa ab ac; ab bb bc; ac bc cc] x = -[ad bd cd]
+            double m00 = q[0], m01 = q[1], m02 = q[2], m11 = q[4], m12 = q[5], m22 = q[7];
+            double c00 = m11 * m22 - m12 * m12;
+            double c01 = m02 * m12 - m01 * m22;
+            double c02 = m01 * m12 - m02 * m11;
+            double det = m00 * c00 + m01 * c01 + m02 * c02;
+            double ex = pos[b * 3] - pos[a * 3], ey = pos[b * 3 + 1] - pos[a * 3 + 1], ez = pos[b * 3 + 2] - pos[a * 3 + 2];
+            double edgeLength = Math.sqrt(ex * ex + ey * ey + ez * ez);
+            if (Math.abs(det) > 1e-12) {
+                double c11 = m00 * m22 - m02 * m02;
+                double c12 = m01 * m02 - m00 * m12;
+                double c22 = m00 * m11 - m01 * m01;
+                double rx = -q[3], ry = -q[6], rz = -q[8];
+                double x = (c00 * rx + c01 * ry + c02 * rz) / det;
+                double y = (c01 * rx + c11 * ry + c12 * rz) / det;
+                double z = (c02 * rx + c12 * ry + c22 * rz) / det;
+                // a nearly singular system can put the optimum far away; only trust it near the edge
+                double mx = x - (pos[a * 3] + pos[b * 3]) / 2;
+                double my = y - (pos[a * 3 + 1] + pos[b * 3 + 1]) / 2;
+                double mz = z - (pos[a * 3 + 2] + pos[b * 3 + 2]) / 2;
+                if (mx * mx + my * my + mz * mz <= 4 * edgeLength * edgeLength) {
+                    target[0] = x;
+                    target[1] = y;
+                    target[2] = z;
+                    return error(q, x, y, z);
+                }
+            }
+            // otherwise the best of the two ends and the midpoint
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < 3; i++) {
+                double s = i * 0.5;
+                double x = pos[a * 3] + s * ex, y = pos[a * 3 + 1] + s * ey, z = pos[a * 3 + 2] + s * ez;
+                double e = error(q, x, y, z);
+                if (e < best) {
+                    best = e;
+                    target[0] = x;
+                    target[1] = y;
+                    target[2] = z;
+                }
+            }
+            return best;
+        }
+
+        private static double error(double[] q, double x, double y, double z) {
+            double e = q[0] * x * x + 2 * q[1] * x * y + 2 * q[2] * x * z + 2 * q[3] * x
+                    + q[4] * y * y + 2 * q[5] * y * z + 2 * q[6] * y
+                    + q[7] * z * z + 2 * q[8] * z + q[9];
+            return Math.max(0, e);
+        }
+
+        // ----------------------- heap -----------------------
+
+        private void push(int a, int b) {
+            if (a == b) {
+                return;
+            }
+            int i = append(a, b);
+            long key = heap[i * 2];
+            long edge = heap[i * 2 + 1];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent * 2] <= key) {
+                    break;
+                }
+                heap[i * 2] = heap[parent * 2];
+                heap[i * 2 + 1] = heap[parent * 2 + 1];
+                i = parent;
+            }
+            heap[i * 2] = key;
+            heap[i * 2 + 1] = edge;
+        }
+
+        // stores the collapse at the end of the heap without ordering it; returns its index
+        private int append(int a, int b) {
+            float cost = (float) optimalPosition(a, b);
+            if (heapSize * 2 == heap.length) {
+                heap = Arrays.copyOf(heap, heap.length * 2);
+            }
+            int i = heapSize++;
+            heap[i * 2] = ((long) Float.floatToRawIntBits(cost) << 32) | ((version[a] + version[b]) & 0xFFFFFFFFL);
+            heap[i * 2 + 1] = ((long) a << 32) | (b & 0xFFFFFFFFL);
+            return i;
+        }
+
+        private void pop() {
+            int last = --heapSize;
+            if (last > 0) {
+                siftDown(0, heap[last * 2], heap[last * 2 + 1], last);
+            }
+        }
+
+        private void siftDown(int i, long key, long edge, int last) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= last) {
+                    break;
+                }
+                if (child + 1 < last && heap[(child + 1) * 2] < heap[child * 2]) {
+                    child++;
+                }
+                if (heap[child * 2] >= key) {
+                    break;
+                }
+                heap[i * 2] = heap[child * 2];
+                heap[i * 2 + 1] = heap[child * 2 + 1];
+                i = child;
+            }
+            heap[i * 2] = key;
+            heap[i * 2 + 1] = edge;
+        }
+
+        // ----------------------- output -----------------------
+
+        ObjModel toModel() {
+            int n = removed.length;
+            int[] remap = new int[n];
+            Arrays.fill(remap, -1);
+            List<float[]> vertices = new ArrayList<>();
+            List<int[]> faces = new ArrayList<>(liveFaces);
+            for (int t = 0; t < deadFace.length; t++) {
+                if (deadFace[t]) {
+                    continue;
+                }
+                int[] face = new int[3];
+                for (int k = 0; k < 3; k++) {
+                    int v = corners[t * 3 + k];
+                    if (remap[v] < 0) {
+                        remap[v] = vertices.size();
+                        vertices.add(new float[]{(float) pos[v * 3], (float) pos[v * 3 + 1], (float) pos[v * 3 + 2]});
+                    }
+                    face[k] = remap[v];
+                }
+                faces.add(face);
+            }
+            return new ObjModel(vertices, faces);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.example.analysis;
+
+import java.io.IOException;
+
+/**
+ * Receives a triangle mesh one element at a time: every vertex first, then the faces, which refer to the
+ * vertices by their 0-based position in that order.
+ */
+public interface MeshSink {
+
+    void vertex(float x, float y, float z) throws IOException;
+
+    void face(int a, int b, int c) throws IOException;
+}
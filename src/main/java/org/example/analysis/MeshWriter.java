@@ -0,0 +1,241 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Writes triangle meshes as OBJ or binary STL, picked by the file extension, fast enough for meshes of tens
+ * of millions of faces: text is formatted straight into a byte buffer and written through a file channel.
+ *
+ * A writer is a {@link MeshSink}, so generated meshes stream through it without an {@link ObjModel}; STL
+ * keeps the vertex positions, which every triangle repeats, and fills in the triangle count on close.
+ * OBJ coordinates keep seven significant digits, as many as a float holds.
+ */
+public abstract class MeshWriter implements MeshSink, Closeable {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long[] POWERS = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000,
+            100_000_000, 1_000_000_000};
+
+    final FileChannel channel;
+    final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    private MeshWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public static MeshWriter open(Path path) throws IOException {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".obj")) {
+            return new Obj(path);
+        }
+        if (name.endsWith(".stl")) {
+            return new Stl(path);
+        }
+        throw new IllegalArgumentException("Expected an .obj or .stl file: " + path);
+    }
+
+    /**
+     * Writes an in-memory model; polygons are fan-triangulated, as {@link FeatureCalculator} reads them.
+     */
+    public static void write(ObjModel model, Path path) throws IOException {
+        try (MeshWriter writer = open(path)) {
+            for (float[] v : model.getVertices()) {
+                writer.vertex(v[0], v[1], v[2]);
+            }
+            for (int[] face : model.getFaces()) {
+                for (int i = 1; i < face.length - 1; i++) {
+                    writer.face(face[0], face[i], face[i + 1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams a generated mesh to the file, holding at most its vertex positions.
+     */
+    public static void write(SyntheticMesh.Shape shape, int faces, long seed, Path path) throws IOException {
+        try (MeshWriter writer = open(path)) {
+            SyntheticMesh.emit(shape, faces, seed, writer);
+        }
+    }
+
+    void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static final class Obj extends MeshWriter {
+
+        Obj(Path path) throws IOException {
+            super(path);
+            ascii("# written by Draxel\n");
+        }
+
+        @Override
+        public void vertex(float x, float y, float z) throws IOException {
+            ensure(128);
+            buffer.put((byte) 'v');
+            coordinate(x);
+            coordinate(y);
+            coordinate(z);
+            buffer.put((byte) '\n');
+        }
+
+        @Override
+        public void face(int a, int b, int c) throws IOException {
+            ensure(40);
+            buffer.put((byte) 'f');
+            index(a + 1L);
+            index(b + 1L);
+            index(c + 1L);
+            buffer.put((byte) '\n');
+        }
+
+        private void ascii(String text) throws IOException {
+            byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void index(long value) {
+            buffer.put((byte) ' ');
+            digits(value, 0);
+        }
+
+        // plain decimals with seven significant digits where that is exact enough, Float.toString elsewhere
+        private void coordinate(float value) {
+            buffer.put((byte) ' ');
+            double magnitude = Math.abs((double) value);
+            if (value == 0) {
+                buffer.put((byte) '0');
+                return;
+            }
+            if (magnitude < 1e-3 || magnitude >= 1e7 || !Float.isFinite(value)) {
+                buffer.put(Float.toString(value).getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            int decimals = Math.max(0, Math.min(9, 6 - (int) Math.floor(Math.log10(magnitude))));
+            long scaled = Math.round(magnitude * POWERS[decimals]);
+            if (value < 0) {
+                buffer.put((byte) '-');
+            }
+            digits(scaled / POWERS[decimals], 0);
+            if (decimals > 0) {
+                buffer.put((byte) '.');
+                digits(scaled % POWERS[decimals], decimals);
+            }
+        }
+
+        // the number's digits, zero-padded on the left to at least width
+        private void digits(long value, int width) {
+            int start = buffer.position();
+            do {
+                buffer.put((byte) ('0' + value % 10));
+                value /= 10;
+            } while (value > 0);
+            while (buffer.position() - start < width) {
+                buffer.put((byte) '0');
+            }
+            for (int i = start, j = buffer.position() - 1; i < j; i++, j--) {
+                byte t = buffer.get(i);
+                buffer.put(i, buffer.get(j));
+                buffer.put(j, t);
+            }
+        }
+    }
+
+    private static final class Stl extends MeshWriter {
+
+        private static final int HEADER_BYTES = 80;
+        private static final int TRIANGLE_BYTES = 50;
+
+        private float[] positions = new float[3 * 1024];
+        private int vertexCount;
+        private long triangles;
+
+        Stl(Path path) throws IOException {
+            super(path);
+            byte[] header = Arrays.copyOf("binary STL written by Draxel".getBytes(StandardCharsets.US_ASCII), HEADER_BYTES);
+            buffer.put(header).putInt(0); // the count is filled in by close()
+        }
+
+        @Override
+        public void vertex(float x, float y, float z) {
+            if (3 * vertexCount + 3 > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(3 * vertexCount + 3, positions.length * 2));
+            }
+            positions[3 * vertexCount] = x;
+            positions[3 * vertexCount + 1] = y;
+            positions[3 * vertexCount + 2] = z;
+            vertexCount++;
+        }
+
+        @Override
+        public void face(int a, int b, int c) throws IOException {
+            if (a >= vertexCount || b >= vertexCount || c >= vertexCount) {
+                throw new IllegalArgumentException("Face refers to a vertex not written yet: " + a + " " + b + " " + c);
+            }
+            ensure(TRIANGLE_BYTES);
+            float[] p = positions;
+            double ux = p[3 * b] - p[3 * a], uy = p[3 * b + 1] - p[3 * a + 1], uz = p[3 * b + 2] - p[3 * a + 2];
+            double vx = p[3 * c] - p[3 * a], vy = p[3 * c + 1] - p[3 * a + 1], vz = p[3 * c + 2] - p[3 * a + 2];
+            double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+            double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            double scale = length > 0 ? 1 / length : 0;
+            buffer.putFloat((float) (nx * scale)).putFloat((float) (ny * scale)).putFloat((float) (nz * scale));
+            corner(a);
+            corner(b);
+            corner(c);
+            buffer.putShort((short) 0);
+            triangles++;
+        }
+
+        private void corner(int v) {
+            buffer.putFloat(positions[3 * v]).putFloat(positions[3 * v + 1]).putFloat(positions[3 * v + 2]);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                if (triangles > 0xFFFF_FFFFL) {
+                    throw new IOException("Binary STL holds at most 4294967295 triangles, got " + triangles);
+                }
+                ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt((int) triangles).flip();
+                channel.write(count, HEADER_BYTES);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -1,8 +1,13 @@
 package org.example.analysis;
 
+import org.example.metrics.ParseEvent;
 import org.example.model.ObjModel;
 
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -18,67 +23,165 @@ public final class ObjParser {
     }
 
     public static ObjModel parse(Path path) throws IOException {
-        String content = Files.readString(path, StandardCharsets.UTF_8);
-        if (content == null || content.trim().isEmpty()) {
-            throw new IOException("OBJ file is empty: " + path);
+        try (InputStream in = Files.newInputStream(path)) {
+            ObjModel model = parse(in, path.getFileName().toString());
+            if (model == null) {
+                throw new IOException("OBJ file is empty: " + path);
+            }
+            return model;
         }
-        return parse(content);
+    }
+
+    /**
+     * Parses the stream line by line, without holding its text in memory. Returns null if the stream has
+     * nothing but blank lines. Does not close the stream.
+     */
+    public static ObjModel parse(InputStream in) throws IOException {
+        return parse(in, "stream");
+    }
+
+    private static ObjModel parse(InputStream in, String source) throws IOException {
+        ModelBuilder builder = new ModelBuilder();
+        return scan(in, source, builder) ? new ObjModel(builder.vertexList, builder.faceList) : null;
     }
 
     public static ObjModel parse(String content) {
-        List<float[]> vertices = new ArrayList<>();
-        List<int[]> faces = new ArrayList<>();
+        ParseEvent event = ParseEvent.start("string");
+        ModelBuilder builder = new ModelBuilder();
 
         String[] lines = content.split("\r?\n");
         for (String rawLine : lines) {
-            String line = rawLine.trim();
-            if (line.isEmpty() || line.startsWith("#")) {
-                continue;
-            }
+            parseLine(rawLine, builder);
+        }
 
-            if (line.startsWith("v ")) {
-                String[] parts = line.split("\\s+");
-                if (parts.length >= 4) {
-                    try {
-                        float x = Float.parseFloat(parts[1]);
-                        float y = Float.parseFloat(parts[2]);
-                        float z = Float.parseFloat(parts[3]);
-                        vertices.add(new float[]{x, y, z});
-                    } catch (NumberFormatException ignored) {
-                        // skip malformed vertex
-                    }
+        ObjModel model = new ObjModel(builder.vertexList, builder.faceList);
+        event.finish(content.length(), 0, builder.vertices, builder.faces);
+        return model;
+    }
+
+    /**
+     * Feeds every vertex and face of the stream to the listener in file order, with the same rules as
+     * {@link #parse(InputStream)}. Returns false if the stream has nothing but blank lines.
+     */
+    static boolean scan(InputStream in, String source, Listener listener) throws IOException {
+        ParseEvent event = ParseEvent.start(source);
+        MeteredInputStream metered = new MeteredInputStream(in);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(metered, StandardCharsets.UTF_8));
+        boolean blank = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            blank &= line.isBlank();
+            parseLine(line, listener);
+        }
+        event.finish(metered.bytes, metered.nanos, listener.vertices, listener.faces);
+        return !blank;
+    }
+
+    /**
+     * Receives the parsed elements. Faces hold 0-based indices of vertices already received; the counts are
+     * kept by the parser.
+     */
+    abstract static class Listener {
+
+        int vertices;
+        int faces;
+
+        abstract void vertex(float x, float y, float z);
+
+        abstract void face(int[] indices);
+    }
+
+    private static final class ModelBuilder extends Listener {
+
+        final List<float[]> vertexList = new ArrayList<>();
+        final List<int[]> faceList = new ArrayList<>();
+
+        @Override
+        void vertex(float x, float y, float z) {
+            vertexList.add(new float[]{x, y, z});
+        }
+
+        @Override
+        void face(int[] indices) {
+            faceList.add(indices);
+        }
+    }
+
+    private static void parseLine(String rawLine, Listener listener) {
+        String line = rawLine.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+
+        if (line.startsWith("v ")) {
+            String[] parts = line.split("\\s+");
+            if (parts.length >= 4) {
+                try {
+                    float x = Float.parseFloat(parts[1]);
+                    float y = Float.parseFloat(parts[2]);
+                    float z = Float.parseFloat(parts[3]);
+                    listener.vertex(x, y, z);
+                    listener.vertices++;
+                } catch (NumberFormatException ignored) {
+                    // skip malformed vertex
+                }
+            }
+        } else if (line.startsWith("f ")) {
+            String[] parts = line.split("\\s+");
+            List<Integer> face = new ArrayList<>();
+            for (int i = 1; i < parts.length; i++) {
+                String token = parts[i];
+                String[] elements = token.split("/");
+                if (elements.length == 0) {
+                    continue;
                 }
-            } else if (line.startsWith("f ")) {
-                String[] parts = line.split("\\s+");
-                List<Integer> face = new ArrayList<>();
-                for (int i = 1; i < parts.length; i++) {
-                    String token = parts[i];
-                    String[] elements = token.split("/");
-                    if (elements.length == 0) {
-                        continue;
+                try {
+                    int index = Integer.parseInt(elements[0]);
+                    if (index < 0) {
+                        index = listener.vertices + index;
+                    } else {
+                        index -= 1;
                     }
-                    try {
-                        int index = Integer.parseInt(elements[0]);
-                        if (index < 0) {
-                            index = vertices.size() + index;
-                        } else {
-                            index -= 1;
-                        }
-                        if (index >= 0 && index < vertices.size()) {
-                            face.add(index);
-                        }
-                    } catch (NumberFormatException ignored) {
-                        // skip malformed index
+                    if (index >= 0 && index < listener.vertices) {
+                        face.add(index);
                     }
+                } catch (NumberFormatException ignored) {
+                    // skip malformed index
                 }
-                if (face.size() >= 3) {
-                    int[] faceArray = face.stream().mapToInt(Integer::intValue).toArray();
-                    faces.add(faceArray);
-                }
+            }
+            if (face.size() >= 3) {
+                int[] faceArray = face.stream().mapToInt(Integer::intValue).toArray();
+                listener.face(faceArray);
+                listener.faces++;
             }
         }
+    }
+
+    // counts the bytes read and the time spent waiting for them; the reader asks for 8 KB at a time
+    private static final class MeteredInputStream extends FilterInputStream {
+
+        long bytes;
+        long nanos;
+
+        MeteredInputStream(InputStream in) {
+            super(in);
+        }
 
-        return new ObjModel(vertices, faces);
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == 1 ? one[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            int n = in.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            if (n > 0) {
+                bytes += n;
+            }
+            return n;
+        }
     }
 }
-
@@ -0,0 +1,371 @@
+package org.example.analysis;
+
+import org.example.metrics.FeatureStageEvent;
+import org.example.model.ModelFeatures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Computes the same features as {@link FeatureCalculator} while the OBJ is read, without building an
+ * {@link org.example.model.ObjModel}. Each face is measured as soon as it is parsed and then dropped, so only
+ * the vertex positions (12 bytes each) and the set of edges (8 bytes each, at most half full) are kept. In
+ * {@link MemoryBudget.Mode#OFF_HEAP} mode both live in memory-mapped temporary files and the heap holds
+ * nothing that grows with the mesh.
+ *
+ * The arithmetic repeats {@link FeatureCalculator}'s expression for expression, in the same order, so the
+ * results are identical to the last bit; {@code StreamingFeatureCalculatorTest} compares the two.
+ */
+public final class StreamingFeatureCalculator {
+
+    private StreamingFeatureCalculator() {
+    }
+
+    /**
+     * Reads the stream to its end without closing it.
+     *
+     * @param mode     {@link MemoryBudget.Mode#STREAMING} to keep the mesh data on the heap,
+     *                 {@link MemoryBudget.Mode#OFF_HEAP} to map it from temporary files
+     * @param estimate sizes the storage up front; the counts only need to be roughly right
+     */
+    public static FeatureCalculator.Result calculate(InputStream in, MemoryBudget.Mode mode, MemoryBudget.Estimate estimate)
+            throws IOException {
+        boolean offHeap = mode == MemoryBudget.Mode.OFF_HEAP;
+        try (ChunkedMemory vertices = new ChunkedMemory(3 * Float.BYTES, estimate.vertices(), offHeap);
+             EdgeSet edges = new EdgeSet(estimate.edges(), offHeap)) {
+            FaceAccumulator faces = new FaceAccumulator(vertices, edges);
+            try {
+                ObjParser.scan(in, "stream", faces);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            int v = faces.vertices;
+            int f = faces.faces;
+            if (v == 0 || f == 0) {
+                throw new IllegalArgumentException("Mesh must contain vertices and faces");
+            }
+
+            FeatureStageEvent total = FeatureStageEvent.start("total", v, f);
+            FeatureStageEvent stage = FeatureStageEvent.start("boundingBox", v, f);
+            FeatureCalculator.BoundingBox box = boundingBox(vertices, v);
+            stage.finish();
+            FeatureCalculator.GeometryStats geometryStats = new FeatureCalculator.GeometryStats(
+                    faces.surfaceArea, Math.abs(faces.volume), edges.size(), f);
+
+            double linearity = FeatureCalculator.computeLinearity(box);
+            stage = FeatureStageEvent.start("planarity", v, f);
+            double planarity = planarity(vertices, v);
+            stage.finish();
+            double sphericity = FeatureCalculator.computeSphericity(geometryStats);
+            double anisotropy = faces.anisotropyCount == 0 ? 0.0 : Math.sqrt(faces.anisotropySum / faces.anisotropyCount);
+            double curvature = faces.curvatureCount == 0 ? 0.0 : faces.curvatureSum / faces.curvatureCount;
+            double eulerNumber = v - geometryStats.edgeCount() + f;
+            double compactness = FeatureCalculator.computeCompactness(geometryStats);
+            double aspectRatio = FeatureCalculator.computeAspectRatio(box);
+            double convexity = FeatureCalculator.computeConvexity(geometryStats.volume(), box);
+            stage = FeatureStageEvent.start("localDensity", v, f);
+            double localDensity = localDensity(vertices, v, box);
+            stage.finish();
+
+            ModelFeatures features = new ModelFeatures(
+                    linearity,
+                    planarity,
+                    sphericity,
+                    anisotropy,
+                    curvature,
+                    eulerNumber,
+                    compactness,
+                    aspectRatio,
+                    convexity,
+                    localDensity
+            );
+
+            total.finish();
+            return new FeatureCalculator.Result(features, v, f, geometryStats.surfaceArea(), geometryStats.volume());
+        }
+    }
+
+    // the per-face parts of GeometryStats.from, computeAnisotropy and computeCurvature, folded into one pass
+    private static final class FaceAccumulator extends ObjParser.Listener {
+
+        private final ChunkedMemory positions;
+        private final EdgeSet edges;
+
+        double surfaceArea;
+        double volume;
+        double anisotropySum;
+        int anisotropyCount;
+        double curvatureSum;
+        int curvatureCount;
+        private float[] previousNormal;
+
+        private final float[] v0 = new float[3];
+        private final float[] v1 = new float[3];
+        private final float[] v2 = new float[3];
+
+        FaceAccumulator(ChunkedMemory positions, EdgeSet edges) {
+            this.positions = positions;
+            this.edges = edges;
+        }
+
+        @Override
+        void vertex(float x, float y, float z) {
+            try {
+                positions.ensure(vertices + 1L);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            positions.putFloat(vertices, 0, x);
+            positions.putFloat(vertices, 1, y);
+            positions.putFloat(vertices, 2, z);
+        }
+
+        @Override
+        void face(int[] face) {
+            load(face[0], v0);
+            for (int i = 1; i < face.length - 1; i++) {
+                load(face[i], v1);
+                load(face[i + 1], v2);
+
+                float[] cross = crossProduct(v0, v1, v2);
+                double area = 0.5 * Math.sqrt(cross[0] * cross[0] + cross[1] * cross[1] + cross[2] * cross[2]);
+                surfaceArea += area;
+
+                double tetraVolume = (v0[0] * (v1[1] * v2[2] - v1[2] * v2[1])
+                        - v0[1] * (v1[0] * v2[2] - v1[2] * v2[0])
+                        + v0[2] * (v1[0] * v2[1] - v1[1] * v2[0])) / 6.0;
+                volume += tetraVolume;
+
+                anisotropy();
+            }
+
+            try {
+                for (int i = 0; i < face.length; i++) {
+                    int a = face[i];
+                    int b = face[(i + 1) % face.length];
+                    edges.add(Math.min(a, b), Math.max(a, b));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (face.length > 3) { // the fan left the last triangle in v1 and v2
+                load(face[1], v1);
+                load(face[2], v2);
+            }
+            float[] normal = normal();
+            if (previousNormal != null) {
+                double dot = previousNormal[0] * normal[0] + previousNormal[1] * normal[1] + previousNormal[2] * normal[2];
+                dot = Math.max(-1.0, Math.min(1.0, dot));
+                double angle = Math.acos(dot);
+                curvatureSum += angle;
+                curvatureCount++;
+            }
+            previousNormal = normal;
+        }
+
+        private void load(int index, float[] v) {
+            v[0] = positions.getFloat(index, 0);
+            v[1] = positions.getFloat(index, 1);
+            v[2] = positions.getFloat(index, 2);
+        }
+
+        private void anisotropy() {
+            double e1x = v1[0] - v0[0];
+            double e1y = v1[1] - v0[1];
+            double e1z = v1[2] - v0[2];
+            double e2x = v2[0] - v0[0];
+            double e2y = v2[1] - v0[1];
+            double e2z = v2[2] - v0[2];
+
+            double len1 = Math.sqrt(e1x * e1x + e1y * e1y + e1z * e1z);
+            double len2 = Math.sqrt(e2x * e2x + e2y * e2y + e2z * e2z);
+            if (len1 < 1e-6 || len2 < 1e-6) {
+                return;
+            }
+
+            double dot = (e1x * e2x + e1y * e2y + e1z * e2z) / (len1 * len2);
+            dot = Math.max(-1.0, Math.min(1.0, dot));
+            double angle = Math.acos(dot);
+            double diff = angle - (Math.PI / 2.0);
+            anisotropySum += diff * diff;
+            anisotropyCount++;
+        }
+
+        // FeatureCalculator.normal of the face's first three vertices, now in v0, v1 and v2
+        private float[] normal() {
+            float[] e1 = new float[]{v1[0] - v0[0], v1[1] - v0[1], v1[2] - v0[2]};
+            float[] e2 = new float[]{v2[0] - v0[0], v2[1] - v0[1], v2[2] - v0[2]};
+
+            float nx = e1[1] * e2[2] - e1[2] * e2[1];
+            float ny = e1[2] * e2[0] - e1[0] * e2[2];
+            float nz = e1[0] * e2[1] - e1[1] * e2[0];
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if (length < 1e-6) {
+                return new float[]{0, 0, 0};
+            }
+            return new float[]{nx / length, ny / length, nz / length};
+        }
+
+        private static float[] crossProduct(float[] v0, float[] v1, float[] v2) {
+            float[] e1 = new float[]{v1[0] - v0[0], v1[1] - v0[1], v1[2] - v0[2]};
+            float[] e2 = new float[]{v2[0] - v0[0], v2[1] - v0[1], v2[2] - v0[2]};
+            return new float[]{
+                    e1[1] * e2[2] - e1[2] * e2[1],
+                    e1[2] * e2[0] - e1[0] * e2[2],
+                    e1[0] * e2[1] - e1[1] * e2[0]
+            };
+        }
+    }
+
+    private static FeatureCalculator.BoundingBox boundingBox(ChunkedMemory positions, int count) {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        double minZ = Double.POSITIVE_INFINITY;
+        double maxZ = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            float x = positions.getFloat(i, 0);
+            float y = positions.getFloat(i, 1);
+            float z = positions.getFloat(i, 2);
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+            minZ = Math.min(minZ, z);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        double dx = maxX - minX;
+        double dy = maxY - minY;
+        double dz = maxZ - minZ;
+
+        return new FeatureCalculator.BoundingBox(minX, maxX, minY, maxY, minZ, maxZ, dx, dy, dz);
+    }
+
+    private static double planarity(ChunkedMemory positions, int count) {
+        double cx = 0;
+        double cy = 0;
+        double cz = 0;
+        for (int i = 0; i < count; i++) {
+            cx += positions.getFloat(i, 0);
+            cy += positions.getFloat(i, 1);
+            cz += positions.getFloat(i, 2);
+        }
+        cx /= count;
+        cy /= count;
+        cz /= count;
+
+        double totalDistance = 0;
+        for (int i = 0; i < count; i++) {
+            double dx = positions.getFloat(i, 0) - cx;
+            double dy = positions.getFloat(i, 1) - cy;
+            double dz = positions.getFloat(i, 2) - cz;
+            totalDistance += Math.sqrt(dx * dx + dy * dy + dz * dz);
+        }
+
+        return totalDistance / count;
+    }
+
+    private static double localDensity(ChunkedMemory positions, int count, FeatureCalculator.BoundingBox box) {
+        int divisions = 10;
+        double cellSizeX = Math.max(box.dx() / divisions, 1e-6);
+        double cellSizeY = Math.max(box.dy() / divisions, 1e-6);
+        double cellSizeZ = Math.max(box.dz() / divisions, 1e-6);
+
+        int[][][] grid = new int[divisions][divisions][divisions];
+        double minX = box.minX();
+        double minY = box.minY();
+        double minZ = box.minZ();
+
+        int maxCount = 0;
+        for (int n = 0; n < count; n++) {
+            int i = (int) Math.floor((positions.getFloat(n, 0) - minX) / cellSizeX);
+            int j = (int) Math.floor((positions.getFloat(n, 1) - minY) / cellSizeY);
+            int k = (int) Math.floor((positions.getFloat(n, 2) - minZ) / cellSizeZ);
+
+            i = Math.max(0, Math.min(divisions - 1, i));
+            j = Math.max(0, Math.min(divisions - 1, j));
+            k = Math.max(0, Math.min(divisions - 1, k));
+
+            grid[i][j][k]++;
+            maxCount = Math.max(maxCount, grid[i][j][k]);
+        }
+
+        return maxCount;
+    }
+
+    /**
+     * Open-addressing hash set of edges, each packed into a long as {@code (min << 32 | max) + 1} so that zero
+     * marks an empty slot. Kept at most half full; growing rehashes into a table twice the size.
+     */
+    private static final class EdgeSet implements AutoCloseable {
+
+        private final boolean offHeap;
+        private ChunkedMemory slots;
+        private int bits;
+        private int size;
+
+        EdgeSet(long expected, boolean offHeap) throws IOException {
+            this.offHeap = offHeap;
+            allocate(Long.highestOneBit(Math.max(expected, 512) * 2 - 1) << 1);
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(int a, int b) throws IOException {
+            if (insert(slots, bits, ((long) a << 32 | b) + 1)) {
+                size++;
+                if (size > slots.capacity() / 2) {
+                    grow();
+                }
+            }
+        }
+
+        // Fibonacci hashing: the top bits of the product are well mixed even for the regular keys of a grid mesh
+        private static boolean insert(ChunkedMemory slots, int bits, long key) {
+            long mask = slots.capacity() - 1;
+            long i = key * 0x9E3779B97F4A7C15L >>> (64 - bits);
+            while (true) {
+                long current = slots.getLong(i);
+                if (current == key) {
+                    return false;
+                }
+                if (current == 0) {
+                    slots.putLong(i, key);
+                    return true;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+
+        private void grow() throws IOException {
+            ChunkedMemory old = slots;
+            long oldSlots = old.capacity();
+            allocate(oldSlots * 2);
+            for (long i = 0; i < oldSlots; i++) {
+                long key = old.getLong(i);
+                if (key != 0) {
+                    insert(slots, bits, key);
+                }
+            }
+            old.close();
+        }
+
+        private void allocate(long count) throws IOException {
+            slots = new ChunkedMemory(Long.BYTES, count, offHeap);
+            slots.ensure(count);
+            bits = Long.numberOfTrailingZeros(slots.capacity());
+        }
+
+        @Override
+        public void close() throws IOException {
+            slots.close();
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Procedural closed triangle meshes of any size, for scaling runs and for checking the features against
+ * values known in closed form. A mesh can be built in memory with {@link #build} or streamed to a
+ * {@link MeshSink}, such as a {@link MeshWriter}, without ever holding all of it.
+ *
+ * Shapes, all consistently oriented with outward normals:
+ *  - sphere: a UV sphere of radius 1,
+ *  - torus: major radius 1, minor radius 0.25,
+ *  - box: 2 x 1 x 0.5, every side a grid of near-square cells,
+ *  - plate: 1 x 1 x 0.02, the same construction, a thin part such as a bracket or a panel,
+ *  - noisy: the sphere with every vertex moved radially by up to 1% of the radius, like a raw scan,
+ *  - multi-body: eight separate unit spheres on a 2 x 2 x 2 grid, as in a print plate with several parts.
+ *
+ * The face count is approximate: the nearest the construction allows, see {@link #plan}. The same shape,
+ * size and seed always give the same mesh.
+ */
+public final class SyntheticMesh {
+
+    public enum Shape {
+        SPHERE, TORUS, BOX, PLATE, NOISY, MULTI_BODY;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+
+        public static Shape of(String key) {
+            for (Shape shape : values()) {
+                if (shape.key().equals(key)) {
+                    return shape;
+                }
+            }
+            throw new IllegalArgumentException("Unknown shape: " + key);
+        }
+    }
+
+    /**
+     * What a generated mesh must measure. {@code tolerance} bounds the relative error of surface area and
+     * volume: the deficit of a polyhedron inscribed in a curved surface at this resolution, or float
+     * rounding for the flat shapes. The surface area of the noisy shape has no closed form and is NaN.
+     */
+    public record Expected(double surfaceArea, double volume, int eulerNumber, double tolerance) {
+    }
+
+    /**
+     * The resolution chosen for a requested face count: {@code u}, {@code v}, {@code w} are the segments
+     * and rings of the spheres and torus, or the cells along x, y, z of the box and plate.
+     */
+    public record Plan(Shape shape, int u, int v, int w, int vertices, int faces) {
+    }
+
+    static final double TORUS_MAJOR = 1;
+    static final double TORUS_MINOR = 0.25;
+    static final double[] BOX = {2, 1, 0.5};
+    static final double[] PLATE = {1, 1, 0.02};
+    static final int BODIES = 8;
+    static final double BODY_SPACING = 3;
+    static final double NOISE = 0.01;
+    // float coordinates near 1 round at about 6e-8; summed over a closed mesh the error stays far below this
+    private static final double FLOAT_TOLERANCE = 1e-5;
+
+    private SyntheticMesh() {
+    }
+
+    public static ObjModel build(Shape shape, int faces, long seed) {
+        Plan plan = plan(shape, faces);
+        List<float[]> vertices = new ArrayList<>(plan.vertices());
+        List<int[]> list = new ArrayList<>(plan.faces());
+        try {
+            emit(plan, seed, new MeshSink() {
+                @Override
+                public void vertex(float x, float y, float z) {
+                    vertices.add(new float[]{x, y, z});
+                }
+
+                @Override
+                public void face(int a, int b, int c) {
+                    list.add(new int[]{a, b, c});
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // the lists above never throw
+        }
+        return new ObjModel(vertices, list);
+    }
+
+    public static Plan plan(Shape shape, int faces) {
+        if (faces < 1) {
+            throw new IllegalArgumentException("Face count must be positive: " + faces);
+        }
+        return switch (shape) {
+            case SPHERE, NOISY -> spherePlan(shape, faces, 1);
+            case MULTI_BODY -> spherePlan(shape, Math.max(1, faces / BODIES), BODIES);
+            case TORUS -> {
+                // four times as many segments around the axis as around the tube keeps the cells square
+                int v = Math.max(3, (int) Math.round(Math.sqrt(faces / 8.0)));
+                int u = Math.max(3, (int) Math.round(faces / (2.0 * v)));
+                yield new Plan(shape, u, v, 0, u * v, 2 * u * v);
+            }
+            case BOX -> boxPlan(shape, BOX, faces);
+            case PLATE -> boxPlan(shape, PLATE, faces);
+        };
+    }
+
+    public static Expected expected(Shape shape, int faces) {
+        Plan plan = plan(shape, faces);
+        return switch (shape) {
+            case SPHERE -> new Expected(4 * Math.PI, 4 * Math.PI / 3, 2, sphereTolerance(plan));
+            case NOISY -> new Expected(Double.NaN, 4 * Math.PI / 3, 2, sphereTolerance(plan) + 3 * NOISE);
+            case MULTI_BODY -> new Expected(BODIES * 4 * Math.PI, BODIES * 4 * Math.PI / 3, 2 * BODIES, sphereTolerance(plan));
+            case TORUS -> new Expected(4 * Math.PI * Math.PI * TORUS_MAJOR * TORUS_MINOR,
+                    2 * Math.PI * Math.PI * TORUS_MAJOR * TORUS_MINOR * TORUS_MINOR, 0,
+                    angularTolerance(2 * Math.PI / plan.u(), 2 * Math.PI / plan.v()));
+            case BOX -> boxExpected(BOX);
+            case PLATE -> boxExpected(PLATE);
+        };
+    }
+
+    public static void emit(Shape shape, int faces, long seed, MeshSink sink) throws IOException {
+        emit(plan(shape, faces), seed, sink);
+    }
+
+    private static void emit(Plan plan, long seed, MeshSink sink) throws IOException {
+        switch (plan.shape()) {
+            case SPHERE -> {
+                sphereVertices(sink, plan, 0, 0, 0, null);
+                sphereFaces(sink, plan, 0);
+            }
+            case NOISY -> {
+                sphereVertices(sink, plan, 0, 0, 0, new Random(seed));
+                sphereFaces(sink, plan, 0);
+            }
+            case MULTI_BODY -> {
+                for (int body = 0; body < BODIES; body++) {
+                    sphereVertices(sink, plan, BODY_SPACING * (body & 1), BODY_SPACING * (body >> 1 & 1),
+                            BODY_SPACING * (body >> 2 & 1), null);
+                }
+                int perBody = plan.vertices() / BODIES;
+                for (int body = 0; body < BODIES; body++) {
+                    sphereFaces(sink, plan, body * perBody);
+                }
+            }
+            case TORUS -> torus(sink, plan);
+            case BOX -> box(sink, plan, BOX);
+            case PLATE -> box(sink, plan, PLATE);
+        }
+    }
+
+    // a UV sphere with s segments and s/2 rings has s(s - 2) triangles
+    private static Plan spherePlan(Shape shape, int faces, int bodies) {
+        int segments = Math.max(4, 2 * (int) Math.round((1 + Math.sqrt(1 + faces)) / 2));
+        int rings = segments / 2;
+        int vertices = 2 + (rings - 1) * segments;
+        return new Plan(shape, segments, rings, 0, bodies * vertices, bodies * segments * (segments - 2));
+    }
+
+    private static double sphereTolerance(Plan plan) {
+        return angularTolerance(2 * Math.PI / plan.u(), Math.PI / plan.v());
+    }
+
+    // an inscribed polygon falls short of its circle by about step^2 / 6; twice that in each direction
+    // leaves room for the poles, where the cells are triangles rather than quads
+    private static double angularTolerance(double step, double otherStep) {
+        return (step * step + otherStep * otherStep) / 3 + FLOAT_TOLERANCE;
+    }
+
+    private static void sphereVertices(MeshSink sink, Plan plan, double cx, double cy, double cz, Random noise)
+            throws IOException {
+        int segments = plan.u();
+        int rings = plan.v();
+        sphereVertex(sink, cx, cy, cz, 0, 0, noise);
+        for (int r = 1; r < rings; r++) {
+            double theta = Math.PI * r / rings;
+            for (int s = 0; s < segments; s++) {
+                sphereVertex(sink, cx, cy, cz, theta, 2 * Math.PI * s / segments, noise);
+            }
+        }
+        sphereVertex(sink, cx, cy, cz, Math.PI, 0, noise);
+    }
+
+    private static void sphereVertex(MeshSink sink, double cx, double cy, double cz, double theta, double phi,
+                                     Random noise) throws IOException {
+        double radius = noise == null ? 1 : 1 + NOISE * (2 * noise.nextDouble() - 1);
+        sink.vertex((float) (cx + radius * Math.sin(theta) * Math.cos(phi)),
+                (float) (cy + radius * Math.sin(theta) * Math.sin(phi)), (float) (cz + radius * Math.cos(theta)));
+    }
+
+    private static void sphereFaces(MeshSink sink, Plan plan, int base) throws IOException {
+        int segments = plan.u();
+        int rings = plan.v();
+        int south = base + 1 + (rings - 1) * segments;
+        int last = base + 1 + (rings - 2) * segments;
+        for (int s = 0; s < segments; s++) {
+            int next = (s + 1) % segments;
+            sink.face(base, base + 1 + s, base + 1 + next);
+            for (int r = 1; r < rings - 1; r++) {
+                int a = base + 1 + (r - 1) * segments + s;
+                int b = base + 1 + (r - 1) * segments + next;
+                int c = base + 1 + r * segments + s;
+                int d = base + 1 + r * segments + next;
+                sink.face(a, c, d);
+                sink.face(a, d, b);
+            }
+            sink.face(last + s, south, last + next);
+        }
+    }
+
+    private static void torus(MeshSink sink, Plan plan) throws IOException {
+        int u = plan.u();
+        int v = plan.v();
+        for (int i = 0; i < u; i++) {
+            double phi = 2 * Math.PI * i / u;
+            for (int j = 0; j < v; j++) {
+                double theta = 2 * Math.PI * j / v;
+                double ring = TORUS_MAJOR + TORUS_MINOR * Math.cos(theta);
+                sink.vertex((float) (ring * Math.cos(phi)), (float) (ring * Math.sin(phi)),
+                        (float) (TORUS_MINOR * Math.sin(theta)));
+            }
+        }
+        for (int i = 0; i < u; i++) {
+            int nextI = (i + 1) % u;
+            for (int j = 0; j < v; j++) {
+                int nextJ = (j + 1) % v;
+                int a = i * v + j;
+                int b = nextI * v + j;
+                int c = nextI * v + nextJ;
+                int d = i * v + nextJ;
+                sink.face(a, b, c);
+                sink.face(a, c, d);
+            }
+        }
+    }
+
+    // cells of side h on all six sides: 4(ab + bc + ca) / h^2 triangles
+    private static Plan boxPlan(Shape shape, double[] size, int faces) {
+        double a = size[0], b = size[1], c = size[2];
+        double h = Math.sqrt(4 * (a * b + b * c + c * a) / faces);
+        int nx = Math.max(1, (int) Math.round(a / h));
+        int ny = Math.max(1, (int) Math.round(b / h));
+        int nz = Math.max(1, (int) Math.round(c / h));
+        int vertices = 2 * (nx + 1) * (ny + 1) + (nz - 1) * 2 * (nx + ny);
+        return new Plan(shape, nx, ny, nz, vertices, 4 * (nx * ny + ny * nz + nz * nx));
+    }
+
+    private static Expected boxExpected(double[] size) {
+        double a = size[0], b = size[1], c = size[2];
+        return new Expected(2 * (a * b + b * c + c * a), a * b * c, 2, FLOAT_TOLERANCE);
+    }
+
+    /*
+     * Only the lattice points on the surface are vertices, numbered layer by layer along z: the whole bottom
+     * layer, then the ring of 2(nx + ny) boundary points of every inner layer, then the whole top layer.
+     */
+    private static void box(MeshSink sink, Plan plan, double[] size) throws IOException {
+        int nx = plan.u(), ny = plan.v(), nz = plan.w();
+        for (int k = 0; k <= nz; k++) {
+            if (k == 0 || k == nz) {
+                for (int j = 0; j <= ny; j++) {
+                    for (int i = 0; i <= nx; i++) {
+                        boxVertex(sink, plan, size, i, j, k);
+                    }
+                }
+            } else {
+                for (int i = 0; i < nx; i++) {
+                    boxVertex(sink, plan, size, i, 0, k);
+                }
+                for (int j = 0; j < ny; j++) {
+                    boxVertex(sink, plan, size, nx, j, k);
+                }
+                for (int i = nx; i > 0; i--) {
+                    boxVertex(sink, plan, size, i, ny, k);
+                }
+                for (int j = ny; j > 0; j--) {
+                    boxVertex(sink, plan, size, 0, j, k);
+                }
+            }
+        }
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                quad(sink, plan, i, j, 0, i + 1, j, 0, i + 1, j + 1, 0, i, j + 1, 0, true);
+                quad(sink, plan, i, j, nz, i + 1, j, nz, i + 1, j + 1, nz, i, j + 1, nz, false);
+            }
+        }
+        for (int k = 0; k < nz; k++) {
+            for (int i = 0; i < nx; i++) {
+                quad(sink, plan, i, 0, k, i + 1, 0, k, i + 1, 0, k + 1, i, 0, k + 1, false);
+                quad(sink, plan, i, ny, k, i + 1, ny, k, i + 1, ny, k + 1, i, ny, k + 1, true);
+            }
+            for (int j = 0; j < ny; j++) {
+                quad(sink, plan, 0, j, k, 0, j + 1, k, 0, j + 1, k + 1, 0, j, k + 1, true);
+                quad(sink, plan, nx, j, k, nx, j + 1, k, nx, j + 1, k + 1, nx, j, k + 1, false);
+            }
+        }
+    }
+
+    private static void boxVertex(MeshSink sink, Plan plan, double[] size, int i, int j, int k) throws IOException {
+        sink.vertex((float) (size[0] * ((double) i / plan.u() - 0.5)), (float) (size[1] * ((double) j / plan.v() - 0.5)),
+                (float) (size[2] * ((double) k / plan.w() - 0.5)));
+    }
+
+    // corners counter-clockwise seen from outside, unless flipped
+    private static void quad(MeshSink sink, Plan plan, int i0, int j0, int k0, int i1, int j1, int k1,
+                             int i2, int j2, int k2, int i3, int j3, int k3, boolean flip) throws IOException {
+        int a = boxIndex(plan, i0, j0, k0);
+        int b = boxIndex(plan, i1, j1, k1);
+        int c = boxIndex(plan, i2, j2, k2);
+        int d = boxIndex(plan, i3, j3, k3);
+        if (flip) {
+            sink.face(a, c, b);
+            sink.face(a, d, c);
+        } else {
+            sink.face(a, b, c);
+            sink.face(a, c, d);
+        }
+    }
+
+    private static int boxIndex(Plan plan, int i, int j, int k) {
+        int nx = plan.u(), ny = plan.v(), nz = plan.w();
+        int layer = (nx + 1) * (ny + 1);
+        int ring = 2 * (nx + ny);
+        if (k == 0) {
+            return j * (nx + 1) + i;
+        }
+        if (k == nz) {
+            return layer + (nz - 1) * ring + j * (nx + 1) + i;
+        }
+        int offset = layer + (k - 1) * ring;
+        if (j == 0 && i < nx) {
+            return offset + i;
+        }
+        if (i == nx && j < ny) {
+            return offset + nx + j;
+        }
+        if (j == ny && i > 0) {
+            return offset + nx + ny + (nx - i);
+        }
+        return offset + 2 * nx + ny + (ny - j);
+    }
+}
@@ -0,0 +1,506 @@
+package org.example.cli;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.example.ai.ModelRegistry;
+import org.example.analysis.FeatureCalculator;
+import org.example.analysis.ObjParser;
+import org.example.history.HistoryManager;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+import org.example.model.ObjModel;
+import org.example.model.RequirementProfile;
+import org.example.pipeline.AnalysisPipeline;
+import org.example.pipeline.StagedPipeline;
+import org.example.pipeline.VirtualThreads;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service mode: {@code --serve} answers analysis requests over HTTP, for systems that want Draxel's
+ * recommendations without the desktop UI.
+ *
+ * <pre>
+ * POST /analyse?name=part.obj&amp;profile=functional,force   body: the .obj file   -&gt; features and prediction as JSON
+ * GET  /metrics                                             -&gt; Prometheus text format
+ * GET  /health                                              -&gt; "ok"
+ * </pre>
+ *
+ * Every request runs on its own virtual thread (a pooled platform thread before Java 21) and parses the
+ * upload straight from the request body. Parsed models go through an {@link AnalysisPipeline}, so uploads
+ * arriving together share one inference batch. At most {@code --max-inflight} uploads are parsed or
+ * analysed at a time, each capped at {@code --max-upload-mb}. Each also reserves the heap its model will
+ * need, {@value #HEAP_PER_UPLOAD_BYTE} bytes per upload byte, from a budget of {@value #HEAP_SHARE} of the
+ * maximum heap; an upload without a Content-Length reserves as much as the largest accepted one. Requests
+ * wait for both before reading their body, which bounds memory however many clients are connected, and an
+ * upload that could never fit the budget is refused.
+ */
+public final class AnalysisServer implements AutoCloseable {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: --serve [options]",
+            "  --port <n>           port to listen on (default: 8080)",
+            "  --bind <address>     address to listen on (default: 127.0.0.1)",
+            "  --max-inflight <n>   uploads parsed or analysed at once (default: 64)",
+            "  --max-upload-mb <n>  largest accepted upload (default: 256, less if the heap cannot hold its model)",
+            "  --threads <n>        feature threads (default: available processors)",
+            "  --max-batch <n>      largest inference batch (default: 32)");
+
+    private static final Gson GSON = new Gson();
+
+    // heap of an in-memory analysis per byte of OBJ text; MemoryBudget estimates 4-5.2 for triangle meshes
+    private static final int HEAP_PER_UPLOAD_BYTE = 6;
+    // share of the maximum heap uploads may reserve; the rest is for the models, the pipeline and the collector
+    private static final double HEAP_SHARE = 0.6;
+    // most clients read the response only once they have sent the whole body, and a connection closed with
+    // the body unread is reset, which loses the response; so a refused upload is read past up to this much
+    private static final long SWALLOW_BYTES = 2L << 20;
+
+    private final Options options;
+    private final ModelRegistry models;
+    private final AnalysisPipeline pipeline;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore inflight;
+    // KiB of heap reserved by uploads being parsed or analysed
+    private final Semaphore heap;
+    private final int heapKib;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final Map<Integer, LongAdder> responses = new ConcurrentSkipListMap<>();
+    private final LongAdder bytes = new LongAdder();
+    private final LatencyHistogram waitLatency = new LatencyHistogram();
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+    private final LatencyHistogram totalLatency = new LatencyHistogram();
+
+    AnalysisServer(Options options, ModelRegistry models) throws IOException {
+        this.options = options;
+        this.models = models;
+        this.pipeline = new AnalysisPipeline(models, options.pipeline());
+        this.inflight = new Semaphore(options.maxInflight());
+        this.heapKib = kib((long) (Runtime.getRuntime().maxMemory() * HEAP_SHARE));
+        this.heap = new Semaphore(heapKib, true); // fair, so a large upload is not overtaken forever
+        this.executor = VirtualThreads.newExecutor("http");
+        this.server = HttpServer.create(new InetSocketAddress(options.bind(), options.port()), 1024);
+        server.setExecutor(executor);
+        server.createContext("/analyse", exchange -> handle(exchange, this::analyse));
+        server.createContext("/metrics", exchange -> handle(exchange, this::metrics));
+        server.createContext("/health", exchange -> handle(exchange, e -> send(e, 200, "text/plain", "ok\n")));
+    }
+
+    public static boolean isServeInvocation(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--serve")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serves until the process is stopped. Returns 2 for bad arguments, 1 if the server could not start.
+     */
+    public static int run(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        // as for --watch, the history writer stays open until the server has drained its pipeline
+        try (HistoryManager.Hold history = HistoryManager.hold();
+             ModelRegistry models = ModelRegistry.fromSystemProperties();
+             AnalysisServer server = new AnalysisServer(options, models)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                stopped.countDown();
+                try {
+                    closed.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                    // exiting anyway
+                }
+            }, "serve-shutdown"));
+            int port = server.start();
+            System.out.printf(Locale.US, "Listening on http://%s:%d/ (%s)%n", options.bind(), port,
+                    VirtualThreads.available() ? "virtual threads" : "platform threads");
+            if (server.largestUpload() < options.maxUploadBytes()) {
+                System.out.printf(Locale.US, "Uploads above %d MiB need more than the %d MiB of heap set aside for them and are refused%n",
+                        server.largestUpload() >> 20, (long) server.heapKib >> 10);
+            }
+            stopped.await();
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Server failed: " + e.getMessage());
+            return 1;
+        } finally {
+            closed.countDown();
+        }
+    }
+
+    /**
+     * Starts serving and returns the port, which {@code --port 0} leaves to the system.
+     */
+    int start() {
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections, finishes the requests in progress, stops the pipeline and flushes the
+     * history.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        server.stop(5);
+        executor.shutdown();
+        try {
+            pipeline.close();
+        } finally {
+            HistoryManager.flush();
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        active.incrementAndGet();
+        try {
+            handler.handle(exchange);
+        } catch (Exception e) {
+            try {
+                sendError(exchange, 500, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            } catch (IOException ignored) {
+                // client is gone, or the response had already started
+            }
+        } finally {
+            exchange.close();
+            active.decrementAndGet();
+        }
+    }
+
+    private void analyse(HttpExchange exchange) throws Exception {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            sendError(exchange, 405, "POST the .obj file to /analyse");
+            return;
+        }
+        Map<String, String> query = query(exchange.getRequestURI());
+        RequirementProfile profile;
+        try {
+            profile = BatchAnalyzer.Options.profile(query.getOrDefault("profile", "decorative"));
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+        String name = query.getOrDefault("name", "upload.obj");
+
+        long limit = largestUpload();
+        long declared = contentLength(exchange);
+        if (declared > limit) {
+            if (declared <= SWALLOW_BYTES) {
+                swallow(exchange.getRequestBody());
+            }
+            sendError(exchange, 413, "Upload exceeds " + limit + " bytes");
+            return;
+        }
+        // reserve for what the body may hold; without a length that is the largest accepted upload
+        int reserved = kib((declared >= 0 ? declared : limit) * HEAP_PER_UPLOAD_BYTE);
+
+        long start = System.nanoTime();
+        inflight.acquire();
+        try {
+            heap.acquire(reserved);
+        } catch (InterruptedException e) {
+            inflight.release();
+            throw e;
+        }
+        try {
+            long parseStart = System.nanoTime();
+            waitLatency.record(parseStart - start);
+            LimitedInputStream body = new LimitedInputStream(exchange.getRequestBody(), limit);
+            ObjModel model;
+            try {
+                model = ObjParser.parse(body);
+            } catch (UploadTooLargeException e) {
+                swallow(exchange.getRequestBody());
+                sendError(exchange, 413, "Upload exceeds " + limit + " bytes");
+                return;
+            }
+            parseLatency.record(System.nanoTime() - parseStart);
+            bytes.add(body.count);
+            if (model == null) {
+                sendError(exchange, 400, "Empty upload");
+                return;
+            }
+
+            AnalysisPipeline.Result result;
+            try {
+                result = pipeline.submit(name, model, body.count, profile).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                // FeatureCalculator rejects meshes it cannot measure with IllegalArgumentException
+                int status = cause instanceof IllegalArgumentException ? 400 : 500;
+                sendError(exchange, status, cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+                return;
+            }
+            totalLatency.record(System.nanoTime() - start);
+            send(exchange, 200, "application/json", GSON.toJson(toJson(result, System.nanoTime() - start)));
+        } finally {
+            heap.release(reserved);
+            inflight.release();
+        }
+    }
+
+    /**
+     * The largest upload accepted: {@code --max-upload-mb}, or less if its model would not fit the heap
+     * set aside for uploads.
+     */
+    private long largestUpload() {
+        return uploadLimit(options.maxUploadBytes(), heapKib);
+    }
+
+    static long uploadLimit(long maxUploadBytes, int heapKib) {
+        return Math.min(maxUploadBytes, ((long) heapKib << 10) / HEAP_PER_UPLOAD_BYTE);
+    }
+
+    private static void swallow(InputStream body) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long left = SWALLOW_BYTES;
+        int n;
+        while (left > 0 && (n = body.read(buffer, 0, (int) Math.min(buffer.length, left))) > 0) {
+            left -= n;
+        }
+    }
+
+    // -1 if the request has no usable Content-Length, as with chunked uploads
+    private static long contentLength(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int kib(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, (bytes + 1023) >> 10);
+    }
+
+    private static Map<String, Object> toJson(AnalysisPipeline.Result result, long nanos) {
+        FeatureCalculator.Result analysis = result.analysis();
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("name", result.name());
+        json.put("vertices", analysis.vertexCount());
+        json.put("faces", analysis.faceCount());
+        json.put("surfaceArea", analysis.surfaceArea());
+        json.put("volume", analysis.volume());
+        json.put("features", analysis.features());
+        json.put("model", result.model());
+        json.put("prediction", result.prediction());
+        json.put("batchSize", result.batchSize());
+        json.put("millis", Math.round(nanos / 1e4) / 100.0);
+        return json;
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# TYPE draxel_http_requests_total counter\n");
+        responses.forEach((status, count) ->
+                sb.append("draxel_http_requests_total{status=\"").append(status).append("\"} ").append(count.sum()).append('\n'));
+        sb.append("# TYPE draxel_http_active gauge\n");
+        sb.append("draxel_http_active ").append(active.get()).append('\n');
+        sb.append("# TYPE draxel_uploads_inflight gauge\n");
+        sb.append("draxel_uploads_inflight ").append(options.maxInflight() - inflight.availablePermits()).append('\n');
+        sb.append("# TYPE draxel_upload_heap_reserved_bytes gauge\n");
+        sb.append("draxel_upload_heap_reserved_bytes ").append((long) (heapKib - heap.availablePermits()) << 10).append('\n');
+        sb.append("# TYPE draxel_upload_bytes_total counter\n");
+        sb.append("draxel_upload_bytes_total ").append(bytes.sum()).append('\n');
+        summary(sb, "draxel_upload_wait_seconds", "", waitLatency);
+        summary(sb, "draxel_upload_parse_seconds", "", parseLatency);
+        summary(sb, "draxel_analyse_seconds", "", totalLatency);
+        sb.append("# TYPE draxel_model_batch_seconds summary\n");
+        for (String model : models.modelNames()) {
+            quantiles(sb, "draxel_model_batch_seconds", "model=\"" + model + "\"", models.batchLatency(model));
+        }
+        sb.append("# TYPE draxel_stage_seconds summary\n");
+        MetricsRegistry.global().histograms().forEach((stage, h) ->
+                quantiles(sb, "draxel_stage_seconds", "stage=\"" + stage + "\"", h));
+        sb.append("# TYPE draxel_processed_total counter\n");
+        MetricsRegistry.global().counters().forEach((name, total) ->
+                sb.append("draxel_processed_total{counter=\"").append(name).append("\"} ").append(total).append('\n'));
+        sb.append("# TYPE draxel_stage_queue_depth gauge\n");
+        for (StagedPipeline.StageStats s : pipeline.stats()) {
+            sb.append(String.format(Locale.US, "draxel_stage_queue_depth{stage=\"%s\"} %d%n", s.name(), s.queueDepth()));
+        }
+        sb.append("# TYPE draxel_stage_utilization gauge\n");
+        for (StagedPipeline.StageStats s : pipeline.stats()) {
+            sb.append(String.format(Locale.US, "draxel_stage_utilization{stage=\"%s\"} %.4f%n", s.name(), s.utilization()));
+        }
+        sb.append("# TYPE draxel_stage_mean_batch gauge\n");
+        for (StagedPipeline.StageStats s : pipeline.stats()) {
+            sb.append(String.format(Locale.US, "draxel_stage_mean_batch{stage=\"%s\"} %.2f%n", s.name(), s.meanBatch()));
+        }
+        send(exchange, 200, "text/plain; version=0.0.4", sb.toString());
+    }
+
+    private static void summary(StringBuilder sb, String name, String labels, LatencyHistogram h) {
+        sb.append("# TYPE ").append(name).append(" summary\n");
+        quantiles(sb, name, labels, h);
+    }
+
+    // one labelled series of a summary whose TYPE line the caller has written
+    private static void quantiles(StringBuilder sb, String name, String labels, LatencyHistogram h) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            sb.append(String.format(Locale.US, "%s{%squantile=\"%s\"} %.6f%n", name, prefix, q,
+                    h.percentileNanos(q * 100) / 1e9));
+        }
+        sb.append(String.format(Locale.US, "%s_count%s %d%n", name, labels.isEmpty() ? "" : "{" + labels + "}", h.count()));
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, "application/json", GSON.toJson(Map.of("error", message)));
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        responses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + (contentType.contains("charset") ? "" : "; charset=utf-8"));
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> query = new LinkedHashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(key, value);
+        }
+        return query;
+    }
+
+    private static final class UploadTooLargeException extends IOException {
+        UploadTooLargeException() {
+            super("Upload too large");
+        }
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        private void advance(int n) throws UploadTooLargeException {
+            count += n;
+            if (count > limit) {
+                throw new UploadTooLargeException();
+            }
+        }
+    }
+
+    // ----------------------- options -----------------------
+
+    record Options(String bind, int port, int maxInflight, long maxUploadBytes, AnalysisPipeline.Config pipeline) {
+
+        static Options parse(String[] args) {
+            String bind = "127.0.0.1";
+            int port = 8080;
+            int maxInflight = 64;
+            long maxUploadBytes = 256L << 20;
+            AnalysisPipeline.Config pipeline = AnalysisPipeline.Config.defaults();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--serve" -> {
+                    }
+                    case "--bind" -> bind = value(args, ++i, "--bind");
+                    case "--port" -> port = (int) number(args, ++i, "--port", 0);
+                    case "--max-inflight" -> maxInflight = (int) number(args, ++i, "--max-inflight", 1);
+                    case "--max-upload-mb" -> maxUploadBytes = number(args, ++i, "--max-upload-mb", 1) << 20;
+                    case "--threads" -> pipeline = pipeline.withCpuThreads((int) number(args, ++i, "--threads", 1));
+                    case "--max-batch" -> pipeline = pipeline.withMaxBatch((int) number(args, ++i, "--max-batch", 1));
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (port > 65535) {
+                throw new IllegalArgumentException("--port must be at most 65535");
+            }
+            return new Options(bind, port, maxInflight, maxUploadBytes, pipeline);
+        }
+
+        private static String value(String[] args, int i, String option) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            return args[i];
+        }
+
+        private static long number(String[] args, int i, String option, long min) {
+            try {
+                long n = Long.parseLong(value(args, i, option));
+                if (n >= min) {
+                    return n;
+                }
+            } catch (NumberFormatException ignored) {
+                // reported below
+            }
+            throw new IllegalArgumentException(option + " must be a number of at least " + min);
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package org.example.cli;
+
+import com.google.gson.Gson;
+import org.example.ai.ModelRegistry;
+import org.example.ai.RecommendationEngine.PredictionResult;
+import org.example.analysis.FeatureCalculator;
+import org.example.analysis.FeatureDrift;
+import org.example.analysis.MeshDecimator;
+import org.example.history.HistoryManager;
+import org.example.history.HistoryPayload;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.MetricsRegistry;
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+import org.example.pipeline.AnalysisPipeline;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch mode: {@code --batch <dir>} analyses every .obj file under the directory.
+ *
+ * Files go through an {@link AnalysisPipeline}: parsed on virtual threads, measured on one thread per core
+ * by default, and scored in batches. Each result is written as soon as it finishes, as CSV or JSON Lines, so
+ * a long run can be followed with {@code tail -f}; the bounded stage queues keep only a few hundred files in
+ * flight however large the directory. Never loads any Swing class.
+ *
+ * <pre>
+ * java -jar draxel.jar --batch uploads/ --out results.csv --profile functional,force --threads 8
+ * </pre>
+ */
+public final class BatchAnalyzer {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: --batch <dir> [options]",
+            "  --out <file>        write results to the file instead of stdout",
+            "  --format csv|jsonl  output format (default: from the --out extension, else csv)",
+            "  --threads <n>       feature threads (default: available processors)",
+            "  --io-threads <n>    files read and parsed concurrently (default: 2 per processor, at least 8)",
+            "  --max-batch <n>     largest inference batch (default: 32)",
+            "  --profile <flags>   comma-separated requirements: functional, decorative, force, friction,",
+            "                      weight, outdoor, detail (default: decorative)",
+            "  --decimate <n|p%>   measure features on meshes simplified to n faces, or p% of their faces",
+            "  --max-error <f>     stop simplifying before an error of f times the bounding-box diagonal",
+            "  --drift             also measure at full resolution and report how far each feature drifted",
+            "  --save-history      also append every result to the analysis history",
+            "  --metrics           print per-stage latencies (parse, I/O, each feature step, inference) at the end");
+
+    private static final List<String> COLUMNS = List.of("file", "vertices", "faces",
+            "linearity", "planarity", "sphericity", "anisotropy", "curvature", "euler_number",
+            "compactness", "aspect_ratio", "convexity", "local_density",
+            "model", "filament", "infill_percent", "infill_pattern", "nozzle", "layer_height", "confidence",
+            "millis", "error");
+
+    private BatchAnalyzer() {
+    }
+
+    public static boolean isBatchInvocation(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--batch")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the batch and returns the process exit code: 0 if every file was analysed, 1 if some failed,
+     * 2 for bad arguments.
+     */
+    public static int run(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        try (ModelRegistry models = ModelRegistry.fromSystemProperties()) {
+            List<Path> files = findObjFiles(options.directory());
+            Summary summary = new Summary(options.pipeline().cpuThreads());
+            try (Writer out = openOutput(options)) {
+                ResultWriter writer = options.jsonl() ? new JsonlWriter(out) : new CsvWriter(out);
+                writer.header();
+                analyseAll(files, options, models, writer, summary);
+            }
+            if (options.saveHistory()) {
+                HistoryManager.flush();
+            }
+            PrintStream report = options.out() == null ? System.err : System.out;
+            report.print(summary.format());
+            if (models.modelNames().size() > 1) {
+                report.print(models.formatReport());
+            }
+            if (options.metrics()) {
+                report.printf("%nStage metrics:%n%s", MetricsRegistry.global().format());
+            }
+            return summary.failed == 0 ? 0 : 1;
+        } catch (Exception e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static List<Path> findObjFiles(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".obj"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Writer openOutput(Options options) throws IOException {
+        if (options.out() == null) {
+            return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+                @Override
+                public void close() throws IOException {
+                    flush(); // leave stdout open for the summary
+                }
+            };
+        }
+        return Files.newBufferedWriter(options.out(), StandardCharsets.UTF_8);
+    }
+
+    // results are written in completion order, so one slow file never holds back the output
+    private static void analyseAll(List<Path> files, Options options, ModelRegistry models,
+                                   ResultWriter writer, Summary summary) throws IOException, InterruptedException {
+        BlockingQueue<Row> completed = new LinkedBlockingQueue<>();
+        AnalysisPipeline pipeline = new AnalysisPipeline(models, options.pipeline());
+        // the feeder blocks whenever the parse stage is full, which bounds the files in flight
+        Thread feeder = new Thread(() -> {
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                long start = System.nanoTime();
+                try {
+                    pipeline.submit(file, options.profile()).whenComplete((result, error) -> {
+                        Row row;
+                        try {
+                            row = toRow(file, start, result, error, summary);
+                        } catch (RuntimeException e) {
+                            row = failed(file, start, e);
+                        }
+                        completed.add(row);
+                    });
+                } catch (RuntimeException e) {
+                    // every file needs a row, or the writer below waits for it forever
+                    completed.add(failed(file, start, e));
+                } catch (InterruptedException e) {
+                    for (Path skipped : files.subList(i, files.size())) {
+                        completed.add(new Row(skipped, null, null, null, 0, "interrupted"));
+                    }
+                    return;
+                }
+            }
+        }, "batch-feeder");
+        feeder.setDaemon(true);
+        feeder.start();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                Row row = completed.take();
+                writer.write(row);
+                if (row.error() == null) {
+                    summary.succeeded++;
+                    if (options.saveHistory()) {
+                        PredictionResult p = row.prediction();
+                        HistoryManager.appendEntry(row.file().getFileName().toString(), HistoryPayload.of(
+                                row.result().features(), options.profile(), p.filament(), p.infillPercent(), p.infillPattern()));
+                    }
+                } else {
+                    summary.failed++;
+                }
+                // flush every few rows so the file can be followed while the batch runs
+                if (i % 64 == 63) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } finally {
+            feeder.interrupt();
+            pipeline.close();
+        }
+        summary.finish();
+        summary.stages = pipeline.formatStats();
+    }
+
+    private static Row toRow(Path file, long start, AnalysisPipeline.Result result, Throwable error, Summary summary) {
+        if (error != null) {
+            return failed(file, start, error);
+        }
+        long total = System.nanoTime() - start;
+        summary.bytes.add(result.bytes());
+        summary.parse.record(result.parseNanos());
+        summary.features.record(result.featureNanos());
+        summary.predict.record(result.predictNanos());
+        summary.total.record(total);
+        if (result.drift() != null) {
+            summary.recordDrift(result.drift().relative());
+        }
+        return new Row(file, result.analysis(), result.model(), result.prediction(), total / 1e6, null);
+    }
+
+    private static Row failed(Path file, long start, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+        return new Row(file, null, null, null, (System.nanoTime() - start) / 1e6, message);
+    }
+
+    // ----------------------- options -----------------------
+
+    record Options(Path directory, Path out, boolean jsonl, AnalysisPipeline.Config pipeline, RequirementProfile profile,
+                   boolean saveHistory, boolean metrics) {
+
+        static Options parse(String[] args) {
+            Path directory = null;
+            Path out = null;
+            String format = null;
+            AnalysisPipeline.Config pipeline = AnalysisPipeline.Config.defaults();
+            RequirementProfile profile = profile("decorative");
+            boolean saveHistory = false;
+            MeshDecimator.Target decimation = null;
+            double maxError = Double.POSITIVE_INFINITY;
+            boolean drift = false;
+            boolean metrics = false;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch" -> directory = Path.of(value(args, ++i, "--batch"));
+                    case "--out" -> out = Path.of(value(args, ++i, "--out"));
+                    case "--format" -> format = value(args, ++i, "--format").toLowerCase(Locale.ROOT);
+                    case "--threads" -> pipeline = pipeline.withCpuThreads(count(args, ++i, "--threads"));
+                    case "--io-threads" -> pipeline = pipeline.withIoConcurrency(count(args, ++i, "--io-threads"));
+                    case "--max-batch" -> pipeline = pipeline.withMaxBatch(count(args, ++i, "--max-batch"));
+                    case "--profile" -> profile = profile(value(args, ++i, "--profile"));
+                    case "--decimate" -> decimation = decimation(value(args, ++i, "--decimate"));
+                    case "--max-error" -> maxError = fraction(value(args, ++i, "--max-error"), "--max-error");
+                    case "--drift" -> drift = true;
+                    case "--save-history" -> saveHistory = true;
+                    case "--metrics" -> metrics = true;
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (directory == null || !Files.isDirectory(directory)) {
+                throw new IllegalArgumentException("--batch needs an existing directory");
+            }
+            if (format == null) {
+                format = out != null && out.toString().toLowerCase(Locale.ROOT).endsWith(".jsonl") ? "jsonl" : "csv";
+            }
+            if (!format.equals("csv") && !format.equals("jsonl")) {
+                throw new IllegalArgumentException("Unknown format: " + format);
+            }
+            if (decimation == null && !Double.isInfinite(maxError)) {
+                decimation = MeshDecimator.Target.maxError(maxError);
+            } else if (decimation != null) {
+                decimation = decimation.withMaxError(maxError);
+            }
+            if (drift && decimation == null) {
+                throw new IllegalArgumentException("--drift needs --decimate or --max-error");
+            }
+            if (decimation != null) {
+                pipeline = pipeline.withDecimation(decimation, drift);
+            }
+            return new Options(directory, out, format.equals("jsonl"), pipeline, profile, saveHistory, metrics);
+        }
+
+        private static String value(String[] args, int i, String option) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            return args[i];
+        }
+
+        private static int count(String[] args, int i, String option) {
+            int n;
+            try {
+                n = Integer.parseInt(value(args, i, option));
+            } catch (NumberFormatException e) {
+                n = 0;
+            }
+            if (n < 1) {
+                throw new IllegalArgumentException(option + " must be a number of at least 1");
+            }
+            return n;
+        }
+
+        // a face count, or a percentage of each mesh's faces
+        static MeshDecimator.Target decimation(String spec) {
+            if (spec.endsWith("%")) {
+                double percent = fraction(spec.substring(0, spec.length() - 1), "--decimate");
+                if (percent >= 100) {
+                    throw new IllegalArgumentException("--decimate percentage must be below 100%");
+                }
+                return MeshDecimator.Target.ratio(percent / 100);
+            }
+            int faces;
+            try {
+                faces = Integer.parseInt(spec);
+            } catch (NumberFormatException e) {
+                faces = 0;
+            }
+            if (faces < 1) {
+                throw new IllegalArgumentException("--decimate needs a face count or a percentage such as 10%");
+            }
+            return MeshDecimator.Target.faces(faces);
+        }
+
+        private static double fraction(String value, String option) {
+            double d;
+            try {
+                d = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                d = 0;
+            }
+            if (!(d > 0)) {
+                throw new IllegalArgumentException(option + " must be a positive number");
+            }
+            return d;
+        }
+
+        static RequirementProfile profile(String spec) {
+            boolean functional = false, decorative = false, force = false, friction = false;
+            boolean weight = false, outdoor = false, detail = false;
+            for (String flag : spec.toLowerCase(Locale.ROOT).split(",")) {
+                switch (flag.trim()) {
+                    case "functional" -> functional = true;
+                    case "decorative" -> decorative = true;
+                    case "force" -> force = true;
+                    case "friction" -> friction = true;
+                    case "weight", "weightsupport", "weight-support" -> weight = true;
+                    case "outdoor" -> outdoor = true;
+                    case "detail" -> detail = true;
+                    case "" -> {
+                    }
+                    default -> throw new IllegalArgumentException("Unknown requirement: " + flag);
+                }
+            }
+            if (!functional && !decorative) {
+                decorative = true;
+            }
+            return new RequirementProfile(functional, decorative, force, friction, weight, outdoor, detail);
+        }
+    }
+
+    // ----------------------- output -----------------------
+
+    record Row(Path file, FeatureCalculator.Result result, String model, PredictionResult prediction,
+               double millis, String error) {
+
+        List<Object> values() {
+            List<Object> values = new ArrayList<>(COLUMNS.size());
+            values.add(file.toString());
+            if (result != null) {
+                ModelFeatures f = result.features();
+                values.add(result.vertexCount());
+                values.add(result.faceCount());
+                for (float v : new float[]{(float) f.getLinearity(), (float) f.getPlanarity(), (float) f.getSphericity(),
+                        (float) f.getAnisotropy(), (float) f.getCurvature(), (float) f.getEulerNumber(),
+                        (float) f.getCompactness(), (float) f.getAspectRatio(), (float) f.getConvexity(),
+                        (float) f.getLocalDensity()}) {
+                    values.add(v);
+                }
+                values.add(model);
+                values.add(prediction.filament());
+                values.add(prediction.infillPercent());
+                values.add(prediction.infillPattern());
+                values.add(prediction.nozzle());
+                values.add(prediction.layerHeight());
+                values.add((float) prediction.confidence());
+            } else {
+                while (values.size() < COLUMNS.size() - 2) {
+                    values.add(null);
+                }
+            }
+            values.add(Math.round(millis * 100.0) / 100.0);
+            values.add(error);
+            return values;
+        }
+    }
+
+    interface ResultWriter {
+        void header() throws IOException;
+
+        void write(Row row) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static final class CsvWriter implements ResultWriter {
+
+        private final Writer out;
+
+        CsvWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void header() throws IOException {
+            out.write(String.join(",", COLUMNS));
+            out.write('\n');
+        }
+
+        @Override
+        public void write(Row row) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (Object value : row.values()) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(escape(value));
+            }
+            out.write(sb.append('\n').toString());
+        }
+
+        private static String escape(Object value) {
+            if (value == null) {
+                return "";
+            }
+            String s = value.toString();
+            if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+                return s;
+            }
+            return '"' + s.replace("\"", "\"\"") + '"';
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static final class JsonlWriter implements ResultWriter {
+
+        private static final Gson GSON = new Gson();
+
+        private final Writer out;
+
+        JsonlWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void header() {
+            // JSON Lines carries its field names in every record
+        }
+
+        @Override
+        public void write(Row row) throws IOException {
+            Map<String, Object> record = new LinkedHashMap<>();
+            List<Object> values = row.values();
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                if (values.get(i) != null) {
+                    record.put(COLUMNS.get(i), values.get(i));
+                }
+            }
+            out.write(GSON.toJson(record));
+            out.write('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    // ----------------------- summary -----------------------
+
+    private static final class Summary {
+
+        final int threads;
+        final long started = System.nanoTime();
+        final LongAdder bytes = new LongAdder();
+        final LatencyHistogram parse = new LatencyHistogram();
+        final LatencyHistogram features = new LatencyHistogram();
+        final LatencyHistogram predict = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+        int succeeded;
+        int failed;
+        long elapsedNanos;
+        String stages = "";
+        // relative feature drift of decimated meshes, per feature
+        private final double[] driftSum = new double[FeatureDrift.FEATURES.size()];
+        private final double[] driftMax = new double[FeatureDrift.FEATURES.size()];
+        private int driftFiles;
+
+        Summary(int threads) {
+            this.threads = threads;
+        }
+
+        synchronized void recordDrift(double[] drift) {
+            for (int i = 0; i < drift.length; i++) {
+                driftSum[i] += drift[i];
+                driftMax[i] = Math.max(driftMax[i], drift[i]);
+            }
+            driftFiles++;
+        }
+
+        void finish() {
+            elapsedNanos = System.nanoTime() - started;
+        }
+
+        String format() {
+            double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            int files = succeeded + failed;
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "Analysed %d files (%d failed) in %.2f s with %d feature threads%n",
+                    files, failed, seconds, threads));
+            sb.append(String.format(Locale.US, "Throughput: %.1f files/s, %.1f MB/s%n",
+                    files / seconds, bytes.sum() / 1e6 / seconds));
+            sb.append(stage("parse", parse));
+            sb.append(stage("features", features));
+            sb.append(stage("predict", predict));
+            sb.append(stage("total", total));
+            sb.append("Pipeline stages:").append(System.lineSeparator()).append(stages);
+            synchronized (this) {
+                if (driftFiles > 0) {
+                    sb.append(String.format(Locale.US, "Feature drift of decimated meshes over %d files:%n", driftFiles));
+                    for (int i = 0; i < driftSum.length; i++) {
+                        sb.append(String.format(Locale.US, "  %-13s mean %8.2f%%  max %8.2f%%%n",
+                                FeatureDrift.FEATURES.get(i), driftSum[i] / driftFiles * 100, driftMax[i] * 100));
+                    }
+                }
+            }
+            return sb.toString();
+        }
+
+        private static String stage(String name, LatencyHistogram h) {
+            return String.format(Locale.US, "  %-9s p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms%n", name,
+                    h.percentileNanos(50) / 1e6, h.percentileNanos(99) / 1e6, h.maxNanos() / 1e6);
+        }
+    }
+}
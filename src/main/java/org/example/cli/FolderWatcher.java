@@ -0,0 +1,439 @@
+package org.example.cli;
+
+import org.example.ai.ModelRegistry;
+import org.example.ai.RecommendationEngine.PredictionResult;
+import org.example.history.HistoryManager;
+import org.example.history.HistoryPayload;
+import org.example.model.RequirementProfile;
+import org.example.pipeline.AnalysisPipeline;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Watch-folder mode: {@code --watch <dir>} analyses every .obj file that appears or changes under the
+ * directories and appends the results to the history, until the process is stopped.
+ *
+ * Files are taken from {@link WatchService} events only; a directory is listed when it is first watched
+ * and again only if the OS reports lost events for it. A file is analysed once it has had no events for
+ * the quiet period and its size and mtime have stopped changing, so copies in progress are not read half
+ * written. Files already analysed with the same size and mtime, or the same content hash, are skipped
+ * (see {@link WatchState}). A file counts as analysed once its history entry has been written, so the state
+ * is updated when it is saved, after a flush of the history. Analysis runs on an {@link AnalysisPipeline},
+ * whose bounded queues slow the watcher down during a burst instead of buffering it. A directory that
+ * cannot be watched, because it vanished or is unreadable, is reported and left out.
+ *
+ * <pre>
+ * java -jar draxel.jar --watch /srv/inbox --watch /srv/inbox2 --profile functional
+ * </pre>
+ */
+public final class FolderWatcher implements AutoCloseable {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: --watch <dir> [--watch <dir> ...] [options]",
+            "  --quiet <ms>        how long a file must stay unchanged before it is analysed (default: 1000)",
+            "  --threads <n>       feature threads (default: available processors)",
+            "  --profile <flags>   comma-separated requirements, as for --batch (default: decorative)",
+            "  --state <file>      where to remember analysed files (default: ~/.3d-analyser/watch-state.tsv)");
+
+    private static final long POLL_MILLIS = 100;
+    private static final long SAVE_INTERVAL_MILLIS = 5000;
+
+    private final Options options;
+    private final WatchService watcher;
+    private final WatchState state;
+    private final AnalysisPipeline pipeline;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    // files with recent events, waiting for the quiet period; only touched by the watch loop
+    private final Map<Path, Pending> pending = new HashMap<>();
+    private final AtomicInteger analysed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    // analysed files whose history entries are queued but not yet known to be written
+    private final ConcurrentLinkedQueue<Analysed> unwritten = new ConcurrentLinkedQueue<>();
+    private long historyFailures;
+
+    private FolderWatcher(Options options, ModelRegistry models) throws IOException {
+        this.options = options;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.state = new WatchState(options.state());
+        this.pipeline = new AnalysisPipeline(models, options.pipeline());
+    }
+
+    public static boolean isWatchInvocation(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--watch")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Watches until the process is stopped. Returns 2 for bad arguments, 1 if the watch could not start.
+     */
+    public static int run(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+        // the watcher closes first: it drains the pipeline and flushes the history before the hold is released
+        try (HistoryManager.Hold history = HistoryManager.hold();
+             ModelRegistry models = ModelRegistry.fromSystemProperties();
+             FolderWatcher folderWatcher = new FolderWatcher(options, models)) {
+            // on Ctrl-C, end the loop and give the files in flight time to finish
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                folderWatcher.stop();
+                try {
+                    stopped.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                    // exiting anyway
+                }
+            }, "watch-shutdown"));
+            folderWatcher.watch();
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Watch failed: " + e.getMessage());
+            return 1;
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    private void watch() throws IOException, InterruptedException {
+        historyFailures = HistoryManager.failedEntries();
+        for (Path directory : options.directories()) {
+            register(directory);
+        }
+        System.out.printf(Locale.US, "Watching %d directories, %d files already analysed%n",
+                directories.size(), state.size());
+        long lastSave = System.currentTimeMillis();
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                // take everything that is queued, so a burst is handled in one pass
+                while (key != null) {
+                    handleEvents(key);
+                    key = watcher.poll();
+                }
+            } catch (ClosedWatchServiceException e) {
+                break;
+            }
+            processQuietFiles();
+            if (System.currentTimeMillis() - lastSave >= SAVE_INTERVAL_MILLIS) {
+                saveState();
+                lastSave = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void stop() {
+        try {
+            watcher.close();
+        } catch (IOException ignored) {
+            // the loop ends either way
+        }
+    }
+
+    // watches the directory and everything below it, and queues the .obj files already there; a directory
+    // that is gone by the time it is registered, or unreadable, is skipped with its subtree
+    private void register(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                try {
+                    WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    directories.put(key, dir);
+                    return FileVisitResult.CONTINUE;
+                } catch (NoSuchFileException e) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                } catch (IOException e) {
+                    System.err.println("Not watching " + dir + ": " + e);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (isObj(file)) {
+                    touch(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                if (!(e instanceof NoSuchFileException)) {
+                    System.err.println("Not watching " + file + ": " + e);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void handleEvents(WatchKey key) {
+        Path dir = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) {
+                break;
+            }
+            try {
+                handleEvent(dir, event);
+            } catch (IOException e) {
+                // one directory the watcher cannot read must not end the watch
+                System.err.println("Could not handle " + event.kind() + " in " + dir + ": " + e);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private void handleEvent(Path dir, WatchEvent<?> event) throws IOException {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            rescan(dir);
+            return;
+        }
+        Path path = dir.resolve((Path) event.context());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            pending.remove(path);
+            state.remove(path);
+        } else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                register(path);
+            }
+        } else if (isObj(path)) {
+            touch(path);
+        }
+    }
+
+    // the OS dropped events for this directory, so list it; unchanged files are skipped cheaply
+    private void rescan(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> Files.isRegularFile(p) && isObj(p)).forEach(this::touch);
+        } catch (NoSuchFileException ignored) {
+            // removed meanwhile
+        }
+    }
+
+    private void touch(Path file) {
+        pending.computeIfAbsent(file, Pending::new).lastEvent = System.nanoTime();
+    }
+
+    private void processQuietFiles() throws InterruptedException {
+        long now = System.nanoTime();
+        long quiet = TimeUnit.MILLISECONDS.toNanos(options.quietMillis());
+        List<Pending> ready = new ArrayList<>();
+        for (Iterator<Map.Entry<Path, Pending>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Pending> e = it.next();
+            Pending p = e.getValue();
+            if (now - p.lastEvent < quiet) {
+                continue;
+            }
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(e.getKey(), BasicFileAttributes.class);
+            } catch (IOException gone) {
+                it.remove();
+                continue;
+            }
+            long modified = attrs.lastModifiedTime().toMillis();
+            if (attrs.size() != p.size || modified != p.modified) {
+                // still being written without events (or first look): wait another quiet period
+                p.size = attrs.size();
+                p.modified = modified;
+                p.lastEvent = now;
+                continue;
+            }
+            it.remove();
+            ready.add(p);
+        }
+        for (Pending p : ready) {
+            analyse(p.path, p.size, p.modified);
+        }
+    }
+
+    private void analyse(Path file, long size, long modified) throws InterruptedException {
+        WatchState.Entry known = state.get(file);
+        if (known != null && known.sameFile(size, modified)) {
+            skipped.incrementAndGet();
+            return;
+        }
+        String hash;
+        try {
+            hash = WatchState.hash(file);
+        } catch (IOException e) {
+            return; // removed or unreadable; a later event brings it back
+        }
+        WatchState.Entry entry = new WatchState.Entry(size, modified, hash);
+        if (known != null && known.hash().equals(hash)) {
+            state.put(file, entry);
+            skipped.incrementAndGet();
+            return;
+        }
+        RequirementProfile profile = options.profile();
+        pipeline.submit(file, profile).whenComplete((result, error) -> {
+            // a broken file is remembered too, so it is only retried once it changes
+            if (error != null) {
+                state.put(file, entry);
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                failed.incrementAndGet();
+                System.err.println("Failed " + file + ": " + cause.getMessage());
+                return;
+            }
+            analysed.incrementAndGet();
+            PredictionResult p = result.prediction();
+            System.out.printf(Locale.US, "%s: %s, %s %s%n", file, p.filament(), p.infillPercent(), p.infillPattern());
+            // the state is updated once the entry is written, see saveState
+            if (HistoryManager.appendEntry(file.getFileName().toString(), HistoryPayload.of(
+                    result.analysis().features(), profile, p.filament(), p.infillPercent(), p.infillPattern()))) {
+                unwritten.add(new Analysed(file, entry));
+            } else {
+                System.err.println("Could not add " + file + " to the history; it will be analysed again");
+            }
+        });
+    }
+
+    private void saveState() {
+        recordWritten();
+        try {
+            state.save();
+        } catch (IOException e) {
+            System.err.println("Could not save watch state: " + e.getMessage());
+        }
+    }
+
+    // only a file whose entry made it into the history counts as analysed, so the entries queued so far are
+    // flushed first; if the writer failed on any entry meanwhile, which ones is unknown and all of these
+    // files are left to be analysed again
+    private void recordWritten() {
+        List<Analysed> written = new ArrayList<>();
+        for (Analysed a; (a = unwritten.poll()) != null; ) {
+            written.add(a);
+        }
+        HistoryManager.flush();
+        long failures = HistoryManager.failedEntries();
+        if (failures != historyFailures) {
+            System.err.printf(Locale.US, "Could not write %d history entries; %d files will be analysed again%n",
+                    failures - historyFailures, written.size());
+            historyFailures = failures;
+            return;
+        }
+        for (Analysed a : written) {
+            state.put(a.file(), a.entry());
+        }
+    }
+
+    private static boolean isObj(Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".obj");
+    }
+
+    /**
+     * Finishes the files in flight and saves the state.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        stop();
+        try {
+            pipeline.close();
+        } finally {
+            saveState();
+            System.out.printf(Locale.US, "Stopped: %d analysed, %d unchanged, %d failed%n",
+                    analysed.get(), skipped.get(), failed.get());
+        }
+    }
+
+    private record Analysed(Path file, WatchState.Entry entry) {
+    }
+
+    private static final class Pending {
+        final Path path;
+        long lastEvent;
+        long size = -1;
+        long modified = -1;
+
+        Pending(Path path) {
+            this.path = path;
+        }
+    }
+
+    // ----------------------- options -----------------------
+
+    record Options(List<Path> directories, long quietMillis, AnalysisPipeline.Config pipeline,
+                   RequirementProfile profile, Path state) {
+
+        static Options parse(String[] args) {
+            List<Path> directories = new ArrayList<>();
+            long quietMillis = 1000;
+            AnalysisPipeline.Config pipeline = AnalysisPipeline.Config.defaults();
+            RequirementProfile profile = BatchAnalyzer.Options.profile("decorative");
+            Path state = HistoryManager.directory().resolve("watch-state.tsv");
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--watch" -> directories.add(Path.of(value(args, ++i, "--watch")).toAbsolutePath().normalize());
+                    case "--quiet" -> quietMillis = number(args, ++i, "--quiet");
+                    case "--threads" -> pipeline = pipeline.withCpuThreads((int) number(args, ++i, "--threads"));
+                    case "--profile" -> profile = BatchAnalyzer.Options.profile(value(args, ++i, "--profile"));
+                    case "--state" -> state = Path.of(value(args, ++i, "--state"));
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            for (Path directory : directories) {
+                if (!Files.isDirectory(directory)) {
+                    throw new IllegalArgumentException("--watch needs an existing directory: " + directory);
+                }
+            }
+            return new Options(List.copyOf(directories), quietMillis, pipeline, profile, state);
+        }
+
+        private static String value(String[] args, int i, String option) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            return args[i];
+        }
+
+        private static long number(String[] args, int i, String option) {
+            try {
+                long n = Long.parseLong(value(args, i, option));
+                if (n >= 1) {
+                    return n;
+                }
+            } catch (NumberFormatException ignored) {
+                // reported below
+            }
+            throw new IllegalArgumentException(option + " must be a number of at least 1");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the folder watcher has already analysed: size, modification time and SHA-256 per file, kept in a
+ * tab-separated file so a restart does not analyse the whole inbox again.
+ *
+ * Size and mtime are compared first and are free; the hash is only computed when they differ, which
+ * catches files that were touched or copied over with the same content.
+ */
+final class WatchState {
+
+    private final Path file;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    WatchState(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] parts = line.split("\t", 4);
+                    if (parts.length == 4) {
+                        try {
+                            entries.put(Path.of(parts[3]),
+                                    new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+                        } catch (RuntimeException ignored) {
+                            // a damaged line only means that file is analysed again
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    Entry get(Path path) {
+        return entries.get(path);
+    }
+
+    void put(Path path, Entry entry) {
+        entries.put(path, entry);
+        dirty = true;
+    }
+
+    void remove(Path path) {
+        if (entries.remove(path) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the state if it changed since the last save, replacing the file atomically.
+     */
+    synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<Path, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.write(entry.size() + "\t" + entry.modified() + "\t" + entry.hash() + "\t" + e.getKey());
+                out.newLine();
+            }
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String hash(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    record Entry(long size, long modified, String hash) {
+
+        boolean sameFile(long size, long modified) {
+            return this.size == size && this.modified == modified;
+        }
+    }
+}
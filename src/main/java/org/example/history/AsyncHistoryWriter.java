@@ -0,0 +1,172 @@
+package org.example.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes history entries from a bounded queue on one background thread.
+ *
+ * Whatever has piled up since the last write is committed with a single {@link HistoryLog#appendAll} call
+ * (group commit), so producers never wait for the disk unless the queue is full. The log is fsynced at most
+ * once per {@code fsyncIntervalMillis}: 0 syncs after every commit, a negative value leaves it to the OS.
+ * {@link #close()} drains the queue and syncs before returning; entries submitted after it has started are
+ * rejected, never silently dropped.
+ */
+public class AsyncHistoryWriter implements Closeable {
+
+    private static final int MAX_BATCH = 1024;
+
+    private final HistoryLog log;
+    private final BlockingQueue<HistoryEntry> queue;
+    private final long fsyncIntervalMillis;
+    private final Thread thread;
+    private final Object progress = new Object();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    // submit holds the read lock from the closed check to the enqueue, so close cannot slip in between
+    private final ReadWriteLock gate = new ReentrantReadWriteLock();
+
+    private long written;
+    private volatile boolean closed;
+
+    public AsyncHistoryWriter(HistoryLog log, int capacity, long fsyncIntervalMillis) {
+        this.log = log;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.thread = new Thread(this::run, "history-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues the entry; blocks only while the queue is full.
+     *
+     * @throws IllegalStateException if the writer is closed
+     */
+    public void submit(HistoryEntry entry) throws InterruptedException {
+        gate.readLock().lockInterruptibly();
+        try {
+            if (closed) {
+                throw new IllegalStateException("History writer is closed");
+            }
+            // count before enqueueing so flush() never sees written > submitted
+            submitted.incrementAndGet();
+            queue.put(entry); // the writer thread keeps draining until closed is set, which needs this lock
+        } finally {
+            gate.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until every entry submitted before this call has been written (not necessarily fsynced).
+     */
+    public void flush() throws InterruptedException {
+        long target = submitted.get();
+        synchronized (progress) {
+            while (written < target && thread.isAlive()) {
+                progress.wait(100);
+            }
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Entries dropped because the log could not be written.
+     */
+    public long failedEntries() {
+        return failed.get();
+    }
+
+    private void run() {
+        List<HistoryEntry> batch = new ArrayList<>();
+        long lastSync = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            try {
+                long waitMillis = dirty && fsyncIntervalMillis > 0 ? fsyncIntervalMillis : 200;
+                HistoryEntry first = queue.poll(waitMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    commit(batch);
+                    dirty = true;
+                }
+                if (dirty && fsyncIntervalMillis >= 0
+                        && System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis)) {
+                    sync();
+                    lastSync = System.nanoTime();
+                    dirty = false;
+                }
+                if (closed && queue.isEmpty()) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                if (closed) {
+                    break;
+                }
+            }
+        }
+
+        queue.drainTo(batch);
+        commit(batch);
+        if (fsyncIntervalMillis >= 0) {
+            sync();
+        }
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+    }
+
+    private void commit(List<HistoryEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            log.appendAll(batch);
+        } catch (IOException e) {
+            failed.addAndGet(batch.size());
+        }
+        synchronized (progress) {
+            written += batch.size();
+            progress.notifyAll();
+        }
+        batch.clear();
+    }
+
+    private void sync() {
+        try {
+            log.force();
+        } catch (IOException ignored) {
+            // the data is written; durability is best-effort like the rest of the history
+        }
+    }
+
+    @Override
+    public void close() {
+        gate.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            gate.writeLock().unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package org.example.history;
+
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Columnar copy of the analysis history for aggregate questions: every feature is a float column,
+ * every predicted label a byte column (codes into a per-label dictionary), plus the requirement flags
+ * and the timestamp. Columns are memory-mapped files, so a scan over millions of rows is a tight loop
+ * over primitives with no JSON or string parsing.
+ *
+ * Row {@code i} is history record {@code i}; {@link #sync(HistoryStore)} appends the records written
+ * since the last call. The archive is a cache of the history and is reset if the history shrinks.
+ */
+public class FeatureArchive implements Closeable {
+
+    public enum Feature {
+        LINEARITY("Linearity"),
+        PLANARITY("Planarity"),
+        SPHERICITY("Sphericity"),
+        ANISOTROPY("Anisotropy"),
+        CURVATURE("Curvature"),
+        EULER_NUMBER("EulerNumber"),
+        COMPACTNESS("Compactness"),
+        ASPECT_RATIO("AspectRatio"),
+        CONVEXITY("Convexity"),
+        LOCAL_DENSITY("LocalDensity");
+
+        private final String key;
+
+        Feature(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Key of this feature in {@link HistoryEntry#results()}.
+         */
+        public String key() {
+            return key;
+        }
+    }
+
+    public enum Label {
+        FILAMENT("Filament"),
+        INFILL_PERCENT("InfillPercent"),
+        INFILL_PATTERN("InfillPattern");
+
+        private final String key;
+
+        Label(String key) {
+            this.key = key;
+        }
+
+        public String key() {
+            return key;
+        }
+    }
+
+    public static final String UNKNOWN = "?";
+
+    // same order as the RequirementProfile constructor
+    private static final String[] PROFILE_KEYS = {"Functional", "Decorative", "Force", "Friction", "WeightSupport", "Outdoor", "Detail"};
+    private static final int UNKNOWN_CODE = 255;
+    private static final int MAGIC = 0x44584641; // "DXFA"
+    private static final int VERSION = 1;
+    private static final int INITIAL_ROWS = 1024;
+
+    private final Path directory;
+    private final HistoryLock lock;
+    private final FileChannel meta;
+    private final Map<Feature, Column> features = new EnumMap<>(Feature.class);
+    private final Map<Label, Column> labels = new EnumMap<>(Label.class);
+    private final Map<Label, List<String>> dictionaries = new EnumMap<>(Label.class);
+    private final Map<Label, Map<String, Integer>> codes = new EnumMap<>(Label.class);
+    private final Column profiles;
+    private final Column times;
+    private int rows;
+    // rows [0, ordered) were checked for time order, and chronological is whether they are in it
+    private int ordered;
+    private boolean chronological = true;
+
+    public FeatureArchive(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.lock = HistoryLock.forFile(directory.resolve("archive.lock"));
+        this.meta = FileChannel.open(directory.resolve("archive.meta"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        for (Feature feature : Feature.values()) {
+            features.put(feature, new Column(directory.resolve(feature.key() + ".f32"), Float.BYTES));
+        }
+        for (Label label : Label.values()) {
+            labels.put(label, new Column(directory.resolve(label.key() + ".u8"), 1));
+            dictionaries.put(label, new ArrayList<>());
+            codes.put(label, new HashMap<>());
+        }
+        this.profiles = new Column(directory.resolve("Profile.u8"), 1);
+        this.times = new Column(directory.resolve("Timestamp.i64"), Long.BYTES);
+        lock.call(() -> {
+            load();
+            return null;
+        });
+    }
+
+    public synchronized int rows() {
+        return rows;
+    }
+
+    /**
+     * Appends the history records that are not archived yet.
+     */
+    public synchronized void sync(HistoryStore store) throws IOException {
+        lock.call(() -> {
+            load(); // another process may have synced since
+            boolean reset = store.size() < rows;
+            if (reset) {
+                rows = 0;
+                for (Label label : Label.values()) {
+                    dictionaries.get(label).clear();
+                    codes.get(label).clear();
+                    Files.deleteIfExists(dictionaryFile(label));
+                }
+            }
+            int before = rows;
+            store.scan(rows, this::append);
+            if (rows != before || reset) {
+                for (Column column : columns()) {
+                    column.force();
+                }
+                writeMeta();
+            }
+            return null;
+        });
+    }
+
+    private void append(int id, HistoryEntry entry) throws IOException {
+        if (id != rows) {
+            throw new IOException("History record " + id + " does not follow archive row " + rows);
+        }
+        Map<String, String> results = entry.results() != null ? entry.results() : Map.of();
+        for (Feature feature : Feature.values()) {
+            features.get(feature).putFloat(rows, number(results.get(feature.key())));
+        }
+        for (Label label : Label.values()) {
+            labels.get(label).putByte(rows, (byte) code(label, results.get(label.key())));
+        }
+        int flags = 0;
+        for (int i = 0; i < PROFILE_KEYS.length; i++) {
+            if (Boolean.parseBoolean(results.get(PROFILE_KEYS[i]))) {
+                flags |= 1 << i;
+            }
+        }
+        profiles.putByte(rows, (byte) flags);
+        times.putLong(rows, HistoryStore.epochSeconds(entry.timestamp()));
+        rows++;
+    }
+
+    // history values are written with the default locale, so accept a decimal comma too
+    private static float number(String value) {
+        if (value == null) {
+            return Float.NaN;
+        }
+        try {
+            return Float.parseFloat(value.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    private int code(Label label, String value) throws IOException {
+        if (value == null) {
+            return UNKNOWN_CODE;
+        }
+        Integer code = codes.get(label).get(value);
+        if (code != null) {
+            return code;
+        }
+        List<String> dictionary = dictionaries.get(label);
+        if (dictionary.size() >= UNKNOWN_CODE) {
+            return UNKNOWN_CODE;
+        }
+        // the dictionary is written before the rows that use it
+        Files.writeString(dictionaryFile(label), value + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        dictionary.add(value);
+        codes.get(label).put(value, dictionary.size() - 1);
+        return dictionary.size() - 1;
+    }
+
+    // ----------------------- aggregations -----------------------
+
+    public synchronized Range all() {
+        return new Range(0, rows);
+    }
+
+    /**
+     * Rows with {@code from <= timestamp < to}; either bound may be {@code null}, and rows without a
+     * timestamp are left out. History is normally appended in time order, so this is a binary search on the
+     * timestamp column. After the clock moved back it is not, and the range instead spans every row and
+     * the aggregations check each row's time.
+     */
+    public synchronized Range between(LocalDateTime from, LocalDateTime to) {
+        long fromTime = from != null ? from.toEpochSecond(ZoneOffset.UTC) : HistoryStore.UNKNOWN_TIME + 1;
+        long toTime = to != null ? to.toEpochSecond(ZoneOffset.UTC) : Long.MAX_VALUE;
+        if (!chronological()) {
+            return new Range(0, rows, fromTime, toTime);
+        }
+        // rows without a timestamp sort first
+        int lo = lowerBound(fromTime);
+        int hi = to != null ? lowerBound(toTime) : rows;
+        return new Range(lo, Math.max(lo, hi));
+    }
+
+    private boolean chronological() {
+        if (ordered > rows) {
+            ordered = 0;
+            chronological = true;
+        }
+        for (; ordered < rows; ordered++) {
+            if (ordered > 0 && times.getLong(ordered) < times.getLong(ordered - 1)) {
+                chronological = false;
+            }
+        }
+        return chronological;
+    }
+
+    private boolean outside(Range range, int row) {
+        return range.timed() && !range.holds(times.getLong(row));
+    }
+
+    private int lowerBound(long time) {
+        int lo = 0;
+        int hi = rows;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times.getLong(mid) < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public synchronized double mean(Feature feature, Range range) {
+        Column column = features.get(feature);
+        double sum = 0;
+        long n = 0;
+        for (int row = range.from(); row < range.to(); row++) {
+            float v = column.getFloat(row);
+            if (!Float.isNaN(v) && !outside(range, row)) {
+                sum += v;
+                n++;
+            }
+        }
+        return n == 0 ? Double.NaN : sum / n;
+    }
+
+    /**
+     * Equal-width histogram between the smallest and largest value in the range.
+     */
+    public synchronized Histogram histogram(Feature feature, Range range, int bins) {
+        Column column = features.get(feature);
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int row = range.from(); row < range.to(); row++) {
+            float v = column.getFloat(row);
+            if (outside(range, row)) {
+                continue;
+            }
+            if (v < min) {
+                min = v;
+            }
+            if (v > max) {
+                max = v;
+            }
+        }
+        long[] counts = new long[bins];
+        if (min > max) {
+            return new Histogram(feature, 0, 0, counts);
+        }
+        double scale = max > min ? bins / ((double) max - min) : 0;
+        for (int row = range.from(); row < range.to(); row++) {
+            float v = column.getFloat(row);
+            if (!Float.isNaN(v) && !outside(range, row)) {
+                counts[Math.min(bins - 1, (int) ((v - min) * scale))]++;
+            }
+        }
+        return new Histogram(feature, min, max, counts);
+    }
+
+    /**
+     * Number of rows per label value, in order of first appearance.
+     */
+    public synchronized Map<String, Long> countBy(Label label, Range range) {
+        Column column = labels.get(label);
+        long[] counts = new long[256];
+        for (int row = range.from(); row < range.to(); row++) {
+            if (!outside(range, row)) {
+                counts[column.getByte(row) & 0xFF]++;
+            }
+        }
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.merge(labelName(label, code), counts[code], Long::sum);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Mean of the feature per label value.
+     */
+    public synchronized Map<String, Double> meanBy(Label label, Feature feature, Range range) {
+        Column labelColumn = labels.get(label);
+        Column featureColumn = features.get(feature);
+        long[] counts = new long[256];
+        double[] sums = new double[256];
+        for (int row = range.from(); row < range.to(); row++) {
+            float v = featureColumn.getFloat(row);
+            if (!Float.isNaN(v) && !outside(range, row)) {
+                int code = labelColumn.getByte(row) & 0xFF;
+                sums[code] += v;
+                counts[code]++;
+            }
+        }
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                result.put(labelName(label, code), sums[code] / counts[code]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reorders the rows by the label's value, alphabetically with unknown values last, keeping the given
+     * order among rows with the same value. A counting sort over the label codes, so linear in rows.
+     */
+    public synchronized void sortBy(Label label, int[] rows, boolean descending) {
+        Column column = labels.get(label);
+        Integer[] order = new Integer[256];
+        for (int code = 0; code < order.length; code++) {
+            order[code] = code;
+        }
+        Arrays.sort(order, (a, b) -> {
+            String x = labelName(label, a);
+            String y = labelName(label, b);
+            if (x.equals(UNKNOWN) != y.equals(UNKNOWN)) {
+                return x.equals(UNKNOWN) ? 1 : -1;
+            }
+            return descending ? y.compareTo(x) : x.compareTo(y);
+        });
+        int[] rank = new int[256];
+        for (int i = 0; i < order.length; i++) {
+            rank[order[i]] = i;
+        }
+
+        int[] starts = new int[257];
+        for (int row : rows) {
+            starts[rank[column.getByte(row) & 0xFF] + 1]++;
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] sorted = new int[rows.length];
+        for (int row : rows) {
+            sorted[starts[rank[column.getByte(row) & 0xFF]]++] = row;
+        }
+        System.arraycopy(sorted, 0, rows, 0, rows.length);
+    }
+
+    private String labelName(Label label, int code) {
+        List<String> dictionary = dictionaries.get(label);
+        return code < dictionary.size() ? dictionary.get(code) : UNKNOWN;
+    }
+
+    // ----------------------- row access -----------------------
+
+    public synchronized float value(Feature feature, int row) {
+        return features.get(feature).getFloat(row);
+    }
+
+    public synchronized String label(Label label, int row) {
+        return labelName(label, labels.get(label).getByte(row) & 0xFF);
+    }
+
+    /**
+     * Copies the feature's values for the range into {@code dst}, the first at {@code offset} and each
+     * next one {@code stride} floats further. Every row of the range is copied, so it must not be one of
+     * {@link #between}'s time-checked ranges.
+     */
+    public synchronized void copy(Feature feature, Range range, float[] dst, int offset, int stride) {
+        Column column = features.get(feature);
+        for (int row = range.from(), i = offset; row < range.to(); row++, i += stride) {
+            dst[i] = column.getFloat(row);
+        }
+    }
+
+    public synchronized ModelFeatures features(int row) {
+        float[] v = new float[Feature.values().length];
+        for (Feature feature : Feature.values()) {
+            v[feature.ordinal()] = features.get(feature).getFloat(row);
+        }
+        return new ModelFeatures(v[0], v[1], v[2], v[3], v[4], v[5], v[6], v[7], v[8], v[9]);
+    }
+
+    public synchronized RequirementProfile profile(int row) {
+        int flags = profiles.getByte(row);
+        return new RequirementProfile(bit(flags, 0), bit(flags, 1), bit(flags, 2), bit(flags, 3),
+                bit(flags, 4), bit(flags, 5), bit(flags, 6));
+    }
+
+    private static boolean bit(int flags, int index) {
+        return (flags & (1 << index)) != 0;
+    }
+
+    // ----------------------- storage -----------------------
+
+    private void load() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        if (meta.size() < 16 || meta.read(header, 0) < 16 || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            rows = 0;
+        } else {
+            rows = (int) header.getLong(8);
+        }
+        for (Label label : Label.values()) {
+            Path file = dictionaryFile(label);
+            List<String> dictionary = dictionaries.get(label);
+            dictionary.clear();
+            codes.get(label).clear();
+            if (Files.exists(file)) {
+                for (String value : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    codes.get(label).put(value, dictionary.size());
+                    dictionary.add(value);
+                }
+            }
+        }
+        for (Column column : columns()) {
+            column.ensureCapacity(Math.max(rows, INITIAL_ROWS));
+        }
+    }
+
+    private void writeMeta() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16).putInt(MAGIC).putInt(VERSION).putLong(rows).flip();
+        meta.write(header, 0);
+        meta.force(false);
+    }
+
+    private Path dictionaryFile(Label label) {
+        return directory.resolve(label.key() + ".dict");
+    }
+
+    private List<Column> columns() {
+        List<Column> all = new ArrayList<>(features.values());
+        all.addAll(labels.values());
+        all.add(profiles);
+        all.add(times);
+        return all;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Column column : columns()) {
+            column.close();
+        }
+        meta.close();
+    }
+
+    /**
+     * Half-open row range {@code [from, to)}, of which only rows with {@code fromTime <= timestamp < toTime}
+     * count.
+     */
+    public record Range(int from, int to, long fromTime, long toTime) {
+
+        public Range(int from, int to) {
+            this(from, to, Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        /**
+         * Rows spanned; an upper bound of the rows that count if the range checks times.
+         */
+        public int size() {
+            return to - from;
+        }
+
+        boolean timed() {
+            return fromTime != Long.MIN_VALUE || toTime != Long.MAX_VALUE;
+        }
+
+        boolean holds(long time) {
+            return time >= fromTime && time < toTime;
+        }
+    }
+
+    public record Histogram(Feature feature, double min, double max, long[] counts) {
+
+        public double binWidth() {
+            return counts.length == 0 ? 0 : (max - min) / counts.length;
+        }
+
+        public String formatSummary() {
+            StringBuilder sb = new StringBuilder(feature.key()).append(System.lineSeparator());
+            for (int i = 0; i < counts.length; i++) {
+                sb.append(String.format(Locale.US, "  [%.4f, %.4f) %d%n",
+                        min + i * binWidth(), min + (i + 1) * binWidth(), counts[i]));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * One fixed-width column in its own file, mapped read-write and remapped when it has to grow.
+     */
+    private static final class Column implements Closeable {
+
+        private final FileChannel channel;
+        private final int width;
+        private MappedByteBuffer buffer;
+        private long capacity;
+
+        Column(Path file, int width) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.width = width;
+        }
+
+        void ensureCapacity(long rows) throws IOException {
+            if (buffer != null && rows <= capacity) {
+                return;
+            }
+            long grown = Math.max(rows, Math.max(INITIAL_ROWS, capacity * 2));
+            grown = Math.max(grown, channel.size() / width);
+            if (grown * width > Integer.MAX_VALUE) {
+                throw new IOException("Feature archive column is full");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, grown * width);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            capacity = grown;
+        }
+
+        float getFloat(int row) {
+            return buffer.getFloat(row * Float.BYTES);
+        }
+
+        byte getByte(int row) {
+            return buffer.get(row);
+        }
+
+        long getLong(int row) {
+            return buffer.getLong(row * Long.BYTES);
+        }
+
+        void putFloat(int row, float value) throws IOException {
+            ensureCapacity(row + 1L);
+            buffer.putFloat(row * Float.BYTES, value);
+        }
+
+        void putByte(int row, byte value) throws IOException {
+            ensureCapacity(row + 1L);
+            buffer.put(row, value);
+        }
+
+        void putLong(int row, long value) throws IOException {
+            ensureCapacity(row + 1L);
+            buffer.putLong(row * Long.BYTES, value);
+        }
+
+        void force() {
+            buffer.force();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sidecar file next to the history log with one fixed-size record per log entry:
+ * byte offset, line length, timestamp and the hashes of the file name and filament.
+ * It is a cache of the log and can always be rebuilt from it. Every store of the log shares the file, so
+ * callers hold the index lock while they read or extend it.
+ */
+class HistoryIndex implements Closeable {
+
+    static final int RECORD_BYTES = 8 + 4 + 8 + 4 + 4;
+
+    private static final int MAGIC = 0x44584849; // "DXHI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+
+    private final Path file;
+    private FileChannel channel;
+
+    HistoryIndex(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the index and returns how many complete records it holds. A file with a foreign header is
+     * reset, and a torn trailing record is cut off.
+     */
+    long open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        if (channel.size() < HEADER_BYTES || channel.read(header, 0) < HEADER_BYTES
+                || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            reset();
+            return 0;
+        }
+        long records = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        channel.truncate(HEADER_BYTES + records * RECORD_BYTES);
+        return records;
+    }
+
+    /**
+     * Number of complete records in the file now, including those other stores appended since it was opened.
+     */
+    long records() throws IOException {
+        return Math.max(0, channel.size() - HEADER_BYTES) / RECORD_BYTES;
+    }
+
+    /**
+     * Log offset of one record.
+     */
+    long offset(long record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        long position = HEADER_BYTES + record * RECORD_BYTES;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("History index ended early");
+            }
+        }
+        return buffer.getLong(0);
+    }
+
+    void reset() throws IOException {
+        channel.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip();
+        channel.write(header, 0);
+    }
+
+    /**
+     * Reads records {@code from} to {@code to - 1} into the sink, in log order.
+     */
+    void read(long from, long to, RecordSink sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 4096);
+        long position = HEADER_BYTES + from * RECORD_BYTES;
+        long end = HEADER_BYTES + to * RECORD_BYTES;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("History index ended early");
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                sink.accept(buffer.getLong(), buffer.getInt(), buffer.getLong(), buffer.getInt(), buffer.getInt());
+            }
+            position += buffer.limit();
+        }
+    }
+
+    /**
+     * Appends records packed in the buffer (RECORD_BYTES each) at the end of the index.
+     */
+    void append(ByteBuffer records) throws IOException {
+        long position = channel.size();
+        while (records.hasRemaining()) {
+            position += channel.write(records, position);
+        }
+    }
+
+    static void put(ByteBuffer buffer, long offset, int length, long epochSeconds, int fileNameHash, int filamentHash) {
+        buffer.putLong(offset).putInt(length).putLong(epochSeconds).putInt(fileNameHash).putInt(filamentHash);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    @FunctionalInterface
+    interface RecordSink {
+        void accept(long offset, int length, long epochSeconds, int fileNameHash, int filamentHash) throws IOException;
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.history;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock shared by every thread and every process that uses the same lock file.
+ *
+ * File locks are held per JVM, so the threads of one process first queue on a {@link ReentrantLock}
+ * and only the outermost holder takes the {@link FileLock}. There is one instance per lock file.
+ */
+final class HistoryLock {
+
+    private static final Map<Path, HistoryLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final ReentrantLock local = new ReentrantLock();
+
+    private HistoryLock(Path file) {
+        this.file = file;
+    }
+
+    static HistoryLock forFile(Path file) {
+        return LOCKS.computeIfAbsent(file.toAbsolutePath().normalize(), HistoryLock::new);
+    }
+
+    <T> T call(IOAction<T> action) throws IOException {
+        local.lock();
+        try {
+            if (local.getHoldCount() > 1) {
+                return action.run();
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                return action.run();
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    /**
+     * Runs the action only if nobody else holds the lock; returns whether it ran.
+     */
+    boolean tryRun(IOAction<?> action) throws IOException {
+        if (!local.tryLock()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return false;
+            }
+            try (lock) {
+                action.run();
+                return true;
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    interface IOAction<T> {
+        T run() throws IOException;
+    }
+}
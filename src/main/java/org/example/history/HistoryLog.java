@@ -0,0 +1,550 @@
+package org.example.history;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.example.metrics.HistoryWriteEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Append-only JSON Lines history: one compact {@link HistoryEntry} per line.
+ *
+ * Several processes may share the log. Every append takes an exclusive {@link HistoryLock} on
+ * {@code <name>.lock}, so entries from different writers never interleave. Once the active file passes
+ * {@code segmentBytes} it is renamed into a sealed segment ({@code <name>-000001.jsonl}, ...) listed in
+ * {@code <name>.manifest}. Sealing is a rename, so no writer ever waits for a rewrite. When there are more
+ * than {@code maxSegments} sealed segments, a background compactor concatenates runs of small neighbours
+ * into one segment, or the smallest adjacent pair if no run is small enough, until the count is back within
+ * the limit; the copy happens outside the lock and only the manifest swap is done under it.
+ *
+ * Readers see the concatenation of the sealed segments and the active file (see {@link Snapshot}). Neither
+ * rotation nor compaction changes a byte position in that concatenation, so positions are stable record
+ * addresses. A crash can at worst leave one torn line, which readers skip.
+ */
+public class HistoryLog implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = Long.getLong("draxel.history.segmentBytes", 4L << 20);
+    public static final int DEFAULT_MAX_SEGMENTS = Integer.getInteger("draxel.history.maxSegments", 8);
+
+    private static final Gson GSON = new Gson();
+    private static final byte NEWLINE = '\n';
+    private static final String EXTENSION = ".jsonl";
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "history-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path file;
+    private final Path directory;
+    private final String stem;
+    private final Path manifestFile;
+    private final HistoryLock lock;
+    private final HistoryLock compactionLock;
+    private final long segmentBytes;
+    private final int maxSegments;
+
+    private FileChannel channel;
+    private Object channelKey;
+    private boolean recovered;
+    // compactions this instance queued; close() waits for them so nothing writes to the directory after it
+    private final List<Future<?>> compactions = new ArrayList<>();
+
+    public HistoryLog(Path file) {
+        this(file, DEFAULT_SEGMENT_BYTES, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public HistoryLog(Path file, long segmentBytes, int maxSegments) {
+        this.file = file.toAbsolutePath();
+        this.directory = this.file.getParent();
+        String name = this.file.getFileName().toString();
+        this.stem = name.endsWith(EXTENSION) ? name.substring(0, name.length() - EXTENSION.length()) : name;
+        this.manifestFile = directory.resolve(stem + ".manifest");
+        this.lock = HistoryLock.forFile(directory.resolve(stem + ".lock"));
+        this.compactionLock = HistoryLock.forFile(directory.resolve(stem + ".compact.lock"));
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * The active file, which receives new entries.
+     */
+    public Path file() {
+        return file;
+    }
+
+    public void append(HistoryEntry entry) throws IOException {
+        appendAll(List.of(entry));
+    }
+
+    /**
+     * Appends all entries with one write call while holding the history lock.
+     */
+    public void appendAll(List<HistoryEntry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        byte[] bytes = encode(entries);
+        HistoryWriteEvent event = HistoryWriteEvent.append(entries.size(), bytes.length);
+        boolean sealed = lock.call(() -> {
+            synchronized (this) {
+                FileChannel ch = channel();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    ch.write(buffer);
+                }
+                if (ch.size() < segmentBytes) {
+                    return false;
+                }
+                seal();
+                return true;
+            }
+        });
+        event.finish();
+        if (sealed) {
+            synchronized (compactions) {
+                compactions.removeIf(Future::isDone);
+                compactions.add(COMPACTOR.submit(() -> {
+                    try {
+                        compact();
+                    } catch (IOException ignored) {
+                        // the segments stay as they are; the next rotation tries again
+                    }
+                }));
+            }
+        }
+    }
+
+    /**
+     * Runs {@code action} while holding the history lock.
+     */
+    <T> T locked(HistoryLock.IOAction<T> action) throws IOException {
+        return lock.call(action);
+    }
+
+    static byte[] encode(List<HistoryEntry> entries) {
+        StringBuilder sb = new StringBuilder(entries.size() * 512);
+        for (HistoryEntry entry : entries) {
+            sb.append(GSON.toJson(entry)).append((char) NEWLINE);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static HistoryEntry decode(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            return GSON.fromJson(line, HistoryEntry.class);
+        } catch (JsonParseException e) {
+            return null; // torn or foreign line
+        }
+    }
+
+    /**
+     * Flushes written entries to the storage device.
+     */
+    public synchronized void force() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            HistoryWriteEvent event = HistoryWriteEvent.force();
+            channel.force(false);
+            event.finish();
+        }
+    }
+
+    public List<HistoryEntry> readAll() throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        try (Snapshot snapshot = snapshot()) {
+            snapshot.forEachLine(0, (offset, line, length) -> {
+                HistoryEntry entry = decode(new String(line, 0, length, StandardCharsets.UTF_8));
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            });
+        }
+        return entries;
+    }
+
+    /**
+     * A consistent read view of the whole history as it is right now.
+     */
+    Snapshot snapshot() throws IOException {
+        return lock.call(() -> {
+            recover();
+            SegmentManifest manifest = SegmentManifest.read(manifestFile);
+            List<FileChannel> channels = new ArrayList<>();
+            List<Long> lengths = new ArrayList<>();
+            try {
+                for (SegmentManifest.Segment segment : manifest.segments()) {
+                    channels.add(FileChannel.open(directory.resolve(segment.name()), StandardOpenOption.READ));
+                    lengths.add(segment.length());
+                }
+                if (Files.exists(file)) {
+                    FileChannel active = FileChannel.open(file, StandardOpenOption.READ);
+                    channels.add(active);
+                    lengths.add(active.size());
+                }
+            } catch (IOException e) {
+                for (FileChannel ch : channels) {
+                    ch.close();
+                }
+                throw e;
+            }
+            return new Snapshot(channels, lengths);
+        });
+    }
+
+    // reopens when another process has sealed the file we were appending to
+    private FileChannel channel() throws IOException {
+        recover();
+        Object key = Files.exists(file) ? fileKey(file) : null;
+        if (channel == null || !channel.isOpen() || key == null || !key.equals(channelKey)) {
+            if (channel != null && channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            terminateTornLine(file, channel);
+            channelKey = fileKey(file);
+        }
+        return channel;
+    }
+
+    private static Object fileKey(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    // a crash mid-write leaves a line without its newline; start the next entry on a fresh line
+    private static void terminateTornLine(Path file, FileChannel ch) throws IOException {
+        long size = ch.size();
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            reader.read(last, size - 1);
+        }
+        if (last.get(0) != NEWLINE) {
+            ch.write(ByteBuffer.wrap(new byte[]{NEWLINE}));
+        }
+    }
+
+    // called under the lock with the current active channel
+    private void seal() throws IOException {
+        SegmentManifest manifest = SegmentManifest.read(manifestFile);
+        String name = segmentName(manifest.nextSequence());
+        long length = channel.size();
+        channel.force(false);
+        channel.close();
+        channel = null;
+        Files.move(file, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        List<SegmentManifest.Segment> segments = new ArrayList<>(manifest.segments());
+        segments.add(new SegmentManifest.Segment(name, length));
+        manifest.withSegments(manifest.nextSequence() + 1, segments).write(manifestFile);
+    }
+
+    /**
+     * Repairs what a crash under the lock can leave behind: a sealed segment that never made it into the
+     * manifest is added back, and a leftover of an interrupted compaction is removed. Runs once per process.
+     */
+    private void recover() throws IOException {
+        if (recovered) {
+            return;
+        }
+        SegmentManifest manifest = SegmentManifest.read(manifestFile);
+        Set<String> listed = new HashSet<>();
+        for (SegmentManifest.Segment segment : manifest.segments()) {
+            listed.add(segment.name());
+        }
+        TreeMap<Long, Path> unlisted = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, stem + "-*" + EXTENSION)) {
+            for (Path path : files) {
+                long sequence = sequenceOf(path.getFileName().toString());
+                if (sequence > 0 && !listed.contains(path.getFileName().toString())) {
+                    unlisted.put(sequence, path);
+                }
+            }
+        }
+        List<SegmentManifest.Segment> segments = new ArrayList<>(manifest.segments());
+        long next = manifest.nextSequence();
+        for (var e : unlisted.entrySet()) {
+            if (e.getKey() >= manifest.nextSequence()) {
+                segments.add(new SegmentManifest.Segment(e.getValue().getFileName().toString(), Files.size(e.getValue())));
+                next = e.getKey() + 1;
+            } else {
+                Files.deleteIfExists(e.getValue());
+            }
+        }
+        if (next != manifest.nextSequence()) {
+            manifest.withSegments(next, segments).write(manifestFile);
+        }
+        recovered = true;
+    }
+
+    /**
+     * Merges neighbouring segments while there are more than {@code maxSegments}. Returns false when
+     * another thread or process is already compacting or there was nothing to merge.
+     */
+    public boolean compact() throws IOException {
+        boolean[] merged = new boolean[1];
+        compactionLock.tryRun(() -> {
+            // re-reads the manifest each round, so segments sealed meanwhile by other writers are included
+            while (compactOnce()) {
+                merged[0] = true;
+            }
+            return null;
+        });
+        return merged[0];
+    }
+
+    private boolean compactOnce() throws IOException {
+        long target = segmentBytes * Math.max(2, maxSegments);
+        // pick the run and reserve a segment number for the result; this is the only short locked step
+        record Plan(List<SegmentManifest.Segment> run, String name) {
+        }
+        Plan plan = lock.call(() -> {
+            recover();
+            SegmentManifest manifest = SegmentManifest.read(manifestFile);
+            if (manifest.segments().size() <= maxSegments) {
+                return null;
+            }
+            List<SegmentManifest.Segment> run = smallNeighbours(manifest.segments(), target);
+            if (run.size() < 2) {
+                return null;
+            }
+            manifest.withSegments(manifest.nextSequence() + 1, manifest.segments()).write(manifestFile);
+            return new Plan(run, segmentName(manifest.nextSequence()));
+        });
+        if (plan == null) {
+            return false;
+        }
+
+        // sealed segments never change, so the copy needs no lock
+        Path tmp = directory.resolve(plan.name() + ".tmp");
+        long total = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (SegmentManifest.Segment segment : plan.run()) {
+                try (FileChannel in = FileChannel.open(directory.resolve(segment.name()), StandardOpenOption.READ)) {
+                    long copied = 0;
+                    while (copied < segment.length()) {
+                        long n = in.transferTo(copied, segment.length() - copied, out);
+                        if (n <= 0) {
+                            throw new IOException("History segment " + segment.name() + " is shorter than recorded");
+                        }
+                        copied += n;
+                    }
+                }
+                total += segment.length();
+            }
+            out.force(false);
+        }
+
+        long mergedLength = total;
+        return lock.call(() -> {
+            SegmentManifest manifest = SegmentManifest.read(manifestFile);
+            int at = Collections.indexOfSubList(manifest.segments(), plan.run());
+            if (at < 0) {
+                Files.deleteIfExists(tmp);
+                return false;
+            }
+            Files.move(tmp, directory.resolve(plan.name()), StandardCopyOption.ATOMIC_MOVE);
+            List<SegmentManifest.Segment> segments = new ArrayList<>(manifest.segments().subList(0, at));
+            segments.add(new SegmentManifest.Segment(plan.name(), mergedLength));
+            segments.addAll(manifest.segments().subList(at + plan.run().size(), manifest.segments().size()));
+            manifest.withSegments(manifest.nextSequence(), segments).write(manifestFile);
+            for (SegmentManifest.Segment segment : plan.run()) {
+                Files.deleteIfExists(directory.resolve(segment.name()));
+            }
+            return true;
+        });
+    }
+
+    // oldest run of at least two adjacent segments that fit together under the target size; failing that the
+    // adjacent pair with the smallest total, since a sealed segment is always a little over segmentBytes
+    // and with a small maxSegments no two of them may fit
+    private static List<SegmentManifest.Segment> smallNeighbours(List<SegmentManifest.Segment> segments, long target) {
+        for (int i = 0; i < segments.size(); i++) {
+            long total = 0;
+            int j = i;
+            while (j < segments.size() && total + segments.get(j).length() <= target) {
+                total += segments.get(j).length();
+                j++;
+            }
+            if (j - i >= 2) {
+                return segments.subList(i, j);
+            }
+        }
+        int best = -1;
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            long total = segments.get(i).length() + segments.get(i + 1).length();
+            if (best < 0 || total < segments.get(best).length() + segments.get(best + 1).length()) {
+                best = i;
+            }
+        }
+        return best < 0 ? List.of() : segments.subList(best, best + 2);
+    }
+
+    private String segmentName(long sequence) {
+        return String.format("%s-%06d%s", stem, sequence, EXTENSION);
+    }
+
+    private long sequenceOf(String name) {
+        String digits = name.substring(stem.length() + 1, name.length() - EXTENSION.length());
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Closes the active file. A compaction this instance queued is dropped if it has not started, and waited
+     * for if it has.
+     */
+    @Override
+    public void close() throws IOException {
+        List<Future<?>> pending;
+        synchronized (compactions) {
+            pending = new ArrayList<>(compactions);
+            compactions.clear();
+        }
+        try {
+            for (Future<?> compaction : pending) {
+                if (!compaction.cancel(false)) {
+                    try {
+                        compaction.get();
+                    } catch (ExecutionException e) {
+                        // a failed compaction leaves the segments as they are; nothing to report on close
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read-only view of the sealed segments plus the active file, taken under the lock. Byte positions are
+     * positions in the concatenated history. Open channels keep compacted-away segments readable until
+     * the snapshot is closed.
+     */
+    static final class Snapshot implements Closeable {
+
+        private final FileChannel[] channels;
+        private final long[] starts;
+        private final long size;
+
+        private Snapshot(List<FileChannel> channels, List<Long> lengths) {
+            this.channels = channels.toArray(new FileChannel[0]);
+            this.starts = new long[lengths.size() + 1];
+            for (int i = 0; i < lengths.size(); i++) {
+                starts[i + 1] = starts[i] + lengths.get(i);
+            }
+            this.size = starts[lengths.size()];
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * Reads into {@code dst} from the given position without crossing a segment boundary;
+         * returns -1 at the end.
+         */
+        int read(ByteBuffer dst, long position) throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            int segment = Arrays.binarySearch(starts, position);
+            segment = segment >= 0 ? segment : -segment - 2;
+            while (starts[segment + 1] == position) {
+                segment++; // skip empty segments
+            }
+            long available = starts[segment + 1] - position;
+            if (dst.remaining() > available) {
+                int limit = dst.limit();
+                dst.limit(dst.position() + (int) available);
+                int n = channels[segment].read(dst, position - starts[segment]);
+                dst.limit(limit);
+                return n;
+            }
+            return channels[segment].read(dst, position - starts[segment]);
+        }
+
+        /**
+         * Calls the visitor for every complete line from {@code from} on (the newline is not included) and
+         * returns the position just past the last one. A trailing line without a newline is left out.
+         */
+        long forEachLine(long from, LineVisitor visitor) throws IOException {
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+            byte[] line = new byte[1024];
+            int lineLength = 0;
+            long lineStart = from;
+            long position = from;
+            while (position < size) {
+                chunk.clear();
+                int n = read(chunk, position);
+                if (n <= 0) {
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    byte b = chunk.get(i);
+                    if (b == NEWLINE) {
+                        visitor.line(lineStart, line, lineLength);
+                        lineStart = position + i + 1;
+                        lineLength = 0;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLength++] = b;
+                    }
+                }
+                position += n;
+            }
+            return lineStart;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (FileChannel ch : channels) {
+                ch.close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface LineVisitor {
+        void line(long offset, byte[] line, int length) throws IOException;
+    }
+}
@@ -1,18 +1,17 @@
 package org.example.history;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.Writer;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -21,41 +20,251 @@ import java.util.Map;
 public class HistoryManager {
 
     private static final Path HISTORY_DIR = Path.of(System.getProperty("user.home"), ".3d-analyser");
-    private static final Path HISTORY_FILE = HISTORY_DIR.resolve("history.json");
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Path LEGACY_HISTORY_FILE = HISTORY_DIR.resolve("history.json");
+    private static final Path HISTORY_LOG_FILE = HISTORY_DIR.resolve("history.jsonl");
+    static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final Type LIST_TYPE = new TypeToken<List<HistoryEntry>>() {
     }.getType();
 
-    public static List<HistoryEntry> loadHistory() {
-        if (!Files.exists(HISTORY_FILE)) {
-            return Collections.emptyList();
+    private static final int WRITE_QUEUE_CAPACITY = Integer.getInteger("draxel.history.queue", 4096);
+    private static final long FSYNC_INTERVAL_MILLIS = Long.getLong("draxel.history.fsyncMillis", 1000L);
+
+    // how long the writer's shutdown hook waits for holders to finish before closing anyway
+    private static final long SHUTDOWN_WAIT_MILLIS = 15_000;
+
+    private static HistoryLog log;
+    private static AsyncHistoryWriter writer;
+    private static HistoryStore store;
+    private static FeatureArchive archive;
+    private static SimilarityIndex similarity;
+    private static boolean shutdownHook;
+    private static int holds;
+
+    private static synchronized HistoryLog log() throws IOException {
+        if (log == null) {
+            Files.createDirectories(HISTORY_DIR);
+            HistoryLog opened = new HistoryLog(HISTORY_LOG_FILE);
+            opened.locked(() -> {
+                migrateLegacyHistory();
+                return null;
+            });
+            log = opened;
+        }
+        return log;
+    }
+
+    /**
+     * The background writer; entries still queued at exit are written by a shutdown hook, once every
+     * {@link #hold} has been released.
+     */
+    private static synchronized AsyncHistoryWriter writer() throws IOException {
+        if (writer == null) {
+            registerShutdownHook();
+            writer = new AsyncHistoryWriter(log(), WRITE_QUEUE_CAPACITY, FSYNC_INTERVAL_MILLIS);
+        }
+        return writer;
+    }
+
+    // registered before the writer exists when a hold is taken, so a writer first needed while the JVM is
+    // already exiting is still closed by it
+    private static synchronized void registerShutdownHook() {
+        if (!shutdownHook) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                awaitHolds();
+                AsyncHistoryWriter w;
+                synchronized (HistoryManager.class) {
+                    w = writer;
+                }
+                if (w != null) {
+                    w.close();
+                }
+            }, "history-shutdown"));
+            shutdownHook = true;
+        }
+    }
+
+    /**
+     * Keeps the history writer open at exit until the returned hold is closed. Shutdown hooks run
+     * concurrently, so a mode whose own hook still drains work that appends to the history takes a hold for
+     * as long as it runs, and releases it after its last {@link #flush}.
+     */
+    public static synchronized Hold hold() {
+        registerShutdownHook();
+        holds++;
+        return new Hold();
+    }
+
+    private static void awaitHolds() {
+        long deadline = System.currentTimeMillis() + SHUTDOWN_WAIT_MILLIS;
+        synchronized (HistoryManager.class) {
+            long left;
+            while (holds > 0 && (left = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    HistoryManager.class.wait(left);
+                } catch (InterruptedException e) {
+                    return; // close now
+                }
+            }
+        }
+    }
+
+    /**
+     * See {@link #hold()}; closing it more than once has no further effect.
+     */
+    public static final class Hold implements AutoCloseable {
+
+        private boolean released;
+
+        private Hold() {
+        }
+
+        @Override
+        public void close() {
+            synchronized (HistoryManager.class) {
+                if (!released) {
+                    released = true;
+                    holds--;
+                    HistoryManager.class.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * One-time conversion of the old pretty-printed history.json array into the JSON Lines log.
+     * The old file is kept as history.json.migrated.
+     */
+    private static void migrateLegacyHistory() throws IOException {
+        if (!Files.exists(LEGACY_HISTORY_FILE)) {
+            return;
+        }
+        if (!Files.exists(HISTORY_LOG_FILE)) {
+            List<HistoryEntry> entries;
+            try (Reader reader = Files.newBufferedReader(LEGACY_HISTORY_FILE)) {
+                entries = new Gson().fromJson(reader, LIST_TYPE);
+            } catch (JsonParseException e) {
+                return; // leave an unreadable legacy file untouched
+            }
+            Path tmp = HISTORY_LOG_FILE.resolveSibling(HISTORY_LOG_FILE.getFileName() + ".tmp");
+            Files.write(tmp, HistoryLog.encode(entries != null ? entries : List.of()));
+            Files.move(tmp, HISTORY_LOG_FILE, StandardCopyOption.ATOMIC_MOVE);
         }
+        // the log exists, so a previous run may have crashed right after converting
+        Files.move(LEGACY_HISTORY_FILE, LEGACY_HISTORY_FILE.resolveSibling("history.json.migrated"),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The directory holding the history, for other per-user state that belongs next to it.
+     */
+    public static Path directory() {
+        return HISTORY_DIR;
+    }
 
-        try (Reader reader = Files.newBufferedReader(HISTORY_FILE)) {
-            List<HistoryEntry> entries = GSON.fromJson(reader, LIST_TYPE);
-            return entries != null ? entries : Collections.emptyList();
+    public static List<HistoryEntry> loadHistory() {
+        try {
+            flush();
+            return log().readAll();
         } catch (IOException e) {
             return Collections.emptyList();
         }
     }
 
-    public static void appendEntry(String fileName, Map<String, String> results) {
+    /**
+     * Indexed view of the history, up to date with every entry appended so far.
+     */
+    public static HistoryStore store() throws IOException {
+        flush();
+        HistoryStore s;
+        synchronized (HistoryManager.class) {
+            if (store == null) {
+                store = new HistoryStore(log());
+            }
+            s = store;
+        }
+        s.refresh();
+        return s;
+    }
+
+    /**
+     * Columnar copy of the history for aggregations, synced with every entry appended so far.
+     */
+    public static FeatureArchive archive() throws IOException {
+        HistoryStore s = store();
+        FeatureArchive a;
+        synchronized (HistoryManager.class) {
+            if (archive == null) {
+                archive = new FeatureArchive(HISTORY_DIR.resolve("archive"));
+            }
+            a = archive;
+        }
+        a.sync(s);
+        return a;
+    }
+
+    /**
+     * Nearest-neighbour index over the archived feature vectors, including every entry appended so far.
+     */
+    public static SimilarityIndex similarity() throws IOException {
+        FeatureArchive a = archive();
+        SimilarityIndex s;
+        synchronized (HistoryManager.class) {
+            if (similarity == null) {
+                similarity = new SimilarityIndex();
+            }
+            s = similarity;
+        }
+        s.refresh(a);
+        return s;
+    }
+
+    /**
+     * Waits until every entry appended so far is in the log file.
+     */
+    public static void flush() {
+        AsyncHistoryWriter w;
+        synchronized (HistoryManager.class) {
+            w = writer;
+        }
+        if (w == null) {
+            return;
+        }
         try {
-            Files.createDirectories(HISTORY_DIR);
+            w.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            List<HistoryEntry> entries = new ArrayList<>(loadHistory());
+    /**
+     * Entries the background writer has failed to write since it started. Callers that must know their
+     * entries reached the log compare it before and after a {@link #flush}.
+     */
+    public static long failedEntries() {
+        AsyncHistoryWriter w;
+        synchronized (HistoryManager.class) {
+            w = writer;
+        }
+        return w == null ? 0 : w.failedEntries();
+    }
+
+    /**
+     * Queues the entry for the background writer. Returns false if it was not accepted: the log cannot be
+     * opened, or the writer has been closed by the shutdown hook. History is best-effort, so callers that
+     * only display results may ignore this.
+     */
+    public static boolean appendEntry(String fileName, Map<String, String> results) {
+        try {
             Map<String, String> sanitized = new HashMap<>(results);
             HistoryEntry entry = new HistoryEntry(LocalDateTime.now().format(FORMATTER), fileName, sanitized);
-            entries.add(entry);
-
-            try (Writer writer = Files.newBufferedWriter(HISTORY_FILE)) {
-                GSON.toJson(entries, LIST_TYPE, writer);
-            }
-        } catch (IOException ignored) {
-            // History is best-effort; ignore errors to avoid disrupting the user flow.
+            writer().submit(entry);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         }
     }
 }
-
@@ -0,0 +1,13 @@
+package org.example.history;
+
+import java.util.List;
+
+/**
+ * One page of query results; {@code total} counts every match, not just this page.
+ */
+public record HistoryPage(List<HistoryEntry> entries, int offset, int total) {
+
+    public boolean hasMore() {
+        return offset + entries.size() < total;
+    }
+}
@@ -0,0 +1,43 @@
+package org.example.history;
+
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the results map stored with every {@link HistoryEntry}.
+ */
+public final class HistoryPayload {
+
+    private HistoryPayload() {
+    }
+
+    public static Map<String, String> of(ModelFeatures features, RequirementProfile profile,
+                                         String filament, String infillPercent, String infillPattern) {
+        Map<String, String> map = new HashMap<>();
+        map.put("Filament", filament);
+        map.put("InfillPercent", infillPercent);
+        map.put("InfillPattern", infillPattern);
+        // Intentionally NOT saving Confidence anymore
+        map.put("Functional", Boolean.toString(profile.isFunctional()));
+        map.put("Force", Boolean.toString(profile.isForce()));
+        map.put("Friction", Boolean.toString(profile.isFriction()));
+        map.put("WeightSupport", Boolean.toString(profile.isWeightSupport()));
+        map.put("Outdoor", Boolean.toString(profile.isOutdoor()));
+        map.put("Detail", Boolean.toString(profile.isDetail()));
+        map.put("Decorative", Boolean.toString(profile.isDecorative()));
+        map.put("Linearity", String.format("%.4f", features.getLinearity()));
+        map.put("Planarity", String.format("%.4f", features.getPlanarity()));
+        map.put("Sphericity", String.format("%.4f", features.getSphericity()));
+        map.put("Anisotropy", String.format("%.4f", features.getAnisotropy()));
+        map.put("Curvature", String.format("%.4f", features.getCurvature()));
+        map.put("EulerNumber", String.format("%.2f", features.getEulerNumber()));
+        map.put("Compactness", String.format("%.4f", features.getCompactness()));
+        map.put("AspectRatio", String.format("%.4f", features.getAspectRatio()));
+        map.put("Convexity", String.format("%.4f", features.getConvexity()));
+        map.put("LocalDensity", String.format("%.4f", features.getLocalDensity()));
+        return map;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.history;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filter and page for {@link HistoryStore#query}. Unset filters ({@code null}) match everything;
+ * the filament filter ignores case.
+ *
+ * <pre>
+ * HistoryQuery.all().filament("PETG").between(monthStart, monthEnd).page(0, 50)
+ * </pre>
+ */
+public record HistoryQuery(String fileName, String filament, LocalDateTime from, LocalDateTime to,
+                           boolean newestFirst, int offset, int limit) {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    public HistoryQuery {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative page offset or limit");
+        }
+    }
+
+    /**
+     * Every entry, newest first, first page.
+     */
+    public static HistoryQuery all() {
+        return new HistoryQuery(null, null, null, null, true, 0, DEFAULT_PAGE_SIZE);
+    }
+
+    public HistoryQuery fileName(String fileName) {
+        return new HistoryQuery(fileName, filament, from, to, newestFirst, offset, limit);
+    }
+
+    public HistoryQuery filament(String filament) {
+        return new HistoryQuery(fileName, filament, from, to, newestFirst, offset, limit);
+    }
+
+    /**
+     * Entries with {@code from <= timestamp < to}; either bound may be {@code null}.
+     */
+    public HistoryQuery between(LocalDateTime from, LocalDateTime to) {
+        return new HistoryQuery(fileName, filament, from, to, newestFirst, offset, limit);
+    }
+
+    public HistoryQuery oldestFirst() {
+        return new HistoryQuery(fileName, filament, from, to, false, offset, limit);
+    }
+
+    public HistoryQuery page(int offset, int limit) {
+        return new HistoryQuery(fileName, filament, from, to, newestFirst, offset, limit);
+    }
+}
@@ -0,0 +1,482 @@
+package org.example.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Indexed, paged access to the history log.
+ *
+ * Every log entry gets a record id (its position in the log) and a fixed-size entry in a sidecar
+ * {@link HistoryIndex}. The index is loaded into memory together with secondary indexes on file name,
+ * filament and date, so a query narrows down the matching ids without touching the log and then reads
+ * only the entries of the requested page with positional reads.
+ *
+ * The log stays the source of truth: {@link #refresh()} indexes whatever was appended since the last
+ * call, and an index that no longer matches the log is rebuilt from scratch. Stores in other processes
+ * share the index file; it is only read and extended under its own {@link HistoryLock}, which writers of
+ * the log never wait for, and each store first adopts the records the others appended.
+ */
+public class HistoryStore implements Closeable {
+
+    private static final String FILAMENT_KEY = "Filament";
+    static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private final HistoryLog log;
+    private final HistoryIndex index;
+    private final HistoryLock indexLock;
+
+    private long[] offsets = new long[0];
+    private int[] lengths = new int[0];
+    private long[] times = new long[0];
+    private int[] fileNameHashes = new int[0];
+    private int[] filamentHashes = new int[0];
+    private int size;
+    private boolean chronological = true;
+    private final Map<Integer, IntList> byFileName = new HashMap<>();
+    private final Map<Integer, IntList> byFilament = new HashMap<>();
+
+    // log bytes already indexed; a torn last line stays outside until it is completed
+    private long covered;
+    private boolean opened;
+
+    public HistoryStore(HistoryLog log) {
+        this.log = log;
+        Path file = log.file();
+        this.index = new HistoryIndex(file.resolveSibling(file.getFileName() + ".idx"));
+        this.indexLock = HistoryLock.forFile(file.resolveSibling(file.getFileName() + ".idx.lock"));
+    }
+
+    /**
+     * Number of indexed entries; record ids run from 0 to size() - 1 in log order.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Brings the index up to date with the log.
+     */
+    public synchronized void refresh() throws IOException {
+        indexed().close();
+    }
+
+    // the snapshot is taken under the index lock, so no other store can have indexed past its end
+    private HistoryLog.Snapshot indexed() throws IOException {
+        return indexLock.call(() -> {
+            HistoryLog.Snapshot snapshot = log.snapshot();
+            try {
+                if (!opened) {
+                    index.open();
+                    opened = true;
+                }
+                adopt(snapshot);
+                if (snapshot.size() < covered) {
+                    rebuild(); // the log was truncated or replaced
+                }
+                catchUp(snapshot);
+                return snapshot;
+            } catch (IOException | RuntimeException e) {
+                snapshot.close();
+                throw e;
+            }
+        });
+    }
+
+    public synchronized HistoryEntry get(int id) throws IOException {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No history record " + id);
+        }
+        try (HistoryLog.Snapshot snapshot = log.snapshot()) {
+            return read(snapshot, id);
+        }
+    }
+
+    /**
+     * Reads every entry from record id {@code fromId} on, in log order, with one sequential pass.
+     */
+    public synchronized void scan(int fromId, EntryVisitor visitor) throws IOException {
+        try (HistoryLog.Snapshot snapshot = indexed()) {
+            if (fromId >= size) {
+                return;
+            }
+            int[] next = {Math.max(0, fromId)};
+            snapshot.forEachLine(offsets[next[0]], (offset, line, length) -> {
+                int id = next[0];
+                // lines the index skipped (torn or foreign) are skipped here too
+                if (id < size && offsets[id] == offset) {
+                    HistoryEntry entry = HistoryLog.decode(new String(line, 0, length, StandardCharsets.UTF_8));
+                    if (entry == null) {
+                        throw new StaleIndexException();
+                    }
+                    visitor.accept(id, entry);
+                    next[0]++;
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs the query against the in-memory indexes and reads only the entries on the requested page.
+     * The total is counted from the indexes, so in the rare case of a hash collision a page may hold
+     * fewer entries than {@code limit}.
+     */
+    public synchronized HistoryPage query(HistoryQuery query) throws IOException {
+        try (HistoryLog.Snapshot snapshot = indexed()) {
+            try {
+                return runQuery(snapshot, query);
+            } catch (StaleIndexException e) {
+                indexLock.call(() -> {
+                    rebuild();
+                    catchUp(snapshot);
+                    return null;
+                });
+                return runQuery(snapshot, query);
+            }
+        }
+    }
+
+    /**
+     * Ids of the entries matching the query's filters, in log order; its order and page are ignored.
+     * Matched on the indexes alone, so subject to the same rare hash collisions as {@link #query}.
+     */
+    public synchronized int[] ids(HistoryQuery query) throws IOException {
+        refresh();
+        int[] range = idRange(query);
+        if (range == null) {
+            return matches(query).toArray();
+        }
+        int[] ids = new int[range[1] - range[0]];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = range[0] + i;
+        }
+        return ids;
+    }
+
+    /**
+     * Reads {@code ids[from]} to {@code ids[to - 1]} from one snapshot of the log.
+     */
+    public synchronized List<HistoryEntry> get(int[] ids, int from, int to) throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>(Math.max(0, to - from));
+        try (HistoryLog.Snapshot snapshot = log.snapshot()) {
+            for (int i = from; i < to; i++) {
+                if (ids[i] < 0 || ids[i] >= size) {
+                    throw new IndexOutOfBoundsException("No history record " + ids[i]);
+                }
+                entries.add(read(snapshot, ids[i]));
+            }
+        }
+        return entries;
+    }
+
+    private HistoryPage runQuery(HistoryLog.Snapshot snapshot, HistoryQuery query) throws IOException {
+        int[] range = idRange(query);
+        IntList matches = range == null ? matches(query) : null;
+        int total = range != null ? range[1] - range[0] : matches.size();
+        List<HistoryEntry> entries = new ArrayList<>();
+        int end = (int) Math.min((long) query.offset() + query.limit(), total);
+        if (query.offset() >= end) {
+            return new HistoryPage(entries, query.offset(), total);
+        }
+        for (int k = query.offset(); k < end; k++) {
+            int i = query.newestFirst() ? total - 1 - k : k;
+            int id = range != null ? range[0] + i : matches.get(i);
+            HistoryEntry entry = read(snapshot, id);
+            if (accepts(query, entry)) {
+                entries.add(entry);
+            }
+        }
+        return new HistoryPage(entries, query.offset(), total);
+    }
+
+    // without name or filament filters the matches are a contiguous id range, so no list is built
+    private int[] idRange(HistoryQuery query) {
+        if (query.fileName() != null || query.filament() != null) {
+            return null;
+        }
+        if (query.from() == null && query.to() == null) {
+            return new int[]{0, size};
+        }
+        // entries without a timestamp sort first, so a lower bound is needed to leave them out
+        if (!chronological || query.from() == null) {
+            return null;
+        }
+        int lo = lowerBound(epochSeconds(query.from()));
+        int hi = query.to() != null ? lowerBound(epochSeconds(query.to())) : size;
+        return new int[]{lo, Math.max(lo, hi)};
+    }
+
+    private IntList matches(HistoryQuery query) {
+        int nameHash = query.fileName() != null ? fileNameHash(query.fileName()) : 0;
+        int filamentHash = query.filament() != null ? filamentHash(query.filament()) : 0;
+        long from = query.from() != null ? epochSeconds(query.from()) : UNKNOWN_TIME;
+        long to = query.to() != null ? epochSeconds(query.to()) : Long.MAX_VALUE;
+
+        // start from the smallest secondary index that applies
+        IntList candidates = null;
+        if (query.fileName() != null) {
+            candidates = byFileName.getOrDefault(nameHash, IntList.EMPTY);
+        }
+        if (query.filament() != null) {
+            IntList byHash = byFilament.getOrDefault(filamentHash, IntList.EMPTY);
+            if (candidates == null || byHash.size() < candidates.size()) {
+                candidates = byHash;
+            }
+        }
+
+        // appended in time order, so the date range is a contiguous id range
+        int lo = 0;
+        int hi = size;
+        boolean timeFiltered = query.from() != null || query.to() != null;
+        if (timeFiltered && chronological) {
+            lo = lowerBound(from);
+            hi = lowerBound(to);
+        }
+
+        IntList matches = new IntList();
+        int count = candidates != null ? candidates.size() : hi - lo;
+        int start = candidates != null ? candidates.lowerBound(lo) : 0;
+        for (int i = start; i < count; i++) {
+            int id = candidates != null ? candidates.get(i) : lo + i;
+            if (id >= hi) {
+                break;
+            }
+            if (query.fileName() != null && fileNameHashes[id] != nameHash) {
+                continue;
+            }
+            if (query.filament() != null && filamentHashes[id] != filamentHash) {
+                continue;
+            }
+            if (timeFiltered && (times[id] == UNKNOWN_TIME || times[id] < from || times[id] >= to)) {
+                continue;
+            }
+            matches.add(id);
+        }
+        return matches;
+    }
+
+    private static boolean accepts(HistoryQuery query, HistoryEntry entry) {
+        if (query.fileName() != null && !query.fileName().equals(entry.fileName())) {
+            return false;
+        }
+        return query.filament() == null || query.filament().equalsIgnoreCase(filamentOf(entry));
+    }
+
+    private int lowerBound(long time) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private HistoryEntry read(HistoryLog.Snapshot snapshot, int id) throws IOException {
+        ByteBuffer line = ByteBuffer.allocate(lengths[id]);
+        while (line.hasRemaining()) {
+            if (snapshot.read(line, offsets[id] + line.position()) < 0) {
+                throw new StaleIndexException();
+            }
+        }
+        HistoryEntry entry = HistoryLog.decode(new String(line.array(), StandardCharsets.UTF_8));
+        // verify on read: the entry must still be the one that was indexed
+        if (entry == null || fileNameHash(entry.fileName()) != fileNameHashes[id]) {
+            throw new StaleIndexException();
+        }
+        return entry;
+    }
+
+    // takes over the records other stores appended to the index file since this one last looked, or all of
+    // them if the file was rebuilt meanwhile; called under the index lock, so afterwards the file holds
+    // exactly this store's records
+    private void adopt(HistoryLog.Snapshot snapshot) throws IOException {
+        long records = index.records();
+        if (records < size || (size > 0 && index.offset(size - 1) != offsets[size - 1])) {
+            clear();
+        }
+        if (records == size) {
+            return;
+        }
+        try {
+            index.read(size, records, this::adoptRecord);
+            if (covered > snapshot.size()) {
+                throw new StaleIndexException();
+            }
+            read(snapshot, size - 1);
+        } catch (StaleIndexException e) {
+            rebuild();
+        }
+    }
+
+    // records follow each other in the log; one that does not is a duplicate or damage, and the index is rebuilt
+    private void adoptRecord(long offset, int length, long time, int nameHash, int filamentHash) throws IOException {
+        if (offset < covered || length < 0) {
+            throw new StaleIndexException();
+        }
+        add(offset, length, time, nameHash, filamentHash);
+        covered = offset + length + 1;
+    }
+
+    private void rebuild() throws IOException {
+        index.reset();
+        clear();
+    }
+
+    private void clear() {
+        size = 0;
+        covered = 0;
+        chronological = true;
+        byFileName.clear();
+        byFilament.clear();
+    }
+
+    private void catchUp(HistoryLog.Snapshot snapshot) throws IOException {
+        ByteBuffer pending = ByteBuffer.allocate(HistoryIndex.RECORD_BYTES * 1024);
+        covered = snapshot.forEachLine(covered, (offset, line, length) -> indexLine(offset, line, length, pending));
+        index.append(pending.flip());
+    }
+
+    private void indexLine(long offset, byte[] line, int length, ByteBuffer pending) throws IOException {
+        HistoryEntry entry = HistoryLog.decode(new String(line, 0, length, StandardCharsets.UTF_8));
+        if (entry == null) {
+            return;
+        }
+        long time = epochSeconds(entry.timestamp());
+        int nameHash = fileNameHash(entry.fileName());
+        int filamentHash = filamentHash(filamentOf(entry));
+        add(offset, length, time, nameHash, filamentHash);
+        if (!pending.hasRemaining()) {
+            index.append(pending.flip());
+            pending.clear();
+        }
+        HistoryIndex.put(pending, offset, length, time, nameHash, filamentHash);
+    }
+
+    private void add(long offset, int length, long time, int nameHash, int filamentHash) {
+        if (size == offsets.length) {
+            int capacity = Math.max(1024, size * 2);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            times = Arrays.copyOf(times, capacity);
+            fileNameHashes = Arrays.copyOf(fileNameHashes, capacity);
+            filamentHashes = Arrays.copyOf(filamentHashes, capacity);
+        }
+        if (size > 0 && time < times[size - 1]) {
+            chronological = false; // clock moved back; date filters fall back to a scan
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        times[size] = time;
+        fileNameHashes[size] = nameHash;
+        filamentHashes[size] = filamentHash;
+        byFileName.computeIfAbsent(nameHash, k -> new IntList()).add(size);
+        byFilament.computeIfAbsent(filamentHash, k -> new IntList()).add(size);
+        size++;
+    }
+
+    private static String filamentOf(HistoryEntry entry) {
+        return entry.results() != null ? entry.results().get(FILAMENT_KEY) : null;
+    }
+
+    private static int fileNameHash(String fileName) {
+        return fileName != null ? fileName.hashCode() : 0;
+    }
+
+    private static int filamentHash(String filament) {
+        return filament != null ? filament.toLowerCase(Locale.ROOT).hashCode() : 0;
+    }
+
+    static long epochSeconds(String timestamp) {
+        if (timestamp == null) {
+            return UNKNOWN_TIME;
+        }
+        try {
+            return epochSeconds(LocalDateTime.parse(timestamp, HistoryManager.FORMATTER));
+        } catch (DateTimeParseException e) {
+            return UNKNOWN_TIME;
+        }
+    }
+
+    // timestamps are stored as local wall-clock time, so compare them as such
+    private static long epochSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index.close();
+        opened = false;
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void accept(int id, HistoryEntry entry) throws IOException;
+    }
+
+    private static final class StaleIndexException extends IOException {
+        StaleIndexException() {
+            super("History index does not match the log");
+        }
+    }
+
+    /**
+     * Growable list of ascending record ids.
+     */
+    private static final class IntList {
+
+        static final IntList EMPTY = new IntList();
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        // first position holding a value >= id
+        int lowerBound(int id) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[mid] < id) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
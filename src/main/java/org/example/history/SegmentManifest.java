@@ -0,0 +1,78 @@
+package org.example.history;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered list of sealed history segments. The logical history is the concatenation of these
+ * segments followed by the active log file, so a byte position in it survives rotation and compaction.
+ *
+ * Segment numbers below {@code nextSequence} are taken; a higher-numbered segment file that is missing
+ * from the manifest was sealed by a writer that crashed before recording it.
+ */
+record SegmentManifest(long nextSequence, List<Segment> segments) {
+
+    private static final String HEADER = "draxel-history-manifest 1";
+
+    static SegmentManifest empty() {
+        return new SegmentManifest(1, List.of());
+    }
+
+    /**
+     * Bytes held by sealed segments, which is where the active file starts in the logical history.
+     */
+    long sealedBytes() {
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.length();
+        }
+        return total;
+    }
+
+    SegmentManifest withSegments(long nextSequence, List<Segment> segments) {
+        return new SegmentManifest(nextSequence, List.copyOf(segments));
+    }
+
+    static SegmentManifest read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return empty();
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            throw new IOException("Unrecognised history manifest " + file);
+        }
+        long next = 1;
+        List<Segment> segments = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length == 2 && parts[0].equals("next")) {
+                next = Long.parseLong(parts[1]);
+            } else if (parts.length == 3 && parts[0].equals("segment")) {
+                segments.add(new Segment(parts[1], Long.parseLong(parts[2])));
+            }
+        }
+        return new SegmentManifest(next, List.copyOf(segments));
+    }
+
+    /**
+     * Replaces the manifest atomically; callers hold the history lock.
+     */
+    void write(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder(HEADER).append('\n');
+        sb.append("next ").append(nextSequence).append('\n');
+        for (Segment segment : segments) {
+            sb.append("segment ").append(segment.name()).append(' ').append(segment.length()).append('\n');
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    record Segment(String name, long length) {
+    }
+}
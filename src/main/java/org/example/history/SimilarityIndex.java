@@ -0,0 +1,481 @@
+package org.example.history;
+
+import org.example.history.FeatureArchive.Feature;
+import org.example.model.ModelFeatures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Nearest past analyses by feature vector.
+ *
+ * Vectors are z-score normalised per feature, so no single feature dominates the Euclidean distance, and
+ * kept row-major in one {@code float[]}. Once there are enough of them the rows are sorted into the cells of
+ * a grid that splits the {@value #GRID_DIMENSIONS} least correlated dimensions into {@value #GRID_LEVELS}
+ * quantile bins each, at the median. A query visits the cells nearest first and stops at the first cell whose distance to the query
+ * already exceeds the current k-th best, so the result is exact but most cells are never read. Within a
+ * cell a row is given up as soon as its partial distance exceeds the k-th best. Rows added since the grid
+ * was last built are scanned after the cells; the grid is rebuilt when they reach a quarter of it.
+ *
+ * The optional quantized mode also keeps each normalised value as a signed byte (±4σ in 127 steps), scans
+ * those in the same order for {@code k * OVERSAMPLE} candidates, looking the squared differences to the
+ * query up in a table, and rescores the candidates with the float vectors. Its larger candidate set prunes
+ * fewer cells, so it is about as fast as the exact scan; it remains for comparison.
+ *
+ * Row ids are {@link FeatureArchive} rows, which are history record ids. {@link #refresh} appends new
+ * rows with the current normalisation and recomputes it whenever the archive has doubled.
+ */
+public class SimilarityIndex {
+
+    public static final int DIMENSIONS = Feature.values().length;
+
+    private static final int OVERSAMPLE = 8;
+    private static final float QUANT_SCALE = 127f / 4f;
+    private static final float MIN_STD = 1e-6f;
+
+    private static final int GRID_DIMENSIONS = 8;
+    private static final int GRID_LEVELS = 2;
+    private static final int CELLS = 256; // GRID_LEVELS ^ GRID_DIMENSIONS
+    private static final int MIN_GRID_ROWS = 1 << 14;
+    private static final int GRID_SAMPLE = 1 << 16;
+
+    private final boolean quantized;
+    private final float[] mean = new float[DIMENSIONS];
+    private final float[] invStd = new float[DIMENSIONS];
+    private int statsRows;
+
+    // rows [0, gridded) are sorted by cell, the rest are in the order they were added
+    private float[] vectors = new float[0];
+    private byte[] codes = new byte[0];
+    private int[] ids = new int[0];
+    private int size;
+    private int gridded;
+    private final int[] gridDimensions = new int[GRID_DIMENSIONS];
+    private final float[] cuts = new float[GRID_DIMENSIONS * (GRID_LEVELS - 1)];
+    private final int[] cellStart = new int[CELLS + 1];
+
+    public SimilarityIndex() {
+        this(Boolean.getBoolean("draxel.similarity.quantized"));
+    }
+
+    public SimilarityIndex(boolean quantized) {
+        this.quantized = quantized;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    /**
+     * Indexes the archive rows added since the last refresh.
+     */
+    public synchronized void refresh(FeatureArchive archive) {
+        int rows = archive.rows();
+        if (rows < size || rows >= 2 * Math.max(statsRows, 1)) {
+            size = 0;
+            gridded = 0;
+            statsRows = 0;
+        }
+        if (rows == size) {
+            return;
+        }
+        float[] raw = new float[(rows - size) * DIMENSIONS];
+        FeatureArchive.Range range = new FeatureArchive.Range(size, rows);
+        for (Feature feature : Feature.values()) {
+            archive.copy(feature, range, raw, feature.ordinal(), DIMENSIONS);
+        }
+        append(raw, rows - size);
+    }
+
+    /**
+     * Appends rows given row-major, normalising them with the current statistics, or with their own if the
+     * index is empty. Their ids continue from the last row.
+     */
+    synchronized void append(float[] raw, int rows) {
+        if (size == 0) {
+            computeStats(raw, rows);
+        }
+        ensureCapacity(size + rows);
+        for (int i = 0; i < rows * DIMENSIONS; i++) {
+            float z = normalize(raw[i], i % DIMENSIONS);
+            vectors[size * DIMENSIONS + i] = z;
+            if (quantized) {
+                codes[size * DIMENSIONS + i] = quantize(z);
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            ids[size + r] = size + r;
+        }
+        size += rows;
+        if (size >= MIN_GRID_ROWS && size - gridded > gridded / 4) {
+            buildGrid();
+        }
+    }
+
+    private void computeStats(float[] raw, int rows) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            double sum = 0;
+            double sumSq = 0;
+            long n = 0;
+            for (int i = d; i < raw.length; i += DIMENSIONS) {
+                if (!Float.isNaN(raw[i])) {
+                    sum += raw[i];
+                    sumSq += (double) raw[i] * raw[i];
+                    n++;
+                }
+            }
+            double m = n == 0 ? 0 : sum / n;
+            double variance = n == 0 ? 0 : Math.max(0, sumSq / n - m * m);
+            mean[d] = (float) m;
+            invStd[d] = 1f / Math.max((float) Math.sqrt(variance), MIN_STD);
+        }
+        statsRows = rows;
+    }
+
+    private void ensureCapacity(int rows) {
+        if (ids.length < rows) {
+            int capacity = Math.max(rows, ids.length * 3 / 2);
+            vectors = Arrays.copyOf(vectors, capacity * DIMENSIONS);
+            if (quantized) {
+                codes = Arrays.copyOf(codes, capacity * DIMENSIONS);
+            }
+            ids = Arrays.copyOf(ids, capacity);
+        }
+    }
+
+    // a missing feature sits at the mean, so it does not count for or against any neighbour
+    private float normalize(float value, int d) {
+        return Float.isNaN(value) ? 0f : (value - mean[d]) * invStd[d];
+    }
+
+    private static byte quantize(float z) {
+        return (byte) Math.max(-127, Math.min(127, Math.round(z * QUANT_SCALE)));
+    }
+
+    /**
+     * Picks the grid dimensions and their quantile cuts from a sample of the rows and sorts every row into
+     * its cell.
+     */
+    private void buildGrid() {
+        int step = Math.max(1, size / GRID_SAMPLE);
+        int samples = (size + step - 1) / step;
+        float[][] sample = new float[DIMENSIONS][samples];
+        for (int s = 0; s < samples; s++) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                sample[d][s] = vectors[s * step * DIMENSIONS + d];
+            }
+        }
+        chooseGridDimensions(sample);
+        for (int g = 0; g < GRID_DIMENSIONS; g++) {
+            float[] sorted = sample[gridDimensions[g]].clone();
+            Arrays.sort(sorted);
+            for (int level = 1; level < GRID_LEVELS; level++) {
+                cuts[g * (GRID_LEVELS - 1) + level - 1] = sorted[level * samples / GRID_LEVELS];
+            }
+        }
+
+        int[] cellOf = new int[size];
+        Arrays.fill(cellStart, 0);
+        for (int row = 0; row < size; row++) {
+            cellOf[row] = cell(row);
+            cellStart[cellOf[row] + 1]++;
+        }
+        for (int c = 0; c < CELLS; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = Arrays.copyOf(cellStart, CELLS);
+        float[] sortedVectors = new float[vectors.length];
+        byte[] sortedCodes = new byte[codes.length];
+        int[] sortedIds = new int[ids.length];
+        for (int row = 0; row < size; row++) {
+            int to = next[cellOf[row]]++;
+            System.arraycopy(vectors, row * DIMENSIONS, sortedVectors, to * DIMENSIONS, DIMENSIONS);
+            if (quantized) {
+                System.arraycopy(codes, row * DIMENSIONS, sortedCodes, to * DIMENSIONS, DIMENSIONS);
+            }
+            sortedIds[to] = ids[row];
+        }
+        vectors = sortedVectors;
+        codes = sortedCodes;
+        ids = sortedIds;
+        gridded = size;
+    }
+
+    // the dimension that spreads over the most distinct bins first, then each time the one least correlated
+    // with those already chosen, so the cells split the rows in as many directions as possible
+    private void chooseGridDimensions(float[][] sample) {
+        boolean[] chosen = new boolean[DIMENSIONS];
+        double[] worst = new double[DIMENSIONS];
+        for (int g = 0; g < GRID_DIMENSIONS; g++) {
+            int best = -1;
+            double bestScore = Double.POSITIVE_INFINITY;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                if (chosen[d]) {
+                    continue;
+                }
+                double score = g == 0 ? -distinctBins(sample[d]) : worst[d];
+                if (score < bestScore) {
+                    best = d;
+                    bestScore = score;
+                }
+            }
+            chosen[best] = true;
+            gridDimensions[g] = best;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                worst[d] = Math.max(worst[d], Math.abs(correlation(sample[best], sample[d])));
+            }
+        }
+    }
+
+    private static int distinctBins(float[] values) {
+        float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int distinct = 1;
+        for (int level = 1; level < GRID_LEVELS; level++) {
+            if (sorted[level * sorted.length / GRID_LEVELS] > sorted[(level - 1) * sorted.length / GRID_LEVELS]) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    // the values are already normalised over the whole index, which is close enough for the sample
+    private static double correlation(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += (double) a[i] * b[i];
+        }
+        return sum / a.length;
+    }
+
+    private int cell(int row) {
+        int cell = 0;
+        for (int g = 0; g < GRID_DIMENSIONS; g++) {
+            float value = vectors[row * DIMENSIONS + gridDimensions[g]];
+            int level = 0;
+            while (level < GRID_LEVELS - 1 && cuts[g * (GRID_LEVELS - 1) + level] <= value) {
+                level++;
+            }
+            cell = cell * GRID_LEVELS + level;
+        }
+        return cell;
+    }
+
+    /**
+     * The k rows closest to the features, nearest first.
+     */
+    public synchronized List<Neighbor> nearest(ModelFeatures features, int k) {
+        if (size == 0 || k <= 0) {
+            return List.of();
+        }
+        float[] input = features.toInputVector();
+        float[] q = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            q[d] = normalize(input[d], d);
+        }
+        TopK top;
+        if (quantized) {
+            float[] table = codeTable(q);
+            top = scan(q, Math.min(size, k * OVERSAMPLE), (candidates, from, to) -> scanCodes(table, candidates, from, to));
+            top = rescore(top, q, k);
+        } else {
+            top = scan(q, k, (best, from, to) -> scanVectors(q, best, from, to));
+        }
+        return top.sorted(ids);
+    }
+
+    private interface RangeScan {
+        void scan(TopK top, int from, int to);
+    }
+
+    // the cells nearest first until the next one is farther than the k-th best, then the rows not yet gridded
+    private TopK scan(float[] q, int k, RangeScan range) {
+        TopK top = new TopK(k);
+        if (gridded > 0) {
+            long[] order = cellOrder(q);
+            for (long entry : order) {
+                if (Float.intBitsToFloat((int) (entry >>> 32)) >= top.bound()) {
+                    break;
+                }
+                int cell = (int) entry;
+                range.scan(top, cellStart[cell], cellStart[cell + 1]);
+            }
+        }
+        range.scan(top, gridded, size);
+        return top;
+    }
+
+    // squared distance from the query to each cell, which no row of the cell can beat, with the cell
+    // index in the low bits; non-negative floats sort like their bits
+    private long[] cellOrder(float[] q) {
+        float[] levelBound = new float[GRID_DIMENSIONS * GRID_LEVELS];
+        for (int g = 0; g < GRID_DIMENSIONS; g++) {
+            float value = q[gridDimensions[g]];
+            for (int level = 0; level < GRID_LEVELS; level++) {
+                float low = level == 0 ? Float.NEGATIVE_INFINITY : cuts[g * (GRID_LEVELS - 1) + level - 1];
+                float high = level == GRID_LEVELS - 1 ? Float.POSITIVE_INFINITY : cuts[g * (GRID_LEVELS - 1) + level];
+                float t = value < low ? low - value : value > high ? value - high : 0f;
+                levelBound[g * GRID_LEVELS + level] = t * t;
+            }
+        }
+        long[] order = new long[CELLS];
+        for (int cell = 0; cell < CELLS; cell++) {
+            float bound = 0f;
+            for (int g = GRID_DIMENSIONS - 1, rest = cell; g >= 0; g--, rest /= GRID_LEVELS) {
+                bound += levelBound[g * GRID_LEVELS + rest % GRID_LEVELS];
+            }
+            order[cell] = (long) Float.floatToIntBits(bound) << 32 | cell;
+        }
+        Arrays.sort(order);
+        return order;
+    }
+
+    private void scanVectors(float[] q, TopK top, int from, int to) {
+        float[] v = vectors;
+        float q0 = q[0], q1 = q[1], q2 = q[2], q3 = q[3], q4 = q[4];
+        float q5 = q[5], q6 = q[6], q7 = q[7], q8 = q[8], q9 = q[9];
+        float bound = top.bound();
+        for (int row = from, o = from * DIMENSIONS; row < to; row++, o += DIMENSIONS) {
+            float t0 = v[o] - q0, t1 = v[o + 1] - q1, t2 = v[o + 2] - q2, t3 = v[o + 3] - q3, t4 = v[o + 4] - q4;
+            float d = t0 * t0 + t1 * t1 + t2 * t2 + t3 * t3 + t4 * t4;
+            if (d >= bound) {
+                continue;
+            }
+            float t5 = v[o + 5] - q5, t6 = v[o + 6] - q6, t7 = v[o + 7] - q7, t8 = v[o + 8] - q8, t9 = v[o + 9] - q9;
+            d += t5 * t5 + t6 * t6 + t7 * t7 + t8 * t8 + t9 * t9;
+            if (d < bound) {
+                top.offer(row, d);
+                bound = top.bound();
+            }
+        }
+    }
+
+    // squared difference between the query and every code value, per dimension
+    private static float[] codeTable(float[] q) {
+        float[] table = new float[DIMENSIONS << 8];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            for (int code = 0; code < 256; code++) {
+                float t = (byte) code / QUANT_SCALE - q[d];
+                table[d << 8 | code] = t * t;
+            }
+        }
+        return table;
+    }
+
+    private void scanCodes(float[] table, TopK top, int from, int to) {
+        byte[] c = codes;
+        float bound = top.bound();
+        for (int row = from, o = from * DIMENSIONS; row < to; row++, o += DIMENSIONS) {
+            float d = table[c[o] & 0xFF] + table[256 | c[o + 1] & 0xFF] + table[512 | c[o + 2] & 0xFF]
+                    + table[768 | c[o + 3] & 0xFF] + table[1024 | c[o + 4] & 0xFF];
+            if (d >= bound) {
+                continue;
+            }
+            d += table[1280 | c[o + 5] & 0xFF] + table[1536 | c[o + 6] & 0xFF] + table[1792 | c[o + 7] & 0xFF]
+                    + table[2048 | c[o + 8] & 0xFF] + table[2304 | c[o + 9] & 0xFF];
+            if (d < bound) {
+                top.offer(row, d);
+                bound = top.bound();
+            }
+        }
+    }
+
+    private TopK rescore(TopK candidates, float[] q, int k) {
+        TopK top = new TopK(k);
+        for (int i = 0; i < candidates.count; i++) {
+            int row = candidates.rows[i];
+            float d = 0;
+            for (int j = 0; j < DIMENSIONS; j++) {
+                float t = vectors[row * DIMENSIONS + j] - q[j];
+                d += t * t;
+            }
+            top.offer(row, d);
+        }
+        return top;
+    }
+
+    /**
+     * A past analysis and its distance in normalised feature space.
+     */
+    public record Neighbor(int row, double distance) {
+    }
+
+    /**
+     * Bounded max-heap on distance: the root is the worst of the k best seen so far.
+     */
+    private static final class TopK {
+
+        private final int[] rows;
+        private final float[] distances;
+        private int count;
+
+        TopK(int k) {
+            rows = new int[k];
+            distances = new float[k];
+        }
+
+        float bound() {
+            return count < rows.length ? Float.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(int row, float distance) {
+            if (count < rows.length) {
+                int i = count++;
+                rows[i] = row;
+                distances[i] = distance;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (distances[parent] >= distances[i]) {
+                        break;
+                    }
+                    swap(i, parent);
+                    i = parent;
+                }
+            } else if (distance < distances[0]) {
+                rows[0] = row;
+                distances[0] = distance;
+                int i = 0;
+                while (true) {
+                    int largest = i;
+                    int left = 2 * i + 1;
+                    int right = left + 1;
+                    if (left < count && distances[left] > distances[largest]) {
+                        largest = left;
+                    }
+                    if (right < count && distances[right] > distances[largest]) {
+                        largest = right;
+                    }
+                    if (largest == i) {
+                        break;
+                    }
+                    swap(i, largest);
+                    i = largest;
+                }
+            }
+        }
+
+        private void swap(int a, int b) {
+            int row = rows[a];
+            rows[a] = rows[b];
+            rows[b] = row;
+            float distance = distances[a];
+            distances[a] = distances[b];
+            distances[b] = distance;
+        }
+
+        // rows are positions in the index; ids maps them back to archive rows
+        List<Neighbor> sorted(int[] ids) {
+            List<Neighbor> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(new Neighbor(ids[rows[i]], Math.sqrt(distances[i])));
+            }
+            result.sort((a, b) -> Double.compare(a.distance(), b.distance()));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One step of the feature calculation, such as {@code geometryStats} (area, volume and the edge hash set) or
+ * {@code curvature}, or {@code total} for the whole calculation. Recorded as {@code features.<stage>}.
+ */
+@Name("draxel.FeatureStage")
+@Label("Feature Stage")
+@Category({"Draxel", "Analysis"})
+@StackTrace(false)
+public final class FeatureStageEvent extends TimedEvent {
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Vertices")
+    public int vertices;
+
+    @Label("Faces")
+    public int faces;
+
+    public static FeatureStageEvent start(String stage, int vertices, int faces) {
+        FeatureStageEvent event = new FeatureStageEvent();
+        event.stage = stage;
+        event.vertices = vertices;
+        event.faces = faces;
+        event.start(MetricsRegistry.global().histogram("features." + stage));
+        return event;
+    }
+}
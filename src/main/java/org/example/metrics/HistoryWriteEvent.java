@@ -0,0 +1,53 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One write to the history log: an {@code append} of a group of entries, recorded as {@code history.append},
+ * or a {@code force} to disk, recorded as {@code history.force}.
+ */
+@Name("draxel.HistoryWrite")
+@Label("History Write")
+@Category({"Draxel", "History"})
+@StackTrace(false)
+public final class HistoryWriteEvent extends TimedEvent {
+
+    private static final LatencyHistogram APPEND = MetricsRegistry.global().histogram("history.append");
+    private static final LatencyHistogram FORCE = MetricsRegistry.global().histogram("history.force");
+    private static final LongAdder ENTRIES = MetricsRegistry.global().counter("history.entries");
+    private static final LongAdder BYTES = MetricsRegistry.global().counter("history.bytes");
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Entries")
+    public int entries;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    public static HistoryWriteEvent append(int entries, long bytes) {
+        HistoryWriteEvent event = new HistoryWriteEvent();
+        event.operation = "append";
+        event.entries = entries;
+        event.bytes = bytes;
+        event.start(APPEND);
+        ENTRIES.add(entries);
+        BYTES.add(bytes);
+        return event;
+    }
+
+    public static HistoryWriteEvent force() {
+        HistoryWriteEvent event = new HistoryWriteEvent();
+        event.operation = "force";
+        event.start(FORCE);
+        return event;
+    }
+}
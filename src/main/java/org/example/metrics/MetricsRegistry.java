@@ -0,0 +1,84 @@
+package org.example.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency histograms and counters for the whole process, so a slow analysis can be broken down into
+ * file I/O, tokenizing, each feature step, inference and history writes without a profiler.
+ *
+ * The analysis code records into {@link #global()} through the JFR events in this package, which also feed a
+ * Flight Recorder recording when one is running. Names are dotted, stage first: {@code parse},
+ * {@code parse.io}, {@code features.geometryStats}, {@code predict.batch}, {@code history.append}, and so on.
+ * The desktop app shows {@link #format()} on Ctrl+Shift+M, {@code --batch ... --metrics} prints it after the
+ * summary, and {@code --serve} exports the histograms on {@code /metrics}.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    /**
+     * The histogram with this name, created on first use. Hot paths should look it up once and keep it.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Every histogram by name, in name order.
+     */
+    public Map<String, LatencyHistogram> histograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    /**
+     * A snapshot of every counter by name, in name order.
+     */
+    public Map<String, Long> counters() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        return snapshot;
+    }
+
+    /**
+     * Clears every histogram and counter; the names stay registered.
+     */
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-26s %10s %10s %10s %10s %10s %10s%n",
+                "stage", "count", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        histograms.forEach((name, h) -> {
+            if (h.count() > 0) {
+                sb.append(String.format(Locale.US, "%-26s %,10d %10.3f %10.3f %10.3f %10.3f %10.3f%n", name, h.count(),
+                        h.meanNanos() / 1e6, h.percentileNanos(50) / 1e6, h.percentileNanos(90) / 1e6,
+                        h.percentileNanos(99) / 1e6, h.maxNanos() / 1e6));
+            }
+        });
+        Map<String, Long> snapshot = counters();
+        if (!snapshot.isEmpty()) {
+            sb.append(String.format(Locale.US, "%n%-26s %16s%n", "counter", "total"));
+            snapshot.forEach((name, total) -> sb.append(String.format(Locale.US, "%-26s %,16d%n", name, total)));
+        }
+        return sb.toString();
+    }
+}
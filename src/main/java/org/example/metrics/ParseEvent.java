@@ -0,0 +1,65 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One OBJ parse. The time blocked reading the input is reported separately, so the rest of the duration is
+ * tokenizing and building the model.
+ */
+@Name("draxel.Parse")
+@Label("OBJ Parse")
+@Category({"Draxel", "Analysis"})
+@StackTrace(false)
+public final class ParseEvent extends TimedEvent {
+
+    private static final LatencyHistogram PARSE = MetricsRegistry.global().histogram("parse");
+    private static final LatencyHistogram IO = MetricsRegistry.global().histogram("parse.io");
+    private static final LongAdder BYTES = MetricsRegistry.global().counter("parse.bytes");
+    private static final LongAdder FACES = MetricsRegistry.global().counter("parse.faces");
+
+    @Label("Source")
+    public String source;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("I/O Time")
+    @Description("Time spent blocked reading the input")
+    @Timespan
+    public long ioNanos;
+
+    @Label("Vertices")
+    public int vertices;
+
+    @Label("Faces")
+    public int faces;
+
+    public static ParseEvent start(String source) {
+        ParseEvent event = new ParseEvent();
+        event.source = source;
+        event.start(PARSE);
+        return event;
+    }
+
+    public long finish(long bytes, long ioNanos, int vertices, int faces) {
+        this.bytes = bytes;
+        this.ioNanos = ioNanos;
+        this.vertices = vertices;
+        this.faces = faces;
+        if (ioNanos > 0) {
+            IO.record(ioNanos);
+        }
+        BYTES.add(bytes);
+        FACES.add(faces);
+        return finish();
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One call into the recommendation model: a single prediction, recorded as {@code predict}, or a batch,
+ * recorded as {@code predict.batch}.
+ */
+@Name("draxel.Predict")
+@Label("Model Prediction")
+@Category({"Draxel", "Inference"})
+@StackTrace(false)
+public final class PredictEvent extends TimedEvent {
+
+    private static final LatencyHistogram SINGLE = MetricsRegistry.global().histogram("predict");
+    private static final LatencyHistogram BATCH = MetricsRegistry.global().histogram("predict.batch");
+    private static final LongAdder ROWS = MetricsRegistry.global().counter("predict.rows");
+
+    @Label("Backend")
+    public String backend;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Distinct Rows")
+    @Description("Rows evaluated by the model after identical inputs were merged")
+    public int distinctRows;
+
+    public static PredictEvent start(String backend, int rows, boolean batch) {
+        PredictEvent event = new PredictEvent();
+        event.backend = backend;
+        event.rows = rows;
+        event.distinctRows = rows;
+        event.start(batch ? BATCH : SINGLE);
+        ROWS.add(rows);
+        return event;
+    }
+}
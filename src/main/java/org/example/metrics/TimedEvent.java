@@ -0,0 +1,37 @@
+package org.example.metrics;
+
+import jdk.jfr.Event;
+
+/**
+ * A Flight Recorder event that also records its duration in a {@link MetricsRegistry} histogram.
+ *
+ * Without a running recording {@link #shouldCommit()} is false and nothing is written, so an event costs two
+ * {@code System.nanoTime()} calls and the histogram update, well under a microsecond, next to the fastest
+ * instrumented call, a single prediction of some 25 microseconds. The histogram is not an event field:
+ * transient fields are not written to the recording.
+ */
+abstract class TimedEvent extends Event {
+
+    private transient LatencyHistogram histogram;
+    private transient long startNanos;
+
+    final void start(LatencyHistogram histogram) {
+        this.histogram = histogram;
+        begin();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the nanoseconds since the event started, after recording them and committing the event if a
+     * recording asks for it.
+     */
+    public final long finish() {
+        long nanos = System.nanoTime() - startNanos;
+        histogram.record(nanos);
+        end();
+        if (shouldCommit()) {
+            commit();
+        }
+        return nanos;
+    }
+}
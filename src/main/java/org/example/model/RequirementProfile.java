@@ -55,4 +55,26 @@ public class RequirementProfile {
     public boolean isHeat() { return heat; }
     public boolean isPressure() { return pressure; }
     public boolean isChemical() { return chemical; }
+
+    /**
+     * Returns the 10 flags (in declaration order) as a 0/1 vector, for models that also take the profile as input.
+     */
+    public float[] toInputVector() {
+        return new float[]{
+                flag(functional),
+                flag(decorative),
+                flag(force),
+                flag(friction),
+                flag(weightSupport),
+                flag(outdoor),
+                flag(detail),
+                flag(heat),
+                flag(pressure),
+                flag(chemical)
+        };
+    }
+
+    private static float flag(boolean value) {
+        return value ? 1f : 0f;
+    }
 }
@@ -0,0 +1,171 @@
+package org.example.pipeline;
+
+import org.example.ai.ModelRegistry;
+import org.example.ai.RecommendationEngine.PredictionResult;
+import org.example.analysis.FeatureCalculator;
+import org.example.analysis.FeatureDrift;
+import org.example.analysis.MeshDecimator;
+import org.example.analysis.ObjParser;
+import org.example.model.ModelFeatures;
+import org.example.model.ObjModel;
+import org.example.model.RequirementProfile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The analysis of .obj files as a {@link StagedPipeline}:
+ *  - parse: reads and parses the file, on virtual threads since it mostly waits on the disk,
+ *  - features: {@link FeatureCalculator}, on one platform thread per core, optionally on a mesh simplified by
+ *    {@link MeshDecimator} and compared with the full-resolution features,
+ *  - predict: collects whatever analyses are ready into one batch and scores it with a single model call.
+ *
+ * Models parsed elsewhere, such as uploads parsed straight from a socket, can be submitted too; they pass
+ * the parse stage without work. Each batch is routed as a whole, so a traffic split applies per batch
+ * rather than per file.
+ */
+public final class AnalysisPipeline implements AutoCloseable {
+
+    private final ModelRegistry models;
+    private final Config config;
+    private final StagedPipeline<Request, Result> pipeline;
+
+    public AnalysisPipeline(ModelRegistry models, Config config) {
+        this.models = models;
+        this.config = config;
+        this.pipeline = StagedPipeline.<Request>builder()
+                .io("parse", config.ioConcurrency(), config.queueCapacity(), AnalysisPipeline::parse)
+                .cpu("features", config.cpuThreads(), config.queueCapacity(), this::measure)
+                .batched("predict", config.maxBatch(), config.maxBatchWaitMillis(), config.queueCapacity(), this::predict)
+                .build();
+    }
+
+    /**
+     * Queues a file, blocking while the parse stage is full.
+     */
+    public CompletableFuture<Result> submit(Path file, RequirementProfile profile) throws InterruptedException {
+        return pipeline.submit(new Request(file, file.getFileName().toString(), null, 0, profile));
+    }
+
+    /**
+     * Queues a model that is already parsed; {@code bytes} is the size of its source, for the statistics.
+     */
+    public CompletableFuture<Result> submit(String name, ObjModel model, long bytes, RequirementProfile profile)
+            throws InterruptedException {
+        return pipeline.submit(new Request(null, name, model, bytes, profile));
+    }
+
+    public List<StagedPipeline.StageStats> stats() {
+        return pipeline.stats();
+    }
+
+    public String formatStats() {
+        return pipeline.formatStats();
+    }
+
+    /**
+     * Finishes every submitted file and stops the stages.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        pipeline.close();
+    }
+
+    private static Parsed parse(Request request) throws Exception {
+        if (request.model() != null) {
+            return new Parsed(request, request.bytes(), request.model(), 0);
+        }
+        long start = System.nanoTime();
+        long bytes = Files.size(request.file());
+        ObjModel model = ObjParser.parse(request.file());
+        return new Parsed(request, bytes, model, System.nanoTime() - start);
+    }
+
+    private Measured measure(Parsed parsed) {
+        long start = System.nanoTime();
+        if (config.decimation() == null) {
+            return new Measured(parsed, FeatureCalculator.calculate(parsed.model()), null, System.nanoTime() - start);
+        }
+        if (config.drift()) {
+            FeatureDrift drift = FeatureDrift.measure(parsed.model(), config.decimation());
+            // the full-resolution pass is only there for the comparison, so it is not counted
+            return new Measured(parsed, drift.decimated(), drift, drift.decimation().nanos() + drift.decimatedNanos());
+        }
+        ObjModel decimated = MeshDecimator.decimate(parsed.model(), config.decimation()).model();
+        return new Measured(parsed, FeatureCalculator.calculate(decimated), null, System.nanoTime() - start);
+    }
+
+    private List<Result> predict(List<Measured> batch) throws Exception {
+        long start = System.nanoTime();
+        List<ModelFeatures> features = new ArrayList<>(batch.size());
+        List<RequirementProfile> profiles = new ArrayList<>(batch.size());
+        for (Measured m : batch) {
+            features.add(m.analysis().features());
+            profiles.add(m.parsed().request().profile());
+        }
+        String name = models.route();
+        List<PredictionResult> predictions = models.predictBatch(name, features, profiles);
+        long predictNanos = System.nanoTime() - start;
+
+        List<Result> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Measured m = batch.get(i);
+            Request request = m.parsed().request();
+            results.add(new Result(request.file(), request.name(), m.parsed().bytes(), m.analysis(), m.drift(), name,
+                    predictions.get(i), m.parsed().parseNanos(), m.featureNanos(), predictNanos, batch.size()));
+        }
+        return results;
+    }
+
+    /**
+     * Stage sizing. {@code maxBatchWaitMillis} is how long the predict stage holds a partial batch
+     * for more files before scoring it anyway. With a {@code decimation} target, features are measured on
+     * the simplified mesh; with {@code drift} as well, also on the full one, for {@link Result#drift()}.
+     */
+    public record Config(int ioConcurrency, int cpuThreads, int maxBatch, long maxBatchWaitMillis, int queueCapacity,
+                         MeshDecimator.Target decimation, boolean drift) {
+
+        public static Config defaults() {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            return new Config(Math.max(8, 2 * cpus), cpus, 32, 2, 64, null, false);
+        }
+
+        public Config withCpuThreads(int threads) {
+            return new Config(ioConcurrency, threads, maxBatch, maxBatchWaitMillis, queueCapacity, decimation, drift);
+        }
+
+        public Config withIoConcurrency(int concurrency) {
+            return new Config(concurrency, cpuThreads, maxBatch, maxBatchWaitMillis, queueCapacity, decimation, drift);
+        }
+
+        public Config withMaxBatch(int batch) {
+            return new Config(ioConcurrency, cpuThreads, batch, maxBatchWaitMillis, queueCapacity, decimation, drift);
+        }
+
+        public Config withDecimation(MeshDecimator.Target target, boolean drift) {
+            return new Config(ioConcurrency, cpuThreads, maxBatch, maxBatchWaitMillis, queueCapacity, target, drift);
+        }
+    }
+
+    /**
+     * One analysed file; {@code file} is null for submitted models. The stage times are the work itself,
+     * not the time spent queued; {@code predictNanos} covers the whole batch of {@code batchSize} files
+     * the file was scored in. {@code drift} is null unless the pipeline compares decimated features.
+     */
+    public record Result(Path file, String name, long bytes, FeatureCalculator.Result analysis, FeatureDrift drift, String model,
+                         PredictionResult prediction, long parseNanos, long featureNanos, long predictNanos,
+                         int batchSize) {
+    }
+
+    private record Request(Path file, String name, ObjModel model, long bytes, RequirementProfile profile) {
+    }
+
+    private record Parsed(Request request, long bytes, ObjModel model, long parseNanos) {
+    }
+
+    private record Measured(Parsed parsed, FeatureCalculator.Result analysis, FeatureDrift drift, long featureNanos) {
+    }
+}
@@ -0,0 +1,400 @@
+package org.example.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A chain of stages connected by bounded queues. Each stage has its own workers:
+ *  - I/O stages run on virtual threads (see {@link VirtualThreads}) with a concurrency limit,
+ *  - CPU stages on a fixed pool of platform threads,
+ *  - batch stages collect up to {@code maxBatch} items, waiting at most {@code maxWait} for stragglers,
+ *    and process them with one call.
+ *
+ * A full queue blocks the stage in front of it, and in the end {@link #submit}, so a slow stage slows
+ * the whole pipeline down instead of letting work pile up in memory. {@link #stats()} reports per stage
+ * how full its queue is and how busy its workers are; the stage with the highest utilisation is the
+ * bottleneck, and a stage that spends its time blocked is waiting on the one after it.
+ *
+ * <pre>
+ * StagedPipeline&lt;Path, Result&gt; pipeline = StagedPipeline.&lt;Path&gt;builder()
+ *         .io("parse", 16, 64, ObjParser::parse)
+ *         .cpu("features", 8, 64, FeatureCalculator::calculate)
+ *         .batched("predict", 32, 2, 64, this::predictAll)
+ *         .build();
+ * </pre>
+ */
+public final class StagedPipeline<I, O> implements AutoCloseable {
+
+    public enum Kind { IO, CPU, BATCH }
+
+    @FunctionalInterface
+    public interface StageFunction<T, R> {
+        R apply(T input) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface BatchFunction<T, R> {
+        /**
+         * Returns one output per input, in the same order.
+         */
+        List<R> apply(List<T> inputs) throws Exception;
+    }
+
+    private static final long POLL_MILLIS = 20;
+    private static final long STOP_MILLIS = 60_000;
+
+    private final List<Stage> stages;
+    private final long started = System.nanoTime();
+    private volatile boolean closed;
+
+    private StagedPipeline(List<Stage> stages) {
+        this.stages = List.copyOf(stages);
+        for (int i = 0; i + 1 < stages.size(); i++) {
+            stages.get(i).next = stages.get(i + 1);
+        }
+        for (Stage stage : stages) {
+            stage.start();
+        }
+    }
+
+    public static <T> Builder<T, T> builder() {
+        return new Builder<>(new ArrayList<>());
+    }
+
+    /**
+     * Queues the input at the first stage, blocking while that stage's queue is full.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<O> submit(I input) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        stages.get(0).put(new Job(input, result));
+        return (CompletableFuture<O>) result;
+    }
+
+    public List<StageStats> stats() {
+        long elapsed = System.nanoTime() - started;
+        List<StageStats> stats = new ArrayList<>();
+        for (Stage stage : stages) {
+            stats.add(stage.stats(elapsed));
+        }
+        return stats;
+    }
+
+    public String formatStats() {
+        List<StageStats> stats = stats();
+        StageStats bottleneck = null;
+        for (StageStats s : stats) {
+            if (bottleneck == null || s.utilization() > bottleneck.utilization()) {
+                bottleneck = s;
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "  %-10s %-5s %7s %11s %9s %6s %8s %8s %7s%n",
+                "stage", "kind", "workers", "queue", "done", "failed", "busy", "blocked", "batch"));
+        for (StageStats s : stats) {
+            sb.append(String.format(Locale.US, "  %-10s %-5s %7s %5d/%-5d %9d %6d %7.0f%% %7.0f%% %7.1f%s%n",
+                    s.name(), s.kind(), s.workers() + (s.virtualThreads() ? "v" : ""),
+                    s.maxQueueDepth(), s.capacity(), s.processed(), s.failed(),
+                    s.utilization() * 100.0, s.blockedFraction() * 100.0, s.meanBatch(),
+                    s == bottleneck ? "  <- bottleneck" : ""));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Stops accepting input, lets everything already submitted run to completion and stops the workers.
+     *
+     * @throws IllegalStateException if the workers of a stage did not stop within a minute of its last job;
+     *                               the other stages are stopped first
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        List<String> running = new ArrayList<>();
+        for (Stage stage : stages) {
+            if (!stage.drainAndStop()) {
+                running.add(stage.name);
+            }
+        }
+        if (!running.isEmpty()) {
+            throw new IllegalStateException("Pipeline stages did not stop: " + String.join(", ", running));
+        }
+    }
+
+    /**
+     * Adds stages in order; {@code T} is the output type of the last stage added.
+     */
+    public static final class Builder<I, T> {
+
+        private final List<Stage> stages;
+
+        private Builder(List<Stage> stages) {
+            this.stages = stages;
+        }
+
+        public <R> Builder<I, R> io(String name, int concurrency, int capacity, StageFunction<? super T, ? extends R> fn) {
+            return add(new Stage(name, Kind.IO, concurrency, capacity, erase(fn), null, 1, 0));
+        }
+
+        public <R> Builder<I, R> cpu(String name, int threads, int capacity, StageFunction<? super T, ? extends R> fn) {
+            return add(new Stage(name, Kind.CPU, threads, capacity, erase(fn), null, 1, 0));
+        }
+
+        public <R> Builder<I, R> batched(String name, int maxBatch, long maxWaitMillis, int capacity,
+                                         BatchFunction<? super T, ? extends R> fn) {
+            @SuppressWarnings("unchecked")
+            BatchFunction<Object, Object> erased = (BatchFunction<Object, Object>) (BatchFunction<?, ?>) fn;
+            return add(new Stage(name, Kind.BATCH, 1, capacity, null, erased, maxBatch,
+                    TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)));
+        }
+
+        public StagedPipeline<I, T> build() {
+            if (stages.isEmpty()) {
+                throw new IllegalStateException("A pipeline needs at least one stage");
+            }
+            return new StagedPipeline<>(stages);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static StageFunction<Object, Object> erase(StageFunction<?, ?> fn) {
+            return (StageFunction<Object, Object>) fn;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <R> Builder<I, R> add(Stage stage) {
+            stages.add(stage);
+            return (Builder<I, R>) this;
+        }
+    }
+
+    /**
+     * Queue and worker figures for one stage. Utilisation is the share of worker time spent processing,
+     * blocked the share spent waiting for room in the next stage's queue.
+     */
+    public record StageStats(String name, Kind kind, int workers, boolean virtualThreads, int queueDepth,
+                             int maxQueueDepth, int capacity, long processed, long failed,
+                             double utilization, double blockedFraction, double meanBatch) {
+    }
+
+    private static final class Job {
+        Object value;
+        final CompletableFuture<Object> result;
+
+        Job(Object value, CompletableFuture<Object> result) {
+            this.value = value;
+            this.result = result;
+        }
+    }
+
+    private static final class Stage {
+
+        final String name;
+        final Kind kind;
+        final int workers;
+        final int capacity;
+        final BlockingQueue<Job> queue;
+        final StageFunction<Object, Object> fn;
+        final BatchFunction<Object, Object> batchFn;
+        final int maxBatch;
+        final long maxWaitNanos;
+        Stage next;
+
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder blockedNanos = new LongAdder();
+        final LongAdder processed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder batches = new LongAdder();
+        final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+        // jobs queued here or being processed here, until they are handed to the next stage; the stage is
+        // notified when it drops to zero
+        final AtomicInteger pending = new AtomicInteger();
+        volatile boolean stopping;
+        ExecutorService executor;
+        boolean virtualThreads;
+
+        Stage(String name, Kind kind, int workers, int capacity, StageFunction<Object, Object> fn,
+              BatchFunction<Object, Object> batchFn, int maxBatch, long maxWaitNanos) {
+            if (workers < 1 || capacity < 1 || maxBatch < 1) {
+                throw new IllegalArgumentException("Stage " + name + " needs at least one worker, queue slot and batch item");
+            }
+            this.name = name;
+            this.kind = kind;
+            this.workers = workers;
+            this.capacity = capacity;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.fn = fn;
+            this.batchFn = batchFn;
+            this.maxBatch = maxBatch;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        void start() {
+            if (kind == Kind.IO) {
+                executor = VirtualThreads.newExecutor(name);
+                virtualThreads = VirtualThreads.available();
+            } else {
+                executor = Executors.newFixedThreadPool(workers, VirtualThreads.daemonThreads(name));
+            }
+            for (int i = 0; i < workers; i++) {
+                executor.execute(this::run);
+            }
+        }
+
+        void put(Job job) throws InterruptedException {
+            pending.incrementAndGet();
+            try {
+                queue.put(job);
+            } catch (InterruptedException e) {
+                release();
+                throw e;
+            }
+            maxDepth.accumulate(queue.size());
+        }
+
+        private void run() {
+            List<Job> batch = new ArrayList<>(maxBatch);
+            while (true) {
+                Job first;
+                try {
+                    first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (first == null) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                if (kind == Kind.BATCH) {
+                    fill(batch);
+                }
+                process(batch);
+                batch.clear();
+            }
+        }
+
+        // take whatever is queued, then wait up to maxWait for the batch to fill
+        private void fill(List<Job> batch) {
+            queue.drainTo(batch, maxBatch - batch.size());
+            long deadline = System.nanoTime() + maxWaitNanos;
+            while (batch.size() < maxBatch) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                try {
+                    Job job = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (job == null) {
+                        break;
+                    }
+                    batch.add(job);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                queue.drainTo(batch, maxBatch - batch.size());
+            }
+        }
+
+        private void process(List<Job> batch) {
+            long start = System.nanoTime();
+            List<Object> outputs;
+            try {
+                if (kind == Kind.BATCH) {
+                    List<Object> inputs = new ArrayList<>(batch.size());
+                    for (Job job : batch) {
+                        inputs.add(job.value);
+                    }
+                    outputs = batchFn.apply(inputs);
+                    if (outputs.size() != inputs.size()) {
+                        throw new IllegalStateException("Stage " + name + " returned " + outputs.size()
+                                + " results for " + inputs.size() + " inputs");
+                    }
+                } else {
+                    outputs = new ArrayList<>(1);
+                    outputs.add(fn.apply(batch.get(0).value));
+                }
+            } catch (Exception | OutOfMemoryError e) {
+                busyNanos.add(System.nanoTime() - start);
+                failed.add(batch.size());
+                for (Job job : batch) {
+                    job.result.completeExceptionally(e);
+                    release();
+                }
+                return;
+            }
+            long processedAt = System.nanoTime();
+            busyNanos.add(processedAt - start);
+            processed.add(batch.size());
+            batches.increment();
+
+            for (int i = 0; i < batch.size(); i++) {
+                Job job = batch.get(i);
+                job.value = outputs.get(i);
+                try {
+                    if (next == null) {
+                        job.result.complete(job.value);
+                    } else {
+                        next.put(job);
+                    }
+                } catch (InterruptedException e) {
+                    job.result.completeExceptionally(e);
+                    Thread.currentThread().interrupt();
+                } finally {
+                    release();
+                }
+            }
+            blockedNanos.add(System.nanoTime() - processedAt);
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Waits until every job that reached this stage has left it, then stops the workers; returns false
+         * if they did not stop in time.
+         */
+        boolean drainAndStop() throws InterruptedException {
+            synchronized (this) {
+                while (pending.get() > 0) {
+                    wait();
+                }
+            }
+            stopping = true;
+            executor.shutdown();
+            if (executor.awaitTermination(STOP_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            executor.shutdownNow();
+            return false;
+        }
+
+        StageStats stats(long elapsedNanos) {
+            double workerNanos = (double) Math.max(elapsedNanos, 1) * workers;
+            long batchCount = batches.sum();
+            return new StageStats(name, kind, workers, virtualThreads, queue.size(), (int) maxDepth.get(), capacity,
+                    processed.sum(), failed.sum(), busyNanos.sum() / workerNanos, blockedNanos.sum() / workerNanos,
+                    batchCount == 0 ? 0 : (double) processed.sum() / batchCount);
+        }
+    }
+}
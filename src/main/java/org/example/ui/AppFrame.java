@@ -1,11 +1,19 @@
 package org.example.ui;
 
-import org.example.ai.RecommendationEngine;
+import org.example.ai.ModelRegistry;
+import org.example.ai.ProfileSweep;
+import org.example.ai.RobustnessEstimator;
 import org.example.ai.RecommendationEngine.PredictionResult;
 import org.example.analysis.FeatureCalculator;
+import org.example.analysis.MemoryBudget;
 import org.example.analysis.ObjParser;
+import org.example.analysis.StreamingFeatureCalculator;
 import org.example.history.HistoryEntry;
 import org.example.history.HistoryManager;
+import org.example.history.HistoryPayload;
+import org.example.history.HistoryStore;
+import org.example.history.SimilarityIndex;
+import org.example.metrics.MetricsRegistry;
 import org.example.model.ModelFeatures;
 import org.example.model.ObjModel;
 import org.example.model.RequirementProfile;
@@ -18,11 +26,19 @@ import java.awt.event.ItemEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
-import java.nio.file.Path;
-import java.util.HashMap;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 //import static jdk.javadoc.internal.doclets.formats.html.markup.HtmlStyle.details;
@@ -75,13 +91,34 @@ public class AppFrame extends JFrame {
     // results screen components (initialized in constructor after fonts load)
     private JTextArea featureArea;
     private JTextArea resultArea;
+    private MeshPreviewPanel preview;
 
-    // model / engine
-    private final RecommendationEngine engine;
+    // model / engine (one or more models, see ModelRegistry for the draxel.model* properties)
+    private final ModelRegistry models;
+    private final RobustnessEstimator robustness = new RobustnessEstimator();
 
     // which branch is active
     private boolean currentFunctional = false; // set after user picks
 
+    // what-if cache: every requirement combination of recently analysed files, scored in one batch
+    private static final int SWEEP_CACHE_SIZE = 8;
+    private final Map<SweepKey, ProfileSweep> sweeps = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SweepKey, ProfileSweep> eldest) {
+            return size() > SWEEP_CACHE_SIZE;
+        }
+    };
+
+    // "similar past models" section per analysed file; does not depend on the requirement flags
+    private static final int SIMILAR_COUNT = 5;
+    private final Map<ProfileSweep, String> similarModels = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // progress of the running analysis, shown below every screen while it runs
+    private final JPanel progressStrip = new JPanel(new FlowLayout(FlowLayout.CENTER, 16, 12));
+    private final JProgressBar progressBar = new JProgressBar(0, 100);
+    private final JLabel progressLabel = new JLabel(" ");
+    private AnalysisWorker analysis;
+
     public AppFrame() throws Exception {
         super("3D Analyser Desktop");
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
@@ -104,12 +141,14 @@ public class AppFrame extends JFrame {
         // now it's safe to create text areas that use dmSans
         featureArea = createResultTextArea();
         resultArea  = createResultTextArea();
+        preview = new MeshPreviewPanel(dmSans != null ? dmSans : fallbackFont());
 
-        this.engine = new RecommendationEngine();
+        this.models = ModelRegistry.fromSystemProperties();
         addWindowListener(new java.awt.event.WindowAdapter() {
             @Override
             public void windowClosed(java.awt.event.WindowEvent e) {
-                try { engine.close(); } catch (Exception ignored) {}
+                try { models.close(); } catch (Exception ignored) {}
+                preview.dispose();
             }
         });
 
@@ -126,18 +165,55 @@ public class AppFrame extends JFrame {
         add(backWrap, BorderLayout.NORTH);
         backButton.setVisible(false);
 
+        buildProgressStrip();
+        add(progressStrip, BorderLayout.SOUTH);
+
         // build cards
         root.add(buildCategoryCard(), CARD_CATEGORY);
         root.add(buildDecorOptionsCard(), CARD_DECOR);
         root.add(buildFuncOptionsCard(), CARD_FUNC);
         root.add(buildResultsCard(), CARD_RESULTS);
 
+        // flipping a requirement re-reads the cached sweep instead of re-analysing
+        for (JCheckBox cb : List.of(outdoorCheckDecor, detailCheckDecor, forceCheckFunc, frictionCheckFunc,
+                weightSupportCheckFunc, outdoorCheckFunc, detailCheckFunc)) {
+            cb.addItemListener(e -> refreshWhatIf());
+        }
+
+        // Ctrl+Shift+M anywhere: where the time went, stage by stage, and how the models compare
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW)
+                .put(KeyStroke.getKeyStroke("ctrl shift M"), "showMetrics");
+        getRootPane().getActionMap().put("showMetrics", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                onShowMetrics();
+            }
+        });
+
         // start on category selection
         showCard(CARD_CATEGORY);
     }
 
     // ----------------------- Card builders -----------------------
 
+    private void buildProgressStrip() {
+        progressStrip.setOpaque(false);
+        styleLabel(progressLabel);
+        progressBar.setPreferredSize(new Dimension(360, 10));
+        progressBar.setForeground(Color.WHITE);
+        progressBar.setBackground(new Color(38, 38, 38));
+        progressBar.setBorderPainted(false);
+        JButton cancel = outlinedButton("Cancel", e -> {
+            if (analysis != null) {
+                analysis.cancel(true);
+            }
+        });
+        progressStrip.add(progressLabel);
+        progressStrip.add(progressBar);
+        progressStrip.add(cancel);
+        progressStrip.setVisible(false);
+    }
+
     private JPanel buildCategoryCard() {
         JPanel page = basePage();
 
@@ -323,7 +399,11 @@ public class AppFrame extends JFrame {
         meshTitle.setBorder(new EmptyBorder(8, 8, 8, 8));
         left.add(meshTitle, BorderLayout.NORTH);
         JScrollPane featuresScroll = new RoundedScrollPane(featureArea, 18, new Color(50, 50, 50));
-        left.add(featuresScroll, BorderLayout.CENTER);
+        JPanel previewAndFeatures = new JPanel(new GridLayout(2, 1, 0, 12));
+        previewAndFeatures.setOpaque(false);
+        previewAndFeatures.add(preview);
+        previewAndFeatures.add(featuresScroll);
+        left.add(previewAndFeatures, BorderLayout.CENTER);
         JButton copyLeft = primaryButton("Copy", e -> copyToClipboard(featureArea.getText()));
         JPanel copyLeftWrap = new JPanel(new FlowLayout(FlowLayout.CENTER, 0, 10));
         copyLeftWrap.setOpaque(false);
@@ -366,6 +446,7 @@ public class AppFrame extends JFrame {
             } else {
                 fileLabelDecor.setText(currentFile.getName());
             }
+            refreshWhatIf();
         }
     }
 
@@ -374,45 +455,297 @@ public class AppFrame extends JFrame {
             JOptionPane.showMessageDialog(this, "Please select a valid .obj file first.", "No file", JOptionPane.WARNING_MESSAGE);
             return;
         }
+        if (analysis != null) {
+            analysis.cancel(true);
+        }
 
-        try {
-            ObjModel model = ObjParser.parse(Path.of(currentFile.toURI()));
-            FeatureCalculator.Result result = FeatureCalculator.calculate(model);
-            featureArea.setText(result.describe());
+        boolean autoSave = currentFunctional ? autoSaveCheckFunc.isSelected() : autoSaveCheckDecor.isSelected();
+        SweepKey key = SweepKey.of(currentFile, currentFunctional);
+        analysis = new AnalysisWorker(currentFile, key, sweeps.get(key), !preview.showing(key.file()), buildProfile(), autoSave);
+        progressBar.setValue(0);
+        progressLabel.setText("Reading " + currentFile.getName());
+        progressStrip.setVisible(true);
+        analysis.execute();
+    }
 
+    /**
+     * Parses, measures and scores the file off the event thread. The features are shown as soon as they are
+     * measured, together with the mesh preview, while inference is still running; the recommendation follows
+     * when it is done. Files whose model would not fit in the heap are measured while they are read, as
+     * {@link MemoryBudget} decides, and get no preview.
+     */
+    private final class AnalysisWorker extends SwingWorker<String, AnalysisWorker.Step> {
+
+        // share of the progress bar that reading the file takes, by far the longest step for large files
+        private static final int PARSE_PERCENT = 60;
+
+        private record Step(int percent, String status, FeatureCalculator.Result features, PreviewMesh mesh,
+                            MemoryBudget.Plan plan) {
+            Step(int percent, String status) {
+                this(percent, status, null, null, null);
+            }
+        }
 
+        private final File file;
+        private final SweepKey key;
+        private final boolean needsPreview;
+        private final RequirementProfile profile;
+        private final boolean autoSave;
+        private ProfileSweep sweep;
+        private MemoryBudget.Plan plan;
+        private PreviewMesh mesh;
+        private PredictionResult prediction;
+
+        AnalysisWorker(File file, SweepKey key, ProfileSweep cached, boolean needsPreview, RequirementProfile profile, boolean autoSave) {
+            this.file = file;
+            this.key = key;
+            this.sweep = cached;
+            this.needsPreview = needsPreview;
+            this.profile = profile;
+            this.autoSave = autoSave;
+        }
 
-            RequirementProfile profile = buildProfile();
+        @Override
+        protected String doInBackground() throws Exception {
+            if (sweep == null || needsPreview) {
+                plan = MemoryBudget.plan(file.toPath());
+                if (!plan.fits()) {
+                    throw new IOException("not enough memory or disk space: " + plan.reason());
+                }
+            }
+            if (sweep == null) {
+                FeatureCalculator.Result result = null;
+                if (plan.mode() == MemoryBudget.Mode.IN_MEMORY) {
+                    try {
+                        ObjModel model = parse();
+                        publish(new Step(PARSE_PERCENT, "Measuring features"));
+                        result = FeatureCalculator.calculate(model);
+                        mesh = PreviewMesh.of(model);
+                    } catch (OutOfMemoryError e) {
+                        // the estimate was low or other work took the heap meanwhile; it is fully collected now
+                        mesh = null;
+                        plan = MemoryBudget.plan(file.toPath());
+                        if (plan.mode() == MemoryBudget.Mode.IN_MEMORY || !plan.fits()) {
+                            throw e;
+                        }
+                        publish(new Step(0, "Not enough heap for a preview, switching to " + plan.mode().key()));
+                    }
+                }
+                if (result == null) {
+                    try (InputStream in = new ProgressInputStream(Files.newInputStream(file.toPath()), file.length())) {
+                        result = StreamingFeatureCalculator.calculate(in, plan.mode(), plan.estimate());
+                    }
+                }
+                checkCancelled();
+                publish(new Step(80, "Scoring requirement profiles", result, mesh, plan));
+                sweep = models.sweep(result, key.functional());
+                if (robustness.isEnabled()) {
+                    sweep.estimateRobustness(robustness);
+                }
+            } else {
+                if (needsPreview && plan.mode() == MemoryBudget.Mode.IN_MEMORY) { // the scores are cached, but the preview shows another file
+                    mesh = PreviewMesh.of(parse());
+                    checkCancelled();
+                }
+                publish(new Step(80, "Scoring requirement profiles", sweep.analysis(), mesh, plan));
+            }
+            checkCancelled();
+            prediction = sweep.lookup(profile);
+            publish(new Step(90, "Looking up similar models"));
+            String text = recommendationText(sweep, profile, prediction);
+            checkCancelled();
+            // the first write opens the log and may wait for another process's lock, so not on the EDT;
+            // after the lookup, so the model is not listed as similar to itself
+            if (autoSave) {
+                HistoryManager.appendEntry(file.getName(), buildHistoryPayload(sweep.analysis().features(), profile, prediction));
+            }
+            return text;
+        }
 
-            PredictionResult prediction = engine.predict(
-                    result.features(),
-                    profile.isFriction(),
-                    profile.isForce(),
-                    profile.isWeightSupport(),
-                    profile.isDetail(),
-                    profile.isDecorative(),
-                    profile.isFunctional()
-            );
+        private ObjModel parse() throws IOException {
+            ObjModel model;
+            try (InputStream in = new ProgressInputStream(Files.newInputStream(file.toPath()), file.length())) {
+                model = ObjParser.parse(in);
+            }
+            if (model == null) {
+                throw new IOException("OBJ file is empty: " + file);
+            }
+            return model;
+        }
 
+        private static String featureText(FeatureCalculator.Result features, MemoryBudget.Plan plan) {
+            return plan == null ? features.describe() : features.describe() + "\n\nMemory: " + plan.reason();
+        }
 
+        private void checkCancelled() throws InterruptedException {
+            if (isCancelled()) {
+                throw new InterruptedException();
+            }
+        }
 
-// Compose recommendation text
-            String recText = prediction.formatSummary() + System.lineSeparator();
-            resultArea.setText(recText);
+        @Override
+        protected void process(List<Step> steps) {
+            if (analysis != this) {
+                return;
+            }
+            for (Step step : steps) {
+                progressBar.setValue(step.percent());
+                progressLabel.setText(step.status());
+                if (step.features() != null) {
+                    featureArea.setText(featureText(step.features(), step.plan()));
+                    featureArea.setCaretPosition(0);
+                    if (step.mesh() != null || needsPreview) { // no mesh clears the preview of another file
+                        preview.setMesh(key.file(), step.mesh());
+                    }
+                    resultArea.setText("Scoring…");
+                    showCard(CARD_RESULTS);
+                }
+            }
+        }
 
+        @Override
+        protected void done() {
+            if (analysis != this) {
+                return; // replaced by a newer analysis
+            }
+            analysis = null;
+            progressStrip.setVisible(false);
+            if (isCancelled()) {
+                showCard(key.functional() ? CARD_FUNC : CARD_DECOR);
+                return;
+            }
+            try {
+                String text = get();
+                sweeps.put(key, sweep);
+                // published steps are delivered on a timer and may still be pending
+                featureArea.setText(featureText(sweep.analysis(), plan));
+                featureArea.setCaretPosition(0);
+                if (mesh != null || needsPreview) {
+                    preview.setMesh(key.file(), mesh);
+                }
+                resultArea.setText(text);
+                resultArea.setCaretPosition(0);
+                showCard(CARD_RESULTS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                showCard(key.functional() ? CARD_FUNC : CARD_DECOR);
+                String message = cause instanceof OutOfMemoryError
+                        ? "The model does not fit in memory (" + (plan != null ? plan.reason() : "no estimate") + ").\n"
+                                + "Start the application with a larger -Xmx, or with -Ddraxel.analysis.mode=off-heap."
+                        : cause.getMessage();
+                JOptionPane.showMessageDialog(AppFrame.this, "Failed to analyse model: " + message, "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
 
+        // reports how much of the file has been read, and stops reading once the analysis is cancelled
+        private final class ProgressInputStream extends FilterInputStream {
 
-            boolean autoSave = currentFunctional ? autoSaveCheckFunc.isSelected() : autoSaveCheckDecor.isSelected();
-            if (autoSave) {
-                Map<String, String> historyPayload = buildHistoryPayload(result.features(), profile, prediction);
-                HistoryManager.appendEntry(currentFile.getName(), historyPayload);
+            private final long size;
+            private long read;
+            private int percent;
+
+            ProgressInputStream(InputStream in, long size) {
+                super(in);
+                this.size = Math.max(size, 1);
             }
 
-            // go to results screen
-            showCard(CARD_RESULTS);
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Failed to analyse model: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    advance(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    advance(n);
+                }
+                return n;
+            }
+
+            private void advance(int n) throws IOException {
+                if (isCancelled()) {
+                    throw new InterruptedIOException("Analysis cancelled");
+                }
+                read += n;
+                int p = (int) Math.min(PARSE_PERCENT, read * PARSE_PERCENT / size);
+                if (p != percent) {
+                    percent = p;
+                    publish(new Step(p, "Reading " + file.getName()));
+                }
+            }
+        }
+    }
+
+    private record SweepKey(String path, long size, long lastModified, boolean functional) {
+        static SweepKey of(File file, boolean functional) {
+            return new SweepKey(file.getAbsolutePath(), file.length(), file.lastModified(), functional);
+        }
+
+        // the file version alone, for what does not depend on the branch, like the preview
+        SweepKey file() {
+            return functional ? new SweepKey(path, size, lastModified, false) : this;
+        }
+    }
+
+    private void refreshWhatIf() {
+        if (currentFile == null) {
+            return;
+        }
+        ProfileSweep sweep = sweeps.get(SweepKey.of(currentFile, currentFunctional));
+        if (sweep == null) {
+            return;
+        }
+        RequirementProfile profile = buildProfile();
+        PredictionResult prediction = sweep.lookup(profile);
+        if (prediction == null) {
+            return;
+        }
+        resultArea.setText(recommendationText(sweep, profile, prediction));
+        JLabel label = currentFunctional ? fileLabelFunc : fileLabelDecor;
+        label.setText(currentFile.getName() + "  →  " + prediction.filament() + " · "
+                + prediction.infillPercent() + " · " + prediction.infillPattern());
+    }
+
+    // only looks up what the analysis worker computed, so it is cheap enough for the event thread
+    private String recommendationText(ProfileSweep sweep, RequirementProfile profile, PredictionResult prediction) {
+        String text = prediction.formatSummary();
+        RobustnessEstimator.Robustness estimate = sweep.robustness(profile);
+        if (estimate != null) {
+            text += System.lineSeparator() + estimate.formatSummary();
         }
+        text += similarModelsText(sweep);
+        return text + System.lineSeparator();
+    }
+
+    private String similarModelsText(ProfileSweep sweep) {
+        return similarModels.computeIfAbsent(sweep, s -> {
+            try {
+                SimilarityIndex index = HistoryManager.similarity();
+                List<SimilarityIndex.Neighbor> neighbours = index.nearest(s.analysis().features(), SIMILAR_COUNT);
+                if (neighbours.isEmpty()) {
+                    return "";
+                }
+                HistoryStore store = HistoryManager.store();
+                StringBuilder sb = new StringBuilder(System.lineSeparator()).append("Similar past models:").append(System.lineSeparator());
+                for (SimilarityIndex.Neighbor n : neighbours) {
+                    HistoryEntry entry = store.get(n.row());
+                    Map<String, String> r = entry.results();
+                    sb.append(String.format(Locale.US, " - %s: %s · %s · %s (distance %.2f)%n", entry.fileName(),
+                            r.getOrDefault("Filament", "?"), r.getOrDefault("InfillPercent", "?"),
+                            r.getOrDefault("InfillPattern", "?"), n.distance()));
+                }
+                return sb.toString();
+            } catch (IOException | RuntimeException ex) {
+                return ""; // history is optional
+            }
+        });
     }
 
     private String filterOutConfidence(String s) {
@@ -446,57 +779,31 @@ public class AppFrame extends JFrame {
     }
 
     private Map<String, String> buildHistoryPayload(ModelFeatures features, RequirementProfile profile, PredictionResult prediction) {
-        Map<String, String> map = new HashMap<>();
-        map.put("Filament", prediction.filament());
-        map.put("InfillPercent", prediction.infillPercent());
-        map.put("InfillPattern", prediction.infillPattern());
-        // Intentionally NOT saving Confidence anymore
-        map.put("Functional", Boolean.toString(profile.isFunctional()));
-        map.put("Force", Boolean.toString(profile.isForce()));
-        map.put("Friction", Boolean.toString(profile.isFriction()));
-        map.put("WeightSupport", Boolean.toString(profile.isWeightSupport()));
-        map.put("Outdoor", Boolean.toString(profile.isOutdoor()));
-        map.put("Detail", Boolean.toString(profile.isDetail()));
-        map.put("Decorative", Boolean.toString(profile.isDecorative()));
-        map.put("Linearity", String.format("%.4f", features.getLinearity()));
-        map.put("Planarity", String.format("%.4f", features.getPlanarity()));
-        map.put("Sphericity", String.format("%.4f", features.getSphericity()));
-        map.put("Anisotropy", String.format("%.4f", features.getAnisotropy()));
-        map.put("Curvature", String.format("%.4f", features.getCurvature()));
-        map.put("EulerNumber", String.format("%.2f", features.getEulerNumber()));
-        map.put("Compactness", String.format("%.4f", features.getCompactness()));
-        map.put("AspectRatio", String.format("%.4f", features.getAspectRatio()));
-        map.put("Convexity", String.format("%.4f", features.getConvexity()));
-        map.put("LocalDensity", String.format("%.4f", features.getLocalDensity()));
-        return map;
+        return HistoryPayload.of(features, profile, prediction.filament(), prediction.infillPercent(), prediction.infillPattern());
     }
 
+    // the dialog opens at once and reads the history in the background
     private void onShowHistory() {
-        List<HistoryEntry> entries = HistoryManager.loadHistory();
-        if (entries.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "History is empty.", "History", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
+        Font font = dmSans != null ? dmSans.deriveFont(Font.PLAIN, 14f) : fallbackFont().deriveFont(Font.PLAIN, 14f);
+        new HistoryDialog(this, font).setVisible(true);
+    }
 
-        StringBuilder sb = new StringBuilder();
-        for (HistoryEntry entry : entries) {
-            sb.append(entry.timestamp()).append(" - ").append(entry.fileName()).append(System.lineSeparator());
-            for (Map.Entry<String, String> mapEntry : entry.results().entrySet()) {
-                sb.append("  ").append(mapEntry.getKey()).append(": ").append(mapEntry.getValue()).append(System.lineSeparator());
-            }
-            sb.append(System.lineSeparator());
+    private void onShowMetrics() {
+        String report = MetricsRegistry.global().format();
+        if (models.modelNames().size() > 1) { // latency and agreement of the models on trial
+            report += "\n" + models.formatReport();
+        }
+        JTextArea text = new JTextArea(report);
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        JScrollPane scroll = new JScrollPane(text);
+        scroll.setPreferredSize(new Dimension(760, 420));
+        Object[] options = {"Copy", "Close"};
+        int choice = JOptionPane.showOptionDialog(this, scroll, "Metrics", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.PLAIN_MESSAGE, null, options, options[1]);
+        if (choice == 0) {
+            copyToClipboard(text.getText());
         }
-
-        JTextArea area = new JTextArea();
-        area.setEditable(false);
-        area.setLineWrap(true);
-        area.setWrapStyleWord(true);
-        area.setFont(dmSans != null ? dmSans.deriveFont(Font.PLAIN, 14f) : fallbackFont().deriveFont(Font.PLAIN, 14f));
-        area.setText(sb.toString());
-        area.setCaretPosition(0);
-        JScrollPane scrollPane = new JScrollPane(area);
-        scrollPane.setPreferredSize(new Dimension(600, 400));
-        JOptionPane.showMessageDialog(this, scrollPane, "Analysis history", JOptionPane.INFORMATION_MESSAGE);
     }
 
     private void onBack() {
@@ -0,0 +1,48 @@
+package org.example.ui;
+
+import com.formdev.flatlaf.FlatDarkLaf;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.UIManager;
+
+/**
+ * Starts the Swing application: look and feel, splash screen, then the main window.
+ */
+public final class DesktopApp {
+
+    private DesktopApp() {
+    }
+
+    public static void launch() {
+        SwingUtilities.invokeLater(() -> {
+            try {
+                UIManager.setLookAndFeel(new FlatDarkLaf());
+            } catch (Exception ignored) {
+            }
+
+            SplashScreen splash = new SplashScreen();
+            splash.setVisible(true);
+
+            Timer timer = new Timer(1600, e -> {
+                splash.setVisible(false);
+                splash.dispose();
+
+                try {
+                    AppFrame frame = new AppFrame();
+                    frame.setVisible(true);
+                } catch (Exception ex) {
+                    JOptionPane.showMessageDialog(
+                            null,
+                            "Failed to start application: " + ex.getMessage(),
+                            "Startup error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                }
+            });
+            timer.setRepeats(false);
+            timer.start();
+        });
+    }
+}
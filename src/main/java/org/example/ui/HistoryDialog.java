@@ -0,0 +1,248 @@
+package org.example.ui;
+
+import org.example.history.HistoryEntry;
+import org.example.history.HistoryQuery;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.JTableHeader;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * History browser: a table over every stored analysis with filters for file name, filament and age,
+ * sortable by time and by the predicted labels, and CSV export of the selected rows.
+ */
+final class HistoryDialog extends JDialog {
+
+    private static final String ANY_FILAMENT = "Any filament";
+    private static final String[] PERIODS = {"Any time", "Last 24 hours", "Last 7 days", "Last 30 days"};
+
+    private final HistoryTableModel model;
+    private final JTable table;
+    private final JTextField fileField = new JTextField(16);
+    private final JComboBox<String> filamentBox = new JComboBox<>();
+    private final JComboBox<String> periodBox = new JComboBox<>(PERIODS);
+    private final JLabel status = new JLabel(" ");
+    private HistoryQuery filter = HistoryQuery.all();
+
+    HistoryDialog(Frame owner, Font font) {
+        super(owner, "Analysis history", false);
+        this.model = new HistoryTableModel(error -> status.setText("Could not read the history: " + error.getMessage()));
+        this.table = new JTable(model);
+
+        table.setFont(font);
+        table.setRowHeight(font.getSize() + 12);
+        table.setFillsViewportHeight(true);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        table.setAutoCreateRowSorter(false); // sorting happens in the model, over the whole history
+        JTableHeader header = table.getTableHeader();
+        header.setReorderingAllowed(false);
+        header.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.convertColumnIndexToModel(header.columnAtPoint(e.getPoint()));
+                if (column >= 0) {
+                    onSort(HistoryTableModel.Column.values()[column]);
+                }
+            }
+        });
+        updateHeaders();
+
+        filamentBox.addItem(ANY_FILAMENT);
+        fileField.setToolTipText("Exact file name; press Enter to apply");
+        fileField.addActionListener(e -> onFilter());
+        filamentBox.addActionListener(e -> onFilter());
+        periodBox.addActionListener(e -> onFilter());
+
+        JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 8));
+        filters.add(new JLabel("File"));
+        filters.add(fileField);
+        filters.add(filamentBox);
+        filters.add(periodBox);
+
+        JButton export = new JButton("Export selection…");
+        export.addActionListener(e -> onExport());
+        JButton close = new JButton("Close");
+        close.addActionListener(e -> dispose());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
+        buttons.add(export);
+        buttons.add(close);
+        JPanel south = new JPanel(new BorderLayout());
+        south.setBorder(new EmptyBorder(8, 8, 8, 8));
+        south.add(status, BorderLayout.CENTER);
+        south.add(buttons, BorderLayout.EAST);
+
+        setLayout(new BorderLayout());
+        add(filters, BorderLayout.NORTH);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(south, BorderLayout.SOUTH);
+        setSize(900, 560);
+        setLocationRelativeTo(owner);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                model.dispose();
+            }
+        });
+        status.setText("Loading…");
+        model.open(error -> {
+            if (error != null) {
+                status.setText("Could not read the history: " + error.getMessage());
+                return;
+            }
+            updateStatus();
+        }, filaments -> {
+            for (String filament : filaments) {
+                filamentBox.addItem(filament);
+            }
+        });
+    }
+
+    private void onFilter() {
+        String file = fileField.getText().trim();
+        String filament = (String) filamentBox.getSelectedItem();
+        LocalDateTime from = switch (periodBox.getSelectedIndex()) {
+            case 1 -> LocalDateTime.now().minusDays(1);
+            case 2 -> LocalDateTime.now().minusDays(7);
+            case 3 -> LocalDateTime.now().minusDays(30);
+            default -> null;
+        };
+        filter = HistoryQuery.all()
+                .fileName(file.isEmpty() ? null : file)
+                .filament(filament == null || filament.equals(ANY_FILAMENT) ? null : filament)
+                .between(from, null);
+        applyView(model.sortColumn(), model.descending());
+    }
+
+    private void onSort(HistoryTableModel.Column column) {
+        if (!column.sortable()) {
+            status.setText(column.title + " cannot be sorted; sort by time or a predicted label");
+            return;
+        }
+        boolean descending = column == model.sortColumn() ? !model.descending() : column == HistoryTableModel.Column.TIME;
+        applyView(column, descending);
+    }
+
+    private void applyView(HistoryTableModel.Column sort, boolean descending) {
+        status.setText("Loading…");
+        model.setView(filter, sort, descending, error -> {
+            if (error != null) {
+                status.setText("Could not read the history: " + error.getMessage());
+                return;
+            }
+            updateHeaders();
+            updateStatus();
+        });
+    }
+
+    private void updateHeaders() {
+        for (HistoryTableModel.Column column : HistoryTableModel.Column.values()) {
+            String title = column.title;
+            if (column == model.sortColumn()) {
+                title += model.descending() ? " ▼" : " ▲";
+            }
+            table.getColumnModel().getColumn(column.ordinal()).setHeaderValue(title);
+        }
+        table.getTableHeader().repaint();
+    }
+
+    private void updateStatus() {
+        int shown = model.getRowCount();
+        int total = model.total();
+        status.setText(total == 0 ? "History is empty" : shown == total
+                ? String.format(Locale.US, "%,d analyses", total)
+                : String.format(Locale.US, "%,d of %,d analyses", shown, total));
+    }
+
+    private void onExport() {
+        int[] rows = table.getSelectedRows();
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(this, "Select the rows to export first.", "Export", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
+        chooser.setSelectedFile(new File("history.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File target = chooser.getSelectedFile();
+        HistoryTableModel.View view = model.view();
+        status.setText(String.format(Locale.US, "Exporting %,d rows…", rows.length));
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws IOException {
+                List<HistoryEntry> entries = model.entries(rows, view);
+                writeCsv(target, entries);
+                return entries.size();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    status.setText(String.format(Locale.US, "Exported %,d rows to %s", get(), target.getName()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    status.setText("Export failed: " + e.getCause().getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // time and file, then every result key in order of first appearance
+    private static void writeCsv(File target, List<HistoryEntry> entries) throws IOException {
+        Set<String> keys = new LinkedHashSet<>();
+        for (HistoryEntry entry : entries) {
+            if (entry.results() != null) {
+                keys.addAll(entry.results().keySet());
+            }
+        }
+        List<String> columns = new ArrayList<>(keys);
+        try (Writer out = Files.newBufferedWriter(target.toPath(), StandardCharsets.UTF_8)) {
+            out.write("Timestamp,FileName");
+            for (String key : columns) {
+                out.write(',');
+                out.write(csv(key));
+            }
+            out.write('\n');
+            for (HistoryEntry entry : entries) {
+                out.write(csv(entry.timestamp()));
+                out.write(',');
+                out.write(csv(entry.fileName()));
+                for (String key : columns) {
+                    out.write(',');
+                    out.write(csv(entry.results() != null ? entry.results().get(key) : null));
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,394 @@
+package org.example.ui;
+
+import org.example.history.FeatureArchive;
+import org.example.history.HistoryEntry;
+import org.example.history.HistoryManager;
+import org.example.history.HistoryQuery;
+import org.example.history.HistoryStore;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Table over the analysis history that only reads the pages the table actually paints.
+ *
+ * The model starts empty; {@link #open} brings the store up to date in the background and shows every row,
+ * then catches up the feature archive. The rows are a view of record ids. Unfiltered and sorted by time, the
+ * view is just the id range, so showing the history costs the same for ten entries or ten million. Filters use the store's indexes and
+ * sorting by a predicted label uses the feature archive's columns; both build an id array once, in the
+ * background. Pages of entries are read in the background as rows scroll into view, shown as "…" until
+ * they arrive, and the least recently used pages are dropped. A page that could not be read is not kept, so
+ * it is read again the next time its rows are painted.
+ */
+final class HistoryTableModel extends AbstractTableModel {
+
+    enum Column {
+        TIME("Time", null),
+        FILE("File", null),
+        FILAMENT("Filament", FeatureArchive.Label.FILAMENT),
+        INFILL("Infill", FeatureArchive.Label.INFILL_PERCENT),
+        PATTERN("Pattern", FeatureArchive.Label.INFILL_PATTERN),
+        CATEGORY("Category", null);
+
+        final String title;
+        final FeatureArchive.Label label;
+
+        Column(String title, FeatureArchive.Label label) {
+            this.title = title;
+            this.label = label;
+        }
+
+        boolean sortable() {
+            return this == TIME || label != null;
+        }
+    }
+
+    private static final String LOADING = "…";
+
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_PAGES = 32;
+
+    // set by open() on the loader thread, before any other task of the loader runs
+    private volatile HistoryStore store;
+    // completed by open() once the archive caught up, with null if it could not be opened
+    private final CompletableFuture<FeatureArchive> archive = new CompletableFuture<>();
+    private final ExecutorService loader = daemonExecutor("history-table");
+    // catching up the archive can take minutes on a large history, so it must not hold back the pages
+    private final ExecutorService archiveLoader = daemonExecutor("history-archive");
+
+    // EDT state
+    private View view;
+    private int generation;
+    private Column sortColumn = Column.TIME;
+    private boolean descending = true;
+    private final Set<Integer> loading = new HashSet<>();
+    private final Consumer<IOException> onPageError;
+    private final Map<Integer, List<HistoryEntry>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<HistoryEntry>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * @param onPageError runs on the event thread with the error whenever a page of entries could not be read
+     */
+    HistoryTableModel(Consumer<IOException> onPageError) {
+        this.onPageError = onPageError;
+        this.view = new RangeView(0, true);
+    }
+
+    /**
+     * Opens the history off the event thread. {@code onOpened} runs on it once the table shows every entry, or
+     * with the error if the history could not be read; {@code onFilaments} runs after that with the filaments
+     * that occur in the history, which needs the feature archive to catch up first.
+     */
+    void open(Consumer<IOException> onOpened, Consumer<List<String>> onFilaments) {
+        int requested = ++generation;
+        loader.execute(() -> {
+            IOException error = null;
+            try {
+                store = HistoryManager.store();
+            } catch (IOException e) {
+                error = e;
+            }
+            HistoryStore opened = store;
+            IOException failure = error;
+            if (opened != null) {
+                archiveLoader.execute(() -> openArchive(onFilaments));
+            } else {
+                archive.complete(null);
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (opened != null && requested == generation) {
+                    view = new RangeView(opened.size(), true);
+                    fireTableDataChanged();
+                }
+                onOpened.accept(failure);
+            });
+        });
+    }
+
+    private void openArchive(Consumer<List<String>> onFilaments) {
+        FeatureArchive opened = null;
+        List<String> filaments = new ArrayList<>();
+        try {
+            FeatureArchive a = HistoryManager.archive();
+            for (String filament : a.countBy(FeatureArchive.Label.FILAMENT, a.all()).keySet()) {
+                if (!filament.equals(FeatureArchive.UNKNOWN)) {
+                    filaments.add(filament);
+                }
+            }
+            opened = a;
+        } catch (IOException e) {
+            // only needed for the filament list and sorting by label
+        } finally {
+            archive.complete(opened); // a label sort waits for this
+        }
+        SwingUtilities.invokeLater(() -> onFilaments.accept(filaments));
+    }
+
+    int total() {
+        HistoryStore s = store;
+        return s == null ? 0 : s.size();
+    }
+
+    Column sortColumn() {
+        return sortColumn;
+    }
+
+    boolean descending() {
+        return descending;
+    }
+
+    /**
+     * Switches to the filter and sort order. The view is built off the event thread; {@code onDone} runs on
+     * it once the table shows the new rows, or with the error if the history could not be read.
+     */
+    void setView(HistoryQuery filter, Column sort, boolean desc, Consumer<IOException> onDone) {
+        int requested = ++generation;
+        loader.execute(() -> {
+            View next;
+            IOException error = null;
+            try {
+                next = buildView(filter, sort, desc);
+            } catch (IOException e) {
+                next = null;
+                error = e;
+            }
+            View built = next;
+            IOException failure = error;
+            SwingUtilities.invokeLater(() -> {
+                if (requested != generation) {
+                    return; // superseded
+                }
+                if (built != null) {
+                    view = built;
+                    sortColumn = sort;
+                    descending = desc;
+                    pages.clear();
+                    loading.clear();
+                    fireTableDataChanged();
+                }
+                onDone.accept(failure);
+            });
+        });
+    }
+
+    private View buildView(HistoryQuery filter, Column sort, boolean desc) throws IOException {
+        if (store == null) {
+            throw new IOException("the history is not open");
+        }
+        boolean filtered = filter.fileName() != null || filter.filament() != null
+                || filter.from() != null || filter.to() != null;
+        if (!filtered && sort == Column.TIME) {
+            return new RangeView(store.size(), desc);
+        }
+        int[] ids = store.ids(filter);
+        FeatureArchive labels = sort.label != null ? archive() : null;
+        if (labels != null) {
+            labels.sync(store);
+            int archived = labels.rows();
+            int n = 0;
+            for (int id : ids) {
+                if (id < archived) {
+                    ids[n++] = id;
+                }
+            }
+            int[] rows = Arrays.copyOf(ids, n);
+            labels.sortBy(sort.label, rows, desc);
+            return new ArrayView(rows);
+        }
+        if (desc) {
+            for (int i = 0, j = ids.length - 1; i < j; i++, j--) {
+                int t = ids[i];
+                ids[i] = ids[j];
+                ids[j] = t;
+            }
+        }
+        return new ArrayView(ids);
+    }
+
+    @Override
+    public int getRowCount() {
+        return view.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return Column.values().length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return Column.values()[column].title;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        HistoryEntry entry = entry(rowIndex);
+        if (entry == null) {
+            return LOADING;
+        }
+        return value(entry, Column.values()[columnIndex]);
+    }
+
+    static String value(HistoryEntry entry, Column column) {
+        Map<String, String> r = entry.results() != null ? entry.results() : Map.of();
+        return switch (column) {
+            case TIME -> entry.timestamp();
+            case FILE -> entry.fileName();
+            case FILAMENT -> r.getOrDefault("Filament", FeatureArchive.UNKNOWN);
+            case INFILL -> r.getOrDefault("InfillPercent", FeatureArchive.UNKNOWN);
+            case PATTERN -> r.getOrDefault("InfillPattern", FeatureArchive.UNKNOWN);
+            case CATEGORY -> Boolean.parseBoolean(r.get("Functional")) ? "Functional" : "Decorative";
+        };
+    }
+
+    // the entry if its page is loaded, otherwise null and the page is requested
+    private HistoryEntry entry(int row) {
+        int page = row / PAGE_SIZE;
+        List<HistoryEntry> entries = pages.get(page);
+        if (entries == null) {
+            requestPage(page);
+            return null;
+        }
+        int i = row - page * PAGE_SIZE;
+        return i < entries.size() ? entries.get(i) : null;
+    }
+
+    private void requestPage(int page) {
+        if (!loading.add(page)) {
+            return;
+        }
+        View v = view;
+        loader.execute(() -> {
+            List<HistoryEntry> entries;
+            IOException error = null;
+            try {
+                entries = readPage(v, page);
+            } catch (IOException e) {
+                entries = null;
+                error = e;
+            } catch (RuntimeException e) {
+                entries = null;
+                error = new IOException(e.getMessage(), e);
+            }
+            List<HistoryEntry> loaded = entries;
+            IOException failure = error;
+            SwingUtilities.invokeLater(() -> {
+                if (view != v) {
+                    return; // the view changed, and with it the page
+                }
+                loading.remove(page);
+                if (failure != null) {
+                    onPageError.accept(failure); // the rows keep showing "…" and ask again when repainted
+                    return;
+                }
+                pages.put(page, loaded);
+                int first = page * PAGE_SIZE;
+                int last = Math.min(v.size(), first + PAGE_SIZE) - 1;
+                if (last >= first) {
+                    fireTableRowsUpdated(first, last);
+                }
+            });
+        });
+    }
+
+    private List<HistoryEntry> readPage(View v, int page) throws IOException {
+        int from = page * PAGE_SIZE;
+        int to = Math.min(v.size(), from + PAGE_SIZE);
+        int[] ids = new int[Math.max(0, to - from)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = v.id(from + i);
+        }
+        return store.get(ids, 0, ids.length);
+    }
+
+    /**
+     * Reads the entries of the view's rows, in row order; for exports, so call it off the event thread.
+     */
+    List<HistoryEntry> entries(int[] rows, View v) throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>(rows.length);
+        int[] ids = new int[Math.min(rows.length, PAGE_SIZE)];
+        for (int start = 0; start < rows.length; start += ids.length) {
+            int n = Math.min(ids.length, rows.length - start);
+            for (int i = 0; i < n; i++) {
+                ids[i] = v.id(rows[start + i]);
+            }
+            entries.addAll(store.get(ids, 0, n));
+        }
+        return entries;
+    }
+
+    // waits for open() to catch up the archive
+    private FeatureArchive archive() throws IOException {
+        try {
+            return archive.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("closed while the archive was opened");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // never completed exceptionally
+        }
+    }
+
+    View view() {
+        return view;
+    }
+
+    void dispose() {
+        loader.shutdownNow();
+        archiveLoader.shutdownNow();
+    }
+
+    private static ExecutorService daemonExecutor(String name) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Table rows to history record ids.
+     */
+    interface View {
+        int size();
+
+        int id(int row);
+    }
+
+    private record RangeView(int size, boolean descending) implements View {
+        @Override
+        public int id(int row) {
+            return descending ? size - 1 - row : row;
+        }
+    }
+
+    private record ArrayView(int[] ids) implements View {
+        @Override
+        public int size() {
+            return ids.length;
+        }
+
+        @Override
+        public int id(int row) {
+            return ids[row];
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.example.ui;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rotatable preview of the analysed mesh, drawn by {@link SoftwareRasterizer} so it needs no GPU or OpenGL.
+ *
+ * Dragging rotates, the wheel zooms and a double click resets the view. While the view moves, frames use the
+ * mesh's clustered level of detail; a moment after it stops, the full mesh is drawn once. Frames render on a
+ * background thread and only the latest request counts: a frame still drawing when a newer one is requested
+ * is abandoned, so a slow full-detail frame never holds up rotation.
+ */
+final class MeshPreviewPanel extends JComponent {
+
+    private static final int IDLE_MILLIS = 250;
+    private static final double DEFAULT_YAW = -0.6;
+    private static final double DEFAULT_PITCH = 0.45;
+
+    private final SoftwareRasterizer rasterizer = new SoftwareRasterizer();
+    private final ExecutorService renderThread = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "preview-render");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<FrameRequest> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // images handed back by the event thread once replaced, so steady rotation allocates none
+    private final ConcurrentLinkedQueue<BufferedImage> spare = new ConcurrentLinkedQueue<>();
+    private final Timer idle = new Timer(IDLE_MILLIS, e -> requestFrame(true));
+
+    // EDT state
+    private Object key;
+    private PreviewMesh mesh;
+    private double yaw = DEFAULT_YAW;
+    private double pitch = DEFAULT_PITCH;
+    private double zoom = 1;
+    private BufferedImage frame;
+    private String caption = "No preview";
+    private Point dragFrom;
+
+    MeshPreviewPanel(Font font) {
+        setFont(font);
+        setOpaque(true);
+        setBackground(new Color(50, 50, 50));
+        setForeground(new Color(200, 200, 200));
+        idle.setRepeats(false);
+
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragFrom = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (dragFrom == null) {
+                    return;
+                }
+                yaw += (e.getX() - dragFrom.x) * 0.01;
+                pitch = Math.max(-Math.PI / 2, Math.min(Math.PI / 2, pitch + (e.getY() - dragFrom.y) * 0.01));
+                dragFrom = e.getPoint();
+                moved();
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragFrom = null;
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom = Math.max(0.2, Math.min(20, zoom * Math.pow(1.1, -e.getPreciseWheelRotation())));
+                moved();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    yaw = DEFAULT_YAW;
+                    pitch = DEFAULT_PITCH;
+                    zoom = 1;
+                    requestFrame(true);
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                moved();
+            }
+        });
+    }
+
+    /**
+     * Whether the panel already shows the mesh stored under {@code key}.
+     */
+    boolean showing(Object key) {
+        return mesh != null && Objects.equals(this.key, key);
+    }
+
+    /**
+     * Shows a new mesh from the default viewpoint; {@code key} identifies it for {@link #showing}.
+     */
+    void setMesh(Object key, PreviewMesh mesh) {
+        if (mesh == this.mesh) {
+            return;
+        }
+        this.key = key;
+        this.mesh = mesh;
+        yaw = DEFAULT_YAW;
+        pitch = DEFAULT_PITCH;
+        zoom = 1;
+        moved();
+    }
+
+    void dispose() {
+        idle.stop();
+        renderThread.shutdownNow();
+        rasterizer.close();
+    }
+
+    // a quick level-of-detail frame now, the full mesh once the view has been still for a moment
+    private void moved() {
+        if (mesh == null) {
+            return;
+        }
+        requestFrame(false);
+        if (mesh.triangleCount() > PreviewMesh.LOD_TRIANGLES) {
+            idle.restart();
+        }
+    }
+
+    private void requestFrame(boolean fullDetail) {
+        if (mesh == null || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        pending.set(new FrameRequest(mesh, fullDetail, yaw, pitch, zoom, getWidth(), getHeight()));
+        if (scheduled.compareAndSet(false, true)) {
+            renderThread.execute(this::renderPending);
+        }
+    }
+
+    // render thread: draws the latest request until none is left
+    private void renderPending() {
+        try {
+            FrameRequest request;
+            while ((request = pending.getAndSet(null)) != null) {
+                render(request);
+            }
+        } finally {
+            scheduled.set(false);
+            if (pending.get() != null && scheduled.compareAndSet(false, true)) {
+                renderThread.execute(this::renderPending);
+            }
+        }
+    }
+
+    private void render(FrameRequest request) {
+        PreviewMesh drawn = request.fullDetail() ? request.mesh() : request.mesh().lod();
+        BufferedImage image = spare.poll();
+        if (image == null || image.getWidth() != request.width() || image.getHeight() != request.height()) {
+            image = new BufferedImage(request.width(), request.height(), BufferedImage.TYPE_INT_RGB);
+        }
+        long start = System.nanoTime();
+        boolean complete;
+        try {
+            complete = rasterizer.render(drawn, request.yaw(), request.pitch(), request.zoom(), image, () -> pending.get() != null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!complete) {
+            spare.offer(image);
+            return; // superseded by a newer request
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        String text = drawn == request.mesh()
+                ? String.format(Locale.US, "%,d triangles · %d ms", drawn.triangleCount(), millis)
+                : String.format(Locale.US, "Preview %,d of %,d triangles · %d ms", drawn.triangleCount(),
+                        request.mesh().triangleCount(), millis);
+        BufferedImage rendered = image;
+        SwingUtilities.invokeLater(() -> {
+            if (request.mesh() != mesh) {
+                spare.offer(rendered);
+                return;
+            }
+            if (frame != null) {
+                spare.offer(frame);
+            }
+            frame = rendered;
+            caption = text;
+            repaint();
+        });
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setColor(getBackground());
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            if (frame != null && mesh != null) {
+                g2.drawImage(frame, 0, 0, null);
+            }
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setFont(getFont().deriveFont(Font.PLAIN, 13f));
+            g2.setColor(getForeground());
+            g2.drawString(mesh != null ? caption : "No preview", 10, getHeight() - 10);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private record FrameRequest(PreviewMesh mesh, boolean fullDetail, double yaw, double pitch, double zoom,
+                                int width, int height) {
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.ui;
+
+import org.example.model.ObjModel;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Triangle mesh packed for the preview renderer: positions as one {@code float[]} (x, y, z per vertex),
+ * centred on the origin and scaled into the unit sphere, and triangles as one {@code int[]}.
+ */
+final class PreviewMesh {
+
+    // triangles drawn while the view moves; above this the preview switches to a clustered copy
+    static final int LOD_TRIANGLES = Integer.getInteger("draxel.preview.lodTriangles", 100_000);
+
+    final float[] positions;
+    final int[] triangles;
+    private PreviewMesh lod;
+
+    private PreviewMesh(float[] positions, int[] triangles) {
+        this.positions = positions;
+        this.triangles = triangles;
+    }
+
+    int vertexCount() {
+        return positions.length / 3;
+    }
+
+    int triangleCount() {
+        return triangles.length / 3;
+    }
+
+    /**
+     * Packs the model, fan-triangulating polygons.
+     */
+    static PreviewMesh of(ObjModel model) {
+        List<float[]> vertices = model.getVertices();
+        float[] positions = new float[vertices.size() * 3];
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        for (int i = 0; i < vertices.size(); i++) {
+            float[] v = vertices.get(i);
+            for (int k = 0; k < 3; k++) {
+                positions[i * 3 + k] = v[k];
+                min[k] = Math.min(min[k], v[k]);
+                max[k] = Math.max(max[k], v[k]);
+            }
+        }
+        float cx = (min[0] + max[0]) / 2;
+        float cy = (min[1] + max[1]) / 2;
+        float cz = (min[2] + max[2]) / 2;
+        float radius = 0;
+        for (int i = 0; i < positions.length; i += 3) {
+            positions[i] -= cx;
+            positions[i + 1] -= cy;
+            positions[i + 2] -= cz;
+            radius = Math.max(radius, positions[i] * positions[i] + positions[i + 1] * positions[i + 1] + positions[i + 2] * positions[i + 2]);
+        }
+        float scale = radius > 0 ? (float) (1 / Math.sqrt(radius)) : 1;
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] *= scale;
+        }
+
+        int count = 0;
+        for (int[] face : model.getFaces()) {
+            count += Math.max(0, face.length - 2);
+        }
+        int[] triangles = new int[count * 3];
+        int t = 0;
+        for (int[] face : model.getFaces()) {
+            for (int k = 1; k + 1 < face.length; k++) {
+                triangles[t++] = face[0];
+                triangles[t++] = face[k];
+                triangles[t++] = face[k + 1];
+            }
+        }
+        return new PreviewMesh(positions, triangles);
+    }
+
+    /**
+     * The level of detail drawn while rotating: the mesh itself if it is small enough, otherwise a clustered
+     * copy with about {@link #LOD_TRIANGLES} triangles, built on first use.
+     */
+    synchronized PreviewMesh lod() {
+        if (lod == null) {
+            lod = cluster(LOD_TRIANGLES);
+        }
+        return lod;
+    }
+
+    /**
+     * A coarser version of the mesh with roughly {@code targetTriangles} triangles, by vertex clustering:
+     * vertices are snapped to a uniform grid, each occupied cell becomes one vertex at the mean of its
+     * members, and triangles whose corners end up in fewer than three cells disappear. Quality is modest,
+     * but it is linear in the mesh size and good enough to show the shape while it moves.
+     */
+    PreviewMesh cluster(int targetTriangles) {
+        if (triangleCount() <= targetTriangles) {
+            return this;
+        }
+        // a closed surface crosses about 6 g^2 cells of a g^3 grid, with about two triangles per cell
+        int grid = Math.max(4, Math.min(256, (int) Math.sqrt(targetTriangles / 12.0)));
+        int[] cellOf = new int[vertexCount()];
+        int[] clusterOfCell = new int[grid * grid * grid];
+        Arrays.fill(clusterOfCell, -1);
+        float[] sums = new float[Math.min(vertexCount(), clusterOfCell.length) * 3];
+        int[] counts = new int[sums.length / 3];
+        int clusters = 0;
+        for (int v = 0; v < vertexCount(); v++) {
+            int cell = cell(positions[v * 3], grid) * grid * grid
+                    + cell(positions[v * 3 + 1], grid) * grid
+                    + cell(positions[v * 3 + 2], grid);
+            int c = clusterOfCell[cell];
+            if (c < 0) {
+                c = clusterOfCell[cell] = clusters++;
+            }
+            cellOf[v] = c;
+            sums[c * 3] += positions[v * 3];
+            sums[c * 3 + 1] += positions[v * 3 + 1];
+            sums[c * 3 + 2] += positions[v * 3 + 2];
+            counts[c]++;
+        }
+        float[] lodPositions = new float[clusters * 3];
+        for (int c = 0; c < clusters; c++) {
+            lodPositions[c * 3] = sums[c * 3] / counts[c];
+            lodPositions[c * 3 + 1] = sums[c * 3 + 1] / counts[c];
+            lodPositions[c * 3 + 2] = sums[c * 3 + 2] / counts[c];
+        }
+        int[] lodTriangles = new int[triangles.length];
+        int n = 0;
+        for (int t = 0; t < triangles.length; t += 3) {
+            int a = cellOf[triangles[t]];
+            int b = cellOf[triangles[t + 1]];
+            int c = cellOf[triangles[t + 2]];
+            if (a != b && b != c && a != c) {
+                lodTriangles[n++] = a;
+                lodTriangles[n++] = b;
+                lodTriangles[n++] = c;
+            }
+        }
+        return new PreviewMesh(lodPositions, Arrays.copyOf(lodTriangles, n));
+    }
+
+    // positions lie in [-1, 1]
+    private static int cell(float coordinate, int grid) {
+        return Math.min(grid - 1, Math.max(0, (int) ((coordinate + 1) * 0.5f * grid)));
+    }
+}
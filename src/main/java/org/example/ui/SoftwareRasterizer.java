@@ -0,0 +1,307 @@
+package org.example.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Z-buffered triangle rasterizer that draws a {@link PreviewMesh} straight into the pixels of an
+ * {@code int} RGB {@link BufferedImage}, on the CPU.
+ *
+ * A frame runs in three parallel passes. Vertices are rotated and projected (orthographic). Triangles are
+ * shaded flat and binned into the {@value #TILE}-pixel screen tiles their bounds overlap; every worker bins
+ * its own slice of the triangles into its own lists, so binning needs no locks. Finally workers take whole
+ * tiles and fill them with edge functions and a depth test; tiles never share pixels, so neither the image
+ * nor the depth buffer needs synchronisation. Calls are not thread safe: one frame at a time per instance.
+ */
+final class SoftwareRasterizer implements AutoCloseable {
+
+    static final int TILE = 64;
+
+    private static final int BACKGROUND = 0x323232;
+    private static final float BASE_R = 214, BASE_G = 218, BASE_B = 226;
+    private static final float AMBIENT = 0.22f;
+    // light from the upper left, slightly in front of the viewer
+    private static final float LIGHT_X = -0.38f, LIGHT_Y = 0.52f, LIGHT_Z = 0.76f;
+
+    private final int workers;
+    private final ExecutorService pool;
+
+    // per-frame scratch, grown as needed and reused
+    private float[] screenX = new float[0];
+    private float[] screenY = new float[0];
+    private float[] depth = new float[0];
+    private int[] colors = new int[0];
+    private float[] zBuffer = new float[0];
+    private final int[][][] bins;
+    private final int[][] binSizes;
+
+    SoftwareRasterizer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    SoftwareRasterizer(int workers) {
+        this.workers = Math.max(1, workers);
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(this.workers, r -> {
+            Thread t = new Thread(r, "preview-raster-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.bins = new int[this.workers][][];
+        this.binSizes = new int[this.workers][];
+    }
+
+    /**
+     * Draws the mesh rotated by {@code yaw} about the vertical axis and then {@code pitch} about the
+     * horizontal one, with {@code zoom} 1 fitting the unit sphere into the smaller image side. Returns false,
+     * leaving the image half drawn, if {@code cancelled} became true first.
+     */
+    boolean render(PreviewMesh mesh, double yaw, double pitch, double zoom, BufferedImage image, BooleanSupplier cancelled)
+            throws InterruptedException {
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            throw new IllegalArgumentException("Expected an INT_RGB image, got type " + image.getType());
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int tilesX = (width + TILE - 1) / TILE;
+        int tilesY = (height + TILE - 1) / TILE;
+        prepare(mesh, width * height, tilesX * tilesY);
+
+        float cy = (float) Math.cos(yaw), sy = (float) Math.sin(yaw);
+        float cp = (float) Math.cos(pitch), sp = (float) Math.sin(pitch);
+        // rows of R = Rx(pitch) * Ry(yaw)
+        float[] r = {cy, 0, sy, sp * sy, cp, -sp * cy, -cp * sy, sp, cp * cy};
+        float scale = (float) (zoom * 0.48 * Math.min(width, height));
+        float centreX = width / 2f;
+        float centreY = height / 2f;
+
+        int vertices = mesh.vertexCount();
+        int triangles = mesh.triangleCount();
+        if (!parallel(w -> transform(mesh.positions, r, scale, centreX, centreY,
+                slice(vertices, w), slice(vertices, w + 1)), cancelled)) {
+            return false;
+        }
+        if (!parallel(w -> bin(mesh, w, slice(triangles, w), slice(triangles, w + 1),
+                width, height, tilesX, scale, cancelled), cancelled)) {
+            return false;
+        }
+        AtomicInteger nextTile = new AtomicInteger();
+        int tiles = tilesX * tilesY;
+        return parallel(w -> {
+            for (int tile; (tile = nextTile.getAndIncrement()) < tiles; ) {
+                if (cancelled.getAsBoolean()) {
+                    return;
+                }
+                int x0 = (tile % tilesX) * TILE;
+                int y0 = (tile / tilesX) * TILE;
+                fillTile(mesh.triangles, tile, x0, y0, Math.min(width, x0 + TILE), Math.min(height, y0 + TILE), width, pixels);
+            }
+        }, cancelled);
+    }
+
+    private void prepare(PreviewMesh mesh, int pixelCount, int tiles) {
+        int vertices = mesh.vertexCount();
+        if (screenX.length < vertices) {
+            screenX = new float[vertices];
+            screenY = new float[vertices];
+            depth = new float[vertices];
+        }
+        if (colors.length < mesh.triangleCount()) {
+            colors = new int[mesh.triangleCount()];
+        }
+        if (zBuffer.length < pixelCount) {
+            zBuffer = new float[pixelCount];
+        }
+        for (int w = 0; w < workers; w++) {
+            if (bins[w] == null || bins[w].length < tiles) {
+                bins[w] = new int[tiles][];
+                binSizes[w] = new int[tiles];
+            } else {
+                Arrays.fill(binSizes[w], 0, tiles, 0);
+            }
+        }
+    }
+
+    private int slice(int count, int worker) {
+        return (int) ((long) count * worker / workers);
+    }
+
+    private void transform(float[] positions, float[] r, float scale, float centreX, float centreY, int from, int to) {
+        for (int v = from; v < to; v++) {
+            float x = positions[v * 3], y = positions[v * 3 + 1], z = positions[v * 3 + 2];
+            screenX[v] = centreX + scale * (r[0] * x + r[1] * y + r[2] * z);
+            screenY[v] = centreY - scale * (r[3] * x + r[4] * y + r[5] * z);
+            depth[v] = r[6] * x + r[7] * y + r[8] * z; // larger is nearer
+        }
+    }
+
+    private void bin(PreviewMesh mesh, int worker, int from, int to, int width, int height, int tilesX, float scale,
+                     BooleanSupplier cancelled) {
+        int[] tris = mesh.triangles;
+        int[][] myBins = bins[worker];
+        int[] mySizes = binSizes[worker];
+        for (int t = from; t < to; t++) {
+            if ((t & 0xFFFF) == 0 && cancelled.getAsBoolean()) {
+                return;
+            }
+            int a = tris[t * 3], b = tris[t * 3 + 1], c = tris[t * 3 + 2];
+            float ax = screenX[a], ay = screenY[a];
+            float bx = screenX[b], by = screenY[b];
+            float cx = screenX[c], cy = screenY[c];
+            int minX = Math.max(0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+            int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+            int minY = Math.max(0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+            int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+            if (minX > maxX || minY > maxY) {
+                continue; // off screen
+            }
+            colors[t] = shade(ax, ay, depth[a] * scale, bx, by, depth[b] * scale, cx, cy, depth[c] * scale);
+            for (int ty = minY / TILE; ty <= maxY / TILE; ty++) {
+                for (int tx = minX / TILE; tx <= maxX / TILE; tx++) {
+                    int tile = ty * tilesX + tx;
+                    int[] list = myBins[tile];
+                    int size = mySizes[tile];
+                    if (list == null || size == list.length) {
+                        list = myBins[tile] = list == null ? new int[256] : Arrays.copyOf(list, size * 2);
+                    }
+                    list[size] = t;
+                    mySizes[tile] = size + 1;
+                }
+            }
+        }
+    }
+
+    // two-sided Lambert shading of the face normal; corners in pixels, y down and depth toward the viewer
+    private static int shade(float ax, float ay, float az, float bx, float by, float bz, float cx, float cy, float cz) {
+        float ux = bx - ax, uy = ay - by, uz = bz - az;
+        float vx = cx - ax, vy = ay - cy, vz = cz - az;
+        float nx = uy * vz - uz * vy;
+        float ny = uz * vx - ux * vz;
+        float nz = ux * vy - uy * vx;
+        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+        float lambert = length > 0 ? Math.abs(nx * LIGHT_X + ny * LIGHT_Y + nz * LIGHT_Z) / length : 0;
+        float i = AMBIENT + (1 - AMBIENT) * lambert;
+        return ((int) (BASE_R * i) << 16) | ((int) (BASE_G * i) << 8) | (int) (BASE_B * i);
+    }
+
+    private void fillTile(int[] tris, int tile, int x0, int y0, int x1, int y1, int width, int[] pixels) {
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(pixels, y * width + x0, y * width + x1, BACKGROUND);
+            Arrays.fill(zBuffer, y * width + x0, y * width + x1, Float.NEGATIVE_INFINITY);
+        }
+        for (int w = 0; w < workers; w++) {
+            int[] list = bins[w][tile];
+            int size = binSizes[w][tile];
+            for (int i = 0; i < size; i++) {
+                int t = list[i];
+                fillTriangle(tris[t * 3], tris[t * 3 + 1], tris[t * 3 + 2], colors[t], x0, y0, x1, y1, width, pixels);
+            }
+        }
+    }
+
+    private void fillTriangle(int a, int b, int c, int color, int x0, int y0, int x1, int y1, int width, int[] pixels) {
+        float ax = screenX[a], ay = screenY[a];
+        float bx = screenX[b], by = screenY[b];
+        float cx = screenX[c], cy = screenY[c];
+        float area = (bx - ax) * (cy - ay) - (cx - ax) * (by - ay);
+        if (Math.abs(area) < 1e-12f) {
+            return;
+        }
+        if (area < 0) { // make the winding consistent so the edge functions are positive inside
+            float tx = bx, ty = by;
+            bx = cx;
+            by = cy;
+            cx = tx;
+            cy = ty;
+            int t = b;
+            b = c;
+            c = t;
+            area = -area;
+        }
+        float az = depth[a], bz = depth[b], cz = depth[c];
+        int minX = Math.max(x0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+        int maxX = Math.min(x1 - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+        int minY = Math.max(y0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+        int maxY = Math.min(y1 - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+        // edge functions at the first pixel centre, and their steps along x and y
+        float px = minX + 0.5f, py = minY + 0.5f;
+        float e0dx = by - cy, e0dy = cx - bx;
+        float e1dx = cy - ay, e1dy = ax - cx;
+        float e2dx = ay - by, e2dy = bx - ax;
+        float e0 = (px - bx) * e0dx + (py - by) * e0dy;
+        float e1 = (px - cx) * e1dx + (py - cy) * e1dy;
+        float e2 = (px - ax) * e2dx + (py - ay) * e2dy;
+        float inv = 1 / area;
+        for (int y = minY; y <= maxY; y++) {
+            float w0 = e0, w1 = e1, w2 = e2;
+            int row = y * width;
+            for (int x = minX; x <= maxX; x++) {
+                if (w0 >= 0 && w1 >= 0 && w2 >= 0) {
+                    float z = (w0 * az + w1 * bz + w2 * cz) * inv;
+                    int p = row + x;
+                    if (z > zBuffer[p]) {
+                        zBuffer[p] = z;
+                        pixels[p] = color;
+                    }
+                }
+                w0 += e0dx;
+                w1 += e1dx;
+                w2 += e2dx;
+            }
+            e0 += e0dy;
+            e1 += e1dy;
+            e2 += e2dy;
+        }
+    }
+
+    private interface Pass {
+        void run(int worker);
+    }
+
+    // runs the pass on every worker and waits for all of them
+    private boolean parallel(Pass pass, BooleanSupplier cancelled) throws InterruptedException {
+        if (workers == 1) {
+            pass.run(0);
+            return !cancelled.getAsBoolean();
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            int worker = w;
+            tasks.add(() -> {
+                pass.run(worker);
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+        return !cancelled.getAsBoolean();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
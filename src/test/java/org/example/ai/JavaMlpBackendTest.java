@@ -0,0 +1,101 @@
+package org.example.ai;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JavaMlpBackendTest {
+
+    private static final int PROBE_ROWS = 64;
+
+    // the int8 variant may drift; it must still pick the same class for nearly every row
+    private static final int CORPUS_ROWS = 10_000;
+    private static final double MIN_AGREEMENT = 0.98;
+    private static final float MAX_DRIFT = 0.15f;
+
+    static Collection<String> bundledModels() {
+        return ModelRegistry.BUNDLED_MODELS.values();
+    }
+
+    @ParameterizedTest
+    @MethodSource("bundledModels")
+    void matchesOnnxRuntimeOnTheProbeRows(String resource) throws Exception {
+        byte[] bytes = RecommendationEngine.loadModelBytes(resource);
+        try (OnnxRuntimeBackend reference = new OnnxRuntimeBackend(bytes);
+             JavaMlpBackend java = new JavaMlpBackend(bytes)) {
+            assertEquals(reference.inputWidth(), java.inputWidth());
+            assertEquals(reference.outputNames(), java.outputNames());
+            assertArrayEquals(reference.outputWidths(), java.outputWidths());
+
+            float[] rows = InferenceBackends.probeRows(java.inputWidth(), PROBE_ROWS, 42L);
+            float diff = InferenceBackends.maxAbsDifference(java, reference, rows, PROBE_ROWS);
+            assertTrue(diff <= InferenceBackends.TOLERANCE, resource + " differs by " + diff);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("bundledModels")
+    void batchedRowsMatchSingleRows(String resource) throws Exception {
+        byte[] bytes = RecommendationEngine.loadModelBytes(resource);
+        try (JavaMlpBackend java = new JavaMlpBackend(bytes)) {
+            int width = java.inputWidth();
+            float[] rows = InferenceBackends.probeRows(width, PROBE_ROWS, 7L);
+            float[][] batched = java.run(rows, PROBE_ROWS);
+            int[] widths = java.outputWidths();
+            for (int row = 0; row < PROBE_ROWS; row++) {
+                float[] single = new float[width];
+                System.arraycopy(rows, row * width, single, 0, width);
+                float[][] outputs = java.run(single, 1);
+                for (int o = 0; o < widths.length; o++) {
+                    for (int j = 0; j < widths[o]; j++) {
+                        assertEquals(batched[o][row * widths[o] + j], outputs[o][j], InferenceBackends.TOLERANCE);
+                    }
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("bundledModels")
+    void int8VariantAgreesWithTheFloatModel(String resource) throws Exception {
+        byte[] bytes = RecommendationEngine.loadModelBytes(resource);
+        try (OnnxRuntimeBackend reference = new OnnxRuntimeBackend(bytes);
+             JavaMlpBackend int8 = JavaMlpBackend.quantized(bytes)) {
+            assertTrue(int8.isQuantized());
+            assertTrue(int8.weightBytes() < new JavaMlpBackend(bytes).weightBytes() / 2);
+
+            float[] rows = InferenceBackends.probeRows(int8.inputWidth(), CORPUS_ROWS, 1L);
+            float[][] expected = reference.run(rows, CORPUS_ROWS);
+            float[][] actual = int8.run(rows, CORPUS_ROWS);
+            int[] widths = reference.outputWidths();
+            for (int o = 0; o < widths.length; o++) {
+                int classes = widths[o];
+                int agree = 0;
+                float drift = 0f;
+                for (int row = 0; row < CORPUS_ROWS; row++) {
+                    int offset = row * classes;
+                    if (RecommendationEngine.maxIndex(slice(expected[o], offset, classes))
+                            == RecommendationEngine.maxIndex(slice(actual[o], offset, classes))) {
+                        agree++;
+                    }
+                    for (int j = 0; j < classes; j++) {
+                        drift = Math.max(drift, Math.abs(expected[o][offset + j] - actual[o][offset + j]));
+                    }
+                }
+                String head = resource + " " + reference.outputNames().get(o);
+                assertTrue((double) agree / CORPUS_ROWS >= MIN_AGREEMENT, head + " agrees on " + agree + " rows");
+                assertTrue(drift <= MAX_DRIFT, head + " drifts by " + drift);
+            }
+        }
+    }
+
+    private static float[] slice(float[] values, int offset, int length) {
+        return Arrays.copyOfRange(values, offset, offset + length);
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.ai;
+
+import org.example.analysis.FeatureCalculator;
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ModelRegistryTest {
+
+    private static final ModelFeatures FEATURES = new ModelFeatures(0.2, 0.5, 0.3, 0.4, 0.1, 2, 0.6, 1.5, 0.8, 0.05);
+
+    @Test
+    void batchesAndSweepsAreShadowedAndTimedApartFromSinglePredictions() throws Exception {
+        try (ModelRegistry models = new ModelRegistry()) {
+            models.load("basic");
+            models.load("3d_model_ai");
+            models.setTrafficSplit(Map.of("3d_model_ai", 1.0));
+            models.setShadowRate(1.0);
+
+            List<RequirementProfile> profiles = ProfileSweep.profiles(true);
+            models.predictBatch("3d_model_ai", Collections.nCopies(profiles.size(), FEATURES), profiles);
+            models.sweep(new FeatureCalculator.Result(FEATURES, 8, 12, 6.0, 1.0), false);
+
+            assertEquals(0, models.latency("3d_model_ai").count());
+            assertEquals(2, models.batchLatency("3d_model_ai").count());
+            assertEquals(2, models.batchLatency("basic").count(), "the reference scored both calls");
+            int predictions = profiles.size() + ProfileSweep.profiles(false).size();
+            assertTrue(models.formatReport().contains("agreement over " + predictions + " shadowed predictions"),
+                    models.formatReport());
+        }
+    }
+}
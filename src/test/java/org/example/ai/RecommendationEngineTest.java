@@ -0,0 +1,44 @@
+package org.example.ai;
+
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecommendationEngineTest {
+
+    private static final ModelFeatures FEATURES = new ModelFeatures(0.2, 0.5, 0.3, 0.4, 0.1, 2, 0.6, 1.5, 0.8, 0.05);
+
+    @Test
+    void legacyPredictReportsTheFlagsAsPassed() throws Exception {
+        try (RecommendationEngine engine = new RecommendationEngine(
+                RecommendationEngine.loadModelBytes("/3d_model_ai.onnx"))) {
+            RecommendationEngine.PredictionResult result = engine.predict(FEATURES, true, true, true, false, true, false);
+
+            assertTrue(result.supportsFriction());
+            assertTrue(result.supportPressure());
+            assertTrue(result.supportWeight());
+            assertFalse(result.isFunctional());
+            assertTrue(result.suggestions().contains("Higher infill can improve friction support."));
+            assertTrue(result.suggestions().contains("Consider increasing the infill density."));
+        }
+    }
+
+    @Test
+    void legacyPredictScoresLikeTheEquivalentProfile() throws Exception {
+        try (RecommendationEngine engine = new RecommendationEngine(
+                RecommendationEngine.loadModelBytes("/3d_model_ai.onnx"))) {
+            RecommendationEngine.PredictionResult legacy = engine.predict(FEATURES, true, false, true, true, false, false);
+            RecommendationEngine.PredictionResult profiled = engine.predict(FEATURES,
+                    new RequirementProfile(false, false, false, true, true, false, true));
+
+            assertEquals(profiled.filament(), legacy.filament());
+            assertArrayEquals(profiled.filamentScores(), legacy.filamentScores());
+            assertArrayEquals(profiled.infillPercentScores(), legacy.infillPercentScores());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.ai;
+
+import org.example.ai.RecommendationEngine.PredictionResult;
+import org.example.ai.RobustnessEstimator.Robustness;
+import org.example.model.ModelFeatures;
+import org.example.model.RequirementProfile;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RobustnessEstimatorTest {
+
+    private static final ModelFeatures FEATURES = new ModelFeatures(0.2, 0.5, 0.3, 0.4, 0.1, 2, 0.6, 1.5, 0.8, 0.05);
+
+    static Collection<String> bundledModels() {
+        return ModelRegistry.BUNDLED_MODELS.values();
+    }
+
+    @ParameterizedTest
+    @MethodSource("bundledModels")
+    void batchedEstimatesMatchOneProfileAtATime(String resource) throws Exception {
+        try (RecommendationEngine engine = RecommendationEngine.fromResource(resource)) {
+            RobustnessEstimator estimator = new RobustnessEstimator(RobustnessEstimator.DEFAULT_SAMPLES, 0.2);
+            List<RequirementProfile> profiles = ProfileSweep.profiles(true);
+            List<PredictionResult> baselines = engine.predictBatch(Collections.nCopies(profiles.size(), FEATURES), profiles);
+
+            List<Robustness> batched = estimator.estimateAll(engine, FEATURES, profiles, baselines);
+
+            assertEquals(profiles.size(), batched.size());
+            for (int i = 0; i < profiles.size(); i++) {
+                Robustness single = estimator.estimate(engine, FEATURES, profiles.get(i), baselines.get(i));
+                assertEquals(single.stability(), batched.get(i).stability(), "profile " + i);
+            }
+        }
+    }
+}
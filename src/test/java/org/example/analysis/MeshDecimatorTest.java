@@ -0,0 +1,129 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeshDecimatorTest {
+
+    @ParameterizedTest
+    @EnumSource(value = SyntheticMesh.Shape.class, names = {"SPHERE", "TORUS", "BOX", "MULTI_BODY"})
+    void reachesTheFaceTargetAndKeepsTheMeshClosed(SyntheticMesh.Shape shape) {
+        ObjModel model = SyntheticMesh.build(shape, 20_000, 42);
+
+        MeshDecimator.Result result = MeshDecimator.decimate(model, MeshDecimator.Target.faces(2_000));
+
+        assertTrue(result.outputFaces() <= 2_000, result.outputFaces() + " faces");
+        assertEquals(result.outputFaces(), result.model().getFaceCount());
+        FeatureCalculator.Result features = FeatureCalculator.calculate(result.model());
+        int euler = (int) features.features().getEulerNumber();
+        assertEquals(SyntheticMesh.expected(shape, 20_000).eulerNumber(), euler, "topology is unchanged");
+        long edges = (long) result.model().getVertexCount() + result.model().getFaceCount() - euler;
+        assertEquals(3L * result.model().getFaceCount(), 2 * edges, "every edge is still shared by two triangles");
+    }
+
+    @Test
+    void keepsTheVolumeOfACoarsenedSphere() {
+        ObjModel model = SyntheticMesh.build(SyntheticMesh.Shape.SPHERE, 20_000, 42);
+        double volume = FeatureCalculator.calculate(model).volume();
+
+        MeshDecimator.Result result = MeshDecimator.decimate(model, MeshDecimator.Target.ratio(0.1));
+
+        assertTrue(result.outputFaces() <= 2_000 && result.outputFaces() > 1_900, result.outputFaces() + " faces");
+        assertEquals(volume, FeatureCalculator.calculate(result.model()).volume(), volume * 0.02);
+    }
+
+    @Test
+    void stopsBeforeTheFirstCollapseOverTheErrorBound() {
+        ObjModel model = SyntheticMesh.build(SyntheticMesh.Shape.SPHERE, 20_000, 42);
+        double maxError = 1e-4;
+
+        MeshDecimator.Result result = MeshDecimator.decimate(model, MeshDecimator.Target.maxError(maxError));
+
+        double diagonal = 2 * Math.sqrt(3);
+        assertTrue(result.error() <= maxError * diagonal * 1.0001, "error " + result.error());
+        assertTrue(result.outputFaces() < result.inputFaces());
+    }
+
+    @Test
+    void collapsesFlatSidesWithoutMovingTheCorners() {
+        ObjModel model = SyntheticMesh.build(SyntheticMesh.Shape.BOX, 20_000, 42);
+
+        MeshDecimator.Result result = MeshDecimator.decimate(model, MeshDecimator.Target.maxError(1e-6));
+
+        assertTrue(result.outputFaces() < 200, result.outputFaces() + " faces");
+        FeatureCalculator.Result features = FeatureCalculator.calculate(result.model());
+        assertEquals(2 * 1 * 0.5, features.volume(), 1e-5);
+        assertEquals(2 * (2 * 1 + 2 * 0.5 + 1 * 0.5), features.surfaceArea(), 1e-5);
+    }
+
+    @Test
+    void holdsAnOpenBoundaryInPlace() {
+        ObjModel grid = wavyGrid(60);
+
+        MeshDecimator.Result result = MeshDecimator.decimate(grid, MeshDecimator.Target.ratio(0.2));
+
+        FeatureCalculator.BoundingBox before = FeatureCalculator.BoundingBox.from(grid.getVertices());
+        FeatureCalculator.BoundingBox after = FeatureCalculator.BoundingBox.from(result.model().getVertices());
+        // the boundary planes are steep, not rigid
+        assertEquals(before.dx(), after.dx(), 1e-3);
+        assertEquals(before.dy(), after.dy(), 1e-3);
+        assertTrue(result.outputFaces() <= grid.getFaceCount() * 0.2, result.outputFaces() + " faces");
+    }
+
+    @Test
+    void triangulatesPolygonsFirst() {
+        List<float[]> vertices = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            vertices.add(new float[]{i & 1, i >> 1 & 1, i >> 2 & 1});
+        }
+        List<int[]> quads = List.of(new int[]{0, 2, 3, 1}, new int[]{4, 5, 7, 6}, new int[]{0, 1, 5, 4},
+                new int[]{2, 6, 7, 3}, new int[]{0, 4, 6, 2}, new int[]{1, 3, 7, 5});
+
+        MeshDecimator.Result result = MeshDecimator.decimate(new ObjModel(vertices, quads), MeshDecimator.Target.ratio(1));
+
+        assertEquals(12, result.inputFaces());
+        for (int[] face : result.model().getFaces()) {
+            assertEquals(3, face.length);
+        }
+    }
+
+    @Test
+    void shapeFeaturesBarelyDrift() {
+        ObjModel model = SyntheticMesh.build(SyntheticMesh.Shape.TORUS, 20_000, 42);
+
+        double[] drift = FeatureDrift.measure(model, MeshDecimator.Target.ratio(0.25)).relative();
+
+        for (String feature : List.of("Linearity", "Sphericity", "AspectRatio", "Convexity")) {
+            double d = drift[FeatureDrift.FEATURES.indexOf(feature)];
+            assertTrue(d < 0.02, feature + " drifted " + d);
+        }
+    }
+
+    // an open n x n grid of squares in the xy plane, rippled in z so that collapses have a cost
+    private static ObjModel wavyGrid(int n) {
+        List<float[]> vertices = new ArrayList<>();
+        for (int y = 0; y <= n; y++) {
+            for (int x = 0; x <= n; x++) {
+                float z = (float) (0.05 * Math.sin(x * 0.3) * Math.cos(y * 0.2));
+                vertices.add(new float[]{(float) x / n, (float) y / n, z});
+            }
+        }
+        List<int[]> faces = new ArrayList<>();
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) {
+                int a = y * (n + 1) + x;
+                faces.add(new int[]{a, a + 1, a + n + 2});
+                faces.add(new int[]{a, a + n + 2, a + n + 1});
+            }
+        }
+        return new ObjModel(vertices, faces);
+    }
+}
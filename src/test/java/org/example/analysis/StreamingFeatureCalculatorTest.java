@@ -0,0 +1,103 @@
+package org.example.analysis;
+
+import org.example.model.ModelFeatures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link StreamingFeatureCalculator}, on the heap and off it, must give the in-memory features bit for bit, and
+ * {@link MemoryBudget#estimate} must be close to the actual counts.
+ */
+class StreamingFeatureCalculatorTest {
+
+    private static final double ESTIMATE_TOLERANCE = 0.1;
+
+    static Stream<Arguments> meshes() {
+        // 300,000 faces make an OBJ of some 12 MB, so the estimate samples it instead of reading it whole
+        return Arrays.stream(SyntheticMesh.Shape.values())
+                .flatMap(shape -> Stream.of(1_000, 20_000, 300_000).map(faces -> Arguments.of(shape, faces)));
+    }
+
+    static Stream<Arguments> cases() {
+        return meshes().flatMap(mesh -> Stream.of(MemoryBudget.Mode.STREAMING, MemoryBudget.Mode.OFF_HEAP)
+                .map(mode -> Arguments.of(mesh.get()[0], mesh.get()[1], mode)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("cases")
+    void matchesTheInMemoryFeaturesExactly(SyntheticMesh.Shape shape, int faces, MemoryBudget.Mode mode,
+                                           @TempDir Path directory) throws IOException {
+        Path obj = directory.resolve(shape.key() + ".obj");
+        MeshWriter.write(shape, faces, 42, obj);
+        FeatureCalculator.Result inMemory = FeatureCalculator.calculate(ObjParser.parse(obj));
+
+        FeatureCalculator.Result streamed;
+        try (InputStream in = Files.newInputStream(obj)) {
+            streamed = StreamingFeatureCalculator.calculate(in, mode, MemoryBudget.estimate(obj));
+        }
+
+        assertArrayEquals(values(inMemory), values(streamed));
+    }
+
+    @ParameterizedTest
+    @MethodSource("meshes")
+    void estimatesTheCounts(SyntheticMesh.Shape shape, int faces, @TempDir Path directory) throws IOException {
+        Path obj = directory.resolve(shape.key() + ".obj");
+        MeshWriter.write(shape, faces, 42, obj);
+        SyntheticMesh.Plan plan = SyntheticMesh.plan(shape, faces);
+
+        MemoryBudget.Estimate estimate = MemoryBudget.estimate(obj);
+
+        assertEquals(plan.vertices(), estimate.vertices(), plan.vertices() * ESTIMATE_TOLERANCE);
+        assertEquals(plan.faces(), estimate.faces(), plan.faces() * ESTIMATE_TOLERANCE);
+        assertEquals(3.0, estimate.cornersPerFace(), 1e-9);
+    }
+
+    @Test
+    void polygonsAndNegativeIndicesMatchTheInMemoryFeatures() throws IOException {
+        String obj = String.join("\n",
+                "v 0 0 0", "v 1 0 0", "v 1 1 0", "v 0 1 0",
+                "v 0 0 1", "v 1 0 1", "v 1 1 1", "v 0 1 1",
+                "f 1 4 3 2", "f 5 6 7 8", "f 1 2 6 5", "f 2 3 7 6", "f 3 4 8 7",
+                "f -8/1/1 -4/2/2 -1/3/3 -5/4/4", "");
+        FeatureCalculator.Result inMemory = FeatureCalculator.calculate(ObjParser.parse(obj));
+
+        for (MemoryBudget.Mode mode : new MemoryBudget.Mode[]{MemoryBudget.Mode.STREAMING, MemoryBudget.Mode.OFF_HEAP}) {
+            FeatureCalculator.Result streamed = StreamingFeatureCalculator.calculate(
+                    new ByteArrayInputStream(obj.getBytes(StandardCharsets.UTF_8)), mode,
+                    new MemoryBudget.Estimate(obj.length(), 8, 6, 4));
+            assertArrayEquals(values(inMemory), values(streamed), mode.key());
+        }
+    }
+
+    @Test
+    void rejectsAMeshWithoutFaces() {
+        InputStream in = new ByteArrayInputStream("v 0 0 0\nv 1 0 0\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> StreamingFeatureCalculator.calculate(
+                in, MemoryBudget.Mode.STREAMING, new MemoryBudget.Estimate(16, 2, 0, 3)));
+    }
+
+    private static double[] values(FeatureCalculator.Result result) {
+        ModelFeatures f = result.features();
+        return new double[]{result.vertexCount(), result.faceCount(), result.surfaceArea(), result.volume(),
+                f.getLinearity(), f.getPlanarity(), f.getSphericity(), f.getAnisotropy(), f.getCurvature(),
+                f.getEulerNumber(), f.getCompactness(), f.getAspectRatio(), f.getConvexity(), f.getLocalDensity()};
+    }
+}
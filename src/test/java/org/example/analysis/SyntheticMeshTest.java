@@ -0,0 +1,122 @@
+package org.example.analysis;
+
+import org.example.model.ObjModel;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link FeatureCalculator} against meshes from {@link SyntheticMesh} whose surface area, volume and
+ * Euler number are known in closed form, and checks that {@link MeshWriter} files read back the same.
+ */
+class SyntheticMeshTest {
+
+    private static final long SEED = 42;
+    private static final double ROUND_TRIP_TOLERANCE = 1e-5;
+
+    static Stream<Arguments> meshes() {
+        return Arrays.stream(SyntheticMesh.Shape.values())
+                .flatMap(shape -> Stream.of(Arguments.of(shape, 1_000), Arguments.of(shape, 20_000)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("meshes")
+    void countsMatchThePlan(SyntheticMesh.Shape shape, int faces) {
+        SyntheticMesh.Plan plan = SyntheticMesh.plan(shape, faces);
+        ObjModel model = SyntheticMesh.build(shape, faces, SEED);
+
+        assertEquals(plan.vertices(), model.getVertexCount());
+        assertEquals(plan.faces(), model.getFaceCount());
+    }
+
+    @ParameterizedTest
+    @MethodSource("meshes")
+    void eulerNumberIsExactAndTheMeshIsClosed(SyntheticMesh.Shape shape, int faces) {
+        ObjModel model = SyntheticMesh.build(shape, faces, SEED);
+        FeatureCalculator.Result result = FeatureCalculator.calculate(model);
+
+        int euler = (int) result.features().getEulerNumber();
+        assertEquals(SyntheticMesh.expected(shape, faces).eulerNumber(), euler);
+        // V - E + F = chi gives the edge count; a closed triangle mesh has exactly 3F/2 edges
+        long edges = (long) model.getVertexCount() + model.getFaceCount() - euler;
+        assertEquals(3L * model.getFaceCount(), 2 * edges, "every edge is shared by two triangles");
+    }
+
+    @ParameterizedTest
+    @MethodSource("meshes")
+    void areaAndVolumeMatchTheClosedForm(SyntheticMesh.Shape shape, int faces) {
+        SyntheticMesh.Expected expected = SyntheticMesh.expected(shape, faces);
+        FeatureCalculator.Result result = FeatureCalculator.calculate(SyntheticMesh.build(shape, faces, SEED));
+
+        assertWithin(expected.surfaceArea(), result.surfaceArea(), expected.tolerance(), "surface area");
+        assertWithin(expected.volume(), result.volume(), expected.tolerance(), "volume");
+    }
+
+    @ParameterizedTest
+    @MethodSource("meshes")
+    void objReadsBackTheSame(SyntheticMesh.Shape shape, int faces, @TempDir Path directory) throws IOException {
+        ObjModel model = SyntheticMesh.build(shape, faces, SEED);
+        FeatureCalculator.Result result = FeatureCalculator.calculate(model);
+
+        Path obj = directory.resolve(shape.key() + ".obj");
+        MeshWriter.write(shape, faces, SEED, obj);
+        ObjModel parsed = ObjParser.parse(obj);
+
+        assertEquals(model.getVertexCount(), parsed.getVertexCount());
+        assertEquals(model.getFaceCount(), parsed.getFaceCount());
+        assertWithin(result.surfaceArea(), FeatureCalculator.calculate(parsed).surfaceArea(), ROUND_TRIP_TOLERANCE, "surface area");
+    }
+
+    @ParameterizedTest
+    @MethodSource("meshes")
+    void stlHasOneRecordPerFaceWithTheSameArea(SyntheticMesh.Shape shape, int faces, @TempDir Path directory) throws IOException {
+        ObjModel model = SyntheticMesh.build(shape, faces, SEED);
+        FeatureCalculator.Result result = FeatureCalculator.calculate(model);
+
+        Path stl = directory.resolve(shape.key() + ".stl");
+        MeshWriter.write(model, stl);
+
+        assertEquals(84 + 50L * model.getFaceCount(), Files.size(stl));
+        assertWithin(result.surfaceArea(), stlArea(stl, model.getFaceCount()), ROUND_TRIP_TOLERANCE, "surface area");
+    }
+
+    // a missing expected value passes
+    private static void assertWithin(double expected, double actual, double tolerance, String what) {
+        if (Double.isNaN(expected)) {
+            return;
+        }
+        double error = Math.abs(actual - expected) / Math.abs(expected);
+        assertTrue(error <= tolerance, () -> what + " " + actual + ", expected " + expected + " within " + tolerance);
+    }
+
+    private static double stlArea(Path stl, int faces) throws IOException {
+        try (FileChannel channel = FileChannel.open(stl)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(faces, buffer.getInt(80), "triangle count in the header");
+            double area = 0;
+            for (int f = 0; f < faces; f++) {
+                int p = 84 + 50 * f + 12; // skip the normal
+                double ux = buffer.getFloat(p + 12) - buffer.getFloat(p), uy = buffer.getFloat(p + 16) - buffer.getFloat(p + 4),
+                        uz = buffer.getFloat(p + 20) - buffer.getFloat(p + 8);
+                double vx = buffer.getFloat(p + 24) - buffer.getFloat(p), vy = buffer.getFloat(p + 28) - buffer.getFloat(p + 4),
+                        vz = buffer.getFloat(p + 32) - buffer.getFloat(p + 8);
+                double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+                area += 0.5 * Math.sqrt(nx * nx + ny * ny + nz * nz);
+            }
+            return area;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.cli;
+
+import org.example.ai.ModelRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisServerTest {
+
+    private static final String TETRAHEDRON = "v 0 0 0\nv 1 0 0\nv 0 1 0\nv 0 0 1\nf 1 3 2\nf 1 2 4\nf 1 4 3\nf 2 3 4\n";
+
+    private static ModelRegistry models;
+    private static AnalysisServer server;
+    private static URI base;
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void start() throws Exception {
+        models = new ModelRegistry();
+        models.load("basic");
+        server = new AnalysisServer(AnalysisServer.Options.parse(new String[]{"--port", "0", "--max-upload-mb", "1"}), models);
+        base = URI.create("http://127.0.0.1:" + server.start());
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        server.close();
+        models.close();
+    }
+
+    private static HttpResponse<String> post(HttpRequest.BodyPublisher body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/analyse?name=t.obj")).POST(body).build();
+        return CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    // an OBJ of comment lines, so only its size matters
+    private static byte[] upload(int bytes) {
+        byte[] data = new byte[bytes];
+        for (int i = 0; i < bytes; i++) {
+            data[i] = (byte) (i % 64 == 63 ? '\n' : '#');
+        }
+        return data;
+    }
+
+    @Test
+    void analysesAnUploadWithinTheLimit() throws Exception {
+        HttpResponse<String> response = post(HttpRequest.BodyPublishers.ofString(TETRAHEDRON));
+        assertEquals(200, response.statusCode(), response.body());
+        assertTrue(response.body().contains("\"faces\":4"), response.body());
+    }
+
+    @Test
+    void refusesADeclaredLengthAboveTheLimit() throws Exception {
+        HttpResponse<String> response = post(HttpRequest.BodyPublishers.ofByteArray(upload((1 << 20) + 1)));
+        assertEquals(413, response.statusCode(), response.body());
+    }
+
+    @Test
+    void refusesAnUndeclaredUploadOnceItPassesTheLimit() throws Exception {
+        byte[] body = upload(2 << 20);
+        HttpResponse<String> response = post(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(body)));
+        assertEquals(413, response.statusCode(), response.body());
+    }
+
+    @Test
+    void releasesTheReservedHeapAfterEachUpload() throws Exception {
+        post(HttpRequest.BodyPublishers.ofString(TETRAHEDRON));
+        post(HttpRequest.BodyPublishers.ofByteArray(upload((1 << 20) + 1)));
+        HttpResponse<String> metrics = CLIENT.send(HttpRequest.newBuilder(base.resolve("/metrics")).build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertTrue(metrics.body().contains("draxel_upload_heap_reserved_bytes 0\n"), metrics.body());
+        assertTrue(metrics.body().contains("draxel_uploads_inflight 0\n"), metrics.body());
+    }
+
+    @Test
+    void lowersTheUploadLimitToWhatTheHeapBudgetHolds() {
+        int heapKib = 150 << 10; // 150 MiB set aside, six bytes of heap per uploaded byte
+        assertEquals(25L << 20, AnalysisServer.uploadLimit(256L << 20, heapKib));
+        assertEquals(1L << 20, AnalysisServer.uploadLimit(1L << 20, heapKib));
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatchStateTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void remembersFilesAcrossRestarts() throws IOException {
+        Path file = directory.resolve("state").resolve("watch-state.tsv");
+        Path part = directory.resolve("part one.obj");
+        WatchState.Entry entry = new WatchState.Entry(120, 1_700_000_000_000L, "abc");
+
+        WatchState state = new WatchState(file);
+        state.put(part, entry);
+        state.put(directory.resolve("gone.obj"), entry);
+        state.remove(directory.resolve("gone.obj"));
+        state.save();
+
+        WatchState reloaded = new WatchState(file);
+        assertEquals(1, reloaded.size());
+        assertEquals(entry, reloaded.get(part));
+        assertTrue(reloaded.get(part).sameFile(120, 1_700_000_000_000L));
+        assertFalse(reloaded.get(part).sameFile(121, 1_700_000_000_000L));
+    }
+
+    @Test
+    void skipsDamagedLines() throws IOException {
+        Path file = directory.resolve("watch-state.tsv");
+        Files.writeString(file, String.join("\n",
+                "12\t34\tabc\t" + directory.resolve("a.obj"),
+                "not a number\t34\tabc\t" + directory.resolve("b.obj"),
+                "torn line",
+                ""), StandardCharsets.UTF_8);
+
+        WatchState state = new WatchState(file);
+        assertEquals(1, state.size());
+        assertNull(state.get(directory.resolve("b.obj")));
+    }
+
+    @Test
+    void savesOnlyAfterAChange() throws IOException {
+        Path file = directory.resolve("watch-state.tsv");
+        WatchState state = new WatchState(file);
+        state.save();
+        assertFalse(Files.exists(file), "nothing to save yet");
+
+        state.put(directory.resolve("a.obj"), new WatchState.Entry(1, 2, "abc"));
+        state.save();
+        FileTime saved = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, saved);
+        state.save();
+        assertEquals(saved, Files.getLastModifiedTime(file), "an unchanged state is not written again");
+    }
+
+    @Test
+    void hashesTheContent() throws IOException {
+        Path a = Files.writeString(directory.resolve("a.obj"), "v 0 0 0\n");
+        Path b = Files.writeString(directory.resolve("b.obj"), "v 0 0 0\n");
+        assertEquals(WatchState.hash(a), WatchState.hash(b));
+        assertEquals(64, WatchState.hash(a).length());
+
+        Files.writeString(b, "f 1 2 3\n", StandardOpenOption.APPEND);
+        assertNotEquals(WatchState.hash(a), WatchState.hash(b));
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.example.history.HistoryLogTest.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AsyncHistoryWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void flushWaitsForEverySubmittedEntry() throws Exception {
+        try (HistoryLog log = new HistoryLog(directory.resolve("history.jsonl"))) {
+            AsyncHistoryWriter writer = new AsyncHistoryWriter(log, 16, -1);
+            for (int i = 0; i < 100; i++) {
+                writer.submit(entry(i));
+            }
+            writer.flush();
+
+            assertEquals(HistoryLogTest.entries(0, 100), log.readAll());
+            writer.close();
+        }
+    }
+
+    @Test
+    void rejectsEntriesAfterClose() throws IOException {
+        try (HistoryLog log = new HistoryLog(directory.resolve("history.jsonl"))) {
+            AsyncHistoryWriter writer = new AsyncHistoryWriter(log, 16, 0);
+            writer.close();
+
+            assertThrows(IllegalStateException.class, () -> writer.submit(entry(0)));
+        }
+    }
+
+    @Test
+    void everyAcceptedEntryIsWrittenWhenCloseRacesTheProducers() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            Path file = directory.resolve("history-" + round + ".jsonl");
+            try (HistoryLog log = new HistoryLog(file)) {
+                AsyncHistoryWriter writer = new AsyncHistoryWriter(log, 8, -1);
+                ExecutorService producers = Executors.newFixedThreadPool(4);
+                List<Future<Integer>> accepted = new ArrayList<>();
+                for (int p = 0; p < 4; p++) {
+                    accepted.add(producers.submit(() -> {
+                        int n = 0;
+                        try {
+                            while (true) {
+                                writer.submit(entry(n));
+                                n++;
+                            }
+                        } catch (IllegalStateException closed) {
+                            return n;
+                        }
+                    }));
+                }
+                Thread.sleep(5);
+                writer.close();
+
+                int total = 0;
+                for (Future<Integer> f : accepted) {
+                    total += f.get();
+                }
+                producers.shutdown();
+                assertEquals(total, log.readAll().size(), "round " + round);
+            }
+        }
+    }
+}
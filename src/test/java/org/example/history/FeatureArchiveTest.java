@@ -0,0 +1,137 @@
+package org.example.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeatureArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private static HistoryEntry entry(String timestamp, String filament, double linearity) {
+        Map<String, String> results = new HashMap<>();
+        if (filament != null) {
+            results.put("Filament", filament);
+        }
+        results.put("Linearity", Double.toString(linearity));
+        results.put("Functional", "true");
+        return new HistoryEntry(timestamp, "part.obj", results);
+    }
+
+    private FeatureArchive archive(List<HistoryEntry> entries) throws IOException {
+        try (HistoryLog log = new HistoryLog(directory.resolve("history.jsonl"));
+             HistoryStore store = new HistoryStore(log)) {
+            log.appendAll(entries);
+            FeatureArchive archive = new FeatureArchive(directory.resolve("archive"));
+            archive.sync(store);
+            return archive;
+        }
+    }
+
+    private static String time(int minute) {
+        return String.format("2026-01-01 00:%02d:00", minute);
+    }
+
+    @Test
+    void aggregatesFeaturesPerLabel() throws IOException {
+        List<HistoryEntry> entries = List.of(
+                entry(time(0), "PLA", 0.1), entry(time(1), "PETG", 0.5), entry(time(2), "PLA", 0.2), entry(time(3), null, 0.9));
+        try (FeatureArchive archive = archive(entries)) {
+            FeatureArchive.Range all = archive.all();
+
+            assertEquals(4, archive.rows());
+            assertEquals(0.425, archive.mean(FeatureArchive.Feature.LINEARITY, all), 1e-6);
+            Map<String, Long> counts = new LinkedHashMap<>();
+            counts.put("PLA", 2L);
+            counts.put("PETG", 1L);
+            counts.put(FeatureArchive.UNKNOWN, 1L);
+            assertEquals(counts, archive.countBy(FeatureArchive.Label.FILAMENT, all));
+            assertEquals(0.15, archive.meanBy(FeatureArchive.Label.FILAMENT, FeatureArchive.Feature.LINEARITY, all).get("PLA"), 1e-6);
+            assertArrayEquals(new long[]{2, 0, 1, 1},
+                    archive.histogram(FeatureArchive.Feature.LINEARITY, all, 4).counts());
+            assertEquals(Float.NaN, archive.value(FeatureArchive.Feature.PLANARITY, 0));
+            assertTrue(archive.profile(0).isFunctional());
+        }
+    }
+
+    @Test
+    void keepsLabelCodesWhenReopened() throws IOException {
+        try (FeatureArchive archive = archive(List.of(entry(time(0), "PLA", 0.1), entry(time(1), "PETG", 0.2)))) {
+            assertEquals("PETG", archive.label(FeatureArchive.Label.FILAMENT, 1));
+        }
+        try (HistoryLog log = new HistoryLog(directory.resolve("history.jsonl"));
+             HistoryStore store = new HistoryStore(log);
+             FeatureArchive archive = new FeatureArchive(directory.resolve("archive"))) {
+            assertEquals(2, archive.rows());
+            log.appendAll(List.of(entry(time(2), "PETG", 0.3), entry(time(3), "ASA", 0.4)));
+            archive.sync(store);
+
+            assertEquals(List.of("PLA", "PETG", "PETG", "ASA"), labels(archive));
+            assertEquals(List.of("PLA", "PETG", "ASA"), List.copyOf(archive.countBy(FeatureArchive.Label.FILAMENT, archive.all()).keySet()));
+        }
+    }
+
+    @Test
+    void sortsByLabelWithUnknownLastKeepingTheGivenOrder() throws IOException {
+        List<HistoryEntry> entries = List.of(entry(time(0), "PLA", 0), entry(time(1), null, 0),
+                entry(time(2), "ASA", 0), entry(time(3), "PLA", 0), entry(time(4), "ASA", 0));
+        try (FeatureArchive archive = archive(entries)) {
+            int[] rows = {4, 3, 2, 1, 0};
+            archive.sortBy(FeatureArchive.Label.FILAMENT, rows, false);
+            assertArrayEquals(new int[]{4, 2, 3, 0, 1}, rows);
+
+            archive.sortBy(FeatureArchive.Label.FILAMENT, rows, true);
+            assertArrayEquals(new int[]{3, 0, 4, 2, 1}, rows);
+        }
+    }
+
+    @Test
+    void findsTimeRangesAfterTheClockMovedBack() throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int minute : new int[]{10, 11, 12, 5, 6, 13}) {
+            entries.add(entry(time(minute), "PLA", minute));
+        }
+        entries.add(entry(null, "PLA", 99));
+        try (FeatureArchive archive = archive(entries)) {
+            FeatureArchive.Range range = archive.between(LocalDateTime.of(2026, 1, 1, 0, 6), LocalDateTime.of(2026, 1, 1, 0, 12));
+
+            assertEquals(Map.of("PLA", 3L), archive.countBy(FeatureArchive.Label.FILAMENT, range));
+            assertEquals((6 + 10 + 11) / 3.0, archive.mean(FeatureArchive.Feature.LINEARITY, range), 1e-6);
+            assertEquals(6, archive.countBy(FeatureArchive.Label.FILAMENT, archive.between(null, null)).get("PLA"));
+        }
+    }
+
+    @Test
+    void searchesTimeRangesInChronologicalHistory() throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        entries.add(entry(null, "PLA", 99));
+        for (int minute = 0; minute < 20; minute++) {
+            entries.add(entry(time(minute), "PLA", minute));
+        }
+        try (FeatureArchive archive = archive(entries)) {
+            assertEquals(new FeatureArchive.Range(6, 11), archive.between(LocalDateTime.of(2026, 1, 1, 0, 5), LocalDateTime.of(2026, 1, 1, 0, 10)));
+            assertEquals(new FeatureArchive.Range(1, 21), archive.between(null, null));
+        }
+    }
+
+    private static List<String> labels(FeatureArchive archive) {
+        List<String> labels = new ArrayList<>();
+        for (int row = 0; row < archive.rows(); row++) {
+            labels.add(archive.label(FeatureArchive.Label.FILAMENT, row));
+        }
+        return labels;
+    }
+}
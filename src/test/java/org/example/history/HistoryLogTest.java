@@ -0,0 +1,147 @@
+package org.example.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryLogTest {
+
+    @TempDir
+    Path directory;
+
+    static HistoryEntry entry(int i) {
+        return new HistoryEntry(String.format("2026-01-01 00:%02d:%02d", i / 60 % 60, i % 60), "part-" + i + ".obj",
+                Map.of("Filament", i % 2 == 0 ? "PLA" : "PETG", "Material", Integer.toString(i)));
+    }
+
+    static List<HistoryEntry> entries(int from, int to) {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            entries.add(entry(i));
+        }
+        return entries;
+    }
+
+    @Test
+    void readsBackWhatWasAppendedInOrder() throws IOException {
+        try (HistoryLog log = new HistoryLog(directory.resolve("history.jsonl"))) {
+            log.append(entry(0));
+            log.appendAll(entries(1, 10));
+
+            assertEquals(entries(0, 10), log.readAll());
+        }
+    }
+
+    @Test
+    void writesOneCompactLinePerEntry() throws IOException {
+        Path file = directory.resolve("history.jsonl");
+        try (HistoryLog log = new HistoryLog(file)) {
+            log.appendAll(entries(0, 3));
+        }
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals(entry(1), HistoryLog.decode(lines.get(1)));
+    }
+
+    @Test
+    void survivesReopening() throws IOException {
+        Path file = directory.resolve("history.jsonl");
+        try (HistoryLog log = new HistoryLog(file)) {
+            log.appendAll(entries(0, 5));
+        }
+        try (HistoryLog log = new HistoryLog(file)) {
+            log.appendAll(entries(5, 8));
+            assertEquals(entries(0, 8), log.readAll());
+        }
+    }
+
+    @Test
+    void skipsATornLineAndStartsTheNextEntryOnAFreshLine() throws IOException {
+        Path file = directory.resolve("history.jsonl");
+        try (HistoryLog log = new HistoryLog(file)) {
+            log.appendAll(entries(0, 3));
+        }
+        // a crash in the middle of a write
+        Files.writeString(file, "{\"timestamp\":\"2026-01-0", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (HistoryLog log = new HistoryLog(file)) {
+            assertEquals(entries(0, 3), log.readAll());
+            log.append(entry(3));
+            assertEquals(entries(0, 4), log.readAll());
+        }
+    }
+
+    @Test
+    void rotatesIntoSegmentsWithoutChangingWhatIsRead() throws IOException {
+        try (HistoryLog log = new HistoryLog(directory.resolve("history.jsonl"), 1_000, 100)) {
+            for (int i = 0; i < 100; i++) {
+                log.append(entry(i));
+            }
+
+            assertTrue(manifest().segments().size() > 5);
+            assertEquals(entries(0, 100), log.readAll());
+        }
+    }
+
+    @Test
+    void segmentCountStaysBoundedWithSeveralWritersAndFewSegments() throws Exception {
+        int writers = 4;
+        int appends = 400;
+        int maxSegments = 2;
+        List<HistoryLog> logs = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            // one instance per writer, as separate processes would have
+            logs.add(new HistoryLog(directory.resolve("history.jsonl"), 2_000, maxSegments));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (HistoryLog log : logs) {
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < appends; i++) {
+                        log.append(entry(i));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+
+            // the background compactor may still be running; wait for it to bring the count down
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (manifest().segments().size() > maxSegments && System.nanoTime() < deadline) {
+                logs.get(0).compact();
+                Thread.sleep(10);
+            }
+
+            assertTrue(manifest().segments().size() <= maxSegments, manifest().segments().size() + " segments");
+            assertEquals(writers * appends, logs.get(0).readAll().size());
+        } finally {
+            pool.shutdown();
+            for (HistoryLog log : logs) {
+                log.close();
+            }
+        }
+    }
+
+    private SegmentManifest manifest() throws IOException {
+        return SegmentManifest.read(directory.resolve("history.manifest"));
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.history;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.example.history.HistoryLogTest.entries;
+import static org.example.history.HistoryLogTest.entry;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private HistoryLog log(int entries) throws IOException {
+        HistoryLog log = new HistoryLog(directory.resolve("history.jsonl"));
+        log.appendAll(entries(0, entries));
+        return log;
+    }
+
+    @Test
+    void pagesNewestFirstAndCountsEveryMatch() throws IOException {
+        try (HistoryLog log = log(250); HistoryStore store = new HistoryStore(log)) {
+            HistoryPage first = store.query(HistoryQuery.all().page(0, 100));
+            HistoryPage last = store.query(HistoryQuery.all().page(200, 100));
+
+            assertEquals(250, first.total());
+            assertEquals(entry(249), first.entries().get(0));
+            assertTrue(first.hasMore());
+            assertEquals(50, last.entries().size());
+            assertEquals(entry(0), last.entries().get(49));
+            assertFalse(last.hasMore());
+        }
+    }
+
+    @Test
+    void filtersByFileNameAndByFilamentIgnoringCase() throws IOException {
+        try (HistoryLog log = log(100); HistoryStore store = new HistoryStore(log)) {
+            assertEquals(List.of(entry(42)), store.query(HistoryQuery.all().fileName("part-42.obj")).entries());
+
+            HistoryPage petg = store.query(HistoryQuery.all().filament("petg").oldestFirst());
+            assertEquals(50, petg.total());
+            assertEquals(entry(1), petg.entries().get(0));
+            assertEquals(entry(99), petg.entries().get(49));
+        }
+    }
+
+    @Test
+    void filtersByDateRange() throws IOException {
+        try (HistoryLog log = log(200); HistoryStore store = new HistoryStore(log)) {
+            LocalDateTime from = LocalDateTime.of(2026, 1, 1, 0, 1, 0); // entry 60
+            LocalDateTime to = LocalDateTime.of(2026, 1, 1, 0, 2, 0);   // entry 120, excluded
+
+            HistoryPage page = store.query(HistoryQuery.all().between(from, to).oldestFirst());
+            assertEquals(entries(60, 120), page.entries());
+
+            int[] pla = store.ids(HistoryQuery.all().between(from, to).filament("PLA"));
+            assertEquals(30, pla.length);
+            assertEquals(60, pla[0]);
+        }
+    }
+
+    @Test
+    void refreshIndexesEntriesAppendedSinceTheLastQuery() throws IOException {
+        try (HistoryLog log = log(10); HistoryStore store = new HistoryStore(log)) {
+            assertEquals(10, store.query(HistoryQuery.all()).total());
+
+            log.appendAll(entries(10, 15));
+            store.refresh();
+
+            assertEquals(15, store.size());
+            assertEquals(entry(14), store.get(14));
+        }
+    }
+
+    @Test
+    void reopensFromTheIndexFile() throws IOException {
+        try (HistoryLog log = log(300)) {
+            try (HistoryStore store = new HistoryStore(log)) {
+                store.refresh();
+            }
+            assertTrue(Files.size(directory.resolve("history.jsonl.idx")) > 0);
+
+            try (HistoryStore store = new HistoryStore(log)) {
+                store.refresh();
+                assertEquals(300, store.size());
+                assertEquals(entry(123), store.get(123));
+            }
+        }
+    }
+
+    @Test
+    void rebuildsAnIndexThatNoLongerMatchesTheLog() throws IOException {
+        Path file = directory.resolve("history.jsonl");
+        try (HistoryLog log = log(50)) {
+            try (HistoryStore store = new HistoryStore(log)) {
+                store.refresh();
+            }
+            // the log is replaced by a different, shorter history
+            List<HistoryEntry> replacement = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                replacement.add(new HistoryEntry("2026-02-01 00:00:00", "other-" + i + ".obj", null));
+            }
+            log.close();
+            Files.write(file, HistoryLog.encode(replacement));
+
+            try (HistoryStore store = new HistoryStore(log)) {
+                HistoryPage page = store.query(HistoryQuery.all().oldestFirst());
+                assertEquals(20, page.total());
+                assertEquals(replacement, page.entries());
+            }
+        }
+    }
+
+    @Test
+    void storesSharingTheLogIndexNewEntriesOnce() throws IOException {
+        try (HistoryLog log = log(10); HistoryStore first = new HistoryStore(log); HistoryStore second = new HistoryStore(log)) {
+            first.refresh();
+            second.refresh();
+            log.appendAll(entries(10, 15));
+            first.refresh();
+            second.refresh();
+            assertEquals(15, second.size());
+
+            try (HistoryStore reopened = new HistoryStore(log)) {
+                assertEquals(15, reopened.query(HistoryQuery.all()).total());
+                assertArrayEquals(new int[]{12}, reopened.ids(HistoryQuery.all().fileName("part-12.obj")));
+            }
+        }
+    }
+
+    @Test
+    void rebuildsAnIndexWithRecordsOutOfOrder() throws IOException {
+        Path index = directory.resolve("history.jsonl.idx");
+        try (HistoryLog log = log(20)) {
+            try (HistoryStore store = new HistoryStore(log)) {
+                store.refresh();
+            }
+            // the last five records appended a second time
+            byte[] bytes = Files.readAllBytes(index);
+            Files.write(index, Arrays.copyOfRange(bytes, bytes.length - 5 * HistoryIndex.RECORD_BYTES, bytes.length),
+                    StandardOpenOption.APPEND);
+
+            try (HistoryStore store = new HistoryStore(log)) {
+                store.refresh();
+                assertEquals(20, store.size());
+                assertEquals(entries(0, 20), store.get(store.ids(HistoryQuery.all()), 0, 20));
+            }
+        }
+    }
+
+    @Test
+    void recordIdsSurviveRotationIntoSegments() throws IOException {
+        try (HistoryLog log = new HistoryLog(directory.resolve("history.jsonl"), 2_000, 100);
+             HistoryStore store = new HistoryStore(log)) {
+            for (int i = 0; i < 200; i += 10) {
+                log.appendAll(entries(i, i + 10));
+            }
+            assertTrue(Files.exists(directory.resolve("history-000001.jsonl")), "the log was rotated");
+
+            int[] ids = store.ids(HistoryQuery.all().fileName("part-137.obj"));
+            assertArrayEquals(new int[]{137}, ids);
+            assertEquals(entries(0, 200), store.get(store.ids(HistoryQuery.all()), 0, 200));
+
+            List<HistoryEntry> scanned = new ArrayList<>();
+            store.scan(150, (id, entry) -> scanned.add(entry));
+            assertEquals(entries(150, 200), scanned);
+        }
+    }
+}
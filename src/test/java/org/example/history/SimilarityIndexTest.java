@@ -0,0 +1,159 @@
+package org.example.history;
+
+import org.example.model.ModelFeatures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimilarityIndexTest {
+
+    private static final int D = SimilarityIndex.DIMENSIONS;
+    private static final int K = 5;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 50_000})
+    void findsTheSameNeighboursAsABruteForceScan(int rows) {
+        float[] raw = rows(rows, new Random(1));
+        SimilarityIndex index = new SimilarityIndex(false);
+        index.append(raw, rows);
+
+        Random random = new Random(2);
+        for (int i = 0; i < 50; i++) {
+            ModelFeatures query = query(raw, random.nextInt(rows), random);
+            assertEquals(bruteForce(raw, rows, query), rows(index.nearest(query, K)));
+        }
+    }
+
+    @Test
+    void findsRowsAddedSinceTheGridWasBuilt() {
+        int rows = 45_000;
+        float[] raw = rows(rows, new Random(3));
+        SimilarityIndex index = new SimilarityIndex(false);
+        index.append(Arrays.copyOf(raw, 32_000 * D), 32_000);
+        // fewer than a quarter of the gridded rows, so they stay unsorted; then enough to rebuild the grid
+        index.append(Arrays.copyOfRange(raw, 32_000 * D, 36_000 * D), 4_000);
+        Random random = new Random(4);
+        for (int i = 0; i < 20; i++) {
+            ModelFeatures query = query(raw, 32_000 + random.nextInt(4_000), random);
+            assertEquals(bruteForce(raw, 36_000, 32_000, query), rows(index.nearest(query, K)));
+        }
+        index.append(Arrays.copyOfRange(raw, 36_000 * D, rows * D), rows - 36_000);
+        for (int i = 0; i < 20; i++) {
+            ModelFeatures query = query(raw, random.nextInt(rows), random);
+            assertEquals(bruteForce(raw, rows, 32_000, query), rows(index.nearest(query, K)));
+        }
+        assertEquals(rows, index.size());
+    }
+
+    @Test
+    void quantizedNeighboursAreNearlyAlwaysTheExactOnes() {
+        int rows = 50_000;
+        float[] raw = rows(rows, new Random(5));
+        SimilarityIndex index = new SimilarityIndex(true);
+        index.append(raw, rows);
+
+        Random random = new Random(6);
+        int same = 0;
+        for (int i = 0; i < 100; i++) {
+            ModelFeatures query = query(raw, random.nextInt(rows), random);
+            if (bruteForce(raw, rows, query).get(0).equals(rows(index.nearest(query, K)).get(0))) {
+                same++;
+            }
+        }
+        assertTrue(same >= 95, "top-1 agreed for " + same + " of 100 queries");
+    }
+
+    @Test
+    void returnsFewerRowsThanAskedForWhenTheIndexIsSmall() {
+        SimilarityIndex index = new SimilarityIndex(false);
+        assertEquals(List.of(), index.nearest(new ModelFeatures(0, 0, 0, 0, 0, 0, 0, 0, 0, 0), K));
+
+        float[] raw = rows(3, new Random(7));
+        index.append(raw, 3);
+        List<SimilarityIndex.Neighbor> neighbours = index.nearest(features(raw, 1), K);
+        assertEquals(3, neighbours.size());
+        assertEquals(1, neighbours.get(0).row());
+        assertEquals(0.0, neighbours.get(0).distance(), 1e-6);
+    }
+
+    // correlated like real features: three shape values summing to one, a near copy and an integer count
+    private static float[] rows(int rows, Random random) {
+        float[] raw = new float[rows * D];
+        for (int r = 0; r < rows; r++) {
+            int o = r * D;
+            for (int d = 0; d < D; d++) {
+                raw[o + d] = (float) random.nextGaussian();
+            }
+            float linearity = random.nextFloat();
+            float planarity = random.nextFloat() * (1 - linearity);
+            raw[o] = linearity;
+            raw[o + 1] = planarity;
+            raw[o + 2] = 1 - linearity - planarity;
+            raw[o + 3] = raw[o + 4] * 0.9f + 0.1f * (float) random.nextGaussian();
+            raw[o + 5] = 2 - 2 * random.nextInt(3);
+        }
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = Math.round(raw[i] * 1000f) / 1000f; // as ModelFeatures.toInputVector rounds them
+        }
+        return raw;
+    }
+
+    private static ModelFeatures query(float[] raw, int row, Random random) {
+        float[] v = Arrays.copyOfRange(raw, row * D, (row + 1) * D);
+        for (int d = 0; d < D; d++) {
+            v[d] += 0.05f * (float) random.nextGaussian();
+        }
+        return features(v, 0);
+    }
+
+    private static ModelFeatures features(float[] raw, int row) {
+        int o = row * D;
+        return new ModelFeatures(raw[o], raw[o + 1], raw[o + 2], raw[o + 3], raw[o + 4],
+                raw[o + 5], raw[o + 6], raw[o + 7], raw[o + 8], raw[o + 9]);
+    }
+
+    private static List<Integer> rows(List<SimilarityIndex.Neighbor> neighbours) {
+        return neighbours.stream().map(SimilarityIndex.Neighbor::row).toList();
+    }
+
+    private static List<Integer> bruteForce(float[] raw, int rows, ModelFeatures query) {
+        return bruteForce(raw, rows, rows, query);
+    }
+
+    // the index normalises with the statistics of the rows it was first given
+    private static List<Integer> bruteForce(float[] raw, int rows, int statsRows, ModelFeatures query) {
+        double[] mean = new double[D];
+        double[] std = new double[D];
+        for (int d = 0; d < D; d++) {
+            double sum = 0;
+            double sumSq = 0;
+            for (int r = 0; r < statsRows; r++) {
+                sum += raw[r * D + d];
+                sumSq += (double) raw[r * D + d] * raw[r * D + d];
+            }
+            mean[d] = sum / statsRows;
+            std[d] = Math.sqrt(Math.max(0, sumSq / statsRows - mean[d] * mean[d]));
+        }
+        float[] q = query.toInputVector();
+        double[] distance = new double[rows];
+        for (int r = 0; r < rows; r++) {
+            for (int d = 0; d < D; d++) {
+                double t = (raw[r * D + d] - q[d]) / std[d];
+                distance[r] += t * t;
+            }
+        }
+        return IntStream.range(0, rows).boxed()
+                .sorted(Comparator.comparingDouble(r -> distance[r]))
+                .limit(K)
+                .toList();
+    }
+}
@@ -0,0 +1,172 @@
+package org.example.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StagedPipelineTest {
+
+    @Test
+    void passesEveryInputThroughEveryStageInOrder() throws Exception {
+        List<Integer> arrived = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        try (StagedPipeline<Integer, String> pipeline = StagedPipeline.<Integer>builder()
+                .io("parse", 1, 4, (Integer i) -> i * 2)
+                .cpu("features", 1, 4, (Integer i) -> i + 1)
+                .batched("predict", 8, 1, 4, (List<Integer> batch) -> {
+                    arrived.addAll(batch);
+                    return batch.stream().map(i -> "#" + i).toList();
+                })
+                .build()) {
+            for (int i = 0; i < 100; i++) {
+                results.add(pipeline.submit(i));
+            }
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertEquals("#" + (i * 2 + 1), results.get(i).get());
+            expected.add(i * 2 + 1);
+        }
+        assertEquals(expected, arrived, "single-worker stages keep the submission order");
+    }
+
+    @Test
+    void batchesWhatIsQueuedUpToTheLimit() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        StagedPipeline<Integer, Integer> pipeline = StagedPipeline.<Integer>builder()
+                .cpu("gate", 1, 32, (Integer i) -> {
+                    release.await();
+                    return i;
+                })
+                .batched("predict", 4, 50, 32, (List<Integer> batch) -> {
+                    sizes.add(batch.size());
+                    return batch;
+                })
+                .build();
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(i);
+        }
+        release.countDown();
+        pipeline.close();
+
+        assertEquals(10, sizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(sizes.stream().allMatch(size -> size <= 4), sizes.toString());
+        assertTrue(pipeline.stats().get(1).meanBatch() > 1, "queued items share a call: " + sizes);
+    }
+
+    @Test
+    void aFullQueueBlocksSubmit() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StagedPipeline<Integer, Integer> pipeline = StagedPipeline.<Integer>builder()
+                .cpu("slow", 1, 1, (Integer i) -> {
+                    release.await();
+                    return i;
+                })
+                .build();
+        pipeline.submit(0); // taken by the worker
+        waitFor(() -> pipeline.stats().get(0).queueDepth() == 0);
+        pipeline.submit(1); // fills the queue
+
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                pipeline.submit(2);
+                submitted.countDown();
+            } catch (InterruptedException ignored) {
+                // test over
+            }
+        });
+        producer.start();
+        assertFalse(submitted.await(200, TimeUnit.MILLISECONDS), "submit waits for room");
+
+        release.countDown();
+        assertTrue(submitted.await(5, TimeUnit.SECONDS));
+        pipeline.close();
+    }
+
+    @Test
+    void aFailureCompletesOnlyItsOwnResults() throws Exception {
+        AtomicInteger reachedLastStage = new AtomicInteger();
+        StagedPipeline<Integer, Integer> pipeline = StagedPipeline.<Integer>builder()
+                .cpu("check", 2, 8, (Integer i) -> {
+                    if (i == 3) {
+                        throw new IllegalArgumentException("bad input " + i);
+                    }
+                    return i;
+                })
+                .cpu("count", 1, 8, (Integer i) -> {
+                    reachedLastStage.incrementAndGet();
+                    return i;
+                })
+                .build();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(pipeline.submit(i));
+        }
+        pipeline.close();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> results.get(3).get());
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        assertEquals(5, results.get(5).get());
+        assertEquals(5, reachedLastStage.get());
+        assertEquals(1, pipeline.stats().get(0).failed());
+    }
+
+    @Test
+    void aBatchWithTheWrongNumberOfResultsFails() throws Exception {
+        CompletableFuture<Integer> result;
+        try (StagedPipeline<Integer, Integer> pipeline = StagedPipeline.<Integer>builder()
+                .batched("predict", 4, 1, 4, (List<Integer> batch) -> List.<Integer>of())
+                .build()) {
+            result = pipeline.submit(1);
+        }
+        ExecutionException failure = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(IllegalStateException.class, failure.getCause());
+    }
+
+    @Test
+    void closeFinishesEverythingSubmittedAndRefusesMore() throws Exception {
+        StagedPipeline<Integer, Integer> pipeline = StagedPipeline.<Integer>builder()
+                .io("sleep", 4, 8, (Integer i) -> {
+                    Thread.sleep(5);
+                    return i;
+                })
+                .cpu("square", 2, 8, (Integer i) -> i * i)
+                .build();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            results.add(pipeline.submit(i));
+        }
+        pipeline.close();
+
+        for (int i = 0; i < 40; i++) {
+            assertTrue(results.get(i).isDone(), "result " + i);
+            assertEquals(i * i, results.get(i).get());
+        }
+        assertEquals(40, pipeline.stats().get(1).processed());
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(0));
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+}